@@ -0,0 +1,154 @@
+package be.guldentops.geert.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Runs many scripts in one JVM, at most one per thread at the same time, so they share the cost of starting the JVM and
+ * warming up the interpreter.
+ * <p>
+ * Every script runs with an interpreter of its own (see {@link Lox#runIsolated}) and prints into a buffer of its own.
+ * The buffers are written out in the order of the scripts once all of them finished, so the output does not depend on
+ * which script finished first. A script that crashes the interpreter (e.g. by recursing until the Java stack overflows)
+ * only fails itself, the other scripts and the summary are not affected.
+ */
+class BatchRunner {
+
+    private static final String GLOB_CHARACTERS = "*?[{";
+    private static final int CRASHED = 70;
+
+    private final int threads;
+
+    BatchRunner(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("threads should be at least 1!");
+
+        this.threads = threads;
+    }
+
+    record Result(Path script, int exitCode, boolean crashed, byte[] out, byte[] err, long nanos) {
+
+        String status() {
+            if (crashed) return "crashed";
+
+            return switch (exitCode) {
+                case 0 -> "ok";
+                case 65 -> "compile error";
+                case 70 -> "runtime error";
+                default -> "unreadable";
+            };
+        }
+    }
+
+    /**
+     * @param directoryOrGlob a directory whose Lox scripts (also those in its subdirectories) should run or a glob
+     *                        pattern, e.g.: {@code scripts/nightly/*.lox}.
+     * @return the matching scripts, sorted.
+     */
+    static List<Path> find(String directoryOrGlob) throws IOException {
+        var firstGlobCharacter = indexOfFirstGlobCharacter(directoryOrGlob);
+        if (firstGlobCharacter == -1) {
+            try (var paths = Files.walk(Paths.get(directoryOrGlob))) {
+                return paths.filter(path -> path.toString().endsWith(".lox")).sorted().collect(toList());
+            }
+        }
+
+        // Only walk the directories the pattern can match something in.
+        var root = directoryOrGlob.substring(0, directoryOrGlob.lastIndexOf('/', firstGlobCharacter) + 1);
+        var matcher = FileSystems.getDefault().getPathMatcher("glob:" + directoryOrGlob);
+        try (var paths = Files.walk(Paths.get(root))) {
+            return paths.filter(Files::isRegularFile).filter(matcher::matches).sorted().collect(toList());
+        }
+    }
+
+    private static int indexOfFirstGlobCharacter(String pattern) {
+        for (var i = 0; i < pattern.length(); i++) {
+            if (GLOB_CHARACTERS.indexOf(pattern.charAt(i)) != -1) return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return a result for every script, in the same order.
+     */
+    List<Result> run(List<Path> scripts) {
+        var executor = Executors.newFixedThreadPool(threads);
+        try {
+            var futures = new ArrayList<Future<Result>>(scripts.size());
+            for (var script : scripts) {
+                futures.add(executor.submit(() -> run(script)));
+            }
+
+            var results = new ArrayList<Result>(scripts.size());
+            for (var future : futures) {
+                results.add(future.get());
+            }
+
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running scripts", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not run script", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Result run(Path script) {
+        var out = new ByteArrayOutputStream();
+        var err = new ByteArrayOutputStream();
+
+        var errors = new PrintStream(err, true, UTF_8);
+
+        var start = System.nanoTime();
+        int exitCode;
+        var crashed = false;
+        try {
+            exitCode = Lox.runIsolated(script.toString(), new PrintStream(out, true, UTF_8), errors);
+        } catch (Throwable e) {
+            errors.println("Crashed running " + script + ": " + e);
+            exitCode = CRASHED;
+            crashed = true;
+        }
+        var nanos = System.nanoTime() - start;
+
+        return new Result(script, exitCode, crashed, out.toByteArray(), err.toByteArray(), nanos);
+    }
+
+    /**
+     * Writes the output of every script, in order, followed by a table with the status and the time of every script.
+     *
+     * @return the highest exit code of all scripts, so 0 when all of them ran without errors.
+     */
+    static int report(List<Result> results, PrintStream out, PrintStream err) {
+        for (var result : results) {
+            out.write(result.out(), 0, result.out().length);
+            err.write(result.err(), 0, result.err().length);
+        }
+        out.flush();
+
+        var exitCode = 0;
+        err.println(String.format("%-14s %12s  %s", "Status", "Time ms", "Script"));
+        for (var result : results) {
+            err.println(String.format("%-14s %12.3f  %s", result.status(), result.nanos() / 1_000_000.0, result.script()));
+            exitCode = Math.max(exitCode, result.exitCode());
+        }
+        err.flush();
+
+        return exitCode;
+    }
+}
@@ -1,19 +1,44 @@
 package be.guldentops.geert.lox;
 
+import be.guldentops.geert.lox.cache.CompilationCache;
+import be.guldentops.geert.lox.coverage.Coverage;
 import be.guldentops.geert.lox.error.ErrorReporter;
+import be.guldentops.geert.lox.grammar.Expression;
+import be.guldentops.geert.lox.grammar.SourceMap;
+import be.guldentops.geert.lox.grammar.Statement;
+import be.guldentops.geert.lox.interpreter.CompiledProgram;
 import be.guldentops.geert.lox.interpreter.Interpreter;
 import be.guldentops.geert.lox.lexer.Scanner;
+import be.guldentops.geert.lox.lexer.Utf8Source;
 import be.guldentops.geert.lox.parser.Parser;
+import be.guldentops.geert.lox.profiler.AllocationProfiler;
+import be.guldentops.geert.lox.profiler.LineProfiler;
+import be.guldentops.geert.lox.semantic.analysis.ResolutionAnalyzer;
 import be.guldentops.geert.lox.semantic.analysis.Resolver;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.function.Supplier;
 
 class Lox {
 
+    private static final int TOP_ALLOCATION_SITES = 20;
+
+    private static final int CANNOT_READ_SCRIPT = 66;
+
+    // Below this size (in characters) scanning in parallel costs more than it saves.
+    private static final int PARALLEL_SCANNING_THRESHOLD = 16 * 1024 * 1024;
+    // Below this number of top-level statements resolving them in parallel costs more than it saves.
+    private static final int PARALLEL_RESOLUTION_THRESHOLD = 4 * 1024;
+
     private final ErrorReporter syntaxErrorReporter;
     private final ErrorReporter semanticErrorReporter;
     private final ErrorReporter runtimeErrorReporter;
@@ -22,15 +47,157 @@ class Lox {
     private final Interpreter interpreter;
 
     Lox(ErrorReporter syntaxErrorReporter, ErrorReporter semanticErrorReporter, ErrorReporter runtimeErrorReporter) {
+        this(syntaxErrorReporter, semanticErrorReporter, runtimeErrorReporter, Interpreter.createDefault());
+    }
+
+    /**
+     * @param out where the scripts print to instead of System.out.
+     */
+    Lox(ErrorReporter syntaxErrorReporter, ErrorReporter semanticErrorReporter, ErrorReporter runtimeErrorReporter, PrintStream out) {
+        this(syntaxErrorReporter, semanticErrorReporter, runtimeErrorReporter, Interpreter.create(out));
+    }
+
+    private Lox(ErrorReporter syntaxErrorReporter, ErrorReporter semanticErrorReporter, ErrorReporter runtimeErrorReporter, Interpreter interpreter) {
         this.syntaxErrorReporter = syntaxErrorReporter;
         this.semanticErrorReporter = semanticErrorReporter;
         this.runtimeErrorReporter = runtimeErrorReporter;
-        this.interpreter = Interpreter.createDefault();
+        this.interpreter = interpreter;
         this.interpreter.addErrorReporter(runtimeErrorReporter);
     }
 
     void runFile(String path) throws IOException {
-        run(Files.readString(Paths.get(path)));
+        runFile(path, false, SourceMap.NONE);
+    }
+
+    /**
+     * Scripts often define far more functions than they call, so the body of a function is only parsed and resolved
+     * when it is called for the first time. Errors in functions that are never called go unnoticed, so this is only used
+     * when asked for (--lazy).
+     */
+    void runFileLazily(String path) throws IOException {
+        runFile(path, true, SourceMap.NONE);
+    }
+
+    private void runFile(String path, boolean deferFunctionBodies, SourceMap sourceMap) throws IOException {
+        var statements = compile(path, Utf8Source.map(Paths.get(path)), deferFunctionBodies, sourceMap, interpreter);
+        if (receivedCompileError()) return;
+
+        interpret(path, statements);
+    }
+
+    /**
+     * Runs a script with an interpreter of its own, so with a global environment no other script sees.
+     *
+     * @param out where the script prints to.
+     * @param err where the errors in the script are reported to.
+     * @return the exit code LoxMain exits with after running the script, or 66 when the script can not be read.
+     */
+    static int runIsolated(String path, PrintStream out, PrintStream err) {
+        var lox = new Lox(ErrorReporter.console(err), ErrorReporter.console(err), ErrorReporter.console(err), out);
+        try {
+            lox.runFile(path);
+        } catch (IOException e) {
+            err.println("Can not read " + path + ": " + e);
+            return CANNOT_READ_SCRIPT;
+        }
+
+        return lox.exitCode();
+    }
+
+    /**
+     * Runs the script without scanning, parsing and resolving it when it has been run with the same cache before.
+     * Otherwise all of it is parsed and resolved up front (also the bodies of functions that are never called), and it
+     * is stored in the cache unless it contains errors.
+     */
+    void runFile(String path, CompilationCache cache) throws IOException {
+        // Read once, so the script is compiled from the bytes its key is the hash of even if it is edited meanwhile.
+        var sourceCode = ByteBuffer.wrap(Files.readAllBytes(Paths.get(path)));
+        var key = cache.keyOf(sourceCode);
+
+        var statements = cache.load(key, interpreter, SourceMap.NONE);
+        if (statements == null) {
+            statements = compileIntoCache(path, sourceCode, key, cache);
+            if (receivedCompileError()) return;
+        }
+
+        interpret(path, statements);
+    }
+
+    /**
+     * Stores the script in the cache like its first run would, without running it, e.g. to ship a warm cache along with
+     * the scripts.
+     */
+    void compileFile(String path, CompilationCache cache) throws IOException {
+        var sourceCode = ByteBuffer.wrap(Files.readAllBytes(Paths.get(path)));
+
+        compileIntoCache(path, sourceCode, cache.keyOf(sourceCode), cache);
+    }
+
+    /**
+     * Parses and resolves the whole script (also the bodies of functions that are never called) into a program that any
+     * number of threads can run at the same time.
+     *
+     * @return null if the script contains errors.
+     */
+    CompiledProgram compileProgram(String path) throws IOException {
+        var locals = new IdentityHashMap<Expression, Integer>();
+        var statements = compile(path, Utf8Source.map(Paths.get(path)), false, SourceMap.NONE, locals::put);
+        if (receivedCompileError()) return null;
+
+        return new CompiledProgram(path, statements, locals);
+    }
+
+    /**
+     * Runs a script that sets up state (e.g. classes, lookup tables and configuration instances) and writes the global
+     * environment to a snapshot afterwards, unless the script contains errors.
+     */
+    void snapshotFile(String path, Path snapshot) throws IOException {
+        var statements = compile(path, Utf8Source.map(Paths.get(path)), false, SourceMap.NONE, interpreter);
+        if (receivedCompileError()) return;
+
+        interpret(path, statements);
+        if (runtimeErrorReporter.receivedError()) return;
+
+        interpreter.saveSnapshot(snapshot);
+    }
+
+    /**
+     * Starts from the global environment of a snapshot instead of running the script that set it up.
+     */
+    void restoreSnapshot(Path snapshot) throws IOException {
+        interpreter.restoreSnapshot(snapshot);
+    }
+
+    void profileFile(String path, PrintStream report) throws IOException {
+        var sourceCode = Files.readString(Paths.get(path));
+
+        var sourceMap = new SourceMap();
+        var profiler = new LineProfiler(sourceMap);
+        interpreter.addExecutionListener(profiler);
+        run(path, sourceCode, sourceMap);
+
+        profiler.report(sourceCode, report);
+    }
+
+    void profileAllocationsOfFile(String path, PrintStream report) throws IOException {
+        var sourceMap = new SourceMap();
+        var profiler = new AllocationProfiler(sourceMap);
+        interpreter.addExecutionListener(profiler);
+        runFile(path, false, sourceMap);
+
+        profiler.report(TOP_ALLOCATION_SITES, report);
+    }
+
+    void coverFile(String path, PrintStream lcovReport) throws IOException {
+        var sourceMap = new SourceMap();
+        var coverage = new Coverage(sourceMap, interpreter);
+        var statements = compile(path, Utf8Source.map(Paths.get(path)), false, sourceMap, coverage);
+        if (receivedCompileError()) return;
+
+        interpreter.cover(coverage);
+        interpret(path, statements);
+
+        coverage.writeLcov(Paths.get(path).toAbsolutePath().toString(), lcovReport);
     }
 
     void runPrompt() throws IOException {
@@ -38,7 +205,7 @@ class Lox {
 
         while (true) {
             System.out.print("> ");
-            run(reader.readLine());
+            run("<stdin>", reader.readLine(), SourceMap.NONE);
             resetAllErrorReporters();
         }
     }
@@ -49,25 +216,86 @@ class Lox {
         runtimeErrorReporter.reset();
     }
 
-    private void run(String sourceCode) {
-        var scanner = Scanner.createDefault(sourceCode);
+    private void run(String script, CharSequence sourceCode, SourceMap sourceMap) {
+        var statements = compile(script, sourceCode, false, sourceMap, interpreter);
+
+        // Stop if the parser or the resolver found an error.
+        if (receivedCompileError()) return;
+
+        interpret(script, statements);
+    }
+
+    /**
+     * Parses and resolves the whole script (also the bodies of functions that are never called), and stores it in the
+     * cache unless it contains errors.
+     */
+    private List<Statement> compileIntoCache(String path, ByteBuffer sourceCode, String key, CompilationCache cache) throws IOException {
+        var sourceMap = new SourceMap();
+        var depths = new IdentityHashMap<Expression, Integer>();
+        var statements = compile(path, new Utf8Source(sourceCode), false, sourceMap, (expression, depth) -> {
+            depths.put(expression, depth);
+            interpreter.resolve(expression, depth);
+        });
+        if (!receivedCompileError()) cache.store(key, statements, depths, sourceMap);
+
+        return statements;
+    }
+
+    /**
+     * @param sourceMap where the parser records the line of every statement, {@link SourceMap#NONE} unless something asks
+     *                  for those lines after parsing (e.g. a profiler or a cache) so the map does not outlive the run.
+     */
+    private List<Statement> compile(String script, CharSequence sourceCode, boolean deferFunctionBodies, SourceMap sourceMap, ResolutionAnalyzer resolutionAnalyzer) {
+        var scanner = sourceCode.length() < PARALLEL_SCANNING_THRESHOLD ? Scanner.createDefault(sourceCode) : Scanner.createParallel(sourceCode);
         scanner.addErrorReporter(syntaxErrorReporter);
-        var tokens = scanner.scanTokens();
 
-        var parser = Parser.createDefault(tokens);
+        // The parser pulls the tokens from the scanner on demand, so scanning is part of the parse phase.
+        var parser = deferFunctionBodies ? Parser.createDeferringFunctionBodies(scanner, sourceMap) : Parser.createDefault(scanner, sourceMap);
         parser.addErrorReporter(syntaxErrorReporter);
-        var statements = parser.parse();
+        var statements = phase(script, "parse", parser::parse);
 
         // Stop if the parser found a syntax error.
-        if (syntaxErrorReporter.receivedError()) return;
+        if (syntaxErrorReporter.receivedError()) return statements;
 
-        var resolver = Resolver.createDefault(interpreter);
+        var resolver = statements.size() < PARALLEL_RESOLUTION_THRESHOLD ? Resolver.createDefault(resolutionAnalyzer) : Resolver.createParallel(resolutionAnalyzer);
         resolver.addErrorReporter(semanticErrorReporter);
-        resolver.resolve(statements);
+        phase(script, "resolve", () -> resolver.resolve(statements));
 
-        // Stop if the resolver found a semantic error.
-        if (semanticErrorReporter.receivedError()) return;
+        return statements;
+    }
+
+    /**
+     * @return the exit code of the last run: 65 after a syntax or semantic error, 70 after a runtime error and 0 otherwise.
+     */
+    int exitCode() {
+        if (receivedCompileError()) return 65;
+        if (runtimeErrorReporter.receivedError()) return 70;
+
+        return 0;
+    }
+
+    private boolean receivedCompileError() {
+        return syntaxErrorReporter.receivedError() || semanticErrorReporter.receivedError();
+    }
+
+    private void interpret(String script, List<Statement> statements) {
+        phase(script, "interpret", () -> interpreter.interpret(script, statements));
+    }
+
+    private <T> T phase(String script, String name, Supplier<T> phase) {
+        var event = new PhaseEvent(script, name);
+        event.begin();
+        try {
+            return phase.get();
+        } finally {
+            event.commit();
+        }
+    }
 
-        interpreter.interpret(statements);
+    private void phase(String script, String name, Runnable phase) {
+        phase(script, name, () -> {
+            phase.run();
+            return null;
+        });
     }
 }
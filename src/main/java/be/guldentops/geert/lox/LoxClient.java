@@ -0,0 +1,64 @@
+package be.guldentops.geert.lox;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Runs a script on a {@link LoxDaemon} and exits with the exit code of the run. It loads none of the classes of the
+ * interpreter, so it starts a lot faster than LoxMain.
+ * <p>
+ * The main method is NOT tested for the same reasons as {@link LoxMain}, all of its logic is in {@link #run}.
+ */
+class LoxClient {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: LoxClient [port] [script]");
+            System.exit(64);
+        }
+
+        var port = Integer.parseInt(args[0]);
+        System.exit(run(port, LoxDaemon.tokenFileOf(LoxDaemon.defaultTokenDirectory(), port), Paths.get(args[1]), System.out, System.err));
+    }
+
+    /**
+     * @param tokenFile the file the daemon wrote its token to, only the user that started the daemon can read it.
+     * @return the exit code of the run.
+     */
+    static int run(int port, Path tokenFile, Path script, OutputStream out, OutputStream err) throws IOException {
+        var token = Files.readAllBytes(tokenFile);
+
+        try (var channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port))) {
+            var path = script.toAbsolutePath().toString().getBytes(UTF_8);
+            var request = ByteBuffer.allocate(token.length + Integer.BYTES + path.length).put(token).putInt(path.length).put(path).flip();
+            while (request.hasRemaining()) {
+                channel.write(request);
+            }
+
+            var input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            while (true) {
+                var tag = input.readByte();
+                if (tag == LoxDaemon.EXIT) return input.readInt();
+
+                var bytes = new byte[input.readInt()];
+                input.readFully(bytes);
+
+                var stream = tag == LoxDaemon.OUT ? out : err;
+                stream.write(bytes);
+                stream.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package be.guldentops.geert.lox;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Keeps a JVM with a warmed up interpreter running and runs scripts for {@link LoxClient}s, so a run no longer pays for
+ * starting the JVM and for compiling the interpreter again.
+ * <p>
+ * Every run gets a new interpreter, and so a new global environment, only the loaded and compiled code is shared. Runs
+ * do not share any state, so as many of them run at the same time as there are processors.
+ * <p>
+ * Clients connect over the loopback interface and send the absolute path of a script (its length followed by its bytes
+ * in UTF-8). The daemon streams back what the script prints to standard output and standard error in frames (a tag, the
+ * length and the bytes) and ends with the exit code of {@link Lox#runIsolated}.
+ * <p>
+ * Any local user can connect to the loopback interface, so every request starts with a secret token. The daemon writes
+ * it at startup to a file only the user that started it can read ({@link #tokenFileOf}) and closes connections that
+ * do not send it, otherwise other users could run scripts with the permissions of that user.
+ */
+class LoxDaemon implements Closeable {
+
+    static final byte OUT = 1;
+    static final byte ERR = 2;
+    static final byte EXIT = 3;
+
+    static final int TOKEN_LENGTH = 32;
+
+    static final int CRASHED = 70;
+    static final int NOT_AUTHORIZED = 77;
+
+    private static final int MAX_PATH_LENGTH = 64 * 1024;
+
+    private final ServerSocketChannel server;
+    private final ExecutorService runs = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+    private final byte[] token = new byte[TOKEN_LENGTH];
+    private final Path tokenFile;
+
+    /**
+     * @param port           0 to let the operating system pick a free port.
+     * @param tokenDirectory where the token file is written, see {@link #defaultTokenDirectory()}.
+     */
+    LoxDaemon(int port, Path tokenDirectory) throws IOException {
+        this.server = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+
+        new SecureRandom().nextBytes(token);
+        this.tokenFile = tokenFileOf(tokenDirectory, port());
+        writeToken(tokenFile, token);
+    }
+
+    /**
+     * @return the directory in the home of the user where daemons write their token and clients read it from.
+     */
+    static Path defaultTokenDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".jlox");
+    }
+
+    static Path tokenFileOf(Path tokenDirectory, int port) {
+        return tokenDirectory.resolve("daemon-" + port + ".token");
+    }
+
+    private static void writeToken(Path tokenFile, byte[] token) throws IOException {
+        Files.deleteIfExists(tokenFile);
+
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createDirectories(tokenFile.getParent(), PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            Files.createFile(tokenFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createDirectories(tokenFile.getParent());
+            Files.createFile(tokenFile);
+        }
+
+        Files.write(tokenFile, token);
+    }
+
+    int port() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    Path tokenFile() {
+        return tokenFile;
+    }
+
+    /**
+     * Accepts clients until the daemon is closed.
+     */
+    void serve() throws IOException {
+        while (true) {
+            SocketChannel client;
+            try {
+                client = server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            }
+
+            runs.execute(() -> run(client));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        runs.shutdown();
+        Files.deleteIfExists(tokenFile);
+    }
+
+    private void run(SocketChannel client) {
+        try (client) {
+            var err = new PrintStream(new BufferedOutputStream(new FrameOutputStream(client, ERR)), true, UTF_8);
+            if (!MessageDigest.isEqual(readFully(client, ByteBuffer.allocate(TOKEN_LENGTH)).array(), token)) {
+                err.println("Not authorized, the token does not match " + tokenFile);
+                err.flush();
+                writeExit(client, NOT_AUTHORIZED);
+                return;
+            }
+
+            var script = readScript(client);
+
+            var out = new PrintStream(new BufferedOutputStream(new FrameOutputStream(client, OUT)), true, UTF_8);
+            int exitCode;
+            try {
+                exitCode = Lox.runIsolated(script, out, err);
+            } catch (Throwable e) {
+                // E.g. a script that recurses until the Java stack overflows, the client still gets an exit code.
+                err.println("Crashed running " + script + ": " + e);
+                exitCode = CRASHED;
+            }
+
+            out.flush();
+            err.flush();
+            writeExit(client, exitCode);
+        } catch (IOException e) {
+            // The client went away, there is nobody left to tell.
+        }
+    }
+
+    private static void writeExit(SocketChannel client, int exitCode) throws IOException {
+        writeFully(client, ByteBuffer.allocate(1 + Integer.BYTES).put(EXIT).putInt(exitCode).flip());
+    }
+
+    private static String readScript(SocketChannel client) throws IOException {
+        var length = readFully(client, ByteBuffer.allocate(Integer.BYTES)).getInt();
+        if (length < 0 || length > MAX_PATH_LENGTH) throw new IOException("Not a path to a script");
+
+        return UTF_8.decode(readFully(client, ByteBuffer.allocate(length))).toString();
+    }
+
+    private static ByteBuffer readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) throw new EOFException();
+        }
+
+        return buffer.flip();
+    }
+
+    private static void writeFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        // Frames of standard output and standard error must not interleave.
+        synchronized (channel) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private static class FrameOutputStream extends OutputStream {
+
+        private final SocketChannel channel;
+        private final byte tag;
+
+        FrameOutputStream(SocketChannel channel, byte tag) {
+            this.channel = channel;
+            this.tag = tag;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            writeFully(channel, ByteBuffer.allocate(1 + Integer.BYTES + length).put(tag).putInt(length).put(bytes, offset, length).flip());
+        }
+    }
+}
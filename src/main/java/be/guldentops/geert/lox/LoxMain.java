@@ -1,8 +1,11 @@
 package be.guldentops.geert.lox;
 
+import be.guldentops.geert.lox.cache.CompilationCache;
 import be.guldentops.geert.lox.error.ErrorReporter;
 
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
 
 /**
  * This class is NOT tested since it:
@@ -15,21 +18,75 @@ import java.io.IOException;
 class LoxMain {
 
     public static void main(String[] args) throws IOException {
+        if (args.length == 2 && args[0].equals("--daemon")) {
+            try (var daemon = new LoxDaemon(Integer.parseInt(args[1]), LoxDaemon.defaultTokenDirectory())) {
+                System.out.println("Listening on port " + daemon.port() + ", clients authenticate with the token in " + daemon.tokenFile());
+                daemon.serve();
+            }
+            return;
+        }
+
+        if (args.length == 2 && args[0].equals("--run-all")) {
+            var batchRunner = new BatchRunner(Runtime.getRuntime().availableProcessors());
+            var results = batchRunner.run(BatchRunner.find(args[1]));
+
+            System.exit(BatchRunner.report(results, System.out, System.err));
+        }
+
         var syntaxErrorReporter = ErrorReporter.console();
         var semanticErrorReporter = ErrorReporter.console();
         var runtimeErrorReporter = ErrorReporter.console();
         var lox = new Lox(syntaxErrorReporter, semanticErrorReporter, runtimeErrorReporter);
 
-        if (args.length > 1) {
-            System.out.println("Usage: jlox [script]");
+        if (args.length == 2 && args[0].equals("--profile")) {
+            lox.profileFile(args[1], System.err);
+
+            exitOnError(lox);
+        } else if (args.length == 2 && args[0].equals("--profile-allocations")) {
+            lox.profileAllocationsOfFile(args[1], System.err);
+
+            exitOnError(lox);
+        } else if (args.length == 3 && args[0].equals("--coverage")) {
+            try (var lcovReport = new PrintStream(args[1])) {
+                lox.coverFile(args[2], lcovReport);
+            }
+
+            exitOnError(lox);
+        } else if (args.length == 2 && args[0].equals("--lazy")) {
+            lox.runFileLazily(args[1]);
+
+            exitOnError(lox);
+        } else if (args.length == 3 && args[0].equals("--cache")) {
+            lox.runFile(args[2], new CompilationCache(Paths.get(args[1])));
+
+            exitOnError(lox);
+        } else if (args.length == 4 && args[0].equals("--cache") && args[2].equals("--compile")) {
+            lox.compileFile(args[3], new CompilationCache(Paths.get(args[1])));
+
+            exitOnError(lox);
+        } else if (args.length == 3 && args[0].equals("--snapshot")) {
+            lox.snapshotFile(args[2], Paths.get(args[1]));
+
+            exitOnError(lox);
+        } else if (args.length == 3 && args[0].equals("--restore")) {
+            lox.restoreSnapshot(Paths.get(args[1]));
+            lox.runFile(args[2]);
+
+            exitOnError(lox);
+        } else if (args.length > 1) {
+            System.out.println("Usage: jlox [--lazy | --profile | --profile-allocations | --coverage lcov-file | --cache directory [--compile] | --snapshot snapshot | --restore snapshot | --daemon port | --run-all directory-or-glob] [script]");
             System.exit(64);
         } else if (args.length == 1) {
             lox.runFile(args[0]);
 
-            if (syntaxErrorReporter.receivedError() || semanticErrorReporter.receivedError()) System.exit(65);
-            if (runtimeErrorReporter.receivedError()) System.exit(70);
+            exitOnError(lox);
         } else {
             lox.runPrompt();
         }
     }
+
+    private static void exitOnError(Lox lox) {
+        var exitCode = lox.exitCode();
+        if (exitCode != 0) System.exit(exitCode);
+    }
 }
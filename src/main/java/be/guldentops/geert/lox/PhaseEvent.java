@@ -0,0 +1,26 @@
+package be.guldentops.geert.lox;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("lox.Phase")
+@Label("Lox Phase")
+@Description("Scanning, parsing, resolving or interpreting a Lox script")
+@Category("Lox")
+@StackTrace(false)
+class PhaseEvent extends jdk.jfr.Event {
+
+    @Label("Script")
+    String script;
+
+    @Label("Phase")
+    String phase;
+
+    PhaseEvent(String script, String phase) {
+        this.script = script;
+        this.phase = phase;
+    }
+}
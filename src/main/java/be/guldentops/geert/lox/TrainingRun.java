@@ -0,0 +1,50 @@
+package be.guldentops.geert.lox;
+
+import be.guldentops.geert.lox.error.ErrorReporter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Runs every Lox script in a directory (and its subdirectories) in a single JVM, so the classes the interpreter needs
+ * can be recorded in a class data sharing archive, e.g.: {@code java -XX:ArchiveClassesAtExit=jlox.jsa ...}.
+ * <p>
+ * This class is NOT tested for the same reasons as {@link LoxMain}, it only exists to be run by the build.
+ */
+class TrainingRun {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("Usage: TrainingRun [directory]");
+            System.exit(64);
+        }
+
+        List<Path> scripts;
+        try (var paths = Files.walk(Paths.get(args[0]))) {
+            scripts = paths.filter(path -> path.toString().endsWith(".lox")).sorted().collect(toList());
+        }
+
+        // The output of the scripts is of no interest, only the classes they load are.
+        var out = System.out;
+        var err = System.err;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (var script : scripts) {
+                new Lox(ErrorReporter.console(), ErrorReporter.console(), ErrorReporter.console()).runFile(script.toString());
+            }
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+
+        System.out.println("Ran " + scripts.size() + " scripts");
+    }
+}
@@ -0,0 +1,270 @@
+package be.guldentops.geert.lox.cache;
+
+import be.guldentops.geert.lox.grammar.Expression;
+import be.guldentops.geert.lox.grammar.SourceMap;
+import be.guldentops.geert.lox.grammar.Statement;
+import be.guldentops.geert.lox.lexer.Token;
+import be.guldentops.geert.lox.semantic.analysis.ResolutionAnalyzer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static be.guldentops.geert.lox.cache.AstWriter.ASSIGN;
+import static be.guldentops.geert.lox.cache.AstWriter.BINARY;
+import static be.guldentops.geert.lox.cache.AstWriter.BLOCK;
+import static be.guldentops.geert.lox.cache.AstWriter.CALL;
+import static be.guldentops.geert.lox.cache.AstWriter.CLASS;
+import static be.guldentops.geert.lox.cache.AstWriter.EXPRESSION;
+import static be.guldentops.geert.lox.cache.AstWriter.FALSE;
+import static be.guldentops.geert.lox.cache.AstWriter.FUNCTION;
+import static be.guldentops.geert.lox.cache.AstWriter.GET;
+import static be.guldentops.geert.lox.cache.AstWriter.GROUPING;
+import static be.guldentops.geert.lox.cache.AstWriter.IF;
+import static be.guldentops.geert.lox.cache.AstWriter.LITERAL;
+import static be.guldentops.geert.lox.cache.AstWriter.LOGICAL;
+import static be.guldentops.geert.lox.cache.AstWriter.MAGIC;
+import static be.guldentops.geert.lox.cache.AstWriter.NIL;
+import static be.guldentops.geert.lox.cache.AstWriter.NULL;
+import static be.guldentops.geert.lox.cache.AstWriter.NUMBER;
+import static be.guldentops.geert.lox.cache.AstWriter.PRINT;
+import static be.guldentops.geert.lox.cache.AstWriter.RETURN;
+import static be.guldentops.geert.lox.cache.AstWriter.SET;
+import static be.guldentops.geert.lox.cache.AstWriter.STRING;
+import static be.guldentops.geert.lox.cache.AstWriter.SUPER;
+import static be.guldentops.geert.lox.cache.AstWriter.THIS;
+import static be.guldentops.geert.lox.cache.AstWriter.TRUE;
+import static be.guldentops.geert.lox.cache.AstWriter.UNARY;
+import static be.guldentops.geert.lox.cache.AstWriter.VARIABLE;
+import static be.guldentops.geert.lox.cache.AstWriter.VARIABLE_DECLARATION;
+import static be.guldentops.geert.lox.cache.AstWriter.VERSION;
+import static be.guldentops.geert.lox.cache.AstWriter.WHILE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Reads the statements {@link AstWriter} wrote, hands the depths of the local variables to the resolution analyzer
+ * and records the lines of the statements in the source map, just like the parser and the resolver would have.
+ * <p>
+ * The depths and lines are buffered until all bytes have been read, so a corrupt file leaves the resolution analyzer
+ * and the source map untouched.
+ */
+class AstReader {
+
+    private static final Token.Type[] TOKEN_TYPES = Token.Type.values();
+
+    private final ByteBuffer bytes;
+    private final ResolutionAnalyzer resolutionAnalyzer;
+    private final SourceMap sourceMap;
+
+    private final List<String> strings = new ArrayList<>();
+
+    private Expression[] resolvedExpressions = new Expression[64];
+    private int[] depths = new int[64];
+    private int resolutions = 0;
+
+    private Statement[] statementsWithLines = new Statement[64];
+    private int[] lines = new int[64];
+    private int statementLines = 0;
+
+    AstReader(ByteBuffer bytes, ResolutionAnalyzer resolutionAnalyzer, SourceMap sourceMap) {
+        this.bytes = bytes;
+        this.resolutionAnalyzer = resolutionAnalyzer;
+        this.sourceMap = sourceMap;
+    }
+
+    /**
+     * @return the statements or null if the bytes were not written by this version of the writer.
+     */
+    List<Statement> read() {
+        try {
+            if (bytes.getInt() != MAGIC || readCount() != VERSION) return null;
+
+            var statements = readStatements();
+            if (bytes.hasRemaining()) return null;
+
+            for (var i = 0; i < resolutions; i++) {
+                resolutionAnalyzer.resolve(resolvedExpressions[i], depths[i]);
+            }
+            for (var i = 0; i < statementLines; i++) {
+                sourceMap.record(statementsWithLines[i], lines[i]);
+            }
+
+            return statements;
+        } catch (RuntimeException e) {
+            // Corrupt or truncated, e.g. by a crash while the cache file was being written.
+            return null;
+        } catch (StackOverflowError e) {
+            // Nested deeper than the stack allows (corrupt or not), so the script is compiled again instead.
+            return null;
+        }
+    }
+
+    private List<Statement> readStatements() {
+        var count = readLength();
+        var statements = new ArrayList<Statement>(count);
+        for (var i = 0; i < count; i++) {
+            statements.add(readStatement());
+        }
+
+        return statements;
+    }
+
+    private Statement readStatement() {
+        var tag = readTag();
+        if (tag == NULL) return null;
+
+        var line = readCount();
+        var statement = switch (tag) {
+            case BLOCK -> new Statement.Block(readStatements());
+            case CLASS -> new Statement.Class(readToken(), (Expression.Variable) readExpression(), readMethods());
+            case EXPRESSION -> new Statement.Expression(readExpression());
+            case FUNCTION -> new Statement.Function(readToken(), readParameters(), readStatements());
+            case IF -> new Statement.If(readExpression(), readStatement(), readStatement());
+            case PRINT -> new Statement.Print(readExpression());
+            case RETURN -> new Statement.Return(readToken(), readExpression());
+            case VARIABLE_DECLARATION -> new Statement.Variable(readToken(), readExpression());
+            case WHILE -> new Statement.While(readExpression(), readStatement());
+            default -> throw new IllegalArgumentException("Unknown statement " + tag);
+        };
+        if (line != 0) recordLine(statement, line);
+
+        return statement;
+    }
+
+    private List<Statement.Function> readMethods() {
+        var count = readLength();
+        var methods = new ArrayList<Statement.Function>(count);
+        for (var i = 0; i < count; i++) {
+            methods.add((Statement.Function) readStatement());
+        }
+
+        return methods;
+    }
+
+    private List<Token> readParameters() {
+        var count = readLength();
+        var parameters = new ArrayList<Token>(count);
+        for (var i = 0; i < count; i++) {
+            parameters.add(readToken());
+        }
+
+        return parameters;
+    }
+
+    private Expression readExpression() {
+        var tag = readTag();
+        return switch (tag) {
+            case NULL -> null;
+            case ASSIGN -> resolved(new Expression.Assign(readToken(), readExpression()));
+            case BINARY -> new Expression.Binary(readExpression(), readToken(), readExpression());
+            case CALL -> new Expression.Call(readExpression(), readToken(), readArguments());
+            case GET -> new Expression.Get(readExpression(), readToken());
+            case GROUPING -> new Expression.Grouping(readExpression());
+            case LITERAL -> new Expression.Literal(readValue());
+            case LOGICAL -> new Expression.Logical(readExpression(), readToken(), readExpression());
+            case SET -> new Expression.Set(readExpression(), readToken(), readExpression());
+            case SUPER -> resolved(new Expression.Super(readToken(), readToken()));
+            case THIS -> resolved(new Expression.This(readToken()));
+            case UNARY -> new Expression.Unary(readToken(), readExpression());
+            case VARIABLE -> resolved(new Expression.Variable(readToken()));
+            default -> throw new IllegalArgumentException("Unknown expression " + tag);
+        };
+    }
+
+    private List<Expression> readArguments() {
+        var count = readLength();
+        var arguments = new ArrayList<Expression>(count);
+        for (var i = 0; i < count; i++) {
+            arguments.add(readExpression());
+        }
+
+        return arguments;
+    }
+
+    private void recordLine(Statement statement, int line) {
+        if (statementLines == statementsWithLines.length) {
+            statementsWithLines = Arrays.copyOf(statementsWithLines, 2 * statementLines);
+            lines = Arrays.copyOf(lines, 2 * statementLines);
+        }
+        statementsWithLines[statementLines] = statement;
+        lines[statementLines++] = line;
+    }
+
+    private Expression resolved(Expression expression) {
+        var depth = readCount() - 1;
+        if (depth < 0) return expression;
+
+        if (resolutions == resolvedExpressions.length) {
+            resolvedExpressions = Arrays.copyOf(resolvedExpressions, 2 * resolutions);
+            depths = Arrays.copyOf(depths, 2 * resolutions);
+        }
+        resolvedExpressions[resolutions] = expression;
+        depths[resolutions++] = depth;
+
+        return expression;
+    }
+
+    private Token readToken() {
+        var type = TOKEN_TYPES[readTag()];
+        var lexeme = type.lexeme() == null ? readString() : type.lexeme();
+        var line = readCount();
+
+        Object literal = switch (type) {
+            case NUMBER -> bytes.getDouble();
+            case STRING -> readString();
+            default -> null;
+        };
+
+        return new Token(type, lexeme, literal, line);
+    }
+
+    private Object readValue() {
+        var tag = readTag();
+        return switch (tag) {
+            case NIL -> null;
+            case FALSE -> false;
+            case TRUE -> true;
+            case NUMBER -> bytes.getDouble();
+            case STRING -> readString();
+            default -> throw new IllegalArgumentException("Unknown literal " + tag);
+        };
+    }
+
+    private String readString() {
+        var index = readCount();
+        if (index < strings.size()) return strings.get(index);
+        if (index > strings.size()) throw new IllegalArgumentException("Unknown string " + index);
+
+        var encoded = new byte[readLength()];
+        bytes.get(encoded);
+        var string = new String(encoded, UTF_8);
+        strings.add(string);
+
+        return string;
+    }
+
+    private int readTag() {
+        return bytes.get() & 0xFF;
+    }
+
+    /**
+     * Reads the number of elements or bytes that follow, which can not be more than the bytes that are left since every
+     * element takes at least one byte. This way a corrupt count fails before it is allocated.
+     */
+    private int readLength() {
+        var length = readCount();
+        if (length < 0 || length > bytes.remaining()) throw new IllegalArgumentException("Invalid length " + length);
+
+        return length;
+    }
+
+    private int readCount() {
+        var count = 0;
+        for (var shift = 0; ; shift += 7) {
+            var b = bytes.get();
+            count |= (b & 0x7F) << shift;
+            if (b >= 0) return count;
+        }
+    }
+}
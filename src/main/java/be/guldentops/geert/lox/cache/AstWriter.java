@@ -0,0 +1,378 @@
+package be.guldentops.geert.lox.cache;
+
+import be.guldentops.geert.lox.grammar.Expression;
+import be.guldentops.geert.lox.grammar.SourceMap;
+import be.guldentops.geert.lox.grammar.Statement;
+import be.guldentops.geert.lox.lexer.Token;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Writes resolved statements in the binary format {@link AstReader} reads.
+ * <p>
+ * Every node is a tag byte followed by its fields in declaration order, a 0 tag stands for a missing (null) node.
+ * Statements are followed by the line they start on, expressions the resolver looked at by their depth plus one (0
+ * for globals). Counts, lines and depths are variable length integers, strings are written once and referred to by
+ * their index afterwards, the lexeme of a token is left out when its type only has one.
+ */
+class AstWriter implements Statement.Visitor<Void>, Expression.Visitor<Void> {
+
+    static final int MAGIC = 0x4C4F5841; // "LOXA"
+    static final int VERSION = 1;
+
+    static final int NULL = 0;
+
+    static final int BLOCK = 1;
+    static final int CLASS = 2;
+    static final int EXPRESSION = 3;
+    static final int FUNCTION = 4;
+    static final int IF = 5;
+    static final int PRINT = 6;
+    static final int RETURN = 7;
+    static final int VARIABLE_DECLARATION = 8;
+    static final int WHILE = 9;
+
+    static final int ASSIGN = 1;
+    static final int BINARY = 2;
+    static final int CALL = 3;
+    static final int GET = 4;
+    static final int GROUPING = 5;
+    static final int LITERAL = 6;
+    static final int LOGICAL = 7;
+    static final int SET = 8;
+    static final int SUPER = 9;
+    static final int THIS = 10;
+    static final int UNARY = 11;
+    static final int VARIABLE = 12;
+
+    static final int NIL = 0;
+    static final int FALSE = 1;
+    static final int TRUE = 2;
+    static final int NUMBER = 3;
+    static final int STRING = 4;
+
+    private final Map<Expression, Integer> depths;
+    private final SourceMap sourceMap;
+
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    private byte[] bytes = new byte[4096];
+    private int size = 0;
+
+    /**
+     * @param depths the depth the resolver found for each local variable, compared by identity.
+     */
+    AstWriter(Map<Expression, Integer> depths, SourceMap sourceMap) {
+        this.depths = depths;
+        this.sourceMap = sourceMap;
+    }
+
+    byte[] write(List<Statement> statements) {
+        writeInt(MAGIC);
+        writeCount(VERSION);
+        writeStatements(statements);
+
+        return Arrays.copyOf(bytes, size);
+    }
+
+    @Override
+    public Void visitBlockStatement(Statement.Block statement) {
+        begin(BLOCK, statement);
+        writeStatements(statement.statements());
+        return null;
+    }
+
+    @Override
+    public Void visitClassStatement(Statement.Class statement) {
+        begin(CLASS, statement);
+        writeToken(statement.name());
+        writeExpression(statement.superclass());
+        writeCount(statement.methods().size());
+        for (var method : statement.methods()) {
+            writeStatement(method);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStatement(Statement.Expression statement) {
+        begin(EXPRESSION, statement);
+        writeExpression(statement.expression());
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStatement(Statement.Function statement) {
+        begin(FUNCTION, statement);
+        writeToken(statement.name());
+        writeCount(statement.parameters().size());
+        for (var parameter : statement.parameters()) {
+            writeToken(parameter);
+        }
+        writeStatements(statement.body());
+        return null;
+    }
+
+    @Override
+    public Void visitIfStatement(Statement.If statement) {
+        begin(IF, statement);
+        writeExpression(statement.condition());
+        writeStatement(statement.thenBranch());
+        writeStatement(statement.elseBranch());
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStatement(Statement.Print statement) {
+        begin(PRINT, statement);
+        writeExpression(statement.expression());
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStatement(Statement.Return statement) {
+        begin(RETURN, statement);
+        writeToken(statement.keyword());
+        writeExpression(statement.value());
+        return null;
+    }
+
+    @Override
+    public Void visitVariableStatement(Statement.Variable statement) {
+        begin(VARIABLE_DECLARATION, statement);
+        writeToken(statement.name());
+        writeExpression(statement.initializer());
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStatement(Statement.While statement) {
+        begin(WHILE, statement);
+        writeExpression(statement.condition());
+        writeStatement(statement.body());
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpression(Expression.Assign expression) {
+        writeTag(ASSIGN);
+        writeToken(expression.name());
+        writeExpression(expression.value());
+        writeDepth(expression);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpression(Expression.Binary expression) {
+        writeTag(BINARY);
+        writeExpression(expression.left());
+        writeToken(expression.operator());
+        writeExpression(expression.right());
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpression(Expression.Call expression) {
+        writeTag(CALL);
+        writeExpression(expression.callee());
+        writeToken(expression.paren());
+        writeCount(expression.arguments().size());
+        for (var argument : expression.arguments()) {
+            writeExpression(argument);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpression(Expression.Get expression) {
+        writeTag(GET);
+        writeExpression(expression.object());
+        writeToken(expression.name());
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpression(Expression.Grouping expression) {
+        writeTag(GROUPING);
+        writeExpression(expression.expression());
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpression(Expression.Literal expression) {
+        writeTag(LITERAL);
+        writeValue(expression.value());
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpression(Expression.Logical expression) {
+        writeTag(LOGICAL);
+        writeExpression(expression.left());
+        writeToken(expression.operator());
+        writeExpression(expression.right());
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpression(Expression.Set expression) {
+        writeTag(SET);
+        writeExpression(expression.object());
+        writeToken(expression.name());
+        writeExpression(expression.value());
+        return null;
+    }
+
+    @Override
+    public Void visitSuperExpression(Expression.Super expression) {
+        writeTag(SUPER);
+        writeToken(expression.keyword());
+        writeToken(expression.method());
+        writeDepth(expression);
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpression(Expression.This expression) {
+        writeTag(THIS);
+        writeToken(expression.keyword());
+        writeDepth(expression);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpression(Expression.Unary expression) {
+        writeTag(UNARY);
+        writeToken(expression.operator());
+        writeExpression(expression.right());
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpression(Expression.Variable expression) {
+        writeTag(VARIABLE);
+        writeToken(expression.name());
+        writeDepth(expression);
+        return null;
+    }
+
+    private void writeStatements(List<Statement> statements) {
+        writeCount(statements.size());
+        for (var statement : statements) {
+            writeStatement(statement);
+        }
+    }
+
+    private void writeStatement(Statement statement) {
+        if (statement == null) {
+            writeTag(NULL);
+        } else {
+            statement.accept(this);
+        }
+    }
+
+    private void begin(int tag, Statement statement) {
+        writeTag(tag);
+        writeCount(sourceMap.lineOf(statement));
+    }
+
+    private void writeExpression(Expression expression) {
+        if (expression == null) {
+            writeTag(NULL);
+        } else {
+            expression.accept(this);
+        }
+    }
+
+    private void writeDepth(Expression expression) {
+        var depth = depths.get(expression);
+        writeCount(depth == null ? 0 : depth + 1);
+    }
+
+    private void writeToken(Token token) {
+        writeTag(token.type().ordinal());
+        if (token.type().lexeme() == null) writeString(token.lexeme());
+        writeCount(token.line());
+
+        switch (token.type()) {
+            case NUMBER -> writeDouble((Double) token.literal());
+            case STRING -> writeString((String) token.literal());
+        }
+    }
+
+    private void writeValue(Object value) {
+        if (value == null) {
+            writeTag(NIL);
+        } else if (value instanceof Boolean bool) {
+            writeTag(bool ? TRUE : FALSE);
+        } else if (value instanceof Double number) {
+            writeTag(NUMBER);
+            writeDouble(number);
+        } else if (value instanceof String string) {
+            writeTag(STRING);
+            writeString(string);
+        } else {
+            throw new IllegalArgumentException("Can not write literal " + value);
+        }
+    }
+
+    /**
+     * Refers to a string written before by its index, a new string gets the next index and follows right after it.
+     */
+    private void writeString(String string) {
+        var index = strings.get(string);
+        if (index != null) {
+            writeCount(index);
+            return;
+        }
+
+        writeCount(strings.size());
+        strings.put(string, strings.size());
+
+        var encoded = string.getBytes(UTF_8);
+        writeCount(encoded.length);
+        ensureCapacity(encoded.length);
+        System.arraycopy(encoded, 0, bytes, size, encoded.length);
+        size += encoded.length;
+    }
+
+    private void writeTag(int tag) {
+        ensureCapacity(1);
+        bytes[size++] = (byte) tag;
+    }
+
+    private void writeDouble(double number) {
+        var bits = Double.doubleToRawLongBits(number);
+        writeInt((int) (bits >>> 32));
+        writeInt((int) bits);
+    }
+
+    private void writeInt(int value) {
+        ensureCapacity(4);
+        bytes[size++] = (byte) (value >>> 24);
+        bytes[size++] = (byte) (value >>> 16);
+        bytes[size++] = (byte) (value >>> 8);
+        bytes[size++] = (byte) value;
+    }
+
+    /**
+     * Writes a non-negative integer 7 bits at a time, so small ones take a single byte.
+     */
+    private void writeCount(int count) {
+        ensureCapacity(5);
+        while ((count & ~0x7F) != 0) {
+            bytes[size++] = (byte) ((count & 0x7F) | 0x80);
+            count >>>= 7;
+        }
+        bytes[size++] = (byte) count;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, size + extra));
+    }
+}
@@ -0,0 +1,137 @@
+package be.guldentops.geert.lox.cache;
+
+import be.guldentops.geert.lox.grammar.Expression;
+import be.guldentops.geert.lox.grammar.SourceMap;
+import be.guldentops.geert.lox.grammar.Statement;
+import be.guldentops.geert.lox.semantic.analysis.ResolutionAnalyzer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * A directory of scripts that have already been parsed and resolved, keyed by the SHA-256 hash of their source code.
+ * <p>
+ * Scripts that are run over and over again skip scanning, parsing and resolving: their statements are read back from
+ * a compact binary file (see {@link AstWriter}) together with the depths of their local variables and their lines.
+ * Since the key only depends on the content of a script, editing a script simply misses the cache, stale files are
+ * never read again and can be removed at will.
+ */
+public class CompilationCache {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final Path directory;
+
+    public CompilationCache(Path directory) {
+        if (directory == null) throw new IllegalArgumentException("cache directory should not be null!");
+
+        this.directory = directory;
+    }
+
+    /**
+     * @return the key under which the compiled script is cached.
+     */
+    public String keyOf(Path script) throws IOException {
+        try (var channel = FileChannel.open(script, READ)) {
+            return keyOf(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Hash the same bytes that are compiled, reading the script again could compile a different version of it than
+     * the one that is stored under the key.
+     *
+     * @param sourceCode the UTF-8 encoded source code of the script, its position is left as is.
+     * @return the key under which the compiled script is cached.
+     */
+    public String keyOf(ByteBuffer sourceCode) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Every Java platform supports SHA-256", e);
+        }
+
+        digest.update(sourceCode.duplicate());
+
+        var hash = digest.digest();
+        var key = new char[2 * hash.length];
+        for (var i = 0; i < hash.length; i++) {
+            key[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+            key[2 * i + 1] = HEX_DIGITS[hash[i] & 0xF];
+        }
+
+        return new String(key);
+    }
+
+    /**
+     * Hands the depths of the local variables to the resolution analyzer and records the lines of the statements in the
+     * source map, like parsing and resolving the script would.
+     *
+     * @return the statements of the script or null if they are not in the cache.
+     */
+    public List<Statement> load(String key, ResolutionAnalyzer resolutionAnalyzer, SourceMap sourceMap) throws IOException {
+        try (var channel = FileChannel.open(fileOf(key), READ)) {
+            var bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            return decode(bytes, resolutionAnalyzer, sourceMap);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores the statements of a script that was parsed and resolved without errors.
+     *
+     * @param depths the depth the resolver found for each local variable, compared by identity.
+     */
+    public void store(String key, List<Statement> statements, Map<Expression, Integer> depths, SourceMap sourceMap) throws IOException {
+        var bytes = encode(statements, depths, sourceMap);
+
+        // Runs of the same script that store it at the same time must never see each other's half written file.
+        Files.createDirectories(directory);
+        var temporary = Files.createTempFile(directory, key, ".tmp");
+        try {
+            Files.write(temporary, bytes);
+            Files.move(temporary, fileOf(key), ATOMIC_MOVE, REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Encodes statements in the format of the cache files, e.g. to embed them in another file.
+     *
+     * @param depths the depth the resolver found for each local variable, compared by identity.
+     */
+    public static byte[] encode(List<Statement> statements, Map<Expression, Integer> depths, SourceMap sourceMap) {
+        return new AstWriter(depths, sourceMap).write(statements);
+    }
+
+    /**
+     * Hands the depths of the local variables to the resolution analyzer and records the lines of the statements in the
+     * source map, like parsing and resolving the statements would.
+     *
+     * @return the statements {@link #encode(List, Map, SourceMap)} encoded or null if the bytes were not encoded by this
+     * version of the interpreter.
+     */
+    public static List<Statement> decode(ByteBuffer bytes, ResolutionAnalyzer resolutionAnalyzer, SourceMap sourceMap) {
+        return new AstReader(bytes, resolutionAnalyzer, sourceMap).read();
+    }
+
+    private Path fileOf(String key) {
+        return directory.resolve(key + ".ast");
+    }
+}
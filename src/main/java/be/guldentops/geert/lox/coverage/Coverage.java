@@ -0,0 +1,161 @@
+package be.guldentops.geert.lox.coverage;
+
+import be.guldentops.geert.lox.grammar.Expression;
+import be.guldentops.geert.lox.grammar.SourceMap;
+import be.guldentops.geert.lox.grammar.Statement;
+import be.guldentops.geert.lox.semantic.analysis.ResolutionAnalyzer;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/**
+ * Statement and branch coverage of a Lox program.
+ * <p>
+ * The program is resolved with the coverage as its resolution analyzer, which gives every statement and branch point
+ * (if, while and logical expression) a dense index. While the program runs the interpreter sets the bit at that index
+ * when it executes a statement or takes a branch, so coverage can run on realistic workloads.
+ * <p>
+ * The indexes are kept by the coverage, not on the nodes, so the tree stays immutable and can be covered by any number
+ * of coverages (or shared with runs without coverage) at the same time.
+ */
+public class Coverage implements ResolutionAnalyzer {
+
+    private static final byte STATEMENT = 0;
+    private static final byte BRANCHING_STATEMENT = 1;
+    private static final byte BRANCHING_EXPRESSION = 2;
+
+    private final SourceMap sourceMap;
+    private final ResolutionAnalyzer resolutionAnalyzer;
+
+    private final NodeIndexes indexes = new NodeIndexes();
+
+    private int nodes = 0;
+    private byte[] kinds = new byte[64];
+    private int[] lines = new int[64];
+
+    private long[] executedStatements = new long[1];
+    // Every branch point has 2 outcomes: bit 2 * index when its condition was truthy, bit 2 * index + 1 when it was falsey.
+    private long[] takenBranches = new long[2];
+
+    /**
+     * @param resolutionAnalyzer receives the depths of the local variables, usually the interpreter that runs the program.
+     */
+    public Coverage(SourceMap sourceMap, ResolutionAnalyzer resolutionAnalyzer) {
+        this.sourceMap = sourceMap;
+        this.resolutionAnalyzer = resolutionAnalyzer;
+    }
+
+    @Override
+    public void resolve(Expression expression, int depth) {
+        resolutionAnalyzer.resolve(expression, depth);
+    }
+
+    @Override
+    public void analyse(Statement statement) {
+        var isBranchPoint = statement instanceof Statement.If || statement instanceof Statement.While;
+        index(statement, isBranchPoint ? BRANCHING_STATEMENT : STATEMENT, sourceMap.lineOf(statement));
+    }
+
+    @Override
+    public void analyse(Expression.Logical expression) {
+        index(expression, BRANCHING_EXPRESSION, expression.operator().line());
+    }
+
+    private void index(Object node, byte kind, int line) {
+        if (nodes == kinds.length) {
+            kinds = Arrays.copyOf(kinds, 2 * nodes);
+            lines = Arrays.copyOf(lines, 2 * nodes);
+        }
+        kinds[nodes] = kind;
+        lines[nodes] = line;
+        indexes.put(node, nodes++);
+
+        var words = (nodes + 63) >>> 6;
+        if (words > executedStatements.length) {
+            executedStatements = Arrays.copyOf(executedStatements, 2 * words);
+            takenBranches = Arrays.copyOf(takenBranches, 4 * words);
+        }
+    }
+
+    /**
+     * Called by the interpreter for every statement it executes.
+     */
+    public void executed(Statement statement) {
+        var index = indexes.get(statement);
+        if (index >= 0) executedStatements[index >>> 6] |= 1L << index;
+    }
+
+    /**
+     * Called by the interpreter for every branch of an if or while statement it takes.
+     */
+    public void branch(Statement statement, boolean outcome) {
+        branch(indexes.get(statement), outcome);
+    }
+
+    /**
+     * Called by the interpreter for every branch of a logical expression it takes.
+     */
+    public void branch(Expression.Logical expression, boolean outcome) {
+        branch(indexes.get(expression), outcome);
+    }
+
+    private void branch(int index, boolean outcome) {
+        if (index < 0) return;
+
+        var bit = outcome ? 2 * index : 2 * index + 1;
+        takenBranches[bit >>> 6] |= 1L << bit;
+    }
+
+    /**
+     * @return the index of the statement or logical expression, -1 if it was not resolved with this coverage.
+     */
+    int indexOf(Object node) {
+        return indexes.get(node);
+    }
+
+    private boolean isSet(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Writes the coverage as an LCOV tracefile, the hit counts are either 0 or 1 since coverage only records whether
+     * something ran.
+     */
+    public void writeLcov(String sourceFile, PrintStream out) {
+        out.println("TN:");
+        out.println("SF:" + sourceFile);
+
+        var branchPoints = 0;
+        var branchesHit = 0;
+        for (var index = 0; index < nodes; index++) {
+            // Without a line (e.g. statements that were not parsed from source code) there is nothing to report it on.
+            if (kinds[index] == STATEMENT || lines[index] == 0) continue;
+
+            var truthy = isSet(takenBranches, 2 * index);
+            var falsey = isSet(takenBranches, 2 * index + 1);
+            var evaluated = truthy || falsey;
+
+            out.println(String.format("BRDA:%d,%d,0,%s", lines[index], branchPoints, evaluated ? (truthy ? "1" : "0") : "-"));
+            out.println(String.format("BRDA:%d,%d,1,%s", lines[index], branchPoints, evaluated ? (falsey ? "1" : "0") : "-"));
+
+            branchPoints++;
+            if (truthy) branchesHit++;
+            if (falsey) branchesHit++;
+        }
+        out.println("BRF:" + 2 * branchPoints);
+        out.println("BRH:" + branchesHit);
+
+        var executedLines = new TreeMap<Integer, Boolean>();
+        for (var index = 0; index < nodes; index++) {
+            if (kinds[index] == BRANCHING_EXPRESSION || lines[index] == 0) continue;
+
+            executedLines.merge(lines[index], isSet(executedStatements, index), Boolean::logicalOr);
+        }
+        executedLines.forEach((line, executed) -> out.println(String.format("DA:%d,%d", line, executed ? 1 : 0)));
+        out.println("LF:" + executedLines.size());
+        out.println("LH:" + executedLines.values().stream().filter(executed -> executed).count());
+
+        out.println("end_of_record");
+    }
+}
@@ -0,0 +1,64 @@
+package be.guldentops.geert.lox.coverage;
+
+/**
+ * The index of every statement and logical expression of a covered program, looked up for every statement the
+ * interpreter executes.
+ * <p>
+ * Nodes are records, which are compared by identity to tell equal nodes apart. Unlike an IdentityHashMap the indexes
+ * are stored as ints, next to the keys in a table with linear probing, so a lookup never follows a reference to a boxed
+ * Integer.
+ */
+final class NodeIndexes {
+
+    private static final int NONE = -1;
+
+    private Object[] nodes = new Object[64];
+    private int[] indexes = new int[64];
+    private int size = 0;
+
+    /**
+     * @return the index of the node, -1 if it has none.
+     */
+    int get(Object node) {
+        var mask = nodes.length - 1;
+        for (var slot = slotOf(node, mask); ; slot = (slot + 1) & mask) {
+            var candidate = nodes[slot];
+            if (candidate == node) return indexes[slot];
+            if (candidate == null) return NONE;
+        }
+    }
+
+    void put(Object node, int index) {
+        if (2 * (size + 1) > nodes.length) grow();
+
+        insert(nodes, indexes, node, index);
+        size++;
+    }
+
+    private void grow() {
+        var oldNodes = nodes;
+        var oldIndexes = indexes;
+        nodes = new Object[2 * oldNodes.length];
+        indexes = new int[2 * oldNodes.length];
+
+        for (var slot = 0; slot < oldNodes.length; slot++) {
+            if (oldNodes[slot] != null) insert(nodes, indexes, oldNodes[slot], oldIndexes[slot]);
+        }
+    }
+
+    private static void insert(Object[] nodes, int[] indexes, Object node, int index) {
+        var mask = nodes.length - 1;
+        var slot = slotOf(node, mask);
+        while (nodes[slot] != null && nodes[slot] != node) {
+            slot = (slot + 1) & mask;
+        }
+
+        nodes[slot] = node;
+        indexes[slot] = index;
+    }
+
+    private static int slotOf(Object node, int mask) {
+        // Identity hash codes are random, but spread them anyway so nearby codes do not cluster.
+        return (System.identityHashCode(node) * 0x9E3779B9) >>> 7 & mask;
+    }
+}
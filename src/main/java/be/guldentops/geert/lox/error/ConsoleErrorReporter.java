@@ -1,13 +1,26 @@
 package be.guldentops.geert.lox.error;
 
+import java.io.PrintStream;
+import java.util.function.Supplier;
+
 class ConsoleErrorReporter implements ErrorReporter {
 
+    private final Supplier<PrintStream> err;
+
     private boolean receiverError = false;
 
+    ConsoleErrorReporter() {
+        this(() -> System.err);
+    }
+
+    ConsoleErrorReporter(Supplier<PrintStream> err) {
+        this.err = err;
+    }
+
     @Override
     public void handle(Error error) {
         receiverError = true;
-        System.err.println(error);
+        err.get().println(error);
     }
 
     @Override
@@ -1,11 +1,17 @@
 package be.guldentops.geert.lox.error;
 
+import java.io.PrintStream;
+
 public interface ErrorReporter {
 
     static ErrorReporter console() {
         return new ConsoleErrorReporter();
     }
 
+    static ErrorReporter console(PrintStream err) {
+        return new ConsoleErrorReporter(() -> err);
+    }
+
     void handle(Error error);
 
     boolean receivedError();
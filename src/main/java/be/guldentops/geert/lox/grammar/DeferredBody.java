@@ -0,0 +1,87 @@
+package be.guldentops.geert.lox.grammar;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The body of a function that has only been skimmed, it is parsed the first time its statements are needed.
+ * <p>
+ * Passes that have to look at the statements once they exist (e.g. the resolver) register themselves with
+ * {@link #whenParsed(Runnable)}, any of them can mark the body as invalid, after which it must not be executed.
+ */
+public final class DeferredBody extends AbstractList<Statement> {
+
+    private Supplier<List<Statement>> parser;
+    private List<Statement> statements;
+    private boolean valid = true;
+
+    private final List<Runnable> whenParsed = new ArrayList<>();
+
+    /**
+     * @param parser returns the statements of the body or null if they contain syntax errors.
+     */
+    public DeferredBody(Supplier<List<Statement>> parser) {
+        this.parser = parser;
+    }
+
+    public boolean isParsed() {
+        return statements != null;
+    }
+
+    /**
+     * Runs the action as soon as the body has been parsed, right away if it already has been.
+     */
+    public void whenParsed(Runnable action) {
+        if (isParsed()) {
+            action.run();
+        } else {
+            whenParsed.add(action);
+        }
+    }
+
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Parses the body (and runs everything waiting for that) unless that already happened.
+     *
+     * @return false if the body turned out to contain errors.
+     */
+    public boolean compile() {
+        statements();
+        return valid;
+    }
+
+    @Override
+    public Statement get(int index) {
+        return statements().get(index);
+    }
+
+    @Override
+    public int size() {
+        return statements().size();
+    }
+
+    private List<Statement> statements() {
+        if (statements == null) {
+            var parsed = parser.get();
+            parser = null;
+
+            if (parsed == null) {
+                valid = false;
+                statements = List.of();
+            } else {
+                statements = parsed;
+                for (var action : whenParsed) {
+                    action.run();
+                }
+            }
+            whenParsed.clear();
+        }
+
+        return statements;
+    }
+}
@@ -0,0 +1,43 @@
+package be.guldentops.geert.lox.grammar;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Statements are records without a line of their own (e.g. "print 1;" contains no token with a line), the parser records
+ * the line on which each statement starts here.
+ */
+public class SourceMap {
+
+    /**
+     * Records nothing, for runs that never ask for the line of a statement (e.g. a REPL session would otherwise keep every
+     * statement it ever parsed).
+     */
+    public static final SourceMap NONE = new SourceMap() {
+
+        @Override
+        public void record(Statement statement, int line) {
+        }
+    };
+
+    private final Map<Statement, Integer> lines = new IdentityHashMap<>();
+
+    public void record(Statement statement, int line) {
+        lines.put(statement, line);
+    }
+
+    /**
+     * Records the lines of the other map too, moved down by the lines before the source code it was recorded for (e.g.
+     * a piece of a larger script that was parsed on its own).
+     */
+    public void recordAll(SourceMap other, int linesBefore) {
+        other.lines.forEach((statement, line) -> record(statement, line + linesBefore));
+    }
+
+    /**
+     * @return the line on which the statement starts or 0 if the statement was not parsed from source code.
+     */
+    public int lineOf(Statement statement) {
+        return lines.getOrDefault(statement, 0);
+    }
+}
@@ -0,0 +1,340 @@
+package be.guldentops.geert.lox.incremental;
+
+import be.guldentops.geert.lox.error.Error;
+import be.guldentops.geert.lox.error.ErrorReporter;
+import be.guldentops.geert.lox.error.SyntaxError;
+import be.guldentops.geert.lox.grammar.Expression;
+import be.guldentops.geert.lox.grammar.SourceMap;
+import be.guldentops.geert.lox.grammar.Statement;
+import be.guldentops.geert.lox.lexer.Scanner;
+import be.guldentops.geert.lox.lexer.Token;
+import be.guldentops.geert.lox.lexer.Token.Type;
+import be.guldentops.geert.lox.lexer.TokenBuffer;
+import be.guldentops.geert.lox.parser.Parser;
+import be.guldentops.geert.lox.semantic.analysis.Resolver;
+import be.guldentops.geert.lox.semantic.analysis.SemanticError;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static be.guldentops.geert.lox.lexer.Token.Type.ELSE;
+import static be.guldentops.geert.lox.lexer.Token.Type.EOF;
+import static be.guldentops.geert.lox.lexer.Token.Type.LEFT_BRACE;
+import static be.guldentops.geert.lox.lexer.Token.Type.LEFT_PAREN;
+import static be.guldentops.geert.lox.lexer.Token.Type.RIGHT_BRACE;
+import static be.guldentops.geert.lox.lexer.Token.Type.RIGHT_PAREN;
+import static be.guldentops.geert.lox.lexer.Token.Type.SEMICOLON;
+
+/**
+ * Scans, parses and resolves a script that is being edited, redoing only the top-level declarations an edit touches.
+ * <p>
+ * The script is kept as a list of units, the text of a top-level declaration followed by the whitespace and comments
+ * up to the next one. Top-level declarations are resolved in the global scope, so they do not depend on each other and
+ * every unit that an edit does not touch keeps its statements, resolution and errors. The tokens of a unit have lines
+ * relative to the start of the unit, which is why inserting a line does not invalidate the units that follow it: the
+ * errors and the source map add the lines before the unit, a runtime error reported for a statement needs
+ * {@link #linesBefore(Statement)} added to the line of its token.
+ */
+public class IncrementalFrontEnd {
+
+    private record Unit(String text, int newlines, Type firstType, List<Statement> statements, List<Error> errors,
+                        Map<Expression, Integer> depths, SourceMap sourceMap) {
+    }
+
+    private final List<Unit> units = new ArrayList<>();
+    private final Map<Expression, Integer> depths = new IdentityHashMap<>();
+
+    public IncrementalFrontEnd(String sourceCode) {
+        if (sourceCode == null) throw new IllegalArgumentException("source code should not be null!");
+
+        replace(0, 0, sourceCode);
+    }
+
+    /**
+     * Replaces length characters at the offset by the replacement.
+     */
+    public void edit(int offset, int length, String replacement) {
+        var first = unitAt(offset == 0 ? 0 : offset - 1);
+        var last = unitAt(offset + length);
+        if (first < 0 || last < 0 || length < 0) throw new IllegalArgumentException("edit is outside of the source code!");
+
+        var firstOffset = offsetOf(first);
+        var text = new StringBuilder();
+        for (var i = first; i <= last; i++) {
+            text.append(units.get(i).text());
+        }
+        text.replace(offset - firstOffset, offset - firstOffset + length, replacement);
+
+        replace(first, last + 1, text.toString());
+    }
+
+    /**
+     * Replaces the units from (inclusive) to (exclusive) by those of the text, taking in the units after them until the
+     * text ends where a top-level declaration ends.
+     */
+    private void replace(int from, int to, String text) {
+        var tokens = Scanner.createDefault(text).bufferTokens();
+
+        // E.g. an opening quote can swallow the rest of the script, so take in twice as many units every time.
+        var taken = 1;
+        while (to < units.size() && !endsCleanly(text, tokens, units.get(to))) {
+            var extended = new StringBuilder(text);
+            for (var i = 0; i < taken && to < units.size(); i++) {
+                extended.append(units.get(to++).text());
+            }
+            taken *= 2;
+
+            text = extended.toString();
+            tokens = Scanner.createDefault(text).bufferTokens();
+        }
+
+        for (var i = from; i < to; i++) {
+            units.get(i).depths().keySet().forEach(depths::remove);
+        }
+        units.subList(from, to).clear();
+
+        var compiled = new ArrayList<Unit>();
+        var firstTokens = declarationStarts(tokens);
+        for (var i = 0; i < firstTokens.size(); i++) {
+            var start = i == 0 ? 0 : tokens.start(firstTokens.get(i));
+            var end = i + 1 < firstTokens.size() ? tokens.start(firstTokens.get(i + 1)) : text.length();
+
+            var unit = compile(text.substring(start, end), tokens.type(firstTokens.get(i)));
+            depths.putAll(unit.depths());
+            compiled.add(unit);
+        }
+        units.addAll(from, compiled);
+    }
+
+    /**
+     * A top-level declaration ends with a ';' or a '}' outside of any parentheses or braces, unless an 'else' follows.
+     *
+     * @return the index of the first token of every declaration, the first one is 0 even if there are no tokens.
+     */
+    private List<Integer> declarationStarts(TokenBuffer tokens) {
+        var starts = new ArrayList<Integer>();
+        starts.add(0);
+
+        var depth = 0;
+        for (var i = 0; i < tokens.size() - 1; i++) {
+            depth = depthAfter(tokens.type(i), depth);
+
+            var next = tokens.type(i + 1);
+            if (depth == 0 && isDeclarationEnd(tokens.type(i)) && next != ELSE && next != EOF) {
+                starts.add(i + 1);
+            }
+        }
+
+        return starts;
+    }
+
+    private int depthAfter(Type type, int depth) {
+        if (type == LEFT_PAREN || type == LEFT_BRACE) return depth + 1;
+        if (type == RIGHT_PAREN || type == RIGHT_BRACE) return Math.max(0, depth - 1);
+
+        return depth;
+    }
+
+    private boolean isDeclarationEnd(Type type) {
+        return type == SEMICOLON || type == RIGHT_BRACE;
+    }
+
+    /**
+     * The text can be scanned and parsed without the next unit if it ends with a complete top-level declaration,
+     * followed by nothing but whitespace and complete comments, and the next unit does not continue it with an 'else'.
+     */
+    private boolean endsCleanly(String text, TokenBuffer tokens, Unit next) {
+        if (next.firstType() == ELSE || tokens.size() < 2) return false;
+
+        var depth = 0;
+        for (var i = 0; i < tokens.size() - 1; i++) {
+            depth = depthAfter(tokens.type(i), depth);
+        }
+
+        var last = tokens.size() - 2;
+        return depth == 0 && isDeclarationEnd(tokens.type(last)) && onlyWhitespaceAndComments(text, tokens.end(last));
+    }
+
+    private boolean onlyWhitespaceAndComments(String text, int from) {
+        var i = from;
+        while (i < text.length()) {
+            var c = text.charAt(i);
+            if (c == '/' && i + 1 < text.length() && text.charAt(i + 1) == '/') {
+                var newline = text.indexOf('\n', i);
+                if (newline < 0) return false;
+
+                i = newline + 1;
+            } else if (c == ' ' || c == '\r' || c == '\t' || c == '\n') {
+                i++;
+            } else {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private Unit compile(String text, Type firstType) {
+        var errors = new ArrayList<Error>();
+        var errorReporter = new ErrorReporter() {
+
+            @Override
+            public void handle(Error error) {
+                errors.add(error);
+            }
+
+            @Override
+            public boolean receivedError() {
+                return !errors.isEmpty();
+            }
+
+            @Override
+            public void reset() {
+                errors.clear();
+            }
+        };
+
+        var scanner = Scanner.createDefault(text);
+        scanner.addErrorReporter(errorReporter);
+        var sourceMap = new SourceMap();
+        var parser = Parser.createDefault(scanner, sourceMap);
+        parser.addErrorReporter(errorReporter);
+        var statements = parser.parse();
+
+        var depths = new IdentityHashMap<Expression, Integer>();
+        if (errors.isEmpty()) {
+            var resolver = Resolver.createDefault(depths::put);
+            resolver.addErrorReporter(errorReporter);
+            resolver.resolve(statements);
+        }
+
+        return new Unit(text, newlinesIn(text), firstType, statements, errors, depths, sourceMap);
+    }
+
+    private int newlinesIn(String text) {
+        var newlines = 0;
+        for (var i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') newlines++;
+        }
+
+        return newlines;
+    }
+
+    /**
+     * @return the index of the unit that contains the offset, the end of the source code belongs to the last unit.
+     */
+    private int unitAt(int offset) {
+        if (offset < 0) return -1;
+
+        var end = 0;
+        for (var i = 0; i < units.size(); i++) {
+            end += units.get(i).text().length();
+            if (offset < end || (offset == end && i == units.size() - 1)) return i;
+        }
+
+        return -1;
+    }
+
+    private int offsetOf(int unit) {
+        var offset = 0;
+        for (var i = 0; i < unit; i++) {
+            offset += units.get(i).text().length();
+        }
+
+        return offset;
+    }
+
+    public String sourceCode() {
+        var sourceCode = new StringBuilder();
+        for (var unit : units) {
+            sourceCode.append(unit.text());
+        }
+
+        return sourceCode.toString();
+    }
+
+    /**
+     * The lines of their tokens are relative to the start of their top-level declaration, see {@link #linesBefore(Statement)}.
+     *
+     * @return the top-level statements, null for every declaration that has a syntax error.
+     */
+    public List<Statement> statements() {
+        var statements = new ArrayList<Statement>();
+        for (var unit : units) {
+            statements.addAll(unit.statements());
+        }
+
+        return statements;
+    }
+
+    /**
+     * @param statement one of the {@link #statements()}.
+     * @return the number of lines before the top-level declaration of the statement, which the lines of its tokens are
+     * relative to.
+     */
+    public int linesBefore(Statement statement) {
+        var linesBefore = 0;
+        for (var unit : units) {
+            for (var topLevel : unit.statements()) {
+                if (topLevel == statement && statement != null) return linesBefore;
+            }
+            linesBefore += unit.newlines();
+        }
+
+        throw new IllegalArgumentException("statement is not a top-level statement of the script!");
+    }
+
+    /**
+     * @return the lines of all statements (also those nested in others), counted from the start of the script.
+     */
+    public SourceMap sourceMap() {
+        var sourceMap = new SourceMap();
+
+        var linesBefore = 0;
+        for (var unit : units) {
+            sourceMap.recordAll(unit.sourceMap(), linesBefore);
+            linesBefore += unit.newlines();
+        }
+
+        return sourceMap;
+    }
+
+    /**
+     * @return the syntax and semantic errors of the whole script, with lines counted from the start of the script.
+     */
+    public List<Error> errors() {
+        var errors = new ArrayList<Error>();
+
+        var linesBefore = 0;
+        for (var unit : units) {
+            for (var error : unit.errors()) {
+                errors.add(moveDown(error, linesBefore));
+            }
+            linesBefore += unit.newlines();
+        }
+
+        return errors;
+    }
+
+    private Error moveDown(Error error, int lines) {
+        if (lines == 0) return error;
+
+        if (error instanceof SyntaxError syntaxError) {
+            return new SyntaxError(syntaxError.line() + lines, syntaxError.location(), syntaxError.message());
+        } else if (error instanceof SemanticError semanticError) {
+            var token = semanticError.token();
+            return new SemanticError(new Token(token.type(), token.lexeme(), token.literal(), token.line() + lines), semanticError.message());
+        }
+
+        return error;
+    }
+
+    /**
+     * @return the number of scopes between the use of a variable and its declaration, null for a global variable.
+     */
+    public Integer depthOf(Expression expression) {
+        return depths.get(expression);
+    }
+}
@@ -0,0 +1,31 @@
+package be.guldentops.geert.lox.interpreter;
+
+/**
+ * Runtime objects the interpreter allocates on behalf of a Lox program.
+ * <p>
+ * The sizes are estimates for a 64-bit JVM with compressed object pointers.
+ */
+public enum Allocation {
+
+    // The environment (24 bytes), its HashMap (48 bytes) and the HashMap's table of 16 buckets (80 bytes).
+    ENVIRONMENT(152),
+
+    // The LoxFunction created by binding a method to an instance, its environment is counted separately.
+    BOUND_METHOD(24),
+
+    // The instance (24 bytes) and the HashMap holding its fields (48 bytes).
+    INSTANCE(72),
+
+    // The boxed Double holding the result of an arithmetic operation.
+    NUMBER(16);
+
+    private final long estimatedBytes;
+
+    Allocation(long estimatedBytes) {
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    public long estimatedBytes() {
+        return estimatedBytes;
+    }
+}
@@ -0,0 +1,653 @@
+package be.guldentops.geert.lox.interpreter;
+
+import be.guldentops.geert.lox.error.ErrorReporter;
+import be.guldentops.geert.lox.error.SyntaxError;
+import be.guldentops.geert.lox.grammar.Expression;
+import be.guldentops.geert.lox.grammar.Statement;
+import be.guldentops.geert.lox.lexer.Scanner;
+import be.guldentops.geert.lox.lexer.Token;
+import be.guldentops.geert.lox.parser.Parser;
+import be.guldentops.geert.lox.semantic.analysis.SemanticError;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static be.guldentops.geert.lox.lexer.Token.Type.IDENTIFIER;
+import static be.guldentops.geert.lox.lexer.Token.Type.SEMICOLON;
+
+/**
+ * A Lox expression (e.g. a business rule) that is compiled once and evaluated over and over again with other values for
+ * its parameters.
+ * <p>
+ * The parameters are the only variables the expression can use. Each of them has a slot, the index of its value in the
+ * array an evaluation takes, which the compiled expression reads directly. Parts of which the value is known to be a
+ * number (arithmetic, negation and number literals) calculate with primitive doubles, so evaluating a number or a
+ * condition over numbers allocates nothing, as long as the numbers in the slots are Doubles like the ones of Lox are.
+ * <p>
+ * An evaluation calculates the value the interpreter would, also when it fails: runtime errors have the same messages
+ * and are reported to the error reporter. Calls, properties, assignments, this and super are not allowed.
+ */
+public final class CompiledExpression {
+
+    private static final NotANumber NOT_A_NUMBER = new NotANumber();
+
+    private final Node root;
+    private final Map<String, Integer> slots;
+    private final ErrorReporter errorReporter;
+    // Stands in for the whole expression in errors about its result.
+    private final Token expression;
+
+    private CompiledExpression(Node root, Map<String, Integer> slots, ErrorReporter errorReporter, Token expression) {
+        this.root = root;
+        this.slots = slots;
+        this.errorReporter = errorReporter;
+        this.expression = expression;
+    }
+
+    /**
+     * @param parameters    the names of the variables the expression uses, their slots are their indexes in this list.
+     * @param errorReporter receives the errors in the source code and the runtime errors of the evaluations.
+     * @return null if the source code is not a valid expression.
+     */
+    public static CompiledExpression compile(String sourceCode, List<String> parameters, ErrorReporter errorReporter) {
+        if (sourceCode == null) throw new IllegalArgumentException("source code should not be null!");
+        if (parameters == null) throw new IllegalArgumentException("parameters should not be null!");
+        if (errorReporter == null) throw new IllegalArgumentException("error reporter should not be null!");
+
+        var slots = new HashMap<String, Integer>();
+        for (var parameter : parameters) {
+            if (slots.put(parameter, slots.size()) != null) throw new IllegalArgumentException("parameters should be unique!");
+        }
+
+        errorReporter.reset();
+        var expression = parse(sourceCode, errorReporter);
+        if (expression == null) return null;
+
+        var root = new Compiler(slots, errorReporter).compile(expression);
+        if (errorReporter.receivedError()) return null;
+
+        return new CompiledExpression(root, Map.copyOf(slots), errorReporter, new Token(IDENTIFIER, sourceCode, null, 1));
+    }
+
+    // The semicolon that ends the expression statement is added after scanning, a trailing comment can not swallow it.
+    private static Expression parse(String sourceCode, ErrorReporter errorReporter) {
+        var scanner = Scanner.createDefault(sourceCode);
+        scanner.addErrorReporter(errorReporter);
+        var tokens = new ArrayList<>(scanner.scanTokens());
+        if (errorReporter.receivedError()) return null;
+
+        var end = tokens.get(tokens.size() - 1);
+        tokens.add(tokens.size() - 1, new Token(SEMICOLON, ";", null, end.line()));
+
+        var parser = Parser.createDefault(tokens);
+        parser.addErrorReporter(errorReporter);
+        var statements = parser.parse();
+        if (errorReporter.receivedError()) return null;
+
+        if (statements.size() == 1 && statements.get(0) instanceof Statement.Expression statement) {
+            return statement.expression();
+        }
+
+        errorReporter.handle(new SyntaxError(1, "expect a single expression."));
+        return null;
+    }
+
+    /**
+     * @throws IllegalArgumentException when the expression has no such parameter.
+     */
+    public int slotOf(String parameter) {
+        var slot = slots.get(parameter);
+        if (slot == null) throw new IllegalArgumentException(parameter + " is not a parameter!");
+
+        return slot;
+    }
+
+    /**
+     * @return the value of the expression, or null after a runtime error.
+     */
+    public Object evaluate(Object[] slots) {
+        checkSlots(slots);
+
+        try {
+            return root.evaluate(slots);
+        } catch (RuntimeError e) {
+            errorReporter.handle(e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the value of the expression, or NaN after a runtime error or when the value is not a number.
+     */
+    public double evaluateNumber(Object[] slots) {
+        checkSlots(slots);
+
+        try {
+            return root.evaluateNumber(slots);
+        } catch (NotANumber e) {
+            errorReporter.handle(new RuntimeError(expression, "expression must evaluate to a number."));
+            return Double.NaN;
+        } catch (RuntimeError e) {
+            errorReporter.handle(e);
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * @return whether the value of the expression is truthy (anything but nil and false), false after a runtime error.
+     */
+    public boolean evaluateBoolean(Object[] slots) {
+        checkSlots(slots);
+
+        try {
+            return root.evaluateBoolean(slots);
+        } catch (RuntimeError e) {
+            errorReporter.handle(e);
+            return false;
+        }
+    }
+
+    private void checkSlots(Object[] slots) {
+        if (slots.length != this.slots.size()) {
+            throw new IllegalArgumentException("expected " + this.slots.size() + " slot(s) but got " + slots.length + "!");
+        }
+    }
+
+    private static boolean isTruthy(Object object) {
+        if (object == null) return false;
+        if (object instanceof Boolean bool) return bool;
+
+        return true;
+    }
+
+    private static boolean isEqual(Object a, Object b) {
+        if (a == null && b == null) return true;
+        if (a == null) return false;
+
+        return a.equals(b);
+    }
+
+    // The same comparison as Double.equals, so as isEqual, without boxing.
+    private static boolean isSameNumber(double a, double b) {
+        return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+    }
+
+    /**
+     * Thrown when a value that should be a number is not. The caller evaluates its operands again, the slow way, to fail
+     * with the error the interpreter fails with. Evaluating an expression has no side effects, so that is safe.
+     */
+    private static final class NotANumber extends RuntimeException {
+
+        NotANumber() {
+            super(null, null, false, false);
+        }
+    }
+
+    private abstract static class Node {
+
+        abstract Object evaluate(Object[] slots);
+
+        /**
+         * @throws NotANumber when the value is not a number.
+         */
+        double evaluateNumber(Object[] slots) {
+            if (evaluate(slots) instanceof Double number) return number;
+
+            throw NOT_A_NUMBER;
+        }
+
+        boolean evaluateBoolean(Object[] slots) {
+            return isTruthy(evaluate(slots));
+        }
+
+        /**
+         * @return true if evaluateNumber never throws NotANumber.
+         */
+        boolean isNumber() {
+            return false;
+        }
+    }
+
+    private static final class Constant extends Node {
+
+        private final Object value;
+        private final double number;
+        private final boolean truthy;
+
+        Constant(Object value) {
+            this.value = value;
+            this.number = value instanceof Double d ? d : Double.NaN;
+            this.truthy = isTruthy(value);
+        }
+
+        @Override
+        Object evaluate(Object[] slots) {
+            return value;
+        }
+
+        @Override
+        double evaluateNumber(Object[] slots) {
+            if (value instanceof Double) return number;
+
+            throw NOT_A_NUMBER;
+        }
+
+        @Override
+        boolean evaluateBoolean(Object[] slots) {
+            return truthy;
+        }
+
+        @Override
+        boolean isNumber() {
+            return value instanceof Double;
+        }
+    }
+
+    private static final class Slot extends Node {
+
+        private final int slot;
+
+        Slot(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        Object evaluate(Object[] slots) {
+            return slots[slot];
+        }
+
+        @Override
+        double evaluateNumber(Object[] slots) {
+            if (slots[slot] instanceof Double number) return number;
+
+            throw NOT_A_NUMBER;
+        }
+    }
+
+    /**
+     * Subtraction, multiplication and division.
+     */
+    private static final class Arithmetic extends Node {
+
+        private final Token operator;
+        private final Node left;
+        private final Node right;
+
+        Arithmetic(Token operator, Node left, Node right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object evaluate(Object[] slots) {
+            return evaluateNumber(slots);
+        }
+
+        @Override
+        double evaluateNumber(Object[] slots) {
+            double l;
+            double r;
+            try {
+                l = left.evaluateNumber(slots);
+                r = right.evaluateNumber(slots);
+            } catch (NotANumber e) {
+                left.evaluate(slots);
+                right.evaluate(slots);
+                throw new RuntimeError(operator, "operands must be numbers.");
+            }
+
+            switch (operator.type()) {
+                case MINUS:
+                    return l - r;
+                case STAR:
+                    return l * r;
+                default:
+                    if (r == 0) throw new RuntimeError(operator, "can not divide by zero!");
+                    return l / r;
+            }
+        }
+
+        @Override
+        boolean evaluateBoolean(Object[] slots) {
+            evaluateNumber(slots);
+            return true;
+        }
+
+        @Override
+        boolean isNumber() {
+            return true;
+        }
+    }
+
+    private static final class Plus extends Node {
+
+        private final Token operator;
+        private final Node left;
+        private final Node right;
+
+        Plus(Token operator, Node left, Node right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object evaluate(Object[] slots) {
+            try {
+                return left.evaluateNumber(slots) + right.evaluateNumber(slots);
+            } catch (NotANumber e) {
+                return concatenate(slots);
+            }
+        }
+
+        @Override
+        double evaluateNumber(Object[] slots) {
+            try {
+                return left.evaluateNumber(slots) + right.evaluateNumber(slots);
+            } catch (NotANumber e) {
+                concatenate(slots);
+                throw NOT_A_NUMBER;
+            }
+        }
+
+        @Override
+        boolean evaluateBoolean(Object[] slots) {
+            try {
+                left.evaluateNumber(slots);
+                right.evaluateNumber(slots);
+            } catch (NotANumber e) {
+                concatenate(slots);
+            }
+
+            return true;
+        }
+
+        private String concatenate(Object[] slots) {
+            var l = left.evaluate(slots);
+            var r = right.evaluate(slots);
+            if (l instanceof String a && r instanceof String b) return a + b;
+
+            throw new RuntimeError(operator, "operands must be two numbers or two strings.");
+        }
+    }
+
+    private static final class Comparison extends Node {
+
+        private final Token operator;
+        private final Node left;
+        private final Node right;
+
+        Comparison(Token operator, Node left, Node right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object evaluate(Object[] slots) {
+            return evaluateBoolean(slots);
+        }
+
+        @Override
+        boolean evaluateBoolean(Object[] slots) {
+            double l;
+            double r;
+            try {
+                l = left.evaluateNumber(slots);
+                r = right.evaluateNumber(slots);
+            } catch (NotANumber e) {
+                left.evaluate(slots);
+                right.evaluate(slots);
+                throw new RuntimeError(operator, "operands must be numbers.");
+            }
+
+            switch (operator.type()) {
+                case GREATER:
+                    return l > r;
+                case GREATER_EQUAL:
+                    return l >= r;
+                case LESS:
+                    return l < r;
+                default:
+                    return l <= r;
+            }
+        }
+    }
+
+    private static final class Equality extends Node {
+
+        private final boolean equal;
+        private final Node left;
+        private final Node right;
+
+        Equality(Token operator, Node left, Node right) {
+            this.equal = operator.type() == Token.Type.EQUAL_EQUAL;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object evaluate(Object[] slots) {
+            return evaluateBoolean(slots);
+        }
+
+        @Override
+        boolean evaluateBoolean(Object[] slots) {
+            return isEqual(slots) == equal;
+        }
+
+        private boolean isEqual(Object[] slots) {
+            if (left.isNumber() && right.isNumber()) {
+                return isSameNumber(left.evaluateNumber(slots), right.evaluateNumber(slots));
+            }
+
+            if (left.isNumber()) {
+                var l = left.evaluateNumber(slots);
+                return right.evaluate(slots) instanceof Double r && isSameNumber(l, r);
+            }
+
+            if (right.isNumber()) {
+                var l = left.evaluate(slots);
+                var r = right.evaluateNumber(slots);
+                return l instanceof Double number && isSameNumber(number, r);
+            }
+
+            return CompiledExpression.isEqual(left.evaluate(slots), right.evaluate(slots));
+        }
+    }
+
+    private static final class Logical extends Node {
+
+        private final boolean or;
+        private final Node left;
+        private final Node right;
+
+        Logical(Token operator, Node left, Node right) {
+            this.or = operator.type() == Token.Type.OR;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object evaluate(Object[] slots) {
+            var l = left.evaluate(slots);
+            if (isTruthy(l) == or) return l;
+
+            return right.evaluate(slots);
+        }
+
+        @Override
+        boolean evaluateBoolean(Object[] slots) {
+            return or ? left.evaluateBoolean(slots) || right.evaluateBoolean(slots) : left.evaluateBoolean(slots) && right.evaluateBoolean(slots);
+        }
+    }
+
+    private static final class Not extends Node {
+
+        private final Node right;
+
+        Not(Node right) {
+            this.right = right;
+        }
+
+        @Override
+        Object evaluate(Object[] slots) {
+            return evaluateBoolean(slots);
+        }
+
+        @Override
+        boolean evaluateBoolean(Object[] slots) {
+            return !right.evaluateBoolean(slots);
+        }
+    }
+
+    private static final class Negate extends Node {
+
+        private final Token operator;
+        private final Node right;
+
+        Negate(Token operator, Node right) {
+            this.operator = operator;
+            this.right = right;
+        }
+
+        @Override
+        Object evaluate(Object[] slots) {
+            return evaluateNumber(slots);
+        }
+
+        @Override
+        double evaluateNumber(Object[] slots) {
+            try {
+                return -right.evaluateNumber(slots);
+            } catch (NotANumber e) {
+                right.evaluate(slots);
+                throw new RuntimeError(operator, "operand must be a number.");
+            }
+        }
+
+        @Override
+        boolean evaluateBoolean(Object[] slots) {
+            evaluateNumber(slots);
+            return true;
+        }
+
+        @Override
+        boolean isNumber() {
+            return true;
+        }
+    }
+
+    /**
+     * Reports every expression it can not compile, the nodes it returns for them are never evaluated.
+     */
+    private static class Compiler implements Expression.Visitor<Node> {
+
+        private final Map<String, Integer> slots;
+        private final ErrorReporter errorReporter;
+
+        Compiler(Map<String, Integer> slots, ErrorReporter errorReporter) {
+            this.slots = slots;
+            this.errorReporter = errorReporter;
+        }
+
+        Node compile(Expression expression) {
+            return expression.accept(this);
+        }
+
+        @Override
+        public Node visitAssignExpression(Expression.Assign expression) {
+            return notAllowed(expression.name(), "assignments are");
+        }
+
+        @Override
+        public Node visitBinaryExpression(Expression.Binary expression) {
+            var operator = expression.operator();
+            var left = compile(expression.left());
+            var right = compile(expression.right());
+
+            switch (operator.type()) {
+                case PLUS:
+                    return new Plus(operator, left, right);
+                case MINUS:
+                case STAR:
+                case SLASH:
+                    return new Arithmetic(operator, left, right);
+                case GREATER:
+                case GREATER_EQUAL:
+                case LESS:
+                case LESS_EQUAL:
+                    return new Comparison(operator, left, right);
+                default:
+                    return new Equality(operator, left, right);
+            }
+        }
+
+        @Override
+        public Node visitCallExpression(Expression.Call expression) {
+            return notAllowed(expression.paren(), "calls are");
+        }
+
+        @Override
+        public Node visitGetExpression(Expression.Get expression) {
+            return notAllowed(expression.name(), "properties are");
+        }
+
+        @Override
+        public Node visitGroupingExpression(Expression.Grouping expression) {
+            return compile(expression.expression());
+        }
+
+        @Override
+        public Node visitLiteralExpression(Expression.Literal expression) {
+            return new Constant(expression.value());
+        }
+
+        @Override
+        public Node visitLogicalExpression(Expression.Logical expression) {
+            return new Logical(expression.operator(), compile(expression.left()), compile(expression.right()));
+        }
+
+        @Override
+        public Node visitSetExpression(Expression.Set expression) {
+            return notAllowed(expression.name(), "properties are");
+        }
+
+        @Override
+        public Node visitSuperExpression(Expression.Super expression) {
+            return notAllowed(expression.keyword(), "'super' is");
+        }
+
+        @Override
+        public Node visitThisExpression(Expression.This expression) {
+            return notAllowed(expression.keyword(), "'this' is");
+        }
+
+        @Override
+        public Node visitUnaryExpression(Expression.Unary expression) {
+            var right = compile(expression.right());
+
+            if (expression.operator().type() == Token.Type.BANG) return new Not(right);
+            return new Negate(expression.operator(), right);
+        }
+
+        @Override
+        public Node visitVariableExpression(Expression.Variable expression) {
+            var slot = slots.get(expression.name().lexeme());
+            if (slot == null) {
+                errorReporter.handle(new SemanticError(expression.name(), "is not a parameter of the expression."));
+                return new Constant(null);
+            }
+
+            return new Slot(slot);
+        }
+
+        private Node notAllowed(Token token, String what) {
+            errorReporter.handle(new SemanticError(token, what + " not allowed in a compiled expression."));
+            return new Constant(null);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package be.guldentops.geert.lox.interpreter;
+
+import be.guldentops.geert.lox.error.ErrorReporter;
+import be.guldentops.geert.lox.grammar.Expression;
+import be.guldentops.geert.lox.grammar.Statement;
+
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A parsed and resolved script that any number of threads can run at the same time, e.g. once for every request a
+ * service handles.
+ * <p>
+ * The program never changes after it is created: every run gets a new interpreter with a global environment of its own,
+ * which looks up the depths of the local variables in the table of the program instead of being told them by the
+ * resolver. The statements have to be parsed and resolved completely up front, a function body that is only parsed
+ * when it is called for the first time would change the program while it runs.
+ */
+public final class CompiledProgram {
+
+    private final String script;
+    private final List<Statement> statements;
+    private final Map<Expression, Integer> locals;
+
+    /**
+     * @param locals the depth the resolver found for each local variable, compared by identity. It is copied, so it can
+     *               be reused afterwards.
+     */
+    public CompiledProgram(String script, List<Statement> statements, Map<Expression, Integer> locals) {
+        if (script == null) throw new IllegalArgumentException("script should not be null!");
+        if (statements == null) throw new IllegalArgumentException("statements should not be null!");
+        if (locals == null) throw new IllegalArgumentException("locals should not be null!");
+
+        this.script = script;
+        this.statements = List.copyOf(statements);
+        this.locals = Collections.unmodifiableMap(new IdentityHashMap<>(locals));
+    }
+
+    public String script() {
+        return script;
+    }
+
+    public List<Statement> statements() {
+        return statements;
+    }
+
+    /**
+     * Runs the program with a new interpreter, so with a global environment no other run sees.
+     *
+     * @param out                  where the program prints to.
+     * @param runtimeErrorReporter where a runtime error that aborts the program is reported to.
+     * @return the interpreter that ran the program, e.g. to evaluate expressions in the global environment it left.
+     */
+    public Interpreter run(PrintStream out, ErrorReporter runtimeErrorReporter) {
+        ExecutionStatistics.registerPlatformMBeanIfRequested();
+
+        var globals = Environment.createGlobal();
+        NativeFunction.defineAll(globals);
+
+        var interpreter = new PostOrderTraversalInterpreter(globals, out::println, new HashMap<>(), locals);
+        interpreter.addErrorReporter(runtimeErrorReporter);
+        interpreter.interpret(script, statements);
+
+        return interpreter;
+    }
+}
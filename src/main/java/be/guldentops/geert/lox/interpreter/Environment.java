@@ -9,18 +9,43 @@ class Environment {
 
     final Environment enclosing;
 
-    private final Map<String, Object> values = new HashMap<>();
+    private final Map<String, Object> values;
+
+    // Shared by the global environment of an interpreter and every environment enclosed by it.
+    private ExecutionListeners executionListeners;
 
     static Environment createGlobal() {
-        return new Environment(null);
+        return new Environment(null, new HashMap<>());
+    }
+
+    /**
+     * @param values the variables of the global environment, e.g. the bindings of a script engine, it is used as is.
+     */
+    static Environment createGlobal(Map<String, Object> values) {
+        return new Environment(null, values);
     }
 
     static Environment createLocal(Environment enclosing) {
-        return new Environment(enclosing);
+        return new Environment(enclosing, new HashMap<>());
     }
 
-    private Environment(Environment enclosing) {
+    private Environment(Environment enclosing, Map<String, Object> values) {
         this.enclosing = enclosing;
+        this.values = values;
+
+        ExecutionStatistics.instance().environmentAllocated();
+        if (enclosing != null && enclosing.executionListeners != null) {
+            this.executionListeners = enclosing.executionListeners;
+            this.executionListeners.allocated(Allocation.ENVIRONMENT);
+        }
+    }
+
+    void notify(ExecutionListeners executionListeners) {
+        this.executionListeners = executionListeners;
+    }
+
+    void allocated(Allocation allocation) {
+        if (executionListeners != null) executionListeners.allocated(allocation);
     }
 
     void define(Token name, Object value) {
@@ -34,6 +59,10 @@ class Environment {
         values.put(name, value);
     }
 
+    Map<String, Object> values() {
+        return values;
+    }
+
     void defineNativeMethod(String name, LoxCallable loxCallable) {
         define(name, loxCallable);
     }
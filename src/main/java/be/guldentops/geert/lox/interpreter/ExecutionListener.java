@@ -0,0 +1,44 @@
+package be.guldentops.geert.lox.interpreter;
+
+import be.guldentops.geert.lox.grammar.Expression;
+import be.guldentops.geert.lox.grammar.Statement;
+
+/**
+ * Hook for profilers and other tools that observe a running program.
+ * <p>
+ * Every enter is matched by an exit, also when the statement or call completes abruptly through a return or a runtime error.
+ */
+public interface ExecutionListener {
+
+    default void enterStatement(Statement statement) {
+    }
+
+    default void exitStatement(Statement statement) {
+    }
+
+    /**
+     * @param name the name of the called function or, when a class is called to create an instance, the name of the class.
+     */
+    default void enterCall(String name) {
+    }
+
+    default void exitCall(String name) {
+    }
+
+    default void allocated(Allocation allocation) {
+    }
+
+    /**
+     * @param statement an if or while statement.
+     * @param outcome   whether its condition was truthy.
+     */
+    default void branch(Statement statement, boolean outcome) {
+    }
+
+    /**
+     * @param expression a logical expression.
+     * @param outcome    whether its left operand was truthy.
+     */
+    default void branch(Expression expression, boolean outcome) {
+    }
+}
@@ -0,0 +1,74 @@
+package be.guldentops.geert.lox.interpreter;
+
+import be.guldentops.geert.lox.grammar.Expression;
+import be.guldentops.geert.lox.grammar.Statement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Notifies all listeners of an interpreter, enters in registration order and exits in reverse order.
+ * <p>
+ * Indexed loops avoid allocating an iterator for every notification.
+ */
+class ExecutionListeners implements ExecutionListener {
+
+    private final List<ExecutionListener> listeners = new ArrayList<>();
+
+    void add(ExecutionListener listener) {
+        listeners.add(listener);
+    }
+
+    boolean isEmpty() {
+        return listeners.isEmpty();
+    }
+
+    @Override
+    public void enterStatement(Statement statement) {
+        for (var i = 0; i < listeners.size(); i++) {
+            listeners.get(i).enterStatement(statement);
+        }
+    }
+
+    @Override
+    public void exitStatement(Statement statement) {
+        for (var i = listeners.size() - 1; i >= 0; i--) {
+            listeners.get(i).exitStatement(statement);
+        }
+    }
+
+    @Override
+    public void enterCall(String name) {
+        for (var i = 0; i < listeners.size(); i++) {
+            listeners.get(i).enterCall(name);
+        }
+    }
+
+    @Override
+    public void exitCall(String name) {
+        for (var i = listeners.size() - 1; i >= 0; i--) {
+            listeners.get(i).exitCall(name);
+        }
+    }
+
+    @Override
+    public void allocated(Allocation allocation) {
+        for (var i = 0; i < listeners.size(); i++) {
+            listeners.get(i).allocated(allocation);
+        }
+    }
+
+    @Override
+    public void branch(Statement statement, boolean outcome) {
+        for (var i = 0; i < listeners.size(); i++) {
+            listeners.get(i).branch(statement, outcome);
+        }
+    }
+
+    @Override
+    public void branch(Expression expression, boolean outcome) {
+        for (var i = 0; i < listeners.size(); i++) {
+            listeners.get(i).branch(expression, outcome);
+        }
+    }
+}
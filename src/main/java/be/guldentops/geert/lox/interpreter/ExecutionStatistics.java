@@ -0,0 +1,172 @@
+package be.guldentops.geert.lox.interpreter;
+
+import be.guldentops.geert.lox.grammar.Expression;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters are striped (LongAdder) so interpreters running on different threads do not contend on the hot path.
+ * <p>
+ * Counting is opt-in: until the MBean is registered (see {@link #registerPlatformMBeanIfRequested()}) every interpreter
+ * gets a statistics that counts nothing, so the interpreter loop does not pay for counters nobody reads.
+ */
+class ExecutionStatistics implements ExecutionStatisticsMXBean {
+
+    static final String OBJECT_NAME = "be.guldentops.geert.lox:type=ExecutionStatistics";
+
+    private static final boolean REQUESTED = Boolean.getBoolean("jlox.statistics");
+
+    private static final ExecutionStatistics INSTANCE = new ExecutionStatistics();
+    private static final ExecutionStatistics DISABLED = new Disabled();
+    private static final AtomicBoolean REGISTERED = new AtomicBoolean();
+
+    private static volatile ExecutionStatistics current = DISABLED;
+
+    private final LongAdder statementsExecuted = new LongAdder();
+    private final Map<String, LongAdder> expressionsEvaluatedByType = new ConcurrentHashMap<>();
+    private final ClassValue<LongAdder> expressionsEvaluated = new ClassValue<>() {
+
+        @Override
+        protected LongAdder computeValue(Class<?> type) {
+            return expressionsEvaluatedByType.computeIfAbsent(type.getSimpleName(), name -> new LongAdder());
+        }
+    };
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder environmentsAllocated = new LongAdder();
+    private final LongAdder instancesCreated = new LongAdder();
+    private final LongAdder runtimeErrors = new LongAdder();
+
+    /**
+     * @return the statistics that count, once the MBean is registered, otherwise one that counts nothing.
+     */
+    static ExecutionStatistics instance() {
+        return current;
+    }
+
+    /**
+     * Called for every interpreter and every run of a compiled program, registers the MBean when the JVM is started
+     * with -Djlox.statistics=true.
+     */
+    static void registerPlatformMBeanIfRequested() {
+        if (REQUESTED) registerPlatformMBean();
+    }
+
+    /**
+     * Only the first call goes to the MBean server (the exception it throws for an already registered MBean costs
+     * microseconds). Interpreters created before it keep counting nothing.
+     */
+    static void registerPlatformMBean() {
+        if (REGISTERED.get() || !REGISTERED.compareAndSet(false, true)) return;
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // Registered by another class loader that loaded the interpreter as well.
+        } catch (JMException e) {
+            REGISTERED.set(false);
+            throw new IllegalStateException("Could not register the execution statistics MBean", e);
+        }
+        current = INSTANCE;
+    }
+
+    private ExecutionStatistics() {
+    }
+
+    void statementExecuted() {
+        statementsExecuted.increment();
+    }
+
+    void expressionEvaluated(Expression expression) {
+        expressionsEvaluated.get(expression.getClass()).increment();
+    }
+
+    void callEntered() {
+        calls.increment();
+    }
+
+    void environmentAllocated() {
+        environmentsAllocated.increment();
+    }
+
+    void instanceCreated() {
+        instancesCreated.increment();
+    }
+
+    void runtimeErrorOccurred() {
+        runtimeErrors.increment();
+    }
+
+    @Override
+    public long getStatementsExecuted() {
+        return statementsExecuted.sum();
+    }
+
+    @Override
+    public long getExpressionsEvaluated() {
+        return expressionsEvaluatedByType.values().stream()
+                .mapToLong(LongAdder::sum)
+                .sum();
+    }
+
+    @Override
+    public Map<String, Long> getExpressionsEvaluatedByType() {
+        var histogram = new TreeMap<String, Long>();
+        expressionsEvaluatedByType.forEach((type, count) -> histogram.put(type, count.sum()));
+        return histogram;
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getEnvironmentsAllocated() {
+        return environmentsAllocated.sum();
+    }
+
+    @Override
+    public long getInstancesCreated() {
+        return instancesCreated.sum();
+    }
+
+    @Override
+    public long getRuntimeErrors() {
+        return runtimeErrors.sum();
+    }
+
+    private static class Disabled extends ExecutionStatistics {
+
+        @Override
+        void statementExecuted() {
+        }
+
+        @Override
+        void expressionEvaluated(Expression expression) {
+        }
+
+        @Override
+        void callEntered() {
+        }
+
+        @Override
+        void environmentAllocated() {
+        }
+
+        @Override
+        void instanceCreated() {
+        }
+
+        @Override
+        void runtimeErrorOccurred() {
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package be.guldentops.geert.lox.interpreter;
+
+import java.util.Map;
+
+/**
+ * Counters are shared by all interpreters running in the same JVM.
+ */
+public interface ExecutionStatisticsMXBean {
+
+    long getStatementsExecuted();
+
+    long getExpressionsEvaluated();
+
+    Map<String, Long> getExpressionsEvaluatedByType();
+
+    long getCalls();
+
+    long getEnvironmentsAllocated();
+
+    long getInstancesCreated();
+
+    long getRuntimeErrors();
+}
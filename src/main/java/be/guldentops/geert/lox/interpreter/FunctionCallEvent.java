@@ -0,0 +1,40 @@
+package be.guldentops.geert.lox.interpreter;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Only calls that take longer than the threshold are recorded, override it in the JFR settings to see every call.
+ */
+@Name("lox.FunctionCall")
+@Label("Lox Function Call")
+@Description("Invocation of a Lox function, method or native function")
+@Category("Lox")
+@Threshold("10 ms")
+@StackTrace(false)
+class FunctionCallEvent extends jdk.jfr.Event {
+
+    @Label("Script")
+    String script;
+
+    @Label("Function")
+    String function;
+
+    @Label("Line")
+    int line;
+
+    void end(String script, String function, int line) {
+        end();
+
+        if (shouldCommit()) {
+            this.script = script;
+            this.function = function;
+            this.line = line;
+            commit();
+        }
+    }
+}
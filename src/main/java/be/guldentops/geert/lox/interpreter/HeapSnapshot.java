@@ -0,0 +1,349 @@
+package be.guldentops.geert.lox.interpreter;
+
+import be.guldentops.geert.lox.cache.CompilationCache;
+import be.guldentops.geert.lox.grammar.DeferredBody;
+import be.guldentops.geert.lox.grammar.Expression;
+import be.guldentops.geert.lox.grammar.SourceMap;
+import be.guldentops.geert.lox.grammar.Statement;
+import be.guldentops.geert.lox.semantic.analysis.ResolutionAnalyzer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The global environment of an interpreter and every object that can be reached from it, written to a file.
+ * <p>
+ * The objects are numbered in the order in which they are found, the global environment being 0. First what is needed
+ * to create each of them is written (the enclosing environment, superclass and methods of a class, the declaration and
+ * closure of a function, the class of an instance), then the variables of the environments and the fields of the
+ * instances, which may refer to any object (e.g. to themselves). The declarations of the functions are written once,
+ * in the format of the compilation cache, together with the depths of their local variables. Native functions are
+ * written by name and looked up in the global environment they are restored into.
+ */
+final class HeapSnapshot {
+
+    private static final int MAGIC = 0x4C4F5853; // "LOXS"
+    private static final int VERSION = 1;
+
+    private static final int ENVIRONMENT = 0;
+    private static final int CLASS = 1;
+    private static final int FUNCTION = 2;
+    private static final int INSTANCE = 3;
+
+    private static final int NIL = 0;
+    private static final int FALSE = 1;
+    private static final int TRUE = 2;
+    private static final int NUMBER = 3;
+    private static final int STRING = 4;
+    private static final int OBJECT = 5;
+    private static final int NATIVE = 6;
+
+    private HeapSnapshot() {
+    }
+
+    static void write(Path snapshot, Environment globals, Map<Expression, Integer> locals) throws IOException {
+        var allLocals = new IdentityHashMap<>(locals);
+        var functionLocals = Collections.newSetFromMap(new IdentityHashMap<Map<Expression, Integer>, Boolean>());
+        var objects = new ArrayList<>();
+        var ids = new IdentityHashMap<Object, Integer>();
+        var declarations = new ArrayList<Statement>();
+        var declarationIds = new IdentityHashMap<Statement.Function, Integer>();
+
+        // Breadth first, long chains of instances (e.g. linked lists) must not overflow the stack.
+        idOf(globals, objects, ids);
+        for (var i = 0; i < objects.size(); i++) {
+            var object = objects.get(i);
+            if (object instanceof Environment environment) {
+                if (environment.enclosing != null) idOf(environment.enclosing, objects, ids);
+                environment.values().values().forEach(value -> idOf(value, objects, ids));
+            } else if (object instanceof LoxClass clazz) {
+                if (clazz.superclass() != null) idOf(clazz.superclass(), objects, ids);
+                clazz.methods().values().forEach(method -> idOf(method, objects, ids));
+            } else if (object instanceof LoxFunction function) {
+                if (function.declaration().body() instanceof DeferredBody body && !body.compile()) {
+                    throw new IOException("Can not take a snapshot of " + function + ", its body contains errors!");
+                }
+
+                idOf(function.closure(), objects, ids);
+                if (functionLocals.add(function.locals())) allLocals.putAll(function.locals());
+                if (!declarationIds.containsKey(function.declaration())) {
+                    declarationIds.put(function.declaration(), declarations.size());
+                    declarations.add(function.declaration());
+                }
+            } else if (object instanceof LoxInstance instance) {
+                idOf(instance.clazz(), objects, ids);
+                instance.fields().values().forEach(value -> idOf(value, objects, ids));
+            }
+        }
+
+        try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(snapshot)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+
+            var encodedDeclarations = CompilationCache.encode(declarations, allLocals, new SourceMap());
+            output.writeInt(encodedDeclarations.length);
+            output.write(encodedDeclarations);
+
+            output.writeInt(objects.size());
+            for (var object : objects) {
+                if (object instanceof Environment environment) {
+                    output.writeByte(ENVIRONMENT);
+                    output.writeInt(environment.enclosing == null ? -1 : ids.get(environment.enclosing));
+                } else if (object instanceof LoxClass clazz) {
+                    output.writeByte(CLASS);
+                    writeString(output, clazz.name());
+                    output.writeInt(clazz.superclass() == null ? -1 : ids.get(clazz.superclass()));
+                    output.writeInt(clazz.methods().size());
+                    for (var method : clazz.methods().entrySet()) {
+                        writeString(output, method.getKey());
+                        output.writeInt(ids.get(method.getValue()));
+                    }
+                } else if (object instanceof LoxFunction function) {
+                    output.writeByte(FUNCTION);
+                    output.writeInt(declarationIds.get(function.declaration()));
+                    output.writeInt(ids.get(function.closure()));
+                    output.writeBoolean(function.isInitializer());
+                } else if (object instanceof LoxInstance instance) {
+                    output.writeByte(INSTANCE);
+                    output.writeInt(ids.get(instance.clazz()));
+                }
+            }
+
+            for (var object : objects) {
+                if (object instanceof Environment environment) {
+                    writeValues(output, environment.values(), ids);
+                } else if (object instanceof LoxInstance instance) {
+                    writeValues(output, instance.fields(), ids);
+                }
+            }
+        }
+    }
+
+    private static void idOf(Object value, List<Object> objects, Map<Object, Integer> ids) {
+        if (value instanceof Environment || value instanceof LoxClass || value instanceof LoxFunction || value instanceof LoxInstance) {
+            ids.computeIfAbsent(value, object -> {
+                objects.add(object);
+                return objects.size() - 1;
+            });
+        }
+    }
+
+    private static void writeValues(DataOutputStream output, Map<String, Object> values, Map<Object, Integer> ids) throws IOException {
+        output.writeInt(values.size());
+        for (var entry : values.entrySet()) {
+            writeString(output, entry.getKey());
+            writeValue(output, entry.getValue(), ids);
+        }
+    }
+
+    private static void writeValue(DataOutputStream output, Object value, Map<Object, Integer> ids) throws IOException {
+        if (value == null) {
+            output.writeByte(NIL);
+        } else if (value instanceof Boolean bool) {
+            output.writeByte(bool ? TRUE : FALSE);
+        } else if (value instanceof Double number) {
+            output.writeByte(NUMBER);
+            output.writeDouble(number);
+        } else if (value instanceof String string) {
+            output.writeByte(STRING);
+            writeString(output, string);
+        } else if (value instanceof NativeFunction nativeFunction) {
+            output.writeByte(NATIVE);
+            writeString(output, nativeFunction.name());
+        } else {
+            output.writeByte(OBJECT);
+            output.writeInt(ids.get(value));
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        var bytes = string.getBytes(UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Defines the variables of the global environment of the snapshot in the given global environment.
+     */
+    static void read(Path snapshot, Environment globals, ResolutionAnalyzer resolutionAnalyzer) throws IOException {
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) throw notASnapshot(snapshot);
+
+            var encodedDeclarations = new byte[input.readInt()];
+            input.readFully(encodedDeclarations);
+            var declarations = CompilationCache.decode(ByteBuffer.wrap(encodedDeclarations), resolutionAnalyzer, new SourceMap());
+            if (declarations == null) throw notASnapshot(snapshot);
+
+            new Restorer(input, globals, declarations).restore();
+        }
+    }
+
+    /**
+     * Objects can be found before the objects they need to be created (e.g. a function before its closure), so all of
+     * them are read before any of them is created.
+     */
+    private static class Restorer {
+
+        private final DataInputStream input;
+        private final Environment globals;
+        private final List<Statement> declarations;
+
+        private final Map<String, NativeFunction> natives = new HashMap<>();
+
+        private byte[] kinds;
+        // The enclosing environment, superclass, declaration or class the object is created with, -1 for none.
+        private int[] creatingIds;
+        // The closure of a function.
+        private int[] closureIds;
+        private boolean[] initializers;
+        private String[] names;
+        private String[][] methodNames;
+        private int[][] methodIds;
+
+        private Object[] objects;
+
+        Restorer(DataInputStream input, Environment globals, List<Statement> declarations) {
+            this.input = input;
+            this.globals = globals;
+            this.declarations = declarations;
+
+            globals.values().forEach((name, value) -> {
+                if (value instanceof NativeFunction nativeFunction) natives.put(nativeFunction.name(), nativeFunction);
+            });
+        }
+
+        void restore() throws IOException {
+            var count = input.readInt();
+            kinds = new byte[count];
+            creatingIds = new int[count];
+            closureIds = new int[count];
+            initializers = new boolean[count];
+            names = new String[count];
+            methodNames = new String[count][];
+            methodIds = new int[count][];
+            objects = new Object[count];
+
+            for (var id = 0; id < count; id++) {
+                kinds[id] = input.readByte();
+                switch (kinds[id]) {
+                    case ENVIRONMENT, INSTANCE -> creatingIds[id] = input.readInt();
+                    case CLASS -> readClass(id);
+                    case FUNCTION -> {
+                        creatingIds[id] = input.readInt();
+                        closureIds[id] = input.readInt();
+                        initializers[id] = input.readBoolean();
+                    }
+                    default -> throw new IOException("Unknown object " + kinds[id]);
+                }
+            }
+
+            for (var id = 0; id < count; id++) {
+                create(id);
+            }
+
+            for (var id = 0; id < count; id++) {
+                switch (kinds[id]) {
+                    case ENVIRONMENT -> readValues(((Environment) objects[id]).values());
+                    case INSTANCE -> readValues(((LoxInstance) objects[id]).fields());
+                    case CLASS -> {
+                        var methods = ((LoxClass) objects[id]).methods();
+                        for (var i = 0; i < methodIds[id].length; i++) {
+                            methods.put(methodNames[id][i], (LoxFunction) objects[methodIds[id][i]]);
+                        }
+                    }
+                }
+            }
+        }
+
+        private void readClass(int id) throws IOException {
+            names[id] = readString(input);
+            creatingIds[id] = input.readInt();
+
+            var methods = input.readInt();
+            methodNames[id] = new String[methods];
+            methodIds[id] = new int[methods];
+            for (var i = 0; i < methods; i++) {
+                methodNames[id][i] = readString(input);
+                methodIds[id][i] = input.readInt();
+            }
+        }
+
+        /**
+         * Recurses at most as deep as environments are nested and classes inherit from each other.
+         */
+        private Object create(int id) {
+            if (objects[id] != null) return objects[id];
+
+            var creatingId = creatingIds[id];
+            objects[id] = switch (kinds[id]) {
+                case ENVIRONMENT -> creatingId == -1 ? globals : Environment.createLocal((Environment) create(creatingId));
+                case CLASS -> new LoxClass(names[id], creatingId == -1 ? null : (LoxClass) create(creatingId), new HashMap<>());
+                case FUNCTION -> {
+                    var declaration = (Statement.Function) declarations.get(creatingId);
+                    var closure = (Environment) create(closureIds[id]);
+                    yield initializers[id] ? LoxFunction.createInitFunction(declaration, closure, Map.of()) : LoxFunction.createFunction(declaration, closure, Map.of());
+                }
+                default -> new LoxInstance((LoxClass) create(creatingId));
+            };
+
+            return objects[id];
+        }
+
+        private void readValues(Map<String, Object> values) throws IOException {
+            var count = input.readInt();
+            for (var i = 0; i < count; i++) {
+                var name = readString(input);
+                values.put(name, readValue());
+            }
+        }
+
+        private Object readValue() throws IOException {
+            var tag = input.readByte();
+            switch (tag) {
+                case NIL:
+                    return null;
+                case FALSE:
+                    return false;
+                case TRUE:
+                    return true;
+                case NUMBER:
+                    return input.readDouble();
+                case STRING:
+                    return readString(input);
+                case OBJECT:
+                    return objects[input.readInt()];
+                case NATIVE:
+                    var name = readString(input);
+                    var nativeFunction = natives.get(name);
+                    if (nativeFunction == null) throw new IOException("Unknown native function " + name);
+                    return nativeFunction;
+                default:
+                    throw new IOException("Unknown value " + tag);
+            }
+        }
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        var bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static IOException notASnapshot(Path snapshot) {
+        return new IOException(snapshot + " is not a snapshot taken by this version of jlox!");
+    }
+}
@@ -0,0 +1,35 @@
+package be.guldentops.geert.lox.interpreter;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("lox.Instantiation")
+@Label("Lox Instantiation")
+@Description("Creation of a Lox instance, including the call to its initializer")
+@Category("Lox")
+@StackTrace(false)
+class InstantiationEvent extends jdk.jfr.Event {
+
+    @Label("Script")
+    String script;
+
+    @Label("Class")
+    String clazz;
+
+    @Label("Line")
+    int line;
+
+    void end(String script, String clazz, int line) {
+        end();
+
+        if (shouldCommit()) {
+            this.script = script;
+            this.clazz = clazz;
+            this.line = line;
+            commit();
+        }
+    }
+}
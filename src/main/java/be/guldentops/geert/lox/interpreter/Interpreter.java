@@ -1,40 +1,111 @@
 package be.guldentops.geert.lox.interpreter;
 
+import be.guldentops.geert.lox.coverage.Coverage;
 import be.guldentops.geert.lox.error.CanReportErrors;
 import be.guldentops.geert.lox.grammar.Expression;
 import be.guldentops.geert.lox.grammar.Statement;
 import be.guldentops.geert.lox.semantic.analysis.ResolutionAnalyzer;
 
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface Interpreter extends ResolutionAnalyzer, CanReportErrors {
 
     static Interpreter createDefault() {
-        var globals = Environment.createGlobal();
-        globals.defineNativeMethod("clock", new LoxCallable() {
+        ExecutionStatistics.registerPlatformMBeanIfRequested();
+
+        return new PostOrderTraversalInterpreter(createGlobals());
+    }
 
-            @Override
-            public int arity() {
-                return 0;
-            }
+    /**
+     * @param out where print statements write to instead of System.out, e.g. the connection of a client of a daemon.
+     */
+    static Interpreter create(PrintStream out) {
+        ExecutionStatistics.registerPlatformMBeanIfRequested();
+
+        return new PostOrderTraversalInterpreter(createGlobals(), out::println);
+    }
 
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return (double) System.currentTimeMillis() / 1_000.0;
-            }
+    /**
+     * Creates an interpreter for Java code that embeds Lox, e.g. a script engine. The scripts are usually resolved ahead
+     * of time, see {@link #interpret(String, List, Map)}.
+     *
+     * @param globals the variables of the global environment (the native functions are defined in it), so the Java code
+     *                sees what scripts define and the other way around.
+     * @param printer receives every line the scripts print.
+     */
+    static Interpreter create(Map<String, Object> globals, Consumer<String> printer) {
+        ExecutionStatistics.registerPlatformMBeanIfRequested();
 
-            @Override
-            public String toString() {
-                return "<native fn>";
-            }
-        });
+        var environment = Environment.createGlobal(globals);
+        NativeFunction.defineAll(environment);
+
+        return new PostOrderTraversalInterpreter(environment, printer);
+    }
+
+    private static Environment createGlobals() {
+        var globals = Environment.createGlobal();
+        NativeFunction.defineAll(globals);
 
-        return new PostOrderTraversalInterpreter(globals);
+        return globals;
     }
 
     Object interpret(Expression expression);
 
-    void interpret(List<Statement> statements);
+    default void interpret(List<Statement> statements) {
+        interpret("<script>", statements);
+    }
+
+    void interpret(String script, List<Statement> statements);
+
+    /**
+     * Runs statements that were resolved ahead of time, with the depths of their local variables in a table of their own
+     * instead of in the one of the interpreter. The functions they declare keep using that table, so it is garbage
+     * collected together with the statements once neither they nor their functions are reachable anymore.
+     */
+    void interpret(String script, List<Statement> statements, Map<Expression, Integer> locals);
+
+    /**
+     * @param locals the depths of the local variables of the program that declared the body.
+     */
+    void executeBlock(List<Statement> body, Environment environment, Map<Expression, Integer> locals);
+
+    /**
+     * Calls a function (or class) of the global environment from Java code, a runtime error is reported like the ones
+     * of {@link #interpret(String, List)} are.
+     *
+     * @return the value the function returned, or null after a runtime error.
+     */
+    Object callFunction(String function, List<Object> arguments);
+
+    /**
+     * Calls a method (or a function stored in a field) of an instance from Java code, a runtime error is reported like
+     * the ones of {@link #interpret(String, List)} are.
+     *
+     * @return the value the method returned, or null after a runtime error.
+     */
+    Object callMethod(Object instance, String method, List<Object> arguments);
+
+    void addExecutionListener(ExecutionListener executionListener);
+
+    /**
+     * Marks every statement it executes and every branch it takes in the coverage (which the program must have been
+     * resolved with), null stops covering.
+     */
+    void cover(Coverage coverage);
+
+    /**
+     * Writes the global environment and everything that can be reached from it (classes, functions and their closures,
+     * instances) to a file, e.g. after running a script that sets up the state a lot of other scripts start from.
+     */
+    void saveSnapshot(Path snapshot) throws IOException;
 
-    void executeBlock(List<Statement> body, Environment environment);
+    /**
+     * Defines everything in the global environment of a snapshot in the global environment of this interpreter.
+     */
+    void restoreSnapshot(Path snapshot) throws IOException;
 }
@@ -15,6 +15,18 @@ class LoxClass implements LoxCallable {
         this.methods = methods;
     }
 
+    String name() {
+        return name;
+    }
+
+    LoxClass superclass() {
+        return superclass;
+    }
+
+    Map<String, LoxFunction> methods() {
+        return methods;
+    }
+
     LoxFunction findMethod(LoxInstance instance, String name) {
         if (methods.containsKey(name)) {
             return methods.get(name).bind(instance);
@@ -1,33 +1,60 @@
 package be.guldentops.geert.lox.interpreter;
 
+import be.guldentops.geert.lox.grammar.DeferredBody;
+import be.guldentops.geert.lox.grammar.Expression;
 import be.guldentops.geert.lox.grammar.Statement;
 
 import java.util.List;
+import java.util.Map;
 
 class LoxFunction implements LoxCallable {
 
     private final Statement.Function declaration;
     private final Environment closure;
+    // The depths the program that declared the function was resolved with ahead of time, see Interpreter#interpret.
+    private final Map<Expression, Integer> locals;
     private final boolean isInitializer;
 
-    static LoxFunction createInitFunction(Statement.Function method, Environment environment) {
-        return new LoxFunction(method, environment, true);
+    static LoxFunction createInitFunction(Statement.Function method, Environment environment, Map<Expression, Integer> locals) {
+        return new LoxFunction(method, environment, locals, true);
     }
 
-    static LoxFunction createFunction(Statement.Function method, Environment environment) {
-        return new LoxFunction(method, environment, false);
+    static LoxFunction createFunction(Statement.Function method, Environment environment, Map<Expression, Integer> locals) {
+        return new LoxFunction(method, environment, locals, false);
     }
 
-    private LoxFunction(Statement.Function declaration, Environment closure, boolean isInitializer) {
+    private LoxFunction(Statement.Function declaration, Environment closure, Map<Expression, Integer> locals, boolean isInitializer) {
         this.declaration = declaration;
         this.closure = closure;
+        this.locals = locals;
         this.isInitializer = isInitializer;
     }
 
     LoxFunction bind(LoxInstance instance) {
         var environment = Environment.createLocal(closure);
         environment.define("this", instance);
-        return LoxFunction.createFunction(declaration, environment);
+        environment.allocated(Allocation.BOUND_METHOD);
+        return LoxFunction.createFunction(declaration, environment, locals);
+    }
+
+    String name() {
+        return declaration.name().lexeme();
+    }
+
+    Statement.Function declaration() {
+        return declaration;
+    }
+
+    Environment closure() {
+        return closure;
+    }
+
+    Map<Expression, Integer> locals() {
+        return locals;
+    }
+
+    boolean isInitializer() {
+        return isInitializer;
     }
 
     @Override
@@ -37,6 +64,11 @@ class LoxFunction implements LoxCallable {
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
+        // A deferred body is parsed and resolved on the first call, its errors have been reported by then.
+        if (declaration.body() instanceof DeferredBody body && !body.compile()) {
+            throw new RuntimeError(declaration.name(), "function body contains errors.");
+        }
+
         var environment = Environment.createLocal(closure);
 
         for (int i = 0; i < declaration.parameters().size(); i++) {
@@ -44,7 +76,7 @@ class LoxFunction implements LoxCallable {
         }
 
         try {
-            interpreter.executeBlock(declaration.body(), environment);
+            interpreter.executeBlock(declaration.body(), environment, locals);
         } catch (Return r) {
             if (isInitializer) return closure.getAt(0, "this");
 
@@ -57,6 +89,6 @@ class LoxFunction implements LoxCallable {
 
     @Override
     public String toString() {
-        return "<fn " + declaration.name().lexeme() + ">";
+        return "<fn " + name() + ">";
     }
 }
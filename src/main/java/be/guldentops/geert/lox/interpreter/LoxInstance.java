@@ -12,6 +12,16 @@ class LoxInstance {
 
     LoxInstance(LoxClass clazz) {
         this.clazz = clazz;
+
+        ExecutionStatistics.instance().instanceCreated();
+    }
+
+    LoxClass clazz() {
+        return clazz;
+    }
+
+    Map<String, Object> fields() {
+        return fields;
     }
 
     public Object get(Token name) {
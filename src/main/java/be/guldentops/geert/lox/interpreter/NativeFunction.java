@@ -0,0 +1,46 @@
+package be.guldentops.geert.lox.interpreter;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A function implemented in Java, known by the name under which it is defined in the global environment.
+ */
+class NativeFunction implements LoxCallable {
+
+    private final String name;
+    private final int arity;
+    private final Function<List<Object>, Object> body;
+
+    NativeFunction(String name, int arity, Function<List<Object>, Object> body) {
+        this.name = name;
+        this.arity = arity;
+        this.body = body;
+    }
+
+    /**
+     * Defines every native function in a global environment.
+     */
+    static void defineAll(Environment globals) {
+        globals.defineNativeMethod("clock", new NativeFunction("clock", 0, arguments -> (double) System.currentTimeMillis() / 1_000.0));
+    }
+
+    String name() {
+        return name;
+    }
+
+    @Override
+    public int arity() {
+        return arity;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        return body.apply(arguments);
+    }
+
+    @Override
+    public String toString() {
+        return "<native fn>";
+    }
+}
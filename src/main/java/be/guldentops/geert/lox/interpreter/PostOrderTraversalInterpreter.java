@@ -1,29 +1,58 @@
 package be.guldentops.geert.lox.interpreter;
 
+import be.guldentops.geert.lox.coverage.Coverage;
 import be.guldentops.geert.lox.error.ErrorReporter;
 import be.guldentops.geert.lox.grammar.Expression;
 import be.guldentops.geert.lox.grammar.Statement;
 import be.guldentops.geert.lox.lexer.Token;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
+import static be.guldentops.geert.lox.lexer.Token.Type.IDENTIFIER;
 import static be.guldentops.geert.lox.lexer.Token.Type.OR;
 import static java.util.stream.Collectors.toList;
 
 class PostOrderTraversalInterpreter implements Interpreter, Expression.Visitor<Object>, Statement.Visitor<Void> {
 
     private final Environment globals;
-    private final Map<Expression, Integer> locals = new HashMap<>();
+    // Receives every line a print statement prints.
+    private final Consumer<String> printer;
+    private final Map<Expression, Integer> locals;
+    // Resolved ahead of time by the program (or the function of a program) being run, possibly shared with other
+    // interpreters so never written to.
+    private Map<Expression, Integer> compiledLocals;
     private Environment environment;
+    private String script = "<script>";
+
+    private final ExecutionStatistics statistics = ExecutionStatistics.instance();
 
     private final List<ErrorReporter> errorReporters = new ArrayList<>();
+    private final ExecutionListeners executionListeners = new ExecutionListeners();
+    private Coverage coverage;
 
     PostOrderTraversalInterpreter(Environment globals) {
+        // System.out is looked up on every print, so replacing it (e.g. in tests) also redirects existing interpreters.
+        this(globals, line -> System.out.println(line));
+    }
+
+    PostOrderTraversalInterpreter(Environment globals, Consumer<String> printer) {
+        this(globals, printer, new HashMap<>(), Map.of());
+    }
+
+    PostOrderTraversalInterpreter(Environment globals, Consumer<String> printer, Map<Expression, Integer> locals, Map<Expression, Integer> compiledLocals) {
         this.globals = globals;
+        this.printer = printer;
+        this.locals = locals;
+        this.compiledLocals = compiledLocals;
         this.environment = globals;
+
+        globals.notify(executionListeners);
     }
 
     @Override
@@ -31,34 +60,130 @@ class PostOrderTraversalInterpreter implements Interpreter, Expression.Visitor<O
         this.errorReporters.add(errorReporter);
     }
 
+    @Override
+    public void addExecutionListener(ExecutionListener executionListener) {
+        this.executionListeners.add(executionListener);
+    }
+
+    @Override
+    public void cover(Coverage coverage) {
+        this.coverage = coverage;
+    }
+
+    @Override
+    public void saveSnapshot(Path snapshot) throws IOException {
+        var allLocals = new HashMap<>(compiledLocals);
+        allLocals.putAll(locals);
+
+        HeapSnapshot.write(snapshot, globals, allLocals);
+    }
+
+    @Override
+    public void restoreSnapshot(Path snapshot) throws IOException {
+        HeapSnapshot.read(snapshot, globals, this);
+    }
+
     @Override
     public Object interpret(Expression expression) {
         try {
             return evaluate(expression);
         } catch (RuntimeError e) {
-            for (var errorReporter : errorReporters) {
-                errorReporter.handle(e);
-            }
-
+            reportError(e);
             return null;
         }
     }
 
     @Override
-    public void interpret(List<Statement> statements) {
+    public void interpret(String script, List<Statement> statements) {
+        this.script = script;
+
         try {
             for (var statement : statements) {
                 execute(statement);
             }
         } catch (RuntimeError e) {
-            for (var errorReporter : errorReporters) {
-                errorReporter.handle(e);
+            reportError(e);
+        }
+    }
+
+    @Override
+    public void interpret(String script, List<Statement> statements, Map<Expression, Integer> locals) {
+        var previous = compiledLocals;
+        compiledLocals = locals;
+        try {
+            interpret(script, statements);
+        } finally {
+            compiledLocals = previous;
+        }
+    }
+
+    @Override
+    public Object callFunction(String function, List<Object> arguments) {
+        var name = new Token(IDENTIFIER, function, null, 0);
+
+        try {
+            return callFromJava(globals.get(name), arguments, name);
+        } catch (RuntimeError e) {
+            reportError(e);
+            return null;
+        }
+    }
+
+    @Override
+    public Object callMethod(Object instance, String method, List<Object> arguments) {
+        var name = new Token(IDENTIFIER, method, null, 0);
+
+        try {
+            if (instance instanceof LoxInstance loxInstance) {
+                return callFromJava(loxInstance.get(name), arguments, name);
+            }
+
+            throw new RuntimeError(name, "only instances have methods.");
+        } catch (RuntimeError e) {
+            reportError(e);
+            return null;
+        }
+    }
+
+    private Object callFromJava(Object callee, List<Object> arguments, Token name) {
+        if (callee instanceof LoxCallable function) {
+            if (arguments.size() != function.arity()) {
+                throw new RuntimeError(name, String.format("expected %d argument(s) but got %d.", function.arity(), arguments.size()));
             }
+
+            return call(function, arguments, name);
+        }
+
+        throw new RuntimeError(name, "can only call functions and classes.");
+    }
+
+    private void reportError(RuntimeError error) {
+        statistics.runtimeErrorOccurred();
+        RuntimeErrorEvent.emit(script, error);
+
+        for (var errorReporter : errorReporters) {
+            errorReporter.handle(error);
         }
     }
 
     private void execute(Statement statement) {
-        statement.accept(this);
+        statistics.statementExecuted();
+        if (coverage != null) coverage.executed(statement);
+
+        if (executionListeners.isEmpty()) {
+            statement.accept(this);
+        } else {
+            executeObserved(statement);
+        }
+    }
+
+    private void executeObserved(Statement statement) {
+        executionListeners.enterStatement(statement);
+        try {
+            statement.accept(this);
+        } finally {
+            executionListeners.exitStatement(statement);
+        }
     }
 
     @Override
@@ -104,14 +229,24 @@ class PostOrderTraversalInterpreter implements Interpreter, Expression.Visitor<O
 
     private LoxFunction createFunction(Statement.Function method) {
         if (method.name().lexeme().equals("init")) {
-            return LoxFunction.createInitFunction(method, environment);
+            return LoxFunction.createInitFunction(method, environment, compiledLocals);
         } else {
-            return LoxFunction.createFunction(method, environment);
+            return LoxFunction.createFunction(method, environment, compiledLocals);
         }
     }
 
     @Override
-    public void executeBlock(List<Statement> statements, Environment localEnvironment) {
+    public void executeBlock(List<Statement> statements, Environment localEnvironment, Map<Expression, Integer> locals) {
+        var previous = compiledLocals;
+        compiledLocals = locals;
+        try {
+            executeBlock(statements, localEnvironment);
+        } finally {
+            compiledLocals = previous;
+        }
+    }
+
+    private void executeBlock(List<Statement> statements, Environment localEnvironment) {
         Environment previous = this.environment;
 
         try {
@@ -138,14 +273,14 @@ class PostOrderTraversalInterpreter implements Interpreter, Expression.Visitor<O
 
     @Override
     public Void visitFunctionStatement(Statement.Function statement) {
-        var function = LoxFunction.createFunction(statement, environment);
+        var function = LoxFunction.createFunction(statement, environment, compiledLocals);
         environment.define(statement.name(), function);
         return null;
     }
 
     @Override
     public Void visitIfStatement(Statement.If statement) {
-        if (isTruthy(evaluate(statement.condition()))) {
+        if (branch(statement, isTruthy(evaluate(statement.condition())))) {
             execute(statement.thenBranch());
         } else if (statement.elseBranch() != null) {
             execute(statement.elseBranch());
@@ -157,7 +292,7 @@ class PostOrderTraversalInterpreter implements Interpreter, Expression.Visitor<O
     @Override
     public Void visitPrintStatement(Statement.Print statement) {
         var value = evaluate(statement.expression());
-        System.out.println(stringify(value));
+        printer.accept(stringify(value));
         return null;
     }
 
@@ -182,13 +317,26 @@ class PostOrderTraversalInterpreter implements Interpreter, Expression.Visitor<O
 
     @Override
     public Void visitWhileStatement(Statement.While statement) {
-        while (isTruthy(evaluate(statement.condition()))) {
+        while (branch(statement, isTruthy(evaluate(statement.condition())))) {
             execute(statement.body());
         }
 
         return null;
     }
 
+    private boolean branch(Statement statement, boolean outcome) {
+        if (coverage != null) coverage.branch(statement, outcome);
+        if (!executionListeners.isEmpty()) executionListeners.branch(statement, outcome);
+
+        return outcome;
+    }
+
+    private Object number(double value) {
+        if (!executionListeners.isEmpty()) executionListeners.allocated(Allocation.NUMBER);
+
+        return value;
+    }
+
     private String stringify(Object value) {
         if (value == null) return "nil";
 
@@ -208,7 +356,7 @@ class PostOrderTraversalInterpreter implements Interpreter, Expression.Visitor<O
     public Object visitAssignExpression(Expression.Assign expression) {
         Object value = evaluate(expression.value());
 
-        Integer distance = locals.get(expression);
+        var distance = distanceOf(expression);
         if (distance != null) {
             environment.assignAt(distance, expression.name(), value);
         } else {
@@ -238,10 +386,10 @@ class PostOrderTraversalInterpreter implements Interpreter, Expression.Visitor<O
                 return (double) left <= (double) right;
             case MINUS:
                 checkNumberOperands(expression.operator(), left, right);
-                return (double) left - (double) right;
+                return number((double) left - (double) right);
             case PLUS:
                 if (left instanceof Double l && right instanceof Double r) {
-                    return l + r;
+                    return number(l + r);
                 }
 
                 if (left instanceof String l && right instanceof String r) {
@@ -252,10 +400,10 @@ class PostOrderTraversalInterpreter implements Interpreter, Expression.Visitor<O
             case SLASH:
                 checkNumberOperands(expression.operator(), left, right);
                 checkNull(expression.operator(), (double) right);
-                return (double) left / (double) right;
+                return number((double) left / (double) right);
             case STAR:
                 checkNumberOperands(expression.operator(), left, right);
-                return (double) left * (double) right;
+                return number((double) left * (double) right);
             case BANG_EQUAL:
                 return !isEqual(left, right);
             case EQUAL_EQUAL:
@@ -281,12 +429,49 @@ class PostOrderTraversalInterpreter implements Interpreter, Expression.Visitor<O
                 );
             }
 
-            return function.call(this, arguments);
+            return call(function, arguments, expression.paren());
         } else {
             throw new RuntimeError(expression.paren(), "can only call functions and classes.");
         }
     }
 
+    private Object call(LoxCallable callable, List<Object> arguments, Token paren) {
+        var name = nameOf(callable);
+
+        statistics.callEntered();
+        executionListeners.enterCall(name);
+        try {
+            if (callable instanceof LoxClass clazz) {
+                executionListeners.allocated(Allocation.INSTANCE);
+
+                var event = new InstantiationEvent();
+                event.begin();
+                try {
+                    return clazz.call(this, arguments);
+                } finally {
+                    event.end(script, name, paren.line());
+                }
+            }
+
+            var event = new FunctionCallEvent();
+            event.begin();
+            try {
+                return callable.call(this, arguments);
+            } finally {
+                event.end(script, name, paren.line());
+            }
+        } finally {
+            executionListeners.exitCall(name);
+        }
+    }
+
+    private String nameOf(LoxCallable callable) {
+        if (callable instanceof LoxClass clazz) return clazz.name();
+        if (callable instanceof LoxFunction function) return function.name();
+
+        return callable.toString();
+    }
+
     @Override
     public Object visitGetExpression(Expression.Get expression) {
         Object object = evaluate(expression.object());
@@ -310,11 +495,14 @@ class PostOrderTraversalInterpreter implements Interpreter, Expression.Visitor<O
     @Override
     public Object visitLogicalExpression(Expression.Logical expression) {
         var left = evaluate(expression.left());
+        var truthy = isTruthy(left);
+        if (coverage != null) coverage.branch(expression, truthy);
+        if (!executionListeners.isEmpty()) executionListeners.branch(expression, truthy);
 
         if (expression.operator().type() == OR) {
-            if (isTruthy(left)) return left;
+            if (truthy) return left;
         } else {
-            if (!isTruthy(left)) return left;
+            if (!truthy) return left;
         }
 
         return evaluate(expression.right());
@@ -335,7 +523,7 @@ class PostOrderTraversalInterpreter implements Interpreter, Expression.Visitor<O
 
     @Override
     public Object visitSuperExpression(Expression.Super expression) {
-        int distance = locals.get(expression);
+        int distance = distanceOf(expression);
 
         var superclass = (LoxClass) environment.getAt(distance, "super");
 
@@ -365,7 +553,7 @@ class PostOrderTraversalInterpreter implements Interpreter, Expression.Visitor<O
                 return !isTruthy(right);
             case MINUS:
                 checkNumberOperand(expression.operator(), right);
-                return -(double) right;
+                return number(-(double) right);
         }
 
         return null;
@@ -377,7 +565,7 @@ class PostOrderTraversalInterpreter implements Interpreter, Expression.Visitor<O
     }
 
     private Object lookUpVariable(Token name, Expression expression) {
-        var distance = locals.get(expression);
+        var distance = distanceOf(expression);
 
         if (distance != null) {
             return environment.getAt(distance, name.lexeme());
@@ -386,7 +574,17 @@ class PostOrderTraversalInterpreter implements Interpreter, Expression.Visitor<O
         }
     }
 
+    private Integer distanceOf(Expression expression) {
+        // Programs and the script engine key their compiled locals by identity, while the locals hash the whole
+        // expression (it is a record), so those are only looked in when they hold anything, unlike while a program runs.
+        var distance = compiledLocals.get(expression);
+        if (distance != null || locals.isEmpty()) return distance;
+
+        return locals.get(expression);
+    }
+
     private Object evaluate(Expression expression) {
+        statistics.expressionEvaluated(expression);
         return expression.accept(this);
     }
 
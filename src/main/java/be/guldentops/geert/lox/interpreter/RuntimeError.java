@@ -13,6 +13,10 @@ class RuntimeError extends RuntimeException implements Error {
         this.token = token;
     }
 
+    int line() {
+        return token.line();
+    }
+
     @Override
     public String toString() {
         return String.format("[line %d] RuntimeError: at '%s' %s", token.line(), token.lexeme(), getMessage());
@@ -0,0 +1,33 @@
+package be.guldentops.geert.lox.interpreter;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("lox.RuntimeError")
+@Label("Lox Runtime Error")
+@Description("Runtime error that aborted the execution of a Lox script")
+@Category("Lox")
+class RuntimeErrorEvent extends jdk.jfr.Event {
+
+    @Label("Script")
+    String script;
+
+    @Label("Message")
+    String message;
+
+    @Label("Line")
+    int line;
+
+    static void emit(String script, RuntimeError error) {
+        var event = new RuntimeErrorEvent();
+
+        if (event.shouldCommit()) {
+            event.script = script;
+            event.message = error.getMessage();
+            event.line = error.line();
+            event.commit();
+        }
+    }
+}
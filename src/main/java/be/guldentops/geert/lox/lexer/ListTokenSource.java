@@ -0,0 +1,50 @@
+package be.guldentops.geert.lox.lexer;
+
+import java.util.List;
+
+import static be.guldentops.geert.lox.lexer.Token.Type.EOF;
+
+/**
+ * The positions of its tokens are their indexes in the list.
+ */
+class ListTokenSource implements TokenSource {
+
+    private final List<Token> tokens;
+    private final int end;
+    private final Token eof;
+
+    private int current = 0;
+    private int last = 0;
+
+    ListTokenSource(List<Token> tokens) {
+        this.tokens = tokens == null || tokens.isEmpty() ? List.of(new Token(EOF, "", null, 1)) : tokens;
+        this.end = this.tokens.size() - 1;
+        this.eof = this.tokens.get(end);
+    }
+
+    private ListTokenSource(List<Token> tokens, int from, int to) {
+        this.tokens = tokens;
+        this.end = to;
+        this.eof = new Token(EOF, "", null, tokens.get(to).line());
+        this.current = from;
+        this.last = from;
+    }
+
+    @Override
+    public Token nextToken() {
+        last = current;
+        if (current == end) return eof;
+
+        return tokens.get(current++);
+    }
+
+    @Override
+    public int positionOfLastToken() {
+        return last;
+    }
+
+    @Override
+    public TokenSource range(int from, int to, int line) {
+        return new ListTokenSource(tokens, from, to);
+    }
+}
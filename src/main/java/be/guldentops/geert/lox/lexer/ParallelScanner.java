@@ -0,0 +1,310 @@
+package be.guldentops.geert.lox.lexer;
+
+import be.guldentops.geert.lox.error.Error;
+import be.guldentops.geert.lox.error.ErrorReporter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntFunction;
+
+/**
+ * Splits the source code into chunks that start at the beginning of a line and scans them in parallel.
+ * <p>
+ * Every chunk is scanned as if it starts outside of a string, which is only wrong when a string spans the boundary
+ * with the previous chunk. While stitching the chunks together in order such a string is detected and rescanned, up
+ * to the end of the chunk that closes it, after which the speculatively scanned chunks are valid again.
+ * <p>
+ * Pulling the tokens one at a time only scans a window of chunks ahead of the one being handed out, so the tokens in
+ * memory are bounded by the window rather than by the size of the source code.
+ */
+class ParallelScanner implements Scanner {
+
+    static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    private final CharSequence sourceCode;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+
+    private TokenSource tokens;
+
+    private final List<ErrorReporter> errorReporters = new ArrayList<>();
+
+    ParallelScanner(CharSequence sourceCode, int chunkSize, ForkJoinPool pool) {
+        if (sourceCode == null) throw new IllegalArgumentException("source code should not be null!");
+
+        this.sourceCode = sourceCode;
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+    }
+
+    @Override
+    public void addErrorReporter(ErrorReporter errorReporter) {
+        this.errorReporters.add(errorReporter);
+    }
+
+    @Override
+    public List<Token> scanTokens() {
+        var buffer = bufferTokens();
+
+        var tokens = new ArrayList<Token>(buffer.size());
+        for (var i = 0; i < buffer.size(); i++) {
+            tokens.add(buffer.token(i));
+        }
+
+        return tokens;
+    }
+
+    @Override
+    public Token nextToken() {
+        if (tokens == null) tokens = new StreamedTokens();
+
+        return tokens.nextToken();
+    }
+
+    @Override
+    public int positionOfLastToken() {
+        return tokens.positionOfLastToken();
+    }
+
+    @Override
+    public TokenSource range(int from, int to, int line) {
+        return tokens.range(from, to, line);
+    }
+
+    @Override
+    public TokenBuffer bufferTokens() {
+        var chunkStarts = splitIntoChunks();
+        var firstLines = firstLinesOf(chunkStarts);
+
+        var segments = inParallel(chunkStarts.length - 1, chunk -> scan(chunkStarts, chunkStarts[chunk], firstLines[chunk], chunk));
+
+        return stitch(chunkStarts, segments);
+    }
+
+    /**
+     * @return the offset of every chunk, followed by the end of the source code.
+     */
+    private int[] splitIntoChunks() {
+        var chunkStarts = new ArrayList<Integer>();
+        chunkStarts.add(0);
+
+        var next = chunkSize;
+        while (next < sourceCode.length()) {
+            var newline = indexOf('\n', next);
+            if (newline < 0 || newline + 1 >= sourceCode.length()) break;
+
+            chunkStarts.add(newline + 1);
+            next = newline + 1 + chunkSize;
+        }
+
+        chunkStarts.add(sourceCode.length());
+        return chunkStarts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private int[] firstLinesOf(int[] chunkStarts) {
+        var chunks = chunkStarts.length - 1;
+
+        var newlines = inParallel(chunks, chunk -> countNewlines(chunkStarts[chunk], chunkStarts[chunk + 1]));
+        var firstLines = new int[chunks];
+        firstLines[0] = 1;
+        for (var chunk = 1; chunk < chunks; chunk++) {
+            firstLines[chunk] = firstLines[chunk - 1] + newlines.get(chunk - 1);
+        }
+
+        return firstLines;
+    }
+
+    private int countNewlines(int from, int to) {
+        var newlines = 0;
+        for (var i = from; i < to; i++) {
+            if (sourceCode.charAt(i) == '\n') newlines++;
+        }
+
+        return newlines;
+    }
+
+    private <T> List<T> inParallel(int chunks, IntFunction<T> task) {
+        var tasks = new ArrayList<ForkJoinTask<T>>(chunks);
+        for (var chunk = 0; chunk < chunks; chunk++) {
+            var index = chunk;
+            tasks.add(pool.submit(() -> task.apply(index)));
+        }
+
+        var results = new ArrayList<T>(chunks);
+        for (var submitted : tasks) {
+            results.add(submitted.join());
+        }
+
+        return results;
+    }
+
+    private record Segment(TokenBuffer tokens, List<Error> errors, int lastChunk, int unterminatedStringStart, int unterminatedStringLine) {
+    }
+
+    /**
+     * Scans from the given offset up to the end of the last chunk, every chunk but the last one is open ended.
+     */
+    private Segment scan(int[] chunkStarts, int from, int line, int lastChunk) {
+        var scanner = new SimpleScanner(sourceCode, from, chunkStarts[lastChunk + 1], line, lastChunk < chunkStarts.length - 2);
+
+        var errors = new ArrayList<Error>();
+        scanner.addErrorReporter(new ErrorReporter() {
+
+            @Override
+            public void handle(Error error) {
+                errors.add(error);
+            }
+
+            @Override
+            public boolean receivedError() {
+                return !errors.isEmpty();
+            }
+
+            @Override
+            public void reset() {
+                errors.clear();
+            }
+        });
+
+        var tokens = scanner.bufferTokens();
+        return new Segment(tokens, errors, lastChunk, scanner.unterminatedStringStart(), scanner.unterminatedStringLine());
+    }
+
+    private TokenBuffer stitch(int[] chunkStarts, List<Segment> segments) {
+        var tokens = new TokenBuffer(sourceCode);
+
+        var segment = segments.get(0);
+        while (true) {
+            reportErrors(segment.errors());
+
+            if (segment.unterminatedStringStart() >= 0) {
+                // The string continues in a next chunk, which was scanned as if it started outside of it.
+                tokens.addAll(segment.tokens(), segment.tokens().size() - 1);
+                segment = rescanString(chunkStarts, segment);
+            } else if (segment.lastChunk() + 1 < segments.size()) {
+                tokens.addAll(segment.tokens(), segment.tokens().size() - 1);
+                segment = segments.get(segment.lastChunk() + 1);
+            } else {
+                tokens.addAll(segment.tokens(), segment.tokens().size());
+                return tokens;
+            }
+        }
+    }
+
+    /**
+     * Hands out the tokens of each segment once the segments before it have been handed out, stitching them together
+     * like {@link #stitch(int[], List)} does while the chunks after it are being scanned.
+     */
+    private class StreamedTokens implements TokenSource {
+
+        private final int[] chunkStarts = splitIntoChunks();
+        private final int[] firstLines = firstLinesOf(chunkStarts);
+        private final int window = 2 * pool.getParallelism();
+
+        // The scans of the chunks that have been scheduled but not handed out yet, null for all other chunks.
+        private final List<ForkJoinTask<Segment>> scans = new ArrayList<>(Collections.nCopies(chunkStarts.length - 1, null));
+        private int scheduled = 0;
+
+        private Segment segment;
+        private int current = 0;
+        private int last = 0;
+
+        StreamedTokens() {
+            enter(scanned(0));
+        }
+
+        @Override
+        public Token nextToken() {
+            var tokens = segment.tokens();
+            // Only the EOF token of the last segment is handed out, the others end where the next segment starts.
+            while (current == tokens.size() - 1 && !isLast(segment)) {
+                enter(next());
+                tokens = segment.tokens();
+            }
+
+            last = current;
+            var token = tokens.token(current);
+            if (current < tokens.size() - 1) current++;
+
+            return token;
+        }
+
+        @Override
+        public int positionOfLastToken() {
+            return segment.tokens().start(last);
+        }
+
+        @Override
+        public TokenSource range(int from, int to, int line) {
+            return new SimpleScanner(sourceCode, from, to, line, false);
+        }
+
+        private void enter(Segment segment) {
+            reportErrors(segment.errors());
+
+            this.segment = segment;
+            this.current = 0;
+            this.last = 0;
+        }
+
+        private boolean isLast(Segment segment) {
+            return segment.unterminatedStringStart() < 0 && segment.lastChunk() + 1 == scans.size();
+        }
+
+        private Segment next() {
+            if (segment.unterminatedStringStart() < 0) return scanned(segment.lastChunk() + 1);
+
+            // The string continues in a next chunk, which was scanned as if it started outside of it.
+            var rescanned = rescanString(chunkStarts, segment);
+            for (var chunk = segment.lastChunk() + 1; chunk <= rescanned.lastChunk(); chunk++) {
+                var scan = scans.set(chunk, null);
+                if (scan != null) scan.cancel(false);
+            }
+            scheduled = Math.max(scheduled, rescanned.lastChunk() + 1);
+
+            return rescanned;
+        }
+
+        private Segment scanned(int chunk) {
+            for (; scheduled < scans.size() && scheduled <= chunk + window; scheduled++) {
+                var index = scheduled;
+                scans.set(index, pool.submit(() -> scan(chunkStarts, chunkStarts[index], firstLines[index], index)));
+            }
+
+            return scans.set(chunk, null).join();
+        }
+    }
+
+    private Segment rescanString(int[] chunkStarts, Segment segment) {
+        var closingQuote = indexOf('"', segment.unterminatedStringStart() + 1);
+        var lastChunk = closingQuote < 0 ? chunkStarts.length - 2 : chunkOf(chunkStarts, closingQuote);
+
+        return scan(chunkStarts, segment.unterminatedStringStart(), segment.unterminatedStringLine(), lastChunk);
+    }
+
+    private int chunkOf(int[] chunkStarts, int offset) {
+        var index = Arrays.binarySearch(chunkStarts, offset);
+
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private int indexOf(char c, int from) {
+        for (var i = from; i < sourceCode.length(); i++) {
+            if (sourceCode.charAt(i) == c) return i;
+        }
+
+        return -1;
+    }
+
+    private void reportErrors(List<Error> errors) {
+        for (var error : errors) {
+            for (var errorReporter : errorReporters) {
+                errorReporter.handle(error);
+            }
+        }
+    }
+}
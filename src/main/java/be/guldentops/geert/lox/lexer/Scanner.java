@@ -3,12 +3,28 @@ package be.guldentops.geert.lox.lexer;
 import be.guldentops.geert.lox.error.CanReportErrors;
 
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
-public interface Scanner extends CanReportErrors {
+public interface Scanner extends CanReportErrors, TokenSource {
 
-    static Scanner createDefault(String sourceCode) {
+    static Scanner createDefault(CharSequence sourceCode) {
         return new SimpleScanner(sourceCode);
     }
 
+    /**
+     * Scans large source code in chunks on the common fork join pool, which produces the same tokens as the default scanner.
+     */
+    static Scanner createParallel(CharSequence sourceCode) {
+        return new ParallelScanner(sourceCode, ParallelScanner.DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Scans the whole source code at once, use {@link #nextToken()} to scan it on demand instead.
+     */
     List<Token> scanTokens();
+
+    /**
+     * Scans the whole source code at once into a compact buffer, which creates no objects per token.
+     */
+    TokenBuffer bufferTokens();
 }
@@ -6,9 +6,7 @@ import be.guldentops.geert.lox.error.SyntaxError;
 import be.guldentops.geert.lox.lexer.Token.Type;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import static be.guldentops.geert.lox.lexer.Token.Type.AND;
 import static be.guldentops.geert.lox.lexer.Token.Type.BANG;
@@ -52,30 +50,16 @@ import static be.guldentops.geert.lox.lexer.Token.Type.WHILE;
 
 class SimpleScanner implements Scanner {
 
-    private static final Map<String, Type> keywords;
-
-    static {
-        keywords = new HashMap<>();
-        keywords.put("and", AND);
-        keywords.put("class", CLASS);
-        keywords.put("else", ELSE);
-        keywords.put("false", FALSE);
-        keywords.put("for", FOR);
-        keywords.put("fun", FUN);
-        keywords.put("if", IF);
-        keywords.put("nil", NIL);
-        keywords.put("or", OR);
-        keywords.put("print", PRINT);
-        keywords.put("return", RETURN);
-        keywords.put("super", SUPER);
-        keywords.put("this", THIS);
-        keywords.put("true", TRUE);
-        keywords.put("var", VAR);
-        keywords.put("while", WHILE);
-    }
+    private final CharSequence sourceCode;
+    private final int end;
+
+    // An open ended scanner only scans part of the source code, a string that is still open at its end may be closed after it.
+    private final boolean openEnded;
+    private int unterminatedStringStart = -1;
+    private int unterminatedStringLine;
 
-    private final String sourceCode;
-    private final List<Token> tokens = new ArrayList<>();
+    // The type of the token that was scanned last, null while still skipping whitespace, comments or errors.
+    private Type type;
 
     private int start = 0;
     private int current = 0;
@@ -83,10 +67,24 @@ class SimpleScanner implements Scanner {
 
     private final List<ErrorReporter> errorReporters = new ArrayList<>();
 
-    SimpleScanner(String sourceCode) {
+    SimpleScanner(CharSequence sourceCode) {
         if (sourceCode == null) throw new IllegalArgumentException("source code should not be null!");
 
         this.sourceCode = sourceCode;
+        this.end = sourceCode.length();
+        this.openEnded = false;
+    }
+
+    /**
+     * Scans the source code from (inclusive) to (exclusive), as if it started outside of a string on the given line.
+     */
+    SimpleScanner(CharSequence sourceCode, int from, int to, int line, boolean openEnded) {
+        this.sourceCode = sourceCode;
+        this.start = from;
+        this.current = from;
+        this.end = to;
+        this.line = line;
+        this.openEnded = openEnded;
     }
 
     @Override
@@ -96,18 +94,75 @@ class SimpleScanner implements Scanner {
 
     @Override
     public List<Token> scanTokens() {
-        while (!isAtEnd()) {
+        var tokens = new ArrayList<Token>();
+
+        Token token;
+        do {
+            token = nextToken();
+            tokens.add(token);
+        } while (token.type() != EOF);
+
+        return tokens;
+    }
+
+    @Override
+    public Token nextToken() {
+        if (!scanNextToken()) return new Token(EOF, EOF.lexeme(), null, line);
+
+        var lexeme = TokenBuffer.lexemeOf(sourceCode, type, start, current);
+        var literal = TokenBuffer.literalOf(sourceCode, type, start, current);
+        return new Token(type, lexeme, literal, line);
+    }
+
+    /**
+     * The positions of the tokens are their offsets in the source code.
+     */
+    @Override
+    public int positionOfLastToken() {
+        return start;
+    }
+
+    @Override
+    public TokenSource range(int from, int to, int line) {
+        return new SimpleScanner(sourceCode, from, to, line, false);
+    }
+
+    @Override
+    public TokenBuffer bufferTokens() {
+        var tokens = new TokenBuffer(sourceCode);
+
+        while (scanNextToken()) {
+            tokens.add(type, start, current, line);
+        }
+
+        tokens.add(EOF, current, current, line);
+        return tokens;
+    }
+
+    private boolean scanNextToken() {
+        type = null;
+        while (type == null && !isAtEnd()) {
             // We are at the beginning of the next lexeme.
             start = current;
             scanToken();
         }
 
-        tokens.add(new Token(EOF, "", null, line));
-        return tokens;
+        return type != null;
+    }
+
+    /**
+     * @return the offset of the opening quote of the string this open ended scanner stopped in, -1 if it did not.
+     */
+    int unterminatedStringStart() {
+        return unterminatedStringStart;
+    }
+
+    int unterminatedStringLine() {
+        return unterminatedStringLine;
     }
 
     private boolean isAtEnd() {
-        return current >= sourceCode.length();
+        return current >= end;
     }
 
     private void scanToken() {
@@ -115,53 +170,53 @@ class SimpleScanner implements Scanner {
 
         switch (nextChar) {
             case '(':
-                addToken(LEFT_PAREN);
+                produceToken(LEFT_PAREN);
                 break;
             case ')':
-                addToken(RIGHT_PAREN);
+                produceToken(RIGHT_PAREN);
                 break;
             case '{':
-                addToken(LEFT_BRACE);
+                produceToken(LEFT_BRACE);
                 break;
             case '}':
-                addToken(RIGHT_BRACE);
+                produceToken(RIGHT_BRACE);
                 break;
             case ',':
-                addToken(COMMA);
+                produceToken(COMMA);
                 break;
             case '.':
-                addToken(DOT);
+                produceToken(DOT);
                 break;
             case '-':
-                addToken(MINUS);
+                produceToken(MINUS);
                 break;
             case '+':
-                addToken(PLUS);
+                produceToken(PLUS);
                 break;
             case ';':
-                addToken(SEMICOLON);
+                produceToken(SEMICOLON);
                 break;
             case '*':
-                addToken(STAR);
+                produceToken(STAR);
                 break;
             case '!':
-                addToken(match('=') ? BANG_EQUAL : BANG);
+                produceToken(match('=') ? BANG_EQUAL : BANG);
                 break;
             case '=':
-                addToken(match('=') ? EQUAL_EQUAL : EQUAL);
+                produceToken(match('=') ? EQUAL_EQUAL : EQUAL);
                 break;
             case '<':
-                addToken(match('=') ? LESS_EQUAL : LESS);
+                produceToken(match('=') ? LESS_EQUAL : LESS);
                 break;
             case '>':
-                addToken(match('=') ? GREATER_EQUAL : GREATER);
+                produceToken(match('=') ? GREATER_EQUAL : GREATER);
                 break;
             case '/':
                 if (match('/')) {
                     // A comment goes until the end of the line.
                     while (peek() != '\n' && !isAtEnd()) advance();
                 } else {
-                    addToken(SLASH);
+                    produceToken(SLASH);
                 }
                 break;
             case ' ':
@@ -192,13 +247,8 @@ class SimpleScanner implements Scanner {
         return sourceCode.charAt(current - 1);
     }
 
-    private void addToken(Type type) {
-        addToken(type, null);
-    }
-
-    private void addToken(Type type, Object literal) {
-        var text = sourceCode.substring(start, current);
-        tokens.add(new Token(type, text, literal, line));
+    private void produceToken(Type type) {
+        this.type = type;
     }
 
     private boolean match(char expected) {
@@ -216,26 +266,26 @@ class SimpleScanner implements Scanner {
     }
 
     private void scanStringLiteral() {
+        var startLine = line;
         while (peek() != '"' && !isAtEnd()) {
             if (peek() == '\n') line++;
             advance();
         }
 
         // Unterminated string.
-        if (isAtEnd()) {
+        if (isAtEnd() && openEnded) {
+            unterminatedStringStart = start;
+            unterminatedStringLine = startLine;
+        } else if (isAtEnd()) {
             reportError(new SyntaxError(line, "Unterminated string."));
         } else {
             // Consume the closing ".
             advance();
 
-            addToken(STRING, trimSurroundingQuotes());
+            produceToken(STRING);
         }
     }
 
-    private String trimSurroundingQuotes() {
-        return sourceCode.substring(start + 1, current - 1);
-    }
-
     private boolean isDigit(char c) {
         return c >= '0' && c <= '9';
     }
@@ -250,7 +300,7 @@ class SimpleScanner implements Scanner {
             while (isDigit(peek())) advance();
         }
 
-        addToken(NUMBER, Double.parseDouble(sourceCode.substring(start, current)));
+        produceToken(NUMBER);
     }
 
     private boolean isFractionalDigit() {
@@ -258,7 +308,7 @@ class SimpleScanner implements Scanner {
     }
 
     private char peekNext() {
-        if (current + 1 >= sourceCode.length()) return '\0';
+        if (current + 1 >= end) return '\0';
 
         return sourceCode.charAt(current + 1);
     }
@@ -270,12 +320,71 @@ class SimpleScanner implements Scanner {
     private void scanIdentifier() {
         while (isAlphaNumeric(peek())) advance();
 
-        // See if the identifier is a reserved word.
-        var text = sourceCode.substring(start, current);
+        produceToken(identifierType());
+    }
+
+    /**
+     * Recognizes the reserved words straight from the source code, so identifiers do not need to become a String.
+     */
+    private Type identifierType() {
+        switch (sourceCode.charAt(start)) {
+            case 'a':
+                return checkKeyword(1, "nd", AND);
+            case 'c':
+                return checkKeyword(1, "lass", CLASS);
+            case 'e':
+                return checkKeyword(1, "lse", ELSE);
+            case 'f':
+                if (current - start > 1) {
+                    switch (sourceCode.charAt(start + 1)) {
+                        case 'a':
+                            return checkKeyword(2, "lse", FALSE);
+                        case 'o':
+                            return checkKeyword(2, "r", FOR);
+                        case 'u':
+                            return checkKeyword(2, "n", FUN);
+                    }
+                }
+                break;
+            case 'i':
+                return checkKeyword(1, "f", IF);
+            case 'n':
+                return checkKeyword(1, "il", NIL);
+            case 'o':
+                return checkKeyword(1, "r", OR);
+            case 'p':
+                return checkKeyword(1, "rint", PRINT);
+            case 'r':
+                return checkKeyword(1, "eturn", RETURN);
+            case 's':
+                return checkKeyword(1, "uper", SUPER);
+            case 't':
+                if (current - start > 1) {
+                    switch (sourceCode.charAt(start + 1)) {
+                        case 'h':
+                            return checkKeyword(2, "is", THIS);
+                        case 'r':
+                            return checkKeyword(2, "ue", TRUE);
+                    }
+                }
+                break;
+            case 'v':
+                return checkKeyword(1, "ar", VAR);
+            case 'w':
+                return checkKeyword(1, "hile", WHILE);
+        }
+
+        return IDENTIFIER;
+    }
+
+    private Type checkKeyword(int offset, String rest, Type keyword) {
+        if (current - start != offset + rest.length()) return IDENTIFIER;
+
+        for (var i = 0; i < rest.length(); i++) {
+            if (sourceCode.charAt(start + offset + i) != rest.charAt(i)) return IDENTIFIER;
+        }
 
-        var type = keywords.get(text);
-        if (type == null) type = IDENTIFIER;
-        addToken(type);
+        return keyword;
     }
 
     private boolean isAlphaNumeric(char c) {
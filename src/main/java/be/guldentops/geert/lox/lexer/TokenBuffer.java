@@ -0,0 +1,149 @@
+package be.guldentops.geert.lox.lexer;
+
+import be.guldentops.geert.lox.lexer.Token.Type;
+
+import java.util.Arrays;
+
+import static be.guldentops.geert.lox.lexer.Token.Type.NUMBER;
+import static be.guldentops.geert.lox.lexer.Token.Type.STRING;
+
+/**
+ * The tokens of a script stored as parallel arrays of type, offset, length and line instead of as {@link Token} objects.
+ * <p>
+ * Lexemes and literals are only created when asked for, tokens with a fixed lexeme (punctuation and keywords) never
+ * create one.
+ */
+public final class TokenBuffer {
+
+    private static final Type[] TYPES = Type.values();
+
+    private final CharSequence sourceCode;
+
+    private int[] types = new int[256];
+    private int[] starts = new int[256];
+    private int[] lengths = new int[256];
+    private int[] lines = new int[256];
+    private int size = 0;
+
+    TokenBuffer(CharSequence sourceCode) {
+        this.sourceCode = sourceCode;
+    }
+
+    void add(Type type, int start, int end, int line) {
+        ensureCapacity(size + 1);
+
+        types[size] = type.ordinal();
+        starts[size] = start;
+        lengths[size] = end - start;
+        lines[size] = line;
+        size++;
+    }
+
+    /**
+     * Appends the first count tokens of the other buffer, which has to hold tokens of the same source code.
+     */
+    void addAll(TokenBuffer tokens, int count) {
+        ensureCapacity(size + count);
+
+        System.arraycopy(tokens.types, 0, types, size, count);
+        System.arraycopy(tokens.starts, 0, starts, size, count);
+        System.arraycopy(tokens.lengths, 0, lengths, size, count);
+        System.arraycopy(tokens.lines, 0, lines, size, count);
+        size += count;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= types.length) return;
+
+        var newCapacity = Math.max(capacity, 2 * types.length);
+        types = Arrays.copyOf(types, newCapacity);
+        starts = Arrays.copyOf(starts, newCapacity);
+        lengths = Arrays.copyOf(lengths, newCapacity);
+        lines = Arrays.copyOf(lines, newCapacity);
+    }
+
+    /**
+     * @return the number of tokens, including the closing EOF token.
+     */
+    public int size() {
+        return size;
+    }
+
+    public Type type(int index) {
+        return TYPES[types[index]];
+    }
+
+    public int line(int index) {
+        return lines[index];
+    }
+
+    /**
+     * @return the offset of the first character of the token in the source code.
+     */
+    public int start(int index) {
+        return starts[index];
+    }
+
+    /**
+     * @return the offset right after the last character of the token in the source code.
+     */
+    public int end(int index) {
+        return starts[index] + lengths[index];
+    }
+
+    public String lexeme(int index) {
+        return lexemeOf(sourceCode, type(index), starts[index], starts[index] + lengths[index]);
+    }
+
+    public Object literal(int index) {
+        return literalOf(sourceCode, type(index), starts[index], starts[index] + lengths[index]);
+    }
+
+    public Token token(int index) {
+        return new Token(type(index), lexeme(index), literal(index), line(index));
+    }
+
+    /**
+     * @return the tokens of this buffer, created one at a time while they are being pulled. Their positions are their
+     * offsets in the source code.
+     */
+    public TokenSource tokenSource() {
+        return new TokenSource() {
+
+            private int current = 0;
+            private int last = 0;
+
+            @Override
+            public Token nextToken() {
+                last = current;
+                var token = token(current);
+                if (current < size - 1) current++;
+
+                return token;
+            }
+
+            @Override
+            public int positionOfLastToken() {
+                return starts[last];
+            }
+
+            @Override
+            public TokenSource range(int from, int to, int line) {
+                return new SimpleScanner(sourceCode, from, to, line, false);
+            }
+        };
+    }
+
+    static String lexemeOf(CharSequence sourceCode, Type type, int start, int end) {
+        if (type.lexeme() != null) return type.lexeme();
+
+        return sourceCode.subSequence(start, end).toString();
+    }
+
+    static Object literalOf(CharSequence sourceCode, Type type, int start, int end) {
+        if (type == STRING) return sourceCode.subSequence(start + 1, end - 1).toString(); // Trim the surrounding quotes.
+        if (type == NUMBER) return Double.parseDouble(sourceCode.subSequence(start, end).toString());
+
+        return null;
+    }
+}
@@ -0,0 +1,34 @@
+package be.guldentops.geert.lox.lexer;
+
+import java.util.List;
+
+/**
+ * Hands out tokens one at a time so the parser does not need every token of a script in memory.
+ */
+public interface TokenSource {
+
+    static TokenSource of(List<Token> tokens) {
+        return new ListTokenSource(tokens);
+    }
+
+    /**
+     * @return the next token, once the source is exhausted an EOF token (every time it is asked for another one).
+     */
+    Token nextToken();
+
+    /**
+     * @return where the token {@link #nextToken()} returned last starts, a position only {@link #range} of this source
+     * understands (e.g. an offset in the source code).
+     */
+    int positionOfLastToken();
+
+    /**
+     * Hands out the tokens from one position up to another again, e.g. to parse the body of a function that was only
+     * skimmed, without keeping a copy of them around in the meantime.
+     *
+     * @param from the position of the first token (inclusive).
+     * @param to   the position of the token after the last one (exclusive), the EOF token at the end is on its line.
+     * @param line the line of the first token.
+     */
+    TokenSource range(int from, int to, int line);
+}
@@ -0,0 +1,65 @@
+package be.guldentops.geert.lox.lexer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * UTF-8 encoded source code that is scanned byte by byte instead of being decoded up front.
+ * <p>
+ * Lox's syntax is ASCII, so every byte can be handed to the scanner as a character:
+ * the bytes of a multi-byte character are never mistaken for part of the syntax since they are all {@code >= 0x80}.
+ * Only the lexemes the scanner cuts out of the source, i.e. {@link #subSequence(int, int)}, are decoded.
+ * As a consequence {@link #length()} and the indices are in bytes, not in characters.
+ */
+public final class Utf8Source implements CharSequence {
+
+    private final ByteBuffer bytes;
+
+    public Utf8Source(ByteBuffer bytes) {
+        this.bytes = bytes;
+    }
+
+    public Utf8Source(byte[] bytes) {
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Maps the file into memory, so its content does not have to be copied onto the heap.
+     */
+    public static Utf8Source map(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, READ)) {
+            return new Utf8Source(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    @Override
+    public int length() {
+        return bytes.limit();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (bytes.get(index) & 0xFF);
+    }
+
+    /**
+     * @return the decoded characters between both byte offsets.
+     */
+    @Override
+    public String subSequence(int start, int end) {
+        var lexeme = new byte[end - start];
+        bytes.get(start, lexeme);
+
+        return new String(lexeme, UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length());
+    }
+}
@@ -0,0 +1,211 @@
+package be.guldentops.geert.lox.parser;
+
+import be.guldentops.geert.lox.error.ErrorReporter;
+import be.guldentops.geert.lox.error.SyntaxError;
+import be.guldentops.geert.lox.grammar.SourceMap;
+import be.guldentops.geert.lox.grammar.Statement;
+import be.guldentops.geert.lox.lexer.Token;
+import be.guldentops.geert.lox.lexer.Token.Type;
+import be.guldentops.geert.lox.lexer.TokenSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static be.guldentops.geert.lox.lexer.Token.Type.EOF;
+import static be.guldentops.geert.lox.lexer.Token.Type.SEMICOLON;
+
+/**
+ * The token handling, error reporting and operator precedences every Lox parser shares.
+ */
+abstract class AbstractParser implements Parser {
+
+    static class ParseError extends RuntimeException {
+    }
+
+    /**
+     * Operators from the loosest to the tightest binding.
+     */
+    enum Precedence {
+        NONE,
+        ASSIGNMENT, // =
+        OR,         // or
+        AND,        // and
+        EQUALITY,   // == !=
+        COMPARISON, // < > <= >=
+        TERM,       // + -
+        FACTOR,     // * /
+        UNARY,      // ! -
+        CALL;       // . ()
+
+        private static final Precedence[] PRECEDENCES = values();
+
+        Precedence next() {
+            return PRECEDENCES[ordinal() + 1];
+        }
+    }
+
+    // The parser never looks further ahead than the next token, so it only holds on to that one and the previous one.
+    private final TokenSource tokens;
+    private Token previous;
+    private Token current;
+
+    private final SourceMap sourceMap;
+
+    private final List<ErrorReporter> errorReporters = new ArrayList<>();
+    private boolean reportedError;
+
+    AbstractParser(TokenSource tokens, SourceMap sourceMap) {
+        this.tokens = tokens;
+        this.sourceMap = sourceMap;
+    }
+
+    @Override
+    public void addErrorReporter(ErrorReporter errorReporter) {
+        this.errorReporters.add(errorReporter);
+    }
+
+    /**
+     * Makes the other parser report its errors wherever this one does.
+     */
+    void shareErrorReportersWith(Parser parser) {
+        for (var errorReporter : errorReporters) {
+            parser.addErrorReporter(errorReporter);
+        }
+    }
+
+    SourceMap sourceMap() {
+        return sourceMap;
+    }
+
+    boolean reportedError() {
+        return reportedError;
+    }
+
+    void start() {
+        current = tokens.nextToken();
+    }
+
+    /**
+     * @return the position of the next token in the token source, which is the last token the parser pulled from it.
+     */
+    int positionOfNextToken() {
+        return tokens.positionOfLastToken();
+    }
+
+    TokenSource tokensBetween(int from, int to, int line) {
+        return tokens.range(from, to, line);
+    }
+
+    <T extends Statement> T withLine(int line, T statement) {
+        sourceMap.record(statement, line);
+        return statement;
+    }
+
+    Precedence infixPrecedence(Type type) {
+        switch (type) {
+            case EQUAL:
+                return Precedence.ASSIGNMENT;
+            case OR:
+                return Precedence.OR;
+            case AND:
+                return Precedence.AND;
+            case BANG_EQUAL:
+            case EQUAL_EQUAL:
+                return Precedence.EQUALITY;
+            case GREATER:
+            case GREATER_EQUAL:
+            case LESS:
+            case LESS_EQUAL:
+                return Precedence.COMPARISON;
+            case MINUS:
+            case PLUS:
+                return Precedence.TERM;
+            case SLASH:
+            case STAR:
+                return Precedence.FACTOR;
+            case LEFT_PAREN:
+            case DOT:
+                return Precedence.CALL;
+            default:
+                return Precedence.NONE;
+        }
+    }
+
+    Token consume(Type type, String message) {
+        if (check(type)) return advance();
+
+        throw error(peek(), message);
+    }
+
+    ParseError error(Token token, String message) {
+        reportError(token, message);
+        return new ParseError();
+    }
+
+    void reportError(Token token, String message) {
+        reportedError = true;
+
+        for (var errorReporter : errorReporters) {
+            if (token.type() == EOF) {
+                errorReporter.handle(new SyntaxError(token.line(), "end", message));
+            } else {
+                errorReporter.handle(new SyntaxError(token.line(), token.lexeme(), message));
+            }
+        }
+    }
+
+    void synchronize() {
+        advance();
+
+        while (!isAtEnd()) {
+            if (previous().type() == SEMICOLON) return;
+
+            switch (peek().type()) {
+                case CLASS:
+                case FUN:
+                case VAR:
+                case FOR:
+                case IF:
+                case WHILE:
+                case PRINT:
+                case RETURN:
+                    return;
+            }
+
+            advance();
+        }
+    }
+
+    boolean match(Type type) {
+        if (!check(type)) return false;
+
+        advance();
+        return true;
+    }
+
+    boolean check(Type type) {
+        if (isAtEnd()) return false;
+        return peek().type() == type;
+    }
+
+    Token peek() {
+        return current;
+    }
+
+    boolean isAtEnd() {
+        return peek().type() == EOF;
+    }
+
+    Token advance() {
+        if (!isAtEnd()) {
+            previous = current;
+            current = tokens.nextToken();
+        }
+
+        return previous();
+    }
+
+    Token previous() {
+        return previous;
+    }
+}
@@ -0,0 +1,516 @@
+package be.guldentops.geert.lox.parser;
+
+import be.guldentops.geert.lox.grammar.Expression;
+import be.guldentops.geert.lox.grammar.SourceMap;
+import be.guldentops.geert.lox.grammar.Statement;
+import be.guldentops.geert.lox.lexer.Token;
+import be.guldentops.geert.lox.lexer.TokenSource;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static be.guldentops.geert.lox.lexer.Token.Type.CLASS;
+import static be.guldentops.geert.lox.lexer.Token.Type.COMMA;
+import static be.guldentops.geert.lox.lexer.Token.Type.DOT;
+import static be.guldentops.geert.lox.lexer.Token.Type.ELSE;
+import static be.guldentops.geert.lox.lexer.Token.Type.EQUAL;
+import static be.guldentops.geert.lox.lexer.Token.Type.FOR;
+import static be.guldentops.geert.lox.lexer.Token.Type.FUN;
+import static be.guldentops.geert.lox.lexer.Token.Type.IDENTIFIER;
+import static be.guldentops.geert.lox.lexer.Token.Type.IF;
+import static be.guldentops.geert.lox.lexer.Token.Type.LEFT_BRACE;
+import static be.guldentops.geert.lox.lexer.Token.Type.LEFT_PAREN;
+import static be.guldentops.geert.lox.lexer.Token.Type.LESS;
+import static be.guldentops.geert.lox.lexer.Token.Type.PRINT;
+import static be.guldentops.geert.lox.lexer.Token.Type.RETURN;
+import static be.guldentops.geert.lox.lexer.Token.Type.RIGHT_BRACE;
+import static be.guldentops.geert.lox.lexer.Token.Type.RIGHT_PAREN;
+import static be.guldentops.geert.lox.lexer.Token.Type.SEMICOLON;
+import static be.guldentops.geert.lox.lexer.Token.Type.VAR;
+import static be.guldentops.geert.lox.lexer.Token.Type.WHILE;
+
+/**
+ * Parses the same grammar into the same trees as the {@link RecursiveDescentParser}, without recursing on the Java stack.
+ * <p>
+ * Every point where the recursive descent parser would call itself instead pushes a continuation onto a work stack,
+ * the (sub)trees that have been parsed so far wait on a value stack for the continuation that combines them.
+ * The nesting depth is therefore only limited by the heap, a program that nests deeper than {@code maxDepth} pending
+ * continuations is rejected with a syntax error.
+ * <p>
+ * A sub-parse that can nest into itself again (a declaration inside a block, an operand) is always scheduled rather
+ * than called, and so is the continuation of a block, which keeps the Java stack depth bounded by the grammar instead
+ * of by the program (e.g. a class with many empty methods).
+ */
+class ExplicitStackParser extends AbstractParser {
+
+    static final int DEFAULT_MAX_DEPTH = 2_000_000;
+
+    private static class TooDeeplyNested extends RuntimeException {
+    }
+
+    private interface Task {
+
+        void run();
+    }
+
+    /**
+     * Marks where a declaration starts, a syntax error inside it discards everything that was pushed since.
+     */
+    private record DeclarationBoundary(int values) implements Task {
+
+        @Override
+        public void run() {
+        }
+    }
+
+    private final int maxDepth;
+
+    private final Deque<Task> work = new ArrayDeque<>();
+    // Not an ArrayDeque, since statements that could not be parsed are null.
+    private final List<Object> values = new ArrayList<>();
+
+    ExplicitStackParser(TokenSource tokens, SourceMap sourceMap, int maxDepth) {
+        super(tokens, sourceMap);
+        this.maxDepth = maxDepth;
+    }
+
+    @Override
+    public List<Statement> parse() {
+        start();
+
+        var statements = new ArrayList<Statement>();
+        try {
+            while (!isAtEnd()) {
+                schedule(this::declaration);
+                run();
+                statements.add((Statement) pop());
+            }
+        } catch (TooDeeplyNested error) {
+            work.clear();
+            values.clear();
+        }
+
+        return statements;
+    }
+
+    private void run() {
+        while (!work.isEmpty()) {
+            try {
+                work.pop().run();
+            } catch (ParseError error) {
+                recover();
+            }
+        }
+    }
+
+    private void recover() {
+        Task task;
+        do {
+            task = work.pop();
+        } while (!(task instanceof DeclarationBoundary));
+
+        var boundary = (DeclarationBoundary) task;
+        values.subList(boundary.values(), values.size()).clear();
+
+        synchronize();
+        push(null);
+    }
+
+    private void schedule(Task task) {
+        if (work.size() >= maxDepth) {
+            reportError(peek(), "program is nested too deeply.");
+            throw new TooDeeplyNested();
+        }
+
+        work.push(task);
+    }
+
+    private void push(Object value) {
+        values.add(value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T pop() {
+        return (T) values.remove(values.size() - 1);
+    }
+
+    private void declaration() {
+        work.push(new DeclarationBoundary(values.size()));
+
+        var line = peek().line();
+        if (match(CLASS)) {
+            classDeclaration(line);
+        } else if (match(FUN)) {
+            function("function", function -> push(withLine(line, function)));
+        } else if (match(VAR)) {
+            variableDeclaration(line);
+        } else {
+            statement();
+        }
+    }
+
+    private void classDeclaration(int line) {
+        Token name = consume(IDENTIFIER, "expect class name.");
+
+        Expression.Variable superclass = null;
+        if (match(LESS)) {
+            consume(IDENTIFIER, "expected super class name.");
+            superclass = new Expression.Variable(previous());
+        }
+
+        consume(LEFT_BRACE, "expect '{' before class body.");
+
+        var superclassVariable = superclass;
+        methods(new ArrayList<>(), methods -> {
+            consume(RIGHT_BRACE, "expect '}' after class body.");
+            push(withLine(line, new Statement.Class(name, superclassVariable, methods)));
+        });
+    }
+
+    private void methods(List<Statement.Function> methods, Consumer<List<Statement.Function>> then) {
+        if (!check(RIGHT_BRACE) && !isAtEnd()) {
+            function("method", method -> {
+                methods.add(method);
+                methods(methods, then);
+            });
+        } else {
+            then.accept(methods);
+        }
+    }
+
+    private void function(String function, Consumer<Statement.Function> then) {
+        Token name = consume(IDENTIFIER, "expect " + function + " name.");
+
+        consume(LEFT_PAREN, "expect '(' after " + function + " name.");
+        List<Token> parameters = new ArrayList<>();
+        if (!check(RIGHT_PAREN)) {
+            do {
+                if (parameters.size() >= 8) {
+                    reportError(peek(), "cannot have more than 8 parameters.");
+                }
+
+                parameters.add(consume(IDENTIFIER, "expect parameter name."));
+            } while (match(COMMA));
+        }
+        consume(RIGHT_PAREN, "expect ')' after parameters.");
+
+        consume(LEFT_BRACE, "expect '{' before " + function + " body.");
+        block(body -> then.accept(new Statement.Function(name, parameters, body)));
+    }
+
+    private void variableDeclaration(int line) {
+        Token name = consume(IDENTIFIER, "expected variable name");
+
+        if (match(EQUAL)) {
+            schedule(() -> finishVariableDeclaration(line, name, pop()));
+            expression();
+        } else {
+            finishVariableDeclaration(line, name, null);
+        }
+    }
+
+    private void finishVariableDeclaration(int line, Token name, Expression initializer) {
+        consume(SEMICOLON, "expect ';' after variable declaration.");
+        push(withLine(line, new Statement.Variable(name, initializer)));
+    }
+
+    private void statement() {
+        var line = peek().line();
+        if (match(FOR)) {
+            forStatement(line);
+        } else if (match(IF)) {
+            ifStatement(line);
+        } else if (match(PRINT)) {
+            printStatement(line);
+        } else if (match(RETURN)) {
+            returnStatement(line);
+        } else if (match(WHILE)) {
+            whileStatement(line);
+        } else if (match(LEFT_BRACE)) {
+            block(statements -> push(withLine(line, new Statement.Block(statements))));
+        } else {
+            expressionStatement(line);
+        }
+    }
+
+    private void returnStatement(int line) {
+        Token keyword = previous();
+        if (!check(SEMICOLON)) {
+            schedule(() -> finishReturnStatement(line, keyword, pop()));
+            expression();
+        } else {
+            finishReturnStatement(line, keyword, null);
+        }
+    }
+
+    private void finishReturnStatement(int line, Token keyword, Expression value) {
+        consume(SEMICOLON, "expect ';' after return value.");
+        push(withLine(line, new Statement.Return(keyword, value)));
+    }
+
+    private void forStatement(int line) {
+        consume(LEFT_PAREN, "expect '(' after 'for'.");
+
+        if (match(SEMICOLON)) {
+            forCondition(line, null);
+        } else {
+            schedule(() -> forCondition(line, pop()));
+            if (match(VAR)) {
+                variableDeclaration(line);
+            } else {
+                expressionStatement(line);
+            }
+        }
+    }
+
+    private void forCondition(int line, Statement initializer) {
+        if (!check(SEMICOLON)) {
+            schedule(() -> forIncrement(line, initializer, pop()));
+            expression();
+        } else {
+            forIncrement(line, initializer, null);
+        }
+    }
+
+    private void forIncrement(int line, Statement initializer, Expression condition) {
+        consume(SEMICOLON, "expect ';' after loop condition.");
+
+        if (!check(RIGHT_PAREN)) {
+            schedule(() -> forBody(line, initializer, condition, pop()));
+            expression();
+        } else {
+            forBody(line, initializer, condition, null);
+        }
+    }
+
+    private void forBody(int line, Statement initializer, Expression condition, Expression increment) {
+        consume(RIGHT_PAREN, "expect ')' after 'for increment'.");
+
+        schedule(() -> {
+            Statement body = pop();
+
+            if (increment != null) {
+                body = withLine(line, new Statement.Block(List.of(body, withLine(line, new Statement.Expression(increment)))));
+            }
+
+            body = withLine(line, new Statement.While(condition != null ? condition : new Expression.Literal(true), body));
+
+            if (initializer != null) {
+                body = new Statement.Block(List.of(initializer, body));
+            }
+
+            push(withLine(line, body));
+        });
+        statement();
+    }
+
+    private void ifStatement(int line) {
+        consume(LEFT_PAREN, "expect '(' after 'if'.");
+
+        schedule(() -> {
+            Expression condition = pop();
+            consume(RIGHT_PAREN, "expect ')' after if condition.");
+
+            schedule(() -> {
+                Statement thenBranch = pop();
+                if (match(ELSE)) {
+                    schedule(() -> push(withLine(line, new Statement.If(condition, thenBranch, pop()))));
+                    statement();
+                } else {
+                    push(withLine(line, new Statement.If(condition, thenBranch, null)));
+                }
+            });
+            statement();
+        });
+        expression();
+    }
+
+    private void printStatement(int line) {
+        schedule(() -> {
+            Expression expression = pop();
+            consume(SEMICOLON, "expect ';' after value.");
+            push(withLine(line, new Statement.Print(expression)));
+        });
+        expression();
+    }
+
+    private void whileStatement(int line) {
+        consume(LEFT_PAREN, "expect '(' after 'while'.");
+
+        schedule(() -> {
+            Expression condition = pop();
+            consume(RIGHT_PAREN, "expect ')' after while condition.");
+
+            schedule(() -> push(withLine(line, new Statement.While(condition, pop()))));
+            statement();
+        });
+        expression();
+    }
+
+    private void block(Consumer<List<Statement>> then) {
+        blockStatements(new ArrayList<>(), then);
+    }
+
+    private void blockStatements(List<Statement> statements, Consumer<List<Statement>> then) {
+        if (!check(RIGHT_BRACE) && !isAtEnd()) {
+            schedule(() -> {
+                statements.add(pop());
+                blockStatements(statements, then);
+            });
+            schedule(this::declaration);
+        } else {
+            consume(RIGHT_BRACE, "expect '}' after block.");
+            // Scheduled, an empty block finishes right away and its continuation may parse the next method or block.
+            schedule(() -> then.accept(statements));
+        }
+    }
+
+    private void expressionStatement(int line) {
+        schedule(() -> {
+            Expression expression = pop();
+            consume(SEMICOLON, "expect ';' after value.");
+            push(withLine(line, new Statement.Expression(expression)));
+        });
+        expression();
+    }
+
+    private void expression() {
+        parsePrecedence(Precedence.ASSIGNMENT);
+    }
+
+    private void parsePrecedence(Precedence precedence) {
+        schedule(() -> infixes(precedence));
+        schedule(this::prefix);
+    }
+
+    private void infixes(Precedence precedence) {
+        if (precedence.compareTo(infixPrecedence(peek().type())) <= 0) {
+            var operator = advance();
+            Expression left = pop();
+
+            schedule(() -> infixes(precedence));
+            infix(operator, left);
+        }
+    }
+
+    private void prefix() {
+        switch (peek().type()) {
+            case BANG:
+            case MINUS:
+                Token operator = advance();
+                schedule(() -> push(new Expression.Unary(operator, pop())));
+                parsePrecedence(Precedence.UNARY);
+                break;
+            case TRUE:
+                advance();
+                push(new Expression.Literal(true));
+                break;
+            case FALSE:
+                advance();
+                push(new Expression.Literal(false));
+                break;
+            case NIL:
+                advance();
+                push(new Expression.Literal(null));
+                break;
+            case NUMBER:
+            case STRING:
+                push(new Expression.Literal(advance().literal()));
+                break;
+            case LEFT_PAREN:
+                advance();
+                schedule(() -> {
+                    Expression expression = pop();
+                    consume(RIGHT_PAREN, "expect ')' after expression.");
+                    push(new Expression.Grouping(expression));
+                });
+                expression();
+                break;
+            case THIS:
+                push(new Expression.This(advance()));
+                break;
+            case SUPER:
+                Token keyword = advance();
+                consume(DOT, "expect '.' after 'super'.");
+                Token method = consume(IDENTIFIER, "expect superclass method name.");
+                push(new Expression.Super(keyword, method));
+                break;
+            case IDENTIFIER:
+                push(new Expression.Variable(advance()));
+                break;
+            default:
+                throw error(peek(), "expect expression.");
+        }
+    }
+
+    private void infix(Token operator, Expression left) {
+        switch (operator.type()) {
+            case EQUAL:
+                schedule(() -> assignment(operator, left, pop()));
+                parsePrecedence(Precedence.ASSIGNMENT);
+                break;
+            case OR:
+            case AND:
+                schedule(() -> push(new Expression.Logical(left, operator, pop())));
+                parsePrecedence(infixPrecedence(operator.type()).next());
+                break;
+            case LEFT_PAREN:
+                finishCall(left);
+                break;
+            case DOT:
+                Token name = consume(IDENTIFIER, "expect property name after '.'.");
+                push(new Expression.Get(left, name));
+                break;
+            default:
+                schedule(() -> push(new Expression.Binary(left, operator, pop())));
+                parsePrecedence(infixPrecedence(operator.type()).next());
+                break;
+        }
+    }
+
+    private void assignment(Token equals, Expression target, Expression value) {
+        if (target instanceof Expression.Variable variable) {
+            Token name = variable.name();
+            push(new Expression.Assign(name, value));
+        } else if (target instanceof Expression.Get get) {
+            push(new Expression.Set(get.object(), get.name(), value));
+        } else {
+            reportError(equals, "invalid assignment target.");
+            push(target);
+        }
+    }
+
+    private void finishCall(Expression callee) {
+        var arguments = new ArrayList<Expression>();
+
+        if (!check(RIGHT_PAREN)) {
+            argument(callee, arguments);
+        } else {
+            closeCall(callee, arguments);
+        }
+    }
+
+    private void argument(Expression callee, List<Expression> arguments) {
+        if (arguments.size() >= 8) {
+            reportError(peek(), "cannot have more than 8 arguments.");
+        }
+
+        schedule(() -> {
+            arguments.add(pop());
+            if (match(COMMA)) {
+                argument(callee, arguments);
+            } else {
+                closeCall(callee, arguments);
+            }
+        });
+        expression();
+    }
+
+    private void closeCall(Expression callee, List<Expression> arguments) {
+        Token paren = consume(RIGHT_PAREN, "expect ')' after arguments.");
+        push(new Expression.Call(callee, paren, arguments));
+    }
+}
@@ -1,15 +1,48 @@
 package be.guldentops.geert.lox.parser;
 
 import be.guldentops.geert.lox.error.CanReportErrors;
+import be.guldentops.geert.lox.grammar.SourceMap;
 import be.guldentops.geert.lox.grammar.Statement;
 import be.guldentops.geert.lox.lexer.Token;
+import be.guldentops.geert.lox.lexer.TokenSource;
 
 import java.util.List;
 
 public interface Parser extends CanReportErrors {
 
     static Parser createDefault(List<Token> tokens) {
-        return new RecursiveDescentParser(tokens);
+        return createDefault(tokens, new SourceMap());
+    }
+
+    static Parser createDefault(List<Token> tokens, SourceMap sourceMap) {
+        return new RecursiveDescentParser(tokens, sourceMap);
+    }
+
+    /**
+     * The parser pulls its tokens from the source while it parses, e.g. straight from a {@link be.guldentops.geert.lox.lexer.Scanner}.
+     */
+    static Parser createDefault(TokenSource tokens, SourceMap sourceMap) {
+        return new RecursiveDescentParser(tokens, sourceMap);
+    }
+
+    /**
+     * Only skims the bodies of functions and methods, they are parsed the first time they are needed, see
+     * {@link be.guldentops.geert.lox.grammar.DeferredBody}. Syntax errors in a body are only reported by then.
+     */
+    static Parser createDeferringFunctionBodies(TokenSource tokens, SourceMap sourceMap) {
+        return new RecursiveDescentParser(tokens, sourceMap, true);
+    }
+
+    /**
+     * Produces the same trees as the default parser, but keeps its own work stack so that arbitrarily deep nesting
+     * does not overflow the Java stack.
+     * <p>
+     * Meant for tools that only need the tree (e.g. to format or index a script), running a script does not use it:
+     * the resolver and the interpreter recurse over the tree as well, so a program nested too deeply for the default
+     * parser would overflow the stack right after parsing anyway.
+     */
+    static Parser createExplicitStack(TokenSource tokens, SourceMap sourceMap) {
+        return new ExplicitStackParser(tokens, sourceMap, ExplicitStackParser.DEFAULT_MAX_DEPTH);
     }
 
     List<Statement> parse();
@@ -1,79 +1,60 @@
 package be.guldentops.geert.lox.parser;
 
-import be.guldentops.geert.lox.error.ErrorReporter;
-import be.guldentops.geert.lox.error.SyntaxError;
+import be.guldentops.geert.lox.grammar.DeferredBody;
 import be.guldentops.geert.lox.grammar.Expression;
+import be.guldentops.geert.lox.grammar.SourceMap;
 import be.guldentops.geert.lox.grammar.Statement;
 import be.guldentops.geert.lox.lexer.Token;
-import be.guldentops.geert.lox.lexer.Token.Type;
+import be.guldentops.geert.lox.lexer.TokenSource;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.function.Supplier;
 
-import static be.guldentops.geert.lox.lexer.Token.Type.AND;
-import static be.guldentops.geert.lox.lexer.Token.Type.BANG;
-import static be.guldentops.geert.lox.lexer.Token.Type.BANG_EQUAL;
 import static be.guldentops.geert.lox.lexer.Token.Type.CLASS;
 import static be.guldentops.geert.lox.lexer.Token.Type.COMMA;
 import static be.guldentops.geert.lox.lexer.Token.Type.DOT;
 import static be.guldentops.geert.lox.lexer.Token.Type.ELSE;
 import static be.guldentops.geert.lox.lexer.Token.Type.EOF;
 import static be.guldentops.geert.lox.lexer.Token.Type.EQUAL;
-import static be.guldentops.geert.lox.lexer.Token.Type.EQUAL_EQUAL;
-import static be.guldentops.geert.lox.lexer.Token.Type.FALSE;
 import static be.guldentops.geert.lox.lexer.Token.Type.FOR;
 import static be.guldentops.geert.lox.lexer.Token.Type.FUN;
-import static be.guldentops.geert.lox.lexer.Token.Type.GREATER;
-import static be.guldentops.geert.lox.lexer.Token.Type.GREATER_EQUAL;
 import static be.guldentops.geert.lox.lexer.Token.Type.IDENTIFIER;
 import static be.guldentops.geert.lox.lexer.Token.Type.IF;
 import static be.guldentops.geert.lox.lexer.Token.Type.LEFT_BRACE;
 import static be.guldentops.geert.lox.lexer.Token.Type.LEFT_PAREN;
 import static be.guldentops.geert.lox.lexer.Token.Type.LESS;
-import static be.guldentops.geert.lox.lexer.Token.Type.LESS_EQUAL;
-import static be.guldentops.geert.lox.lexer.Token.Type.MINUS;
-import static be.guldentops.geert.lox.lexer.Token.Type.NIL;
-import static be.guldentops.geert.lox.lexer.Token.Type.NUMBER;
-import static be.guldentops.geert.lox.lexer.Token.Type.OR;
-import static be.guldentops.geert.lox.lexer.Token.Type.PLUS;
 import static be.guldentops.geert.lox.lexer.Token.Type.PRINT;
 import static be.guldentops.geert.lox.lexer.Token.Type.RETURN;
 import static be.guldentops.geert.lox.lexer.Token.Type.RIGHT_BRACE;
 import static be.guldentops.geert.lox.lexer.Token.Type.RIGHT_PAREN;
 import static be.guldentops.geert.lox.lexer.Token.Type.SEMICOLON;
-import static be.guldentops.geert.lox.lexer.Token.Type.SLASH;
-import static be.guldentops.geert.lox.lexer.Token.Type.STAR;
-import static be.guldentops.geert.lox.lexer.Token.Type.STRING;
-import static be.guldentops.geert.lox.lexer.Token.Type.SUPER;
-import static be.guldentops.geert.lox.lexer.Token.Type.THIS;
-import static be.guldentops.geert.lox.lexer.Token.Type.TRUE;
 import static be.guldentops.geert.lox.lexer.Token.Type.VAR;
 import static be.guldentops.geert.lox.lexer.Token.Type.WHILE;
 
-class RecursiveDescentParser implements Parser {
+class RecursiveDescentParser extends AbstractParser {
 
-    private static class ParseError extends RuntimeException {
-    }
-
-    private final List<Token> tokens;
-    private int current = 0;
+    private final boolean deferFunctionBodies;
 
-    private final List<ErrorReporter> errorReporters = new ArrayList<>();
+    RecursiveDescentParser(List<Token> tokens, SourceMap sourceMap) {
+        this(TokenSource.of(tokens), sourceMap);
+    }
 
-    RecursiveDescentParser(List<Token> tokens) {
-        this.tokens = tokens;
+    RecursiveDescentParser(TokenSource tokens, SourceMap sourceMap) {
+        this(tokens, sourceMap, false);
     }
 
-    @Override
-    public void addErrorReporter(ErrorReporter errorReporter) {
-        this.errorReporters.add(errorReporter);
+    /**
+     * @param deferFunctionBodies only skim the bodies of functions and methods, they are parsed when they are first
+     *                            needed (see {@link DeferredBody}).
+     */
+    RecursiveDescentParser(TokenSource tokens, SourceMap sourceMap, boolean deferFunctionBodies) {
+        super(tokens, sourceMap);
+        this.deferFunctionBodies = deferFunctionBodies;
     }
 
     @Override
     public List<Statement> parse() {
-        if (tokens == null || tokens.isEmpty()) return Collections.emptyList();
+        start();
 
         return program();
     }
@@ -89,9 +70,10 @@ class RecursiveDescentParser implements Parser {
 
     private Statement declaration() {
         try {
-            if (match(CLASS)) return classDeclaration();
-            if (match(FUN)) return function("function");
-            if (match(VAR)) return variableDeclaration();
+            var line = peek().line();
+            if (match(CLASS)) return withLine(line, classDeclaration());
+            if (match(FUN)) return withLine(line, function("function"));
+            if (match(VAR)) return withLine(line, variableDeclaration());
 
             return statement();
         } catch (ParseError error) {
@@ -138,10 +120,46 @@ class RecursiveDescentParser implements Parser {
         consume(RIGHT_PAREN, "expect ')' after parameters.");
 
         consume(LEFT_BRACE, "expect '{' before " + function + " body.");
-        List<Statement> body = block();
+        List<Statement> body = deferFunctionBodies ? skimBody() : block();
         return new Statement.Function(name, parameters, body);
     }
 
+    /**
+     * Only checks that the braces of the body are balanced and remembers where its tokens are, they are pulled from the
+     * token source again when the body is parsed.
+     */
+    private List<Statement> skimBody() {
+        var from = positionOfNextToken();
+        var line = peek().line();
+
+        var depth = 1;
+        while (!isAtEnd()) {
+            if (check(RIGHT_BRACE) && depth == 1) {
+                var to = positionOfNextToken();
+                advance();
+                return new DeferredBody(() -> parseBody(tokensBetween(from, to, line)));
+            }
+
+            var token = advance();
+            if (token.type() == LEFT_BRACE) {
+                depth++;
+            } else if (token.type() == RIGHT_BRACE) {
+                depth--;
+            }
+        }
+
+        throw error(peek(), "expect '}' after block.");
+    }
+
+    private List<Statement> parseBody(TokenSource tokens) {
+        var parser = new RecursiveDescentParser(tokens, sourceMap(), true);
+        shareErrorReportersWith(parser);
+
+        var statements = parser.parse();
+
+        return parser.reportedError() ? null : statements;
+    }
+
     private Statement variableDeclaration() {
         Token name = consume(IDENTIFIER, "expected variable name");
 
@@ -155,14 +173,15 @@ class RecursiveDescentParser implements Parser {
     }
 
     private Statement statement() {
-        if (match(FOR)) return forStatement();
-        if (match(IF)) return ifStatement();
-        if (match(PRINT)) return printStatement();
-        if (match(RETURN)) return returnStatement();
-        if (match(WHILE)) return whileStatement();
-        if (match(LEFT_BRACE)) return new Statement.Block(block());
-
-        return expressionStatement();
+        var line = peek().line();
+        if (match(FOR)) return withLine(line, forStatement());
+        if (match(IF)) return withLine(line, ifStatement());
+        if (match(PRINT)) return withLine(line, printStatement());
+        if (match(RETURN)) return withLine(line, returnStatement());
+        if (match(WHILE)) return withLine(line, whileStatement());
+        if (match(LEFT_BRACE)) return withLine(line, new Statement.Block(block()));
+
+        return withLine(line, expressionStatement());
     }
 
     private Statement returnStatement() {
@@ -177,15 +196,16 @@ class RecursiveDescentParser implements Parser {
     }
 
     private Statement forStatement() {
+        var line = previous().line();
         consume(LEFT_PAREN, "expect '(' after 'for'.");
 
         Statement initializer;
         if (match(SEMICOLON)) {
             initializer = null;
         } else if (match(VAR)) {
-            initializer = variableDeclaration();
+            initializer = withLine(line, variableDeclaration());
         } else {
-            initializer = expressionStatement();
+            initializer = withLine(line, expressionStatement());
         }
 
         Expression condition = null;
@@ -203,10 +223,10 @@ class RecursiveDescentParser implements Parser {
         Statement body = statement();
 
         if (increment != null) {
-            body = new Statement.Block(List.of(body, new Statement.Expression(increment)));
+            body = withLine(line, new Statement.Block(List.of(body, withLine(line, new Statement.Expression(increment)))));
         }
 
-        body = new Statement.While(condition != null ? condition : new Expression.Literal(true), body);
+        body = withLine(line, new Statement.While(condition != null ? condition : new Expression.Literal(true), body));
 
         if (initializer != null) {
             body = new Statement.Block(List.of(initializer, body));
@@ -261,95 +281,95 @@ class RecursiveDescentParser implements Parser {
         return new Statement.Expression(expression);
     }
 
+    /**
+     * Expressions are parsed by precedence climbing (a Pratt parser).
+     */
     private Expression expression() {
-        return assignment();
-    }
-
-    private Expression assignment() {
-        var expression = or();
-
-        if (match(EQUAL)) {
-            Token equals = previous();
-            Expression value = assignment();
-
-            if (expression instanceof Expression.Variable variable) {
-                Token name = variable.name();
-                return new Expression.Assign(name, value);
-            } else if (expression instanceof Expression.Get get) {
-                return new Expression.Set(get.object(), get.name(), value);
-            }
-
-            reportError(equals, "invalid assignment target.");
-        }
-
-        return expression;
+        return parsePrecedence(Precedence.ASSIGNMENT);
     }
 
-    private Expression or() {
-        var expression = and();
+    /**
+     * Parses an expression whose operators bind at least as tightly as the given precedence.
+     */
+    private Expression parsePrecedence(Precedence precedence) {
+        var expression = prefix();
 
-        while (match(OR)) {
-            Token operator = previous();
-            Expression right = and();
-            expression = new Expression.Logical(expression, operator, right);
+        while (precedence.compareTo(infixPrecedence(peek().type())) <= 0) {
+            expression = infix(advance(), expression);
         }
 
         return expression;
     }
 
-    private Expression and() {
-        var expression = equality();
-
-        while (match(AND)) {
-            Token operator = previous();
-            Expression right = equality();
-            expression = new Expression.Logical(expression, operator, right);
+    private Expression prefix() {
+        switch (peek().type()) {
+            case BANG:
+            case MINUS:
+                Token operator = advance();
+                Expression right = parsePrecedence(Precedence.UNARY);
+                return new Expression.Unary(operator, right);
+            case TRUE:
+                advance();
+                return new Expression.Literal(true);
+            case FALSE:
+                advance();
+                return new Expression.Literal(false);
+            case NIL:
+                advance();
+                return new Expression.Literal(null);
+            case NUMBER:
+            case STRING:
+                return new Expression.Literal(advance().literal());
+            case LEFT_PAREN:
+                advance();
+                var expression = expression();
+                consume(RIGHT_PAREN, "expect ')' after expression.");
+                return new Expression.Grouping(expression);
+            case THIS:
+                return new Expression.This(advance());
+            case SUPER:
+                Token keyword = advance();
+                consume(DOT, "expect '.' after 'super'.");
+                Token method = consume(IDENTIFIER, "expect superclass method name.");
+                return new Expression.Super(keyword, method);
+            case IDENTIFIER:
+                return new Expression.Variable(advance());
+            default:
+                throw error(peek(), "expect expression.");
         }
-
-        return expression;
-    }
-
-    private Expression equality() {
-        return parseLeftAssociativeBinaryExpressions(this::comparison, BANG_EQUAL, EQUAL_EQUAL);
-    }
-
-    private Expression comparison() {
-        return parseLeftAssociativeBinaryExpressions(this::addition, GREATER, GREATER_EQUAL, LESS, LESS_EQUAL);
-    }
-
-    private Expression addition() {
-        return parseLeftAssociativeBinaryExpressions(this::multiplication, MINUS, PLUS);
-    }
-
-    private Expression multiplication() {
-        return parseLeftAssociativeBinaryExpressions(this::unary, SLASH, STAR);
     }
 
-    private Expression unary() {
-        if (match(BANG, MINUS)) {
-            Token operator = previous();
-            Expression right = unary();
-            return new Expression.Unary(operator, right);
+    private Expression infix(Token operator, Expression left) {
+        switch (operator.type()) {
+            case EQUAL:
+                return assignment(operator, left);
+            case OR:
+            case AND:
+                return new Expression.Logical(left, operator, parsePrecedence(infixPrecedence(operator.type()).next()));
+            case LEFT_PAREN:
+                return finishCall(left);
+            case DOT:
+                Token name = consume(IDENTIFIER, "expect property name after '.'.");
+                return new Expression.Get(left, name);
+            default:
+                // Binary operators are left associative, so their right operand has to bind more tightly.
+                return new Expression.Binary(left, operator, parsePrecedence(infixPrecedence(operator.type()).next()));
         }
-
-        return call();
     }
 
-    private Expression call() {
-        var expression = primary();
+    private Expression assignment(Token equals, Expression target) {
+        // Assignment is right associative.
+        Expression value = parsePrecedence(Precedence.ASSIGNMENT);
 
-        while (true) {
-            if (match(LEFT_PAREN)) {
-                expression = finishCall(expression);
-            } else if (match(DOT)) {
-                Token name = consume(IDENTIFIER, "expect property name after '.'.");
-                expression = new Expression.Get(expression, name);
-            } else {
-                break;
-            }
+        if (target instanceof Expression.Variable variable) {
+            Token name = variable.name();
+            return new Expression.Assign(name, value);
+        } else if (target instanceof Expression.Get get) {
+            return new Expression.Set(get.object(), get.name(), value);
         }
 
-        return expression;
+        reportError(equals, "invalid assignment target.");
+        return target;
     }
 
     private Expression finishCall(Expression callee) {
@@ -368,119 +388,4 @@ class RecursiveDescentParser implements Parser {
 
         return new Expression.Call(callee, paren, arguments);
     }
-
-    private Expression primary() {
-        if (match(TRUE)) return new Expression.Literal(true);
-        if (match(FALSE)) return new Expression.Literal(false);
-        if (match(NIL)) return new Expression.Literal(null);
-
-        if (match(NUMBER, STRING)) return new Expression.Literal(previous().literal());
-
-        if (match(LEFT_PAREN)) {
-            var expression = expression();
-            consume(RIGHT_PAREN, "expect ')' after expression.");
-            return new Expression.Grouping(expression);
-        }
-
-        if (match(THIS)) return new Expression.This(previous());
-
-        if (match(SUPER)) {
-            Token keyword = previous();
-            consume(DOT, "expect '.' after 'super'.");
-            Token method = consume(IDENTIFIER, "expect superclass method name.");
-            return new Expression.Super(keyword, method);
-        }
-
-        if (match(IDENTIFIER)) return new Expression.Variable(previous());
-
-        throw error(peek(), "expect expression.");
-    }
-
-    private Token consume(Type type, String message) {
-        if (check(type)) return advance();
-
-        throw error(peek(), message);
-    }
-
-    private ParseError error(Token token, String message) {
-        reportError(token, message);
-        return new ParseError();
-    }
-
-    private void reportError(Token token, String message) {
-        for (var errorReporter : errorReporters) {
-            if (token.type() == EOF) {
-                errorReporter.handle(new SyntaxError(token.line(), "end", message));
-            } else {
-                errorReporter.handle(new SyntaxError(token.line(), token.lexeme(), message));
-            }
-        }
-    }
-
-    private void synchronize() {
-        advance();
-
-        while (!isAtEnd()) {
-            if (previous().type() == SEMICOLON) return;
-
-            switch (peek().type()) {
-                case CLASS:
-                case FUN:
-                case VAR:
-                case FOR:
-                case IF:
-                case WHILE:
-                case PRINT:
-                case RETURN:
-                    return;
-            }
-
-            advance();
-        }
-    }
-
-    private Expression parseLeftAssociativeBinaryExpressions(Supplier<Expression> operand, Type... types) {
-        var expression = operand.get();
-
-        while (match(types)) {
-            Token operator = previous();
-            Expression right = operand.get();
-            expression = new Expression.Binary(expression, operator, right);
-        }
-
-        return expression;
-    }
-
-    private boolean match(Type... types) {
-        for (var type : types) {
-            if (check(type)) {
-                advance();
-                return true;
-            }
-        }
-
-        return false;
-    }
-
-    private boolean check(Type type) {
-        if (isAtEnd()) return false;
-        return peek().type() == type;
-    }
-
-    private Token peek() {
-        return tokens.get(current);
-    }
-
-    private boolean isAtEnd() {
-        return peek().type() == EOF;
-    }
-
-    private Token advance() {
-        if (!isAtEnd()) current++;
-        return previous();
-    }
-
-    private Token previous() {
-        return tokens.get(current - 1);
-    }
 }
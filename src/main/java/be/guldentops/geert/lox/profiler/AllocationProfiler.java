@@ -0,0 +1,122 @@
+package be.guldentops.geert.lox.profiler;
+
+import be.guldentops.geert.lox.grammar.SourceMap;
+import be.guldentops.geert.lox.grammar.Statement;
+import be.guldentops.geert.lox.interpreter.Allocation;
+import be.guldentops.geert.lox.interpreter.ExecutionListener;
+
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Counts the runtime objects a Lox program allocates and attributes them to the innermost executing statement and function.
+ */
+public class AllocationProfiler implements ExecutionListener {
+
+    private static final String TOP_LEVEL = "<script>";
+
+    private final SourceMap sourceMap;
+
+    private final Deque<Integer> lines = new ArrayDeque<>();
+    private final Deque<String> functions = new ArrayDeque<>();
+
+    private final Map<Site, long[]> countsPerSite = new HashMap<>();
+    // Cached until the program enters or leaves a statement or call.
+    private long[] currentCounts;
+
+    public AllocationProfiler(SourceMap sourceMap) {
+        this.sourceMap = sourceMap;
+    }
+
+    @Override
+    public void enterStatement(Statement statement) {
+        lines.push(sourceMap.lineOf(statement));
+        currentCounts = null;
+    }
+
+    @Override
+    public void exitStatement(Statement statement) {
+        lines.pop();
+        currentCounts = null;
+    }
+
+    @Override
+    public void enterCall(String name) {
+        functions.push(name);
+        currentCounts = null;
+    }
+
+    @Override
+    public void exitCall(String name) {
+        functions.pop();
+        currentCounts = null;
+    }
+
+    @Override
+    public void allocated(Allocation allocation) {
+        if (currentCounts == null) {
+            var site = new Site(functions.isEmpty() ? TOP_LEVEL : functions.peek(), lines.isEmpty() ? 0 : lines.peek());
+            currentCounts = countsPerSite.computeIfAbsent(site, s -> new long[Allocation.values().length]);
+        }
+
+        currentCounts[allocation.ordinal()]++;
+    }
+
+    public long countOf(String function, int line, Allocation allocation) {
+        var counts = countsPerSite.get(new Site(function, line));
+        return counts == null ? 0 : counts[allocation.ordinal()];
+    }
+
+    public long estimatedBytesOf(String function, int line) {
+        var counts = countsPerSite.get(new Site(function, line));
+        return counts == null ? 0 : estimatedBytes(counts);
+    }
+
+    /**
+     * Prints the sites that allocated the most (estimated) bytes first.
+     */
+    public void report(int top, PrintStream out) {
+        out.println(String.format("%-24s %6s %14s %14s %12s %12s %16s", "Function", "Line", "Environments", "Bound methods", "Instances", "Numbers", "Estimated bytes"));
+
+        for (var site : topSites(top)) {
+            var counts = countsPerSite.get(site);
+            out.println(String.format("%-24s %6d %14d %14d %12d %12d %16d",
+                    site.function(),
+                    site.line(),
+                    counts[Allocation.ENVIRONMENT.ordinal()],
+                    counts[Allocation.BOUND_METHOD.ordinal()],
+                    counts[Allocation.INSTANCE.ordinal()],
+                    counts[Allocation.NUMBER.ordinal()],
+                    estimatedBytes(counts)
+            ));
+        }
+    }
+
+    private List<Site> topSites(int top) {
+        return countsPerSite.keySet().stream()
+                .sorted(Comparator.comparingLong((Site site) -> estimatedBytes(countsPerSite.get(site))).reversed()
+                        .thenComparing(Site::function)
+                        .thenComparingInt(Site::line))
+                .limit(top)
+                .collect(toList());
+    }
+
+    private long estimatedBytes(long[] counts) {
+        var bytes = 0L;
+        for (var allocation : Allocation.values()) {
+            bytes += counts[allocation.ordinal()] * allocation.estimatedBytes();
+        }
+
+        return bytes;
+    }
+
+    private record Site(String function, int line) {
+    }
+}
@@ -0,0 +1,120 @@
+package be.guldentops.geert.lox.profiler;
+
+import be.guldentops.geert.lox.grammar.SourceMap;
+import be.guldentops.geert.lox.grammar.Statement;
+import be.guldentops.geert.lox.interpreter.ExecutionListener;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Records, per source line, how many statements ran on it and how much time was spent there.
+ * <p>
+ * * Inclusive time: from entering a statement until leaving it, including nested statements and called functions.
+ * It is only counted for the outermost statement of a line so recursion does not count the same time twice.
+ * * Self time: inclusive time minus the time spent in directly nested statements.
+ */
+public class LineProfiler implements ExecutionListener {
+
+    private final SourceMap sourceMap;
+    private final LongSupplier clock;
+
+    private long[] counts = new long[64];
+    private long[] inclusiveTimes = new long[64];
+    private long[] selfTimes = new long[64];
+    private int[] activeStatements = new int[64];
+
+    // Stack of statements that are currently executing.
+    private int depth = 0;
+    private int[] frameLines = new int[64];
+    private long[] frameStarts = new long[64];
+    private long[] frameChildTimes = new long[64];
+
+    public LineProfiler(SourceMap sourceMap) {
+        this(sourceMap, System::nanoTime);
+    }
+
+    LineProfiler(SourceMap sourceMap, LongSupplier clock) {
+        this.sourceMap = sourceMap;
+        this.clock = clock;
+    }
+
+    @Override
+    public void enterStatement(Statement statement) {
+        var line = sourceMap.lineOf(statement);
+        ensureLineCapacity(line);
+        ensureFrameCapacity();
+
+        counts[line]++;
+        activeStatements[line]++;
+
+        frameLines[depth] = line;
+        frameChildTimes[depth] = 0;
+        frameStarts[depth] = clock.getAsLong();
+        depth++;
+    }
+
+    @Override
+    public void exitStatement(Statement statement) {
+        var elapsed = clock.getAsLong() - frameStarts[--depth];
+        var line = frameLines[depth];
+
+        selfTimes[line] += elapsed - frameChildTimes[depth];
+        if (--activeStatements[line] == 0) inclusiveTimes[line] += elapsed;
+
+        if (depth > 0) frameChildTimes[depth - 1] += elapsed;
+    }
+
+    public long countOf(int line) {
+        return line < counts.length ? counts[line] : 0;
+    }
+
+    public long inclusiveNanosOf(int line) {
+        return line < inclusiveTimes.length ? inclusiveTimes[line] : 0;
+    }
+
+    public long selfNanosOf(int line) {
+        return line < selfTimes.length ? selfTimes[line] : 0;
+    }
+
+    /**
+     * Prints the source code annotated with the execution count, inclusive and self time (in milliseconds) per line.
+     */
+    public void report(String sourceCode, PrintStream out) {
+        out.println(String.format("%6s %12s %14s %14s  %s", "Line", "Count", "Inclusive ms", "Self ms", "Source"));
+
+        var lines = sourceCode.split("\r?\n", -1);
+        for (var i = 0; i < lines.length; i++) {
+            var line = i + 1;
+            if (countOf(line) == 0) {
+                out.println(String.format("%6d %12s %14s %14s  %s", line, "", "", "", lines[i]));
+            } else {
+                out.println(String.format("%6d %12d %14.3f %14.3f  %s", line, countOf(line), toMillis(inclusiveNanosOf(line)), toMillis(selfNanosOf(line)), lines[i]));
+            }
+        }
+    }
+
+    private double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private void ensureLineCapacity(int line) {
+        if (line < counts.length) return;
+
+        var capacity = Math.max(line + 1, counts.length * 2);
+        counts = Arrays.copyOf(counts, capacity);
+        inclusiveTimes = Arrays.copyOf(inclusiveTimes, capacity);
+        selfTimes = Arrays.copyOf(selfTimes, capacity);
+        activeStatements = Arrays.copyOf(activeStatements, capacity);
+    }
+
+    private void ensureFrameCapacity() {
+        if (depth < frameLines.length) return;
+
+        var capacity = frameLines.length * 2;
+        frameLines = Arrays.copyOf(frameLines, capacity);
+        frameStarts = Arrays.copyOf(frameStarts, capacity);
+        frameChildTimes = Arrays.copyOf(frameChildTimes, capacity);
+    }
+}
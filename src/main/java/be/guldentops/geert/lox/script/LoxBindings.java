@@ -0,0 +1,26 @@
+package be.guldentops.geert.lox.script;
+
+import javax.script.SimpleBindings;
+import java.util.Map;
+
+/**
+ * Bindings that hold numbers the way Lox does, as doubles, so scripts can calculate with the numbers Java code puts in.
+ */
+class LoxBindings extends SimpleBindings {
+
+    @Override
+    public Object put(String name, Object value) {
+        return super.put(name, toLox(value));
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ?> values) {
+        values.forEach(this::put);
+    }
+
+    static Object toLox(Object value) {
+        if (value instanceof Number number && !(value instanceof Double)) return number.doubleValue();
+
+        return value;
+    }
+}
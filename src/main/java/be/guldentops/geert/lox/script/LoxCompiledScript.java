@@ -0,0 +1,42 @@
+package be.guldentops.geert.lox.script;
+
+import be.guldentops.geert.lox.grammar.Expression;
+import be.guldentops.geert.lox.grammar.Statement;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A parsed and resolved script, evaluating it only interprets it. The depths of its local variables are kept with it,
+ * not with the engine, so they are garbage collected together with the script and its functions.
+ */
+class LoxCompiledScript extends CompiledScript {
+
+    private final LoxScriptEngine engine;
+    private final List<Statement> statements;
+    private final Map<Expression, Integer> locals;
+
+    LoxCompiledScript(LoxScriptEngine engine, List<Statement> statements, Map<Expression, Integer> locals) {
+        this.engine = engine;
+        this.statements = List.copyOf(statements);
+        this.locals = locals;
+    }
+
+    @Override
+    public Object eval(ScriptContext context) throws ScriptException {
+        return engine.eval(statements, locals, context);
+    }
+
+    List<Statement> statements() {
+        return statements;
+    }
+
+    @Override
+    public ScriptEngine getEngine() {
+        return engine;
+    }
+}
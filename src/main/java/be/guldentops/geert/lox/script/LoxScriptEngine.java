@@ -0,0 +1,248 @@
+package be.guldentops.geert.lox.script;
+
+import be.guldentops.geert.lox.error.Error;
+import be.guldentops.geert.lox.error.ErrorReporter;
+import be.guldentops.geert.lox.grammar.Expression;
+import be.guldentops.geert.lox.grammar.SourceMap;
+import be.guldentops.geert.lox.grammar.Statement;
+import be.guldentops.geert.lox.interpreter.Interpreter;
+import be.guldentops.geert.lox.lexer.Scanner;
+import be.guldentops.geert.lox.parser.Parser;
+import be.guldentops.geert.lox.semantic.analysis.Resolver;
+
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.Invocable;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The global environment of the scripts is the engine scope of the script context: the interpreter reads and writes the
+ * bindings directly, nothing is copied before or after a script runs. The global scope is not visible to scripts.
+ * <p>
+ * Scripts are parsed and resolved completely when they are compiled (also the bodies of functions that are never
+ * called), so evaluating a compiled script only interprets it. The depths of the local variables of a script are kept
+ * with the compiled script, and with the functions it declares, which is what lets Java code call those functions long
+ * after the script ran. Nothing of a script is kept by the engine itself, evaluating many scripts does not leak.
+ * <p>
+ * Numbers Java code hands to scripts are converted to doubles, the only kind of number Lox knows.
+ */
+final class LoxScriptEngine extends AbstractScriptEngine implements Compilable, Invocable {
+
+    private final LoxScriptEngineFactory factory;
+
+    private final FirstError errors = new FirstError();
+
+    // The interpreter whose global environment are the engine scope bindings of the last context.
+    private Interpreter interpreter;
+    private Bindings interpretedBindings;
+    private ScriptContext printingContext;
+
+    LoxScriptEngine(LoxScriptEngineFactory factory) {
+        this.factory = factory;
+
+        context.setBindings(createBindings(), ScriptContext.ENGINE_SCOPE);
+    }
+
+    @Override
+    public ScriptEngineFactory getFactory() {
+        return factory;
+    }
+
+    @Override
+    public Bindings createBindings() {
+        return new LoxBindings();
+    }
+
+    @Override
+    public Object eval(String script, ScriptContext context) throws ScriptException {
+        return compile(script).eval(context);
+    }
+
+    @Override
+    public Object eval(Reader script, ScriptContext context) throws ScriptException {
+        return eval(read(script), context);
+    }
+
+    @Override
+    public CompiledScript compile(String script) throws ScriptException {
+        errors.reset();
+
+        var scanner = Scanner.createDefault(script);
+        scanner.addErrorReporter(errors);
+        var parser = Parser.createDefault(scanner, new SourceMap());
+        parser.addErrorReporter(errors);
+        var statements = parser.parse();
+        errors.throwIfReceived();
+
+        var locals = new IdentityHashMap<Expression, Integer>();
+        var resolver = Resolver.createDefault(locals::put);
+        resolver.addErrorReporter(errors);
+        resolver.resolve(statements);
+        errors.throwIfReceived();
+
+        return new LoxCompiledScript(this, statements, locals);
+    }
+
+    @Override
+    public CompiledScript compile(Reader script) throws ScriptException {
+        return compile(read(script));
+    }
+
+    /**
+     * Lox statements have no value, so neither has a script.
+     */
+    Object eval(List<Statement> statements, Map<Expression, Integer> locals, ScriptContext context) throws ScriptException {
+        var name = context.getAttribute(ScriptEngine.FILENAME);
+        var interpreter = interpreterFor(context);
+
+        return run(context, () -> {
+            interpreter.interpret(name == null ? "<script>" : name.toString(), statements, locals);
+            return null;
+        });
+    }
+
+    @Override
+    public Object invokeFunction(String name, Object... arguments) throws ScriptException, NoSuchMethodException {
+        if (name == null) throw new NullPointerException("name should not be null!");
+        if (!context.getBindings(ScriptContext.ENGINE_SCOPE).containsKey(name)) throw new NoSuchMethodException(name);
+
+        var interpreter = interpreterFor(context);
+        return run(context, () -> interpreter.callFunction(name, toLox(arguments)));
+    }
+
+    @Override
+    public Object invokeMethod(Object instance, String name, Object... arguments) throws ScriptException {
+        if (instance == null) throw new IllegalArgumentException("instance should not be null!");
+        if (name == null) throw new NullPointerException("name should not be null!");
+
+        var interpreter = interpreterFor(context);
+        return run(context, () -> interpreter.callMethod(instance, name, toLox(arguments)));
+    }
+
+    @Override
+    public <T> T getInterface(Class<T> type) {
+        return getInterface(null, type);
+    }
+
+    /**
+     * Every method of the interface calls the function (or, given an instance, the method) with the same name.
+     */
+    @Override
+    public <T> T getInterface(Object instance, Class<T> type) {
+        if (type == null || !type.isInterface()) throw new IllegalArgumentException("type should be an interface!");
+
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, arguments) -> {
+            switch (method.getName()) {
+                case "equals":
+                    if (method.getParameterCount() == 1) return proxy == arguments[0];
+                    break;
+                case "hashCode":
+                    if (method.getParameterCount() == 0) return System.identityHashCode(proxy);
+                    break;
+                case "toString":
+                    if (method.getParameterCount() == 0) return type.getName() + " implemented by Lox";
+                    break;
+            }
+
+            var actualArguments = arguments == null ? new Object[0] : arguments;
+            return instance == null ? invokeFunction(method.getName(), actualArguments) : invokeMethod(instance, method.getName(), actualArguments);
+        }));
+    }
+
+    private Interpreter interpreterFor(ScriptContext context) {
+        var bindings = context.getBindings(ScriptContext.ENGINE_SCOPE);
+        if (bindings != interpretedBindings) {
+            interpreter = Interpreter.create(bindings, this::print);
+            interpreter.addErrorReporter(errors);
+            interpretedBindings = bindings;
+        }
+
+        printingContext = context;
+        return interpreter;
+    }
+
+    private void print(String line) {
+        try {
+            var writer = printingContext.getWriter();
+            writer.write(line);
+            writer.write(System.lineSeparator());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Object run(ScriptContext context, Supplier<Object> run) throws ScriptException {
+        errors.reset();
+        try {
+            var result = run.get();
+            context.getWriter().flush();
+            errors.throwIfReceived();
+
+            return result;
+        } catch (IOException | UncheckedIOException e) {
+            throw new ScriptException(e);
+        }
+    }
+
+    private static List<Object> toLox(Object[] arguments) {
+        var converted = new ArrayList<Object>(arguments.length);
+        for (var argument : arguments) {
+            converted.add(LoxBindings.toLox(argument));
+        }
+
+        return converted;
+    }
+
+    private static String read(Reader reader) throws ScriptException {
+        var script = new StringWriter();
+        try {
+            reader.transferTo(script);
+        } catch (IOException e) {
+            throw new ScriptException(e);
+        }
+
+        return script.toString();
+    }
+
+    /**
+     * Keeps the first error, the ones after it are often caused by it.
+     */
+    private static class FirstError implements ErrorReporter {
+
+        private Error error;
+
+        @Override
+        public void handle(Error error) {
+            if (this.error == null) this.error = error;
+        }
+
+        @Override
+        public boolean receivedError() {
+            return error != null;
+        }
+
+        @Override
+        public void reset() {
+            error = null;
+        }
+
+        void throwIfReceived() throws ScriptException {
+            if (error != null) throw new ScriptException(error.toString());
+        }
+    }
+}
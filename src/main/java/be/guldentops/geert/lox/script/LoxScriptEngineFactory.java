@@ -0,0 +1,100 @@
+package be.guldentops.geert.lox.script;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Makes Lox available to Java code through the javax.script API, e.g.: {@code new ScriptEngineManager().getEngineByName("lox")}.
+ * <p>
+ * The factory is registered in META-INF/services, so the ScriptEngineManager finds it on the classpath.
+ */
+public class LoxScriptEngineFactory implements ScriptEngineFactory {
+
+    private static final String ENGINE_NAME = "jlox";
+    private static final String ENGINE_VERSION = "1.0.0";
+    private static final String LANGUAGE_NAME = "Lox";
+    private static final String LANGUAGE_VERSION = "1";
+
+    @Override
+    public String getEngineName() {
+        return ENGINE_NAME;
+    }
+
+    @Override
+    public String getEngineVersion() {
+        return ENGINE_VERSION;
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return List.of("lox");
+    }
+
+    @Override
+    public List<String> getMimeTypes() {
+        return List.of("application/x-lox", "text/x-lox");
+    }
+
+    @Override
+    public List<String> getNames() {
+        return List.of("lox", "Lox", "jlox");
+    }
+
+    @Override
+    public String getLanguageName() {
+        return LANGUAGE_NAME;
+    }
+
+    @Override
+    public String getLanguageVersion() {
+        return LANGUAGE_VERSION;
+    }
+
+    /**
+     * The "THREADING" parameter is null: an engine must not be used by more than one thread at the same time.
+     */
+    @Override
+    public Object getParameter(String key) {
+        switch (key) {
+            case ScriptEngine.ENGINE:
+                return ENGINE_NAME;
+            case ScriptEngine.ENGINE_VERSION:
+                return ENGINE_VERSION;
+            case ScriptEngine.NAME:
+                return getNames().get(0);
+            case ScriptEngine.LANGUAGE:
+                return LANGUAGE_NAME;
+            case ScriptEngine.LANGUAGE_VERSION:
+                return LANGUAGE_VERSION;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public String getMethodCallSyntax(String object, String method, String... arguments) {
+        return object + "." + method + "(" + String.join(", ", arguments) + ")";
+    }
+
+    /**
+     * Lox strings can not contain double quotes, so neither can the output.
+     */
+    @Override
+    public String getOutputStatement(String output) {
+        return "print \"" + output + "\";";
+    }
+
+    @Override
+    public String getProgram(String... statements) {
+        return Arrays.stream(statements).map(statement -> statement + ";\n").collect(joining());
+    }
+
+    @Override
+    public ScriptEngine getScriptEngine() {
+        return new LoxScriptEngine(this);
+    }
+}
@@ -0,0 +1,162 @@
+package be.guldentops.geert.lox.semantic.analysis;
+
+import be.guldentops.geert.lox.error.Error;
+import be.guldentops.geert.lox.error.ErrorReporter;
+import be.guldentops.geert.lox.grammar.Expression;
+import be.guldentops.geert.lox.grammar.Statement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Resolves batches of top-level statements in parallel.
+ * <p>
+ * The resolver does not track the global scope, so every top-level statement starts out in the same (empty) scopes and
+ * resolves independently of the others. Each batch buffers its resolutions and errors, which are handed over in the
+ * order of the statements once all batches are done. That keeps the error reports deterministic and means the
+ * resolution analyzer (usually the interpreter) is only ever called from the calling thread.
+ */
+class ParallelResolver implements Resolver {
+
+    static final int DEFAULT_STATEMENTS_PER_BATCH = 256;
+
+    private final ResolutionAnalyzer resolutionAnalyzer;
+    private final ForkJoinPool pool;
+    private final int statementsPerBatch;
+
+    private final List<ErrorReporter> errorReporters = new ArrayList<>();
+
+    ParallelResolver(ResolutionAnalyzer resolutionAnalyzer, ForkJoinPool pool, int statementsPerBatch) {
+        this.resolutionAnalyzer = resolutionAnalyzer;
+        this.pool = pool;
+        this.statementsPerBatch = statementsPerBatch;
+    }
+
+    @Override
+    public void addErrorReporter(ErrorReporter errorReporter) {
+        this.errorReporters.add(errorReporter);
+    }
+
+    @Override
+    public void resolve(List<Statement> statements) {
+        if (statements == null) throw new IllegalArgumentException("Can not resolve null statements");
+
+        var batches = new ArrayList<ForkJoinTask<Batch>>();
+        for (var from = 0; from < statements.size(); from += statementsPerBatch) {
+            var batch = statements.subList(from, Math.min(from + statementsPerBatch, statements.size()));
+            batches.add(pool.submit(() -> resolveBatch(batch)));
+        }
+
+        for (var batch : batches) {
+            batch.join().handOver();
+        }
+    }
+
+    private Batch resolveBatch(List<Statement> statements) {
+        var batch = new Batch();
+
+        var resolver = new VariableResolver(batch);
+        resolver.addErrorReporter(batch);
+        resolver.resolve(statements);
+
+        return batch;
+    }
+
+    /**
+     * Buffers what the resolver of a batch finds until it is handed over, after which it passes everything on right
+     * away (e.g. for function bodies that are only resolved on their first call).
+     */
+    private class Batch implements ResolutionAnalyzer, ErrorReporter {
+
+        private Expression[] expressions = new Expression[64];
+        private int[] depths = new int[64];
+        private int resolutions = 0;
+
+        // Statements and logical expressions, in the order they were analysed.
+        private List<Object> analysed = new ArrayList<>();
+
+        private final List<Error> errors = new ArrayList<>();
+
+        private boolean handedOver = false;
+
+        @Override
+        public void resolve(Expression expression, int depth) {
+            if (handedOver) {
+                resolutionAnalyzer.resolve(expression, depth);
+                return;
+            }
+
+            if (resolutions == expressions.length) {
+                expressions = Arrays.copyOf(expressions, 2 * resolutions);
+                depths = Arrays.copyOf(depths, 2 * resolutions);
+            }
+            expressions[resolutions] = expression;
+            depths[resolutions++] = depth;
+        }
+
+        @Override
+        public void analyse(Statement statement) {
+            if (handedOver) {
+                resolutionAnalyzer.analyse(statement);
+            } else {
+                analysed.add(statement);
+            }
+        }
+
+        @Override
+        public void analyse(Expression.Logical expression) {
+            if (handedOver) {
+                resolutionAnalyzer.analyse(expression);
+            } else {
+                analysed.add(expression);
+            }
+        }
+
+        @Override
+        public void handle(Error error) {
+            if (handedOver) {
+                report(error);
+            } else {
+                errors.add(error);
+            }
+        }
+
+        @Override
+        public boolean receivedError() {
+            return !errors.isEmpty();
+        }
+
+        @Override
+        public void reset() {
+            errors.clear();
+        }
+
+        void handOver() {
+            for (var node : analysed) {
+                if (node instanceof Statement statement) {
+                    resolutionAnalyzer.analyse(statement);
+                } else {
+                    resolutionAnalyzer.analyse((Expression.Logical) node);
+                }
+            }
+            for (var i = 0; i < resolutions; i++) {
+                resolutionAnalyzer.resolve(expressions[i], depths[i]);
+            }
+            errors.forEach(this::report);
+
+            expressions = null;
+            depths = null;
+            analysed = null;
+            handedOver = true;
+        }
+
+        private void report(Error error) {
+            for (var errorReporter : errorReporters) {
+                errorReporter.handle(error);
+            }
+        }
+    }
+}
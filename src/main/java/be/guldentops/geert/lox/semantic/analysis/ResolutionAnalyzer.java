@@ -1,9 +1,22 @@
 package be.guldentops.geert.lox.semantic.analysis;
 
 import be.guldentops.geert.lox.grammar.Expression;
+import be.guldentops.geert.lox.grammar.Statement;
 
 public interface ResolutionAnalyzer {
 
     void resolve(Expression expression, int depth);
 
+    /**
+     * Receives every statement that is resolved (not the methods of a class, only their bodies are executed as
+     * statements), before the statements and expressions in it.
+     */
+    default void analyse(Statement statement) {
+    }
+
+    /**
+     * Receives every logical expression that is resolved, before the expressions in it.
+     */
+    default void analyse(Expression.Logical expression) {
+    }
 }
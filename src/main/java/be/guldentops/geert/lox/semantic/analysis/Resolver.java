@@ -5,11 +5,23 @@ import be.guldentops.geert.lox.grammar.Statement;
 import be.guldentops.geert.lox.interpreter.Interpreter;
 
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 public interface Resolver extends CanReportErrors {
 
-    static Resolver createDefault(Interpreter interpreter) {
-        return new VariableResolver(interpreter);
+    /**
+     * @param resolutionAnalyzer receives the depth of every local variable that is used, usually the {@link Interpreter}.
+     */
+    static Resolver createDefault(ResolutionAnalyzer resolutionAnalyzer) {
+        return new VariableResolver(resolutionAnalyzer);
+    }
+
+    /**
+     * Resolves batches of top-level statements in parallel on the common fork join pool, which finds the same
+     * resolutions and reports the same errors in the same order as the default resolver.
+     */
+    static Resolver createParallel(ResolutionAnalyzer resolutionAnalyzer) {
+        return new ParallelResolver(resolutionAnalyzer, ForkJoinPool.commonPool(), ParallelResolver.DEFAULT_STATEMENTS_PER_BATCH);
     }
 
     void resolve(List<Statement> statements);
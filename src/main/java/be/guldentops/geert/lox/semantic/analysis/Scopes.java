@@ -0,0 +1,196 @@
+package be.guldentops.geert.lox.semantic.analysis;
+
+import java.util.Arrays;
+
+/**
+ * The local scopes the resolver is in, from the outermost to the innermost one.
+ * <p>
+ * Every name gets a symbol (a dense int) the first time it is declared, and every declaration is appended to a
+ * binding log that remembers the binding of the same symbol it shadows. Looking up a name is a single probe of an
+ * open addressing table followed by array reads, whatever the number of scopes. Ending a scope undoes its bindings in
+ * reverse order. Nothing is allocated per name or per scope, except when an array has to grow.
+ */
+class Scopes {
+
+    private static final int NONE = -1;
+
+    // Open addressing (linear probing) from the hash of a name to its symbol, at most half full.
+    private int[] table = newTable(64);
+
+    // Per symbol, its name and the index of its innermost binding.
+    private String[] names = new String[32];
+    private int[] innermost = new int[32];
+    private int symbols = 0;
+
+    private int[] bindingSymbols = new int[64];
+    private int[] bindingScopes = new int[64];
+    private int[] shadowedBindings = new int[64];
+    private boolean[] defined = new boolean[64];
+    private int bindings = 0;
+
+    // Per scope, the index of its first binding.
+    private int[] scopeStarts = new int[16];
+    private int depth = 0;
+
+    boolean isEmpty() {
+        return depth == 0;
+    }
+
+    void begin() {
+        if (depth == scopeStarts.length) scopeStarts = Arrays.copyOf(scopeStarts, 2 * depth);
+
+        scopeStarts[depth++] = bindings;
+    }
+
+    void end() {
+        var start = scopeStarts[--depth];
+        for (var binding = bindings - 1; binding >= start; binding--) {
+            innermost[bindingSymbols[binding]] = shadowedBindings[binding];
+        }
+
+        bindings = start;
+    }
+
+    boolean isDeclaredInInnermost(String name) {
+        return bindingInInnermost(name) != NONE;
+    }
+
+    /**
+     * @return true when the name is declared in the innermost scope, but its initializer has not been resolved yet.
+     */
+    boolean isDeclaredButNotDefinedInInnermost(String name) {
+        var binding = bindingInInnermost(name);
+
+        return binding != NONE && !defined[binding];
+    }
+
+    void declare(String name) {
+        bind(name, false);
+    }
+
+    void define(String name) {
+        bind(name, true);
+    }
+
+    /**
+     * @return the number of scopes between the innermost one and the one that declares the name, -1 if none does.
+     */
+    int distanceTo(String name) {
+        var symbol = find(name);
+        if (symbol == NONE || innermost[symbol] == NONE) return NONE;
+
+        return depth - 1 - bindingScopes[innermost[symbol]];
+    }
+
+    /**
+     * @return scopes that start out the same as these, but change independently of them.
+     */
+    Scopes copy() {
+        var copy = new Scopes();
+
+        var binding = 0;
+        for (var scope = 0; scope < depth; scope++) {
+            copy.begin();
+
+            var end = scope + 1 < depth ? scopeStarts[scope + 1] : bindings;
+            for (; binding < end; binding++) {
+                copy.bind(names[bindingSymbols[binding]], defined[binding]);
+            }
+        }
+
+        return copy;
+    }
+
+    private void bind(String name, boolean isDefined) {
+        var symbol = symbolOf(name);
+
+        var existing = innermost[symbol];
+        if (existing != NONE && bindingScopes[existing] == depth - 1) {
+            defined[existing] = isDefined;
+            return;
+        }
+
+        ensureBindingCapacity();
+
+        bindingSymbols[bindings] = symbol;
+        bindingScopes[bindings] = depth - 1;
+        shadowedBindings[bindings] = innermost[symbol];
+        defined[bindings] = isDefined;
+        innermost[symbol] = bindings++;
+    }
+
+    private int bindingInInnermost(String name) {
+        var symbol = find(name);
+        if (symbol == NONE) return NONE;
+
+        var binding = innermost[symbol];
+        return binding != NONE && bindingScopes[binding] == depth - 1 ? binding : NONE;
+    }
+
+    private int find(String name) {
+        var mask = table.length - 1;
+        for (var slot = slotOf(name, mask); ; slot = (slot + 1) & mask) {
+            var symbol = table[slot];
+            if (symbol == NONE || names[symbol].equals(name)) return symbol;
+        }
+    }
+
+    private int symbolOf(String name) {
+        var symbol = find(name);
+        if (symbol != NONE) return symbol;
+
+        symbol = symbols++;
+        if (symbol == names.length) {
+            names = Arrays.copyOf(names, 2 * symbol);
+            innermost = Arrays.copyOf(innermost, 2 * symbol);
+        }
+        names[symbol] = name;
+        innermost[symbol] = NONE;
+
+        if (2 * symbols > table.length) {
+            rehash(2 * table.length);
+        } else {
+            insert(table, symbol);
+        }
+
+        return symbol;
+    }
+
+    private void rehash(int capacity) {
+        table = newTable(capacity);
+        for (var symbol = 0; symbol < symbols; symbol++) {
+            insert(table, symbol);
+        }
+    }
+
+    private void insert(int[] table, int symbol) {
+        var mask = table.length - 1;
+
+        var slot = slotOf(names[symbol], mask);
+        while (table[slot] != NONE) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = symbol;
+    }
+
+    private static int slotOf(String name, int mask) {
+        var hash = name.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static int[] newTable(int capacity) {
+        var table = new int[capacity];
+        Arrays.fill(table, NONE);
+        return table;
+    }
+
+    private void ensureBindingCapacity() {
+        if (bindings < bindingSymbols.length) return;
+
+        var capacity = 2 * bindings;
+        bindingSymbols = Arrays.copyOf(bindingSymbols, capacity);
+        bindingScopes = Arrays.copyOf(bindingScopes, capacity);
+        shadowedBindings = Arrays.copyOf(shadowedBindings, capacity);
+        defined = Arrays.copyOf(defined, capacity);
+    }
+}
@@ -3,7 +3,7 @@ package be.guldentops.geert.lox.semantic.analysis;
 import be.guldentops.geert.lox.error.Error;
 import be.guldentops.geert.lox.lexer.Token;
 
-record SemanticError(Token token, String message) implements Error {
+public record SemanticError(Token token, String message) implements Error {
 
     @Override
     public String toString() {
@@ -1,19 +1,17 @@
 package be.guldentops.geert.lox.semantic.analysis;
 
 import be.guldentops.geert.lox.error.ErrorReporter;
+import be.guldentops.geert.lox.grammar.DeferredBody;
 import be.guldentops.geert.lox.grammar.Expression;
 import be.guldentops.geert.lox.grammar.Statement;
 import be.guldentops.geert.lox.lexer.Token;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Stack;
 
 class VariableResolver implements Resolver, Expression.Visitor<Void>, Statement.Visitor<Void> {
 
-    private final Stack<Map<String, Boolean>> scopes = new Stack<>();
+    private final Scopes scopes;
 
     private FunctionType currentFunction = FunctionType.NONE;
     private ClassType currentClass = ClassType.NONE;
@@ -21,9 +19,25 @@ class VariableResolver implements Resolver, Expression.Visitor<Void>, Statement.
     private final ResolutionAnalyzer resolutionAnalyzer;
 
     private final List<ErrorReporter> errorReporters = new ArrayList<>();
+    private boolean reportedError;
 
     VariableResolver(ResolutionAnalyzer resolutionAnalyzer) {
+        this(resolutionAnalyzer, new Scopes());
+    }
+
+    private VariableResolver(ResolutionAnalyzer resolutionAnalyzer, Scopes scopes) {
         this.resolutionAnalyzer = resolutionAnalyzer;
+        this.scopes = scopes;
+    }
+
+    /**
+     * Continues later on in the scopes the enclosing resolver is in right now.
+     */
+    private VariableResolver(VariableResolver enclosing) {
+        this(enclosing.resolutionAnalyzer, enclosing.scopes.copy());
+
+        currentClass = enclosing.currentClass;
+        errorReporters.addAll(enclosing.errorReporters);
     }
 
     @Override
@@ -84,6 +98,7 @@ class VariableResolver implements Resolver, Expression.Visitor<Void>, Statement.
 
     @Override
     public Void visitLogicalExpression(Expression.Logical expression) {
+        resolutionAnalyzer.analyse(expression);
         resolve(expression.left());
         resolve(expression.right());
         return null;
@@ -128,7 +143,7 @@ class VariableResolver implements Resolver, Expression.Visitor<Void>, Statement.
 
     @Override
     public Void visitVariableExpression(Expression.Variable expression) {
-        if (!scopes.isEmpty() && scopes.peek().get(expression.name().lexeme()) == Boolean.FALSE) {
+        if (!scopes.isEmpty() && scopes.isDeclaredButNotDefinedInInnermost(expression.name().lexeme())) {
             reportError(expression.name(), "cannot read local variable in its own initializer.");
         }
 
@@ -137,20 +152,20 @@ class VariableResolver implements Resolver, Expression.Visitor<Void>, Statement.
     }
 
     private void reportError(Token token, String message) {
+        reportedError = true;
+
         for (var errorReporter : errorReporters) {
             errorReporter.handle(new SemanticError(token, message));
         }
     }
 
     private void resolveLocal(Expression expression, Token name) {
-        for (var i = scopes.size() - 1; i >= 0; i--) {
-            if (scopes.get(i).containsKey(name.lexeme())) {
-                resolutionAnalyzer.resolve(expression, scopes.size() - 1 - i);
-                return;
-            }
-        }
+        var distance = scopes.distanceTo(name.lexeme());
 
         // Not found. Assume it is global.
+        if (distance < 0) return;
+
+        resolutionAnalyzer.resolve(expression, distance);
     }
 
     @Override
@@ -177,11 +192,11 @@ class VariableResolver implements Resolver, Expression.Visitor<Void>, Statement.
 
         if (statement.superclass() != null) {
             beginScope();
-            scopes.peek().put("super", true);
+            scopes.define("super");
         }
 
         beginScope();
-        scopes.peek().put("this", true);
+        scopes.define("this");
 
         for (Statement.Function method : statement.methods()) {
             var declaration = analyseDeclaration(method);
@@ -207,15 +222,16 @@ class VariableResolver implements Resolver, Expression.Visitor<Void>, Statement.
     }
 
     private void beginScope() {
-        scopes.push(new HashMap<>());
+        scopes.begin();
     }
 
     private void resolve(Statement statement) {
+        resolutionAnalyzer.analyse(statement);
         statement.accept(this);
     }
 
     private void endScope() {
-        scopes.pop();
+        scopes.end();
     }
 
     @Override
@@ -234,6 +250,11 @@ class VariableResolver implements Resolver, Expression.Visitor<Void>, Statement.
     }
 
     private void resolveFunction(Statement.Function function, FunctionType type) {
+        if (function.body() instanceof DeferredBody body && !body.isParsed()) {
+            resolveWhenParsed(function, type, body);
+            return;
+        }
+
         var enclosingFunction = currentFunction;
         currentFunction = type;
 
@@ -248,6 +269,16 @@ class VariableResolver implements Resolver, Expression.Visitor<Void>, Statement.
         currentFunction = enclosingFunction;
     }
 
+    private void resolveWhenParsed(Statement.Function function, FunctionType type, DeferredBody body) {
+        var resolver = new VariableResolver(this);
+
+        body.whenParsed(() -> {
+            resolver.resolveFunction(function, type);
+
+            if (resolver.reportedError) body.invalidate();
+        });
+    }
+
     @Override
     public Void visitIfStatement(Statement.If statement) {
         resolve(statement.condition());
@@ -291,11 +322,10 @@ class VariableResolver implements Resolver, Expression.Visitor<Void>, Statement.
     private void declare(Token name) {
         if (scopes.isEmpty()) return;
 
-        Map<String, Boolean> scope = scopes.peek();
-        if (scope.containsKey(name.lexeme())) {
+        if (scopes.isDeclaredInInnermost(name.lexeme())) {
             reportError(name, "variable with this name already declared in this scope.");
         }
-        scope.put(name.lexeme(), false);
+        scopes.declare(name.lexeme());
     }
 
     private void resolve(Expression expression) {
@@ -304,7 +334,7 @@ class VariableResolver implements Resolver, Expression.Visitor<Void>, Statement.
 
     private void define(Token name) {
         if (scopes.isEmpty()) return;
-        scopes.peek().put(name.lexeme(), true);
+        scopes.define(name.lexeme());
     }
 
     @Override
@@ -0,0 +1,147 @@
+package be.guldentops.geert.lox;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BatchRunnerTest {
+
+    @TempDir
+    Path directory;
+
+    @Nested
+    class DegenerateCases {
+
+        @Test
+        void noThreads() {
+            assertThatThrownBy(() -> new BatchRunner(0))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("threads should be at least 1!");
+        }
+
+        @Test
+        void noScripts() {
+            assertThat(new BatchRunner(2).run(List.of())).isEmpty();
+        }
+    }
+
+    @Nested
+    class FindScripts {
+
+        @Test
+        void inDirectoryAndItsSubdirectories() throws IOException {
+            var b = write("b.lox", "");
+            var a = write("nested/a.lox", "");
+            write("notes.txt", "");
+
+            assertThat(BatchRunner.find(directory.toString())).containsExactly(b, a);
+        }
+
+        @Test
+        void matchingGlob() throws IOException {
+            var b = write("b.lox", "");
+            var a = write("a.lox", "");
+            write("nested/c.lox", "");
+            write("notes.txt", "");
+
+            assertThat(BatchRunner.find(directory + "/*.lox")).containsExactly(a, b);
+        }
+    }
+
+    @Nested
+    class RunScripts {
+
+        @Test
+        void resultsInTheOrderOfTheScripts() throws IOException {
+            var slow = write("slow.lox", "var i = 0; while (i < 100000) i = i + 1; print \"slow\";");
+            var fast = write("fast.lox", "print \"fast\";");
+
+            var results = new BatchRunner(2).run(List.of(slow, fast));
+
+            assertThat(results).extracting(BatchRunner.Result::script).containsExactly(slow, fast);
+            assertThat(results).extracting(result -> new String(result.out(), UTF_8)).containsExactly("slow\n", "fast\n");
+            assertThat(results).allSatisfy(result -> assertThat(result.nanos()).isPositive());
+        }
+
+        @Test
+        void inIsolation() throws IOException {
+            var defines = write("defines.lox", "var a = \"a\"; print a;");
+            var uses = write("uses.lox", "print a;");
+            var redefines = write("redefines.lox", "var a = \"b\"; print a;");
+
+            var results = new BatchRunner(1).run(List.of(defines, uses, redefines));
+
+            assertThat(results).extracting(BatchRunner.Result::exitCode).containsExactly(0, 70, 0);
+            assertThat(results).extracting(BatchRunner.Result::status).containsExactly("ok", "runtime error", "ok");
+            assertThat(new String(results.get(1).err(), UTF_8)).isEqualTo("[line 1] RuntimeError: at 'a' undefined variable.\n");
+        }
+
+        @Test
+        void scriptsWithErrors() throws IOException {
+            var syntaxError = write("syntax.lox", "print 1");
+            var missing = directory.resolve("missing.lox");
+
+            var results = new BatchRunner(2).run(List.of(syntaxError, missing));
+
+            assertThat(results).extracting(BatchRunner.Result::exitCode).containsExactly(65, 66);
+            assertThat(results).extracting(BatchRunner.Result::status).containsExactly("compile error", "unreadable");
+        }
+
+        @Test
+        void scriptThatCrashesTheInterpreter() throws IOException {
+            var a = write("a.lox", "print \"a\";");
+            var b = write("b.lox", "print \"b\"; fun f() { f(); } f();");
+            var c = write("c.lox", "print \"c\";");
+
+            var results = new BatchRunner(2).run(List.of(a, b, c));
+
+            assertThat(results).extracting(BatchRunner.Result::exitCode).containsExactly(0, 70, 0);
+            assertThat(results).extracting(BatchRunner.Result::status).containsExactly("ok", "crashed", "ok");
+            assertThat(results).extracting(result -> new String(result.out(), UTF_8)).containsExactly("a\n", "b\n", "c\n");
+            assertThat(new String(results.get(1).err(), UTF_8)).isEqualTo("Crashed running " + b + ": java.lang.StackOverflowError\n");
+        }
+    }
+
+    @Nested
+    class Report {
+
+        @Test
+        void outputInOrderAndSummary() throws IOException {
+            var first = write("first.lox", "print 1;");
+            var second = write("second.lox", "print 2; print -\"a\";");
+            var results = new BatchRunner(2).run(List.of(first, second));
+
+            var out = new ByteArrayOutputStream();
+            var err = new ByteArrayOutputStream();
+            var exitCode = BatchRunner.report(results, new PrintStream(out), new PrintStream(err));
+
+            assertThat(exitCode).isEqualTo(70);
+            assertThat(out.toString()).isEqualTo("1\n2\n");
+            assertThat(err.toString().lines()).hasSize(4)
+                    .satisfies(lines -> {
+                        assertThat(lines.get(0)).isEqualTo("[line 1] RuntimeError: at '-' operand must be a number.");
+                        assertThat(lines.get(1)).matches("Status +Time ms  Script");
+                        assertThat(lines.get(2)).matches("ok +\\d+\\.\\d{3}  " + first);
+                        assertThat(lines.get(3)).matches("runtime error +\\d+\\.\\d{3}  " + second);
+                    });
+        }
+    }
+
+    private Path write(String name, String sourceCode) throws IOException {
+        var script = directory.resolve(name);
+        Files.createDirectories(script.getParent());
+
+        return Files.writeString(script, sourceCode);
+    }
+}
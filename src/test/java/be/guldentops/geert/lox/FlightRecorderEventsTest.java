@@ -0,0 +1,153 @@
+package be.guldentops.geert.lox;
+
+import be.guldentops.geert.lox.error.FakeErrorReporter;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class FlightRecorderEventsTest {
+
+    private final PrintStream originalOut = System.out;
+
+    @TempDir
+    Path temporaryDirectory;
+
+    private Recording recording;
+    private Lox lox;
+
+    @BeforeEach
+    void setUp() {
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));
+
+        recording = new Recording();
+        recording.enable("lox.Phase");
+        recording.enable("lox.FunctionCall").withThreshold(Duration.ZERO);
+        recording.enable("lox.Instantiation");
+        recording.enable("lox.RuntimeError");
+        recording.start();
+
+        lox = new Lox(new FakeErrorReporter(), new FakeErrorReporter(), new FakeErrorReporter());
+    }
+
+    @AfterEach
+    void tearDown() {
+        recording.close();
+        System.setOut(originalOut);
+    }
+
+    @Test
+    void recordsEveryPhaseOfAScript() throws Exception {
+        var script = writeScript("print 1;");
+
+        lox.runFile(script);
+
+        assertThat(stopAndReadEvents("lox.Phase"))
+                .extracting(event -> event.getString("script"), event -> event.getString("phase"))
+                .containsExactly(
+                        tuple(script, "parse"),
+                        tuple(script, "resolve"),
+                        tuple(script, "interpret")
+                );
+    }
+
+    @Test
+    void recordsFunctionCalls() throws Exception {
+        var script = writeScript("""
+                fun add(a, b) {
+                  return a + b;
+                }
+
+                print add(1, 2);
+                """);
+
+        lox.runFile(script);
+
+        assertThat(stopAndReadEvents("lox.FunctionCall"))
+                .extracting(event -> event.getString("script"), event -> event.getString("function"), event -> event.getInt("line"))
+                .containsExactly(tuple(script, "add", 5));
+    }
+
+    @Test
+    void recordsInstantiations() throws Exception {
+        var script = writeScript("""
+                class Circle {
+                  init(radius) {
+                    this.radius = radius;
+                  }
+                }
+
+                var c = Circle(4);
+                """);
+
+        lox.runFile(script);
+
+        assertThat(stopAndReadEvents("lox.Instantiation"))
+                .extracting(event -> event.getString("script"), event -> event.getString("clazz"), event -> event.getInt("line"))
+                .containsExactly(tuple(script, "Circle", 7));
+    }
+
+    @Test
+    void recordsInstantiationsWhoseInitializerFails() throws Exception {
+        var script = writeScript("""
+                class Circle {
+                  init(radius) {
+                    this.radius = radius / 0;
+                  }
+                }
+
+                var c = Circle(4);
+                """);
+
+        lox.runFile(script);
+
+        assertThat(stopAndReadEvents("lox.Instantiation"))
+                .extracting(event -> event.getString("script"), event -> event.getString("clazz"), event -> event.getInt("line"))
+                .containsExactly(tuple(script, "Circle", 7));
+    }
+
+    @Test
+    void recordsRuntimeErrors() throws Exception {
+        var script = writeScript("""
+                var a = 1;
+                print a / 0;
+                """);
+
+        lox.runFile(script);
+
+        assertThat(stopAndReadEvents("lox.RuntimeError"))
+                .extracting(event -> event.getString("script"), event -> event.getString("message"), event -> event.getInt("line"))
+                .containsExactly(tuple(script, "can not divide by zero!", 2));
+    }
+
+    private String writeScript(String sourceCode) throws Exception {
+        var script = temporaryDirectory.resolve("script.lox");
+        Files.writeString(script, sourceCode);
+        return script.toString();
+    }
+
+    private List<RecordedEvent> stopAndReadEvents(String name) throws Exception {
+        recording.stop();
+
+        var dump = temporaryDirectory.resolve("recording.jfr");
+        recording.dump(dump);
+
+        return RecordingFile.readAllEvents(dump).stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .collect(toList());
+    }
+}
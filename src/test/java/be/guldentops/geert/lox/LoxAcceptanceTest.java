@@ -1,15 +1,20 @@
 package be.guldentops.geert.lox;
 
+import be.guldentops.geert.lox.cache.CompilationCache;
 import be.guldentops.geert.lox.error.ErrorReporter;
+import be.guldentops.geert.lox.error.FakeErrorReporter;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -289,6 +294,169 @@ class LoxAcceptanceTest {
         }
     }
 
+    @Nested
+    class ProfileLoxProgramFromFile {
+
+        @Test
+        void printsTheProgramOutputAndAnAnnotatedSourceListing() throws Exception {
+            var report = new ByteArrayOutputStream();
+
+            lox.profileFile(getAbsoluteFilePathOf("lox/src/functions/RecursiveFunction.lox"), new PrintStream(report));
+
+            assertThat(outContent.toString()).isEqualTo("1\n2\n3\n");
+            assertThat(report.toString().lines())
+                    .first().asString().contains("Line", "Count", "Inclusive ms", "Self ms", "Source");
+            assertThat(report.toString().lines())
+                    .anyMatch(line -> line.matches("\\s+1\\s+1\\s+\\d+\\.\\d{3}\\s+\\d+\\.\\d{3}  fun count\\(n\\) \\{"));
+        }
+
+        @Test
+        void printsTheProgramOutputAndTheTopAllocationSites() throws Exception {
+            var report = new ByteArrayOutputStream();
+
+            lox.profileAllocationsOfFile(getAbsoluteFilePathOf("lox/src/class/ClassWithInit.lox"), new PrintStream(report));
+
+            assertThat(outContent.toString()).isEqualTo("50.265482448\n");
+            assertThat(report.toString().lines())
+                    .first().asString().contains("Function", "Line", "Estimated bytes");
+            assertThat(report.toString().lines())
+                    .anyMatch(line -> line.startsWith("Circle "));
+        }
+    }
+
+    @Nested
+    class CoverLoxProgramFromFile {
+
+        @Test
+        void printsTheProgramOutputAndWritesAnLcovReport() throws Exception {
+            var script = getAbsoluteFilePathOf("lox/src/functions/RecursiveFunction.lox");
+            var lcovReport = new ByteArrayOutputStream();
+
+            lox.coverFile(script, new PrintStream(lcovReport));
+
+            assertThat(outContent.toString()).isEqualTo("1\n2\n3\n");
+            assertThat(lcovReport.toString().lines())
+                    .startsWith("TN:", "SF:" + script)
+                    .contains("BRF:2", "BRH:2", "LH:4")
+                    .endsWith("end_of_record");
+        }
+    }
+
+    @Nested
+    class RunLoxProgramFromCache {
+
+        @Test
+        void laterRunsReadTheCompiledScriptFromTheCache(@TempDir Path directory) throws Exception {
+            var cache = new CompilationCache(directory.resolve("cache"));
+            var script = Files.writeString(directory.resolve("script.lox"), """
+                    fun fibonacci(n) {
+                      if (n <= 1) return n;
+                      return fibonacci(n - 2) + fibonacci(n - 1);
+                    }
+                    { var n = 10; print fibonacci(n); }
+                    """);
+
+            lox.runFile(script.toString(), cache);
+            assertThat(directory.resolve("cache")).isDirectoryContaining("glob:**.ast");
+
+            lox = new Lox(ErrorReporter.console(), ErrorReporter.console(), ErrorReporter.console());
+            lox.runFile(script.toString(), cache);
+
+            assertThat(outContent.toString()).isEqualTo("55\n55\n");
+        }
+
+        @Test
+        void scriptsWithErrorsAreNotCached(@TempDir Path directory) throws Exception {
+            var cache = new CompilationCache(directory.resolve("cache"));
+            var script = Files.writeString(directory.resolve("script.lox"), """
+                    fun unused() { return this; }
+                    print "ran";
+                    """);
+            var semanticErrors = new FakeErrorReporter();
+            lox = new Lox(new FakeErrorReporter(), semanticErrors, new FakeErrorReporter());
+
+            lox.runFile(script.toString(), cache);
+
+            assertThat(outContent.toString()).isEmpty();
+            assertThat(semanticErrors.getError()).hasToString("[line 1] SemanticError: at 'this' cannot use 'this' outside of a class.");
+            assertThat(directory.resolve("cache")).doesNotExist();
+        }
+
+        @Test
+        void canBeFilledAheadOfTime(@TempDir Path directory) throws Exception {
+            var cache = new CompilationCache(directory.resolve("cache"));
+            var script = Files.writeString(directory.resolve("script.lox"), """
+                    class Greeter {
+                      init(name) { this.name = name; }
+                      greet() { print "hello " + this.name; }
+                    }
+                    Greeter("cache").greet();
+                    nil.oops;
+                    """);
+
+            lox.compileFile(script.toString(), cache);
+            assertThat(outContent.toString()).isEmpty();
+            assertThat(directory.resolve("cache")).isDirectoryContaining("glob:**.ast");
+
+            var runtimeErrors = new FakeErrorReporter();
+            lox = new Lox(new FakeErrorReporter(), new FakeErrorReporter(), runtimeErrors);
+            lox.runFile(script.toString(), cache);
+
+            assertThat(outContent.toString()).isEqualTo("hello cache\n");
+            assertThat(runtimeErrors.getError()).hasToString("[line 6] RuntimeError: at 'oops' only instances have properties.");
+        }
+    }
+
+    @Nested
+    class RunCompiledProgram {
+
+        @Test
+        void compiledOnceRunManyTimes(@TempDir Path directory) throws Exception {
+            var script = Files.writeString(directory.resolve("script.lox"), """
+                    var greeting = "hello";
+                    fun greet(name) { print greeting + " " + name; }
+                    greet("program");
+                    """);
+
+            var program = lox.compileProgram(script.toString());
+            program.run(System.out, new FakeErrorReporter());
+            program.run(System.out, new FakeErrorReporter());
+
+            assertThat(outContent.toString()).isEqualTo("hello program\nhello program\n");
+        }
+
+        @Test
+        void scriptWithErrors(@TempDir Path directory) throws Exception {
+            var script = Files.writeString(directory.resolve("script.lox"), "fun f() { return this; }");
+            lox = new Lox(new FakeErrorReporter(), new FakeErrorReporter(), new FakeErrorReporter());
+
+            assertThat(lox.compileProgram(script.toString())).isNull();
+        }
+    }
+
+    @Nested
+    class RestoreLoxSnapshot {
+
+        @Test
+        void workersStartFromTheStateTheSetupScriptLeftBehind(@TempDir Path directory) throws Exception {
+            var setup = Files.writeString(directory.resolve("setup.lox"), """
+                    class Config { init(name) { this.name = name; } }
+                    var config = Config("production");
+                    print "setting up";
+                    """);
+            var worker = Files.writeString(directory.resolve("worker.lox"), "print config.name;");
+            var snapshot = directory.resolve("setup.snapshot");
+
+            lox.snapshotFile(setup.toString(), snapshot);
+
+            lox = new Lox(ErrorReporter.console(), ErrorReporter.console(), ErrorReporter.console());
+            lox.restoreSnapshot(snapshot);
+            lox.runFile(worker.toString());
+
+            assertThat(outContent.toString()).isEqualTo("setting up\nproduction\n");
+        }
+    }
+
     @Nested
     class ErrorCase {
 
@@ -296,6 +464,53 @@ class LoxAcceptanceTest {
         void nonExistingFile() {
             assertThatThrownBy(() -> lox.runFile("non-existing file location")).isInstanceOf(NoSuchFileException.class);
         }
+
+        @Test
+        void errorsInAFunctionThatIsNeverCalledAreReported(@TempDir Path directory) throws Exception {
+            var script = Files.writeString(directory.resolve("script.lox"), """
+                    fun unused() { return this; }
+                    print "ran";
+                    """);
+            var semanticErrors = new FakeErrorReporter();
+            lox = new Lox(new FakeErrorReporter(), semanticErrors, new FakeErrorReporter());
+
+            lox.runFile(script.toString());
+
+            assertThat(outContent.toString()).isEmpty();
+            assertThat(semanticErrors.getError()).hasToString("[line 1] SemanticError: at 'this' cannot use 'this' outside of a class.");
+            assertThat(lox.exitCode()).isEqualTo(65);
+        }
+
+        @Test
+        void errorsInAFunctionThatIsNeverCalledGoUnnoticedWhenRunLazily(@TempDir Path directory) throws Exception {
+            var script = Files.writeString(directory.resolve("script.lox"), """
+                    fun unused() { return this; }
+                    print "ran";
+                    """);
+
+            lox.runFileLazily(script.toString());
+
+            assertThat(outContent.toString()).isEqualTo("ran\n");
+        }
+
+        @Test
+        void callingAFunctionWithErrorsReportsThemAndStops(@TempDir Path directory) throws Exception {
+            var script = Files.writeString(directory.resolve("script.lox"), """
+                    fun broken() { return this; }
+                    print "before";
+                    broken();
+                    print "after";
+                    """);
+            var semanticErrors = new FakeErrorReporter();
+            var runtimeErrors = new FakeErrorReporter();
+            lox = new Lox(new FakeErrorReporter(), semanticErrors, runtimeErrors);
+
+            lox.runFileLazily(script.toString());
+
+            assertThat(outContent.toString()).isEqualTo("before\n");
+            assertThat(semanticErrors.getError()).hasToString("[line 1] SemanticError: at 'this' cannot use 'this' outside of a class.");
+            assertThat(runtimeErrors.getError()).hasToString("[line 1] RuntimeError: at 'broken' function body contains errors.");
+        }
     }
 
     private String getAbsoluteFilePathOf(String name) throws URISyntaxException {
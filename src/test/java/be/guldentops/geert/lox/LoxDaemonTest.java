@@ -0,0 +1,156 @@
+package be.guldentops.geert.lox;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class LoxDaemonTest {
+
+    @TempDir
+    Path directory;
+
+    private LoxDaemon daemon;
+    private Thread serving;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        daemon = new LoxDaemon(0, directory.resolve("tokens"));
+        serving = new Thread(() -> {
+            try {
+                daemon.serve();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        serving.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        daemon.close();
+        serving.join();
+    }
+
+    @Nested
+    class ExitCodes {
+
+        @Test
+        void scriptWithoutErrors() throws IOException {
+            assertThat(run("print \"Hello world!\";")).isZero();
+
+            assertThat(out.toString(UTF_8)).isEqualTo("Hello world!\n");
+            assertThat(err.toString(UTF_8)).isEmpty();
+        }
+
+        @Test
+        void scriptWithSyntaxError() throws IOException {
+            assertThat(run("print 1")).isEqualTo(65);
+
+            assertThat(out.toString(UTF_8)).isEmpty();
+            assertThat(err.toString(UTF_8)).isNotEmpty();
+        }
+
+        @Test
+        void scriptWithRuntimeError() throws IOException {
+            assertThat(run("print \"before\"; print -\"a\";")).isEqualTo(70);
+
+            assertThat(out.toString(UTF_8)).isEqualTo("before\n");
+            assertThat(err.toString(UTF_8)).startsWith("[line 1] RuntimeError");
+        }
+
+        @Test
+        void scriptThatDoesNotExist() throws IOException {
+            assertThat(LoxClient.run(daemon.port(), daemon.tokenFile(), directory.resolve("missing.lox"), out, err)).isEqualTo(66);
+
+            assertThat(err.toString(UTF_8)).startsWith("Can not read " + directory.resolve("missing.lox"));
+        }
+
+        @Test
+        void scriptThatCrashesTheInterpreter() throws IOException {
+            var script = Files.writeString(directory.resolve("crash.lox"), "print \"before\"; fun f() { f(); } f();");
+
+            assertThat(LoxClient.run(daemon.port(), daemon.tokenFile(), script, out, err)).isEqualTo(70);
+
+            assertThat(out.toString(UTF_8)).isEqualTo("before\n");
+            assertThat(err.toString(UTF_8)).isEqualTo("Crashed running " + script + ": java.lang.StackOverflowError\n");
+            assertThat(run("print \"after\";")).isZero();
+        }
+    }
+
+    @Nested
+    class Runs {
+
+        @Test
+        void doNotShareTheirGlobalEnvironment() throws IOException {
+            assertThat(run("var a = \"first\"; print a;")).isZero();
+            assertThat(run("var a = \"second\"; print a;")).isZero();
+            assertThat(run("print a;")).isEqualTo(70);
+
+            assertThat(out.toString(UTF_8)).isEqualTo("first\nsecond\n");
+            assertThat(err.toString(UTF_8)).isEqualTo("[line 1] RuntimeError: at 'a' undefined variable.\n");
+        }
+
+        @Test
+        void streamLongOutput() throws IOException {
+            assertThat(run("for (var i = 0; i < 10000; i = i + 1) print i;")).isZero();
+
+            assertThat(out.toString(UTF_8).lines()).hasSize(10000).endsWith("9999");
+        }
+    }
+
+    @Nested
+    class Authentication {
+
+        @Test
+        void tokenFileCanOnlyBeReadByTheUserThatStartedTheDaemon() throws IOException {
+            assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+
+            assertThat(daemon.tokenFile()).isEqualTo(LoxDaemon.tokenFileOf(directory.resolve("tokens"), daemon.port()));
+            assertThat(Files.getPosixFilePermissions(daemon.tokenFile())).isEqualTo(PosixFilePermissions.fromString("rw-------"));
+            assertThat(Files.size(daemon.tokenFile())).isEqualTo(LoxDaemon.TOKEN_LENGTH);
+        }
+
+        @Test
+        void requestWithAnotherToken() throws IOException {
+            var script = Files.writeString(directory.resolve("script.lox"), "print \"ran\";");
+            var forged = Files.write(directory.resolve("forged.token"), new byte[LoxDaemon.TOKEN_LENGTH]);
+
+            assertThat(LoxClient.run(daemon.port(), forged, script, out, err)).isEqualTo(77);
+
+            assertThat(out.toString(UTF_8)).isEmpty();
+            assertThat(err.toString(UTF_8)).startsWith("Not authorized");
+        }
+
+        @Test
+        void tokenFileIsRemovedWhenTheDaemonIsClosed() throws IOException {
+            var tokenFile = daemon.tokenFile();
+
+            daemon.close();
+
+            assertThat(tokenFile).doesNotExist();
+        }
+    }
+
+    private int run(String sourceCode) throws IOException {
+        var script = Files.writeString(Files.createTempFile(directory, "script", ".lox"), sourceCode);
+
+        return LoxClient.run(daemon.port(), daemon.tokenFile(), script, out, err);
+    }
+}
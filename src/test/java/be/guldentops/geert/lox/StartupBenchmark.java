@@ -0,0 +1,76 @@
+package be.guldentops.geert.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time from launching jlox (with the options of the jlox launcher script) until HelloWorld.lox printed its
+ * first line, with and without class data sharing.
+ * <p>
+ * Needs the jar and the archive of the build, e.g.: {@code mvn -P cds package} before running the benchmark.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 20)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    /**
+     * Without any class data sharing, with the default archive of the JDK only, or with the archive of jlox on top.
+     */
+    @Param({"off", "jdk", "jlox"})
+    public String classDataSharing;
+
+    private List<String> command;
+    private Process process;
+
+    @Setup
+    public void setUp() {
+        var target = Paths.get("target").toAbsolutePath();
+        if (!Files.exists(target.resolve("jlox.jar")) || !Files.exists(target.resolve("jlox.jsa"))) {
+            throw new IllegalStateException("Build the jar and the class data sharing archive first: mvn -P cds package");
+        }
+
+        command = new ArrayList<>(List.of("java", "--enable-preview", "-XX:TieredStopAtLevel=1", "-XX:+UseSerialGC"));
+        if (classDataSharing.equals("off")) command.add("-Xshare:off");
+        if (classDataSharing.equals("jlox")) command.add("-XX:SharedArchiveFile=" + target.resolve("jlox.jsa"));
+        command.addAll(List.of("-jar", target.resolve("jlox.jar").toString(), Path.of("src/main/resources/lox/src/HelloWorld.lox").toString()));
+    }
+
+    @Benchmark
+    public String timeToFirstOutput() throws IOException {
+        process = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+        return new BufferedReader(new InputStreamReader(process.getInputStream())).readLine();
+    }
+
+    // The JVM shutting down is not part of the measurement.
+    @TearDown(Level.Invocation)
+    public void waitForExit() throws InterruptedException, IOException {
+        process.getInputStream().close();
+        process.waitFor();
+    }
+}
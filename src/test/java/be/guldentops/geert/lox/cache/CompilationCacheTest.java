@@ -0,0 +1,219 @@
+package be.guldentops.geert.lox.cache;
+
+import be.guldentops.geert.lox.grammar.Expression;
+import be.guldentops.geert.lox.grammar.SourceMap;
+import be.guldentops.geert.lox.grammar.Statement;
+import be.guldentops.geert.lox.lexer.Scanner;
+import be.guldentops.geert.lox.parser.Parser;
+import be.guldentops.geert.lox.semantic.analysis.Resolver;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompilationCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Nested
+    class DegenerateCases {
+
+        @Test
+        void nullDirectory() {
+            assertThatThrownBy(() -> new CompilationCache(null))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("cache directory should not be null!");
+        }
+
+        @Test
+        void scriptThatWasNeverStored() throws IOException {
+            var cache = new CompilationCache(directory.resolve("cache"));
+
+            assertThat(cache.load(cache.keyOf(write("print 1;")), (expression, depth) -> {}, new SourceMap())).isNull();
+        }
+
+        @Test
+        void corruptCacheFile() throws IOException {
+            var cache = new CompilationCache(directory);
+            var key = store(cache, "fun f(a) { return a; }");
+
+            var file = directory.resolve(key + ".ast");
+            var bytes = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+
+            assertThat(cache.load(key, (expression, depth) -> {}, new SourceMap())).isNull();
+        }
+
+        @Test
+        void corruptCacheFileResolvesNothing() throws IOException {
+            var cache = new CompilationCache(directory);
+            var key = store(cache, "fun f(a) { return a; }\nprint 1;");
+
+            var file = directory.resolve(key + ".ast");
+            var bytes = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+
+            var depths = new IdentityHashMap<Expression, Integer>();
+            assertThat(cache.load(key, depths::put, new SourceMap())).isNull();
+            assertThat(depths).isEmpty();
+        }
+
+        @Test
+        void cacheFileWithACountLargerThanTheFile() throws IOException {
+            var cache = new CompilationCache(directory);
+            var key = store(cache, "print 1;");
+
+            var bytes = ByteBuffer.allocate(10).putInt(AstWriter.MAGIC).put((byte) AstWriter.VERSION)
+                    // A count of Integer.MAX_VALUE statements.
+                    .put(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07});
+            Files.write(directory.resolve(key + ".ast"), bytes.array());
+
+            assertThat(cache.load(key, (expression, depth) -> {}, new SourceMap())).isNull();
+        }
+
+        @Test
+        void cacheFileNestedTooDeeplyToRead() throws IOException {
+            var cache = new CompilationCache(directory);
+            var key = store(cache, "print 1;");
+
+            var nesting = 1_000_000;
+            var bytes = ByteBuffer.allocate(nesting + 10).putInt(AstWriter.MAGIC).put((byte) AstWriter.VERSION)
+                    // One expression statement on line 1 that is nothing but groupings.
+                    .put((byte) 1).put((byte) AstWriter.EXPRESSION).put((byte) 1);
+            while (bytes.hasRemaining()) bytes.put((byte) AstWriter.GROUPING);
+            Files.write(directory.resolve(key + ".ast"), bytes.array());
+
+            assertThat(cache.load(key, (expression, depth) -> {}, new SourceMap())).isNull();
+        }
+    }
+
+    @Nested
+    class Keys {
+
+        @Test
+        void onlyDependOnTheSourceCode() throws IOException {
+            var cache = new CompilationCache(directory);
+
+            var first = cache.keyOf(write("print 1;"));
+            var same = cache.keyOf(Files.writeString(directory.resolve("other.lox"), "print 1;"));
+            var changed = cache.keyOf(write("print 2;"));
+
+            assertThat(first).hasSize(64).isEqualTo(same).isNotEqualTo(changed);
+        }
+
+        @Test
+        void areTheSameForTheBytesOfAScriptAsForItsFile() throws IOException {
+            var cache = new CompilationCache(directory);
+            var sourceCode = ByteBuffer.wrap("print 1;".getBytes(UTF_8));
+
+            var key = cache.keyOf(sourceCode);
+
+            assertThat(key).isEqualTo(cache.keyOf(write("print 1;")));
+            assertThat(sourceCode.remaining()).isEqualTo(8);
+        }
+    }
+
+    @Nested
+    class RoundTrip {
+
+        @Test
+        void statementsDepthsAndLines() throws IOException {
+            var cache = new CompilationCache(directory);
+            var key = store(cache, """
+                    class A { init(x) { this.x = x; } }
+                    class B < A {
+                      m() {
+                        var y = "two
+                    lines";
+                        return super.init(y) or nil and !true;
+                      }
+                    }
+                    for (var i = 0; i < 10; i = i + 1) { if (i > 5) print -i; else print i / 2.5; }
+                    """);
+
+            var depths = new IdentityHashMap<Expression, Integer>();
+            var sourceMap = new SourceMap();
+            var statements = cache.load(key, depths::put, sourceMap);
+
+            var b = (Statement.Class) statements.get(1);
+            var m = b.methods().get(0);
+            var returned = (Expression.Logical) ((Statement.Return) m.body().get(1)).value();
+            var call = (Expression.Call) returned.left();
+            var superExpression = (Expression.Super) call.callee();
+
+            assertThat(depths.get(superExpression)).isEqualTo(2);
+            assertThat(depths.get(b.superclass())).isNull();
+            assertThat(sourceMap.lineOf(b)).isEqualTo(2);
+            assertThat(sourceMap.lineOf(m.body().get(1))).isEqualTo(6);
+            assertThat(((Statement.Variable) m.body().get(0)).initializer()).isEqualTo(new Expression.Literal("two\nlines"));
+        }
+
+        @ParameterizedTest
+        @MethodSource("be.guldentops.geert.lox.cache.CompilationCacheTest#loxPrograms")
+        void loxPrograms(Path program) throws IOException {
+            var sourceMap = new SourceMap();
+            var depths = new IdentityHashMap<Expression, Integer>();
+            var statements = compile(Files.readString(program), sourceMap, depths);
+            var written = new AstWriter(depths, sourceMap).write(statements);
+
+            var cache = new CompilationCache(directory);
+            var key = cache.keyOf(program);
+            cache.store(key, statements, depths, sourceMap);
+
+            var loadedSourceMap = new SourceMap();
+            var loadedDepths = new IdentityHashMap<Expression, Integer>();
+            var loaded = cache.load(key, loadedDepths::put, loadedSourceMap);
+
+            // Tokens are compared by identity, their string representations leave out the line which the bytes cover.
+            assertThat(loaded).hasToString(statements.toString());
+            assertThat(loadedDepths).hasSameSizeAs(depths);
+            assertThat(new AstWriter(loadedDepths, loadedSourceMap).write(loaded)).isEqualTo(written);
+        }
+    }
+
+    static Stream<Path> loxPrograms() throws IOException, URISyntaxException {
+        var root = Paths.get(ClassLoader.getSystemResource("lox/src").toURI());
+
+        return Files.walk(root).filter(path -> path.toString().endsWith(".lox")).sorted();
+    }
+
+    private String store(CompilationCache cache, String sourceCode) throws IOException {
+        var sourceMap = new SourceMap();
+        var depths = new IdentityHashMap<Expression, Integer>();
+        var statements = compile(sourceCode, sourceMap, depths);
+
+        var key = cache.keyOf(write(sourceCode));
+        cache.store(key, statements, depths, sourceMap);
+
+        return key;
+    }
+
+    private List<Statement> compile(String sourceCode, SourceMap sourceMap, Map<Expression, Integer> depths) {
+        var statements = Parser.createDefault(Scanner.createDefault(sourceCode).scanTokens(), sourceMap).parse();
+        Resolver.createDefault(depths::put).resolve(statements);
+
+        return statements;
+    }
+
+    private Path write(String sourceCode) throws IOException {
+        return Files.writeString(directory.resolve("script.lox"), sourceCode);
+    }
+}
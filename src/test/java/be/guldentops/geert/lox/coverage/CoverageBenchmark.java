@@ -0,0 +1,83 @@
+package be.guldentops.geert.lox.coverage;
+
+import be.guldentops.geert.lox.grammar.SourceMap;
+import be.guldentops.geert.lox.grammar.Statement;
+import be.guldentops.geert.lox.interpreter.Interpreter;
+import be.guldentops.geert.lox.lexer.Scanner;
+import be.guldentops.geert.lox.parser.Parser;
+import be.guldentops.geert.lox.semantic.analysis.Resolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how much slower a loop with branches and function calls runs while its coverage is recorded, the same
+ * program runs without coverage as the baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CoverageBenchmark {
+
+    private static final String PROGRAM = """
+            {
+              fun half(n) {
+                return n / 2;
+              }
+
+              var sum = 0;
+              for (var i = 0; i < 10000; i = i + 1) {
+                if (i > 10 and half(i) < 4000) {
+                  sum = sum + i;
+                } else if (i < 5 or i > 9990) {
+                  sum = sum - 1;
+                }
+              }
+            }
+            """;
+
+    private List<Statement> statements;
+    private Interpreter withoutCoverage;
+    private Interpreter withCoverage;
+
+    @Setup
+    public void setUp() {
+        var sourceMap = new SourceMap();
+        statements = Parser.createDefault(Scanner.createDefault(PROGRAM).scanTokens(), sourceMap).parse();
+
+        withoutCoverage = Interpreter.create(new HashMap<>(), line -> {});
+        withCoverage = Interpreter.create(new HashMap<>(), line -> {});
+
+        // Both interpreters run the same tree, so they both need the depths of its local variables.
+        var coverage = new Coverage(sourceMap, (expression, depth) -> {
+            withoutCoverage.resolve(expression, depth);
+            withCoverage.resolve(expression, depth);
+        });
+        Resolver.createDefault(coverage).resolve(statements);
+        withCoverage.cover(coverage);
+    }
+
+    @Benchmark
+    public void withoutCoverage() {
+        withoutCoverage.interpret(statements);
+    }
+
+    @Benchmark
+    public void withCoverage() {
+        withCoverage.interpret(statements);
+    }
+}
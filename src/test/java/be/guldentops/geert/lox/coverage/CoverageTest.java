@@ -0,0 +1,316 @@
+package be.guldentops.geert.lox.coverage;
+
+import be.guldentops.geert.lox.error.FakeErrorReporter;
+import be.guldentops.geert.lox.grammar.Expression;
+import be.guldentops.geert.lox.grammar.SourceMap;
+import be.guldentops.geert.lox.grammar.Statement;
+import be.guldentops.geert.lox.interpreter.Interpreter;
+import be.guldentops.geert.lox.lexer.Scanner;
+import be.guldentops.geert.lox.parser.Parser;
+import be.guldentops.geert.lox.semantic.analysis.Resolver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CoverageTest {
+
+    private final PrintStream originalOut = System.out;
+
+    private FakeErrorReporter fakeErrorReporter;
+    private SourceMap sourceMap;
+    private Coverage coverage;
+
+    @BeforeEach
+    void setUp() {
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));
+
+        fakeErrorReporter = new FakeErrorReporter();
+        sourceMap = new SourceMap();
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Nested
+    class Statements {
+
+        @Test
+        void linesThatRanAreCovered() {
+            cover("""
+                    var a = 1;
+                    print a;
+                    """);
+
+            assertThat(lcov()).contains("""
+                    DA:1,1
+                    DA:2,1
+                    LF:2
+                    LH:2
+                    """);
+        }
+
+        @Test
+        void bodiesOfFunctionsThatAreNeverCalledAreNotCovered() {
+            cover("""
+                    fun f() {
+                      print 1;
+                    }
+                    """);
+
+            assertThat(lcov()).contains("""
+                    DA:1,1
+                    DA:2,0
+                    LF:2
+                    LH:1
+                    """);
+        }
+
+        @Test
+        void methodBodiesAreCoveredWhenTheMethodIsCalled() {
+            cover("""
+                    class Foo {
+                      bar() {
+                        print 1;
+                      }
+                      baz() {
+                        print 2;
+                      }
+                    }
+                    Foo().bar();
+                    """);
+
+            assertThat(lcov()).contains("""
+                    DA:1,1
+                    DA:3,1
+                    DA:6,0
+                    DA:9,1
+                    LF:4
+                    LH:3
+                    """);
+        }
+
+        @Test
+        void aLineIsCoveredWhenAnyOfItsStatementsRan() {
+            cover("if (false) print 1; else print 2;");
+
+            assertThat(lcov()).contains("""
+                    DA:1,1
+                    LF:1
+                    LH:1
+                    """);
+        }
+    }
+
+    @Nested
+    class Branches {
+
+        @Test
+        void recordsWhichOutcomesOfAnIfWereTaken() {
+            cover("""
+                    if (true) print 1;
+                    """);
+
+            assertThat(lcov()).contains("""
+                    BRDA:1,0,0,1
+                    BRDA:1,0,1,0
+                    BRF:2
+                    BRH:1
+                    """);
+        }
+
+        @Test
+        void aLoopTakesBothOutcomesOfItsCondition() {
+            cover("""
+                    for (var i = 0; i < 2; i = i + 1) {
+                      print i;
+                    }
+                    """);
+
+            assertThat(lcov()).contains("""
+                    BRDA:1,0,0,1
+                    BRDA:1,0,1,1
+                    BRF:2
+                    BRH:2
+                    """);
+        }
+
+        @Test
+        void branchesWithoutALineAreLeftOut() {
+            var parsed = parse("if (true) print 1;\n");
+            // The same branch point once more, but not parsed from source code so without a line.
+            var statements = List.of(parsed.get(0), new Statement.If(new Expression.Literal(false), new Statement.Print(new Expression.Literal(2.0)), null));
+
+            var interpreter = Interpreter.createDefault();
+            coverage = new Coverage(sourceMap, interpreter);
+            Resolver.createDefault(coverage).resolve(statements);
+            interpreter.cover(coverage);
+            interpreter.interpret(statements);
+
+            assertThat(lcov()).doesNotContain("BRDA:0").contains("""
+                    BRDA:1,0,0,1
+                    BRDA:1,0,1,0
+                    BRF:2
+                    BRH:1
+                    DA:1,1
+                    """);
+        }
+
+        @Test
+        void logicalOperatorsAreBranchPoints() {
+            cover("""
+                    print true and
+                      false;
+                    print false or true;
+                    """);
+
+            assertThat(lcov()).contains("""
+                    BRDA:1,0,0,1
+                    BRDA:1,0,1,0
+                    BRDA:3,1,0,0
+                    BRDA:3,1,1,1
+                    BRF:4
+                    BRH:2
+                    """);
+        }
+
+        @Test
+        void branchesThatWereNeverEvaluatedAreMarkedAsSuch() {
+            cover("""
+                    fun f(a) {
+                      if (a) print 1;
+                    }
+                    """);
+
+            assertThat(lcov()).contains("""
+                    BRDA:2,0,0,-
+                    BRDA:2,0,1,-
+                    BRF:2
+                    BRH:0
+                    """);
+        }
+    }
+
+    @Nested
+    class Indexes {
+
+        @Test
+        void areAssignedWhileResolvingInTheOrderOfTheSourceCode() {
+            var statements = cover("""
+                    var a = 1;
+                    if (a > 0 or a < -1) {
+                      print a;
+                    }
+                    """);
+
+            var ifStatement = (Statement.If) statements.get(1);
+            var logical = (Expression.Logical) ifStatement.condition();
+            var print = ((Statement.Block) ifStatement.thenBranch()).statements().get(0);
+            assertThat(coverage.indexOf(statements.get(0))).isZero();
+            assertThat(coverage.indexOf(ifStatement)).isEqualTo(1);
+            assertThat(coverage.indexOf(logical)).isEqualTo(2);
+            assertThat(coverage.indexOf(ifStatement.thenBranch())).isEqualTo(3);
+            assertThat(coverage.indexOf(print)).isEqualTo(4);
+        }
+
+        @Test
+        void areKeptByEachCoverageSoTheTreeCanBeCoveredTwice() {
+            var statements = parse("print 1;\nif (false) print 2;\n");
+
+            var interpreter = Interpreter.createDefault();
+            var first = new Coverage(sourceMap, interpreter);
+            var second = new Coverage(sourceMap, interpreter);
+            Resolver.createDefault(first).resolve(statements);
+            Resolver.createDefault(second).resolve(statements);
+            interpreter.cover(first);
+            interpreter.interpret(statements);
+
+            assertThat(first.indexOf(statements.get(1))).isEqualTo(second.indexOf(statements.get(1))).isEqualTo(1);
+            assertThat(lcovOf(first)).contains("LH:2");
+            assertThat(lcovOf(second)).contains("LH:0");
+        }
+
+        @Test
+        void areTheSameWhenResolvingInParallel() {
+            var sourceCode = "print 1;\nif (1 > 0 and true) print 2;\n".repeat(600);
+            var statements = parse(sourceCode);
+
+            var interpreter = Interpreter.createDefault();
+            interpreter.addErrorReporter(fakeErrorReporter);
+            coverage = new Coverage(sourceMap, interpreter);
+            Resolver.createParallel(coverage).resolve(statements);
+            interpreter.cover(coverage);
+            interpreter.interpret(statements);
+
+            assertThat(fakeErrorReporter.getError()).isNull();
+
+            assertThat(coverage.indexOf(statements.get(1199))).isEqualTo(599 * 4 + 1);
+            assertThat(lcov()).contains("BRF:2400", "BRH:1200", "LF:1200", "LH:1200");
+        }
+    }
+
+    @Nested
+    class Lcov {
+
+        @Test
+        void writesOneRecordForTheSourceFile() {
+            cover("print 1;");
+
+            assertThat(lcov()).isEqualTo("""
+                    TN:
+                    SF:/scripts/script.lox
+                    BRF:0
+                    BRH:0
+                    DA:1,1
+                    LF:1
+                    LH:1
+                    end_of_record
+                    """);
+        }
+    }
+
+    private List<Statement> cover(String sourceCode) {
+        var statements = parse(sourceCode);
+
+        var interpreter = Interpreter.createDefault();
+        interpreter.addErrorReporter(fakeErrorReporter);
+        coverage = new Coverage(sourceMap, interpreter);
+
+        var resolver = Resolver.createDefault(coverage);
+        resolver.addErrorReporter(fakeErrorReporter);
+        resolver.resolve(statements);
+
+        interpreter.cover(coverage);
+        interpreter.interpret(statements);
+
+        assertThat(fakeErrorReporter.receivedError()).isFalse();
+        return statements;
+    }
+
+    private List<Statement> parse(String sourceCode) {
+        var scanner = Scanner.createDefault(sourceCode);
+        scanner.addErrorReporter(fakeErrorReporter);
+
+        var parser = Parser.createDefault(scanner.scanTokens(), sourceMap);
+        parser.addErrorReporter(fakeErrorReporter);
+        return parser.parse();
+    }
+
+    private String lcov() {
+        return lcovOf(coverage);
+    }
+
+    private String lcovOf(Coverage coverage) {
+        var lcov = new ByteArrayOutputStream();
+        coverage.writeLcov("/scripts/script.lox", new PrintStream(lcov));
+        return lcov.toString();
+    }
+}
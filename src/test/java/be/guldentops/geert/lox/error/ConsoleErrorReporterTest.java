@@ -40,6 +40,17 @@ class ConsoleErrorReporterTest {
         assertThat(errContent.toString()).isEqualTo("[line 1] SyntaxError: at '@' unexpected character\n");
     }
 
+    @Test
+    void printsErrorToGivenStream() {
+        var otherContent = new ByteArrayOutputStream();
+        var otherErrorReporter = ErrorReporter.console(new PrintStream(otherContent));
+
+        otherErrorReporter.handle(new SyntaxError(1, "@", "unexpected character"));
+
+        assertThat(otherContent.toString()).isEqualTo("[line 1] SyntaxError: at '@' unexpected character\n");
+        assertThat(errContent.toString()).isEmpty();
+    }
+
     @Test
     void resetAfterError() {
         consoleErrorReporter.handle(new SyntaxError(1, "@", "unexpected character"));
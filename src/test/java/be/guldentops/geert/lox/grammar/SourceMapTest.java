@@ -0,0 +1,42 @@
+package be.guldentops.geert.lox.grammar;
+
+import org.junit.jupiter.api.Test;
+
+import static be.guldentops.geert.lox.grammar.ExpressionTestFactory.literal;
+import static be.guldentops.geert.lox.grammar.StatementTestFactory.print;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SourceMapTest {
+
+    @Test
+    void knowsTheLineOfARecordedStatement() {
+        var sourceMap = new SourceMap();
+        var statement = print(literal(1.0));
+
+        sourceMap.record(statement, 3);
+
+        assertThat(sourceMap.lineOf(statement)).isEqualTo(3);
+        assertThat(sourceMap.lineOf(print(literal(1.0)))).isZero();
+    }
+
+    @Test
+    void recordsTheLinesOfAnotherMapMovedDown() {
+        var piece = new SourceMap();
+        var statement = print(literal(1.0));
+        piece.record(statement, 2);
+
+        var sourceMap = new SourceMap();
+        sourceMap.recordAll(piece, 10);
+
+        assertThat(sourceMap.lineOf(statement)).isEqualTo(12);
+    }
+
+    @Test
+    void noneRecordsNothing() {
+        var statement = print(literal(1.0));
+
+        SourceMap.NONE.record(statement, 3);
+
+        assertThat(SourceMap.NONE.lineOf(statement)).isZero();
+    }
+}
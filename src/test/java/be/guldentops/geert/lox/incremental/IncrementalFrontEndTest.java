@@ -0,0 +1,234 @@
+package be.guldentops.geert.lox.incremental;
+
+import be.guldentops.geert.lox.grammar.Statement;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IncrementalFrontEndTest {
+
+    private static final String SCRIPT = """
+            var a = 1;
+            fun f(x) {
+              var y = x;
+              return y;
+            }
+            // a comment
+            if (a) print 1; else print 2;
+            class C { m() { return this; } }
+            print f(a);
+            """;
+
+    @Nested
+    class DegenerateCases {
+
+        @Test
+        void nullSourceCode() {
+            assertThatThrownBy(() -> new IncrementalFrontEnd(null))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("source code should not be null!");
+        }
+
+        @Test
+        void emptySourceCode() {
+            var frontEnd = new IncrementalFrontEnd("");
+
+            frontEnd.edit(0, 0, "print 1;");
+
+            assertThat(frontEnd.sourceCode()).isEqualTo("print 1;");
+            assertThat(frontEnd.statements()).hasSize(1);
+        }
+
+        @Test
+        void editOutsideOfTheSourceCode() {
+            var frontEnd = new IncrementalFrontEnd("print 1;");
+
+            assertThatThrownBy(() -> frontEnd.edit(9, 0, "x"))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("edit is outside of the source code!");
+        }
+    }
+
+    @Nested
+    class Reuse {
+
+        @Test
+        void editingADeclarationKeepsTheOtherStatements() {
+            var frontEnd = new IncrementalFrontEnd(SCRIPT);
+            var before = frontEnd.statements();
+
+            frontEnd.edit(SCRIPT.indexOf("var y = x"), "var y = x".length(), "var y = x * 2");
+
+            var after = frontEnd.statements();
+            assertThat(after).hasSize(before.size());
+            assertThat(after.get(0)).isSameAs(before.get(0));
+            assertThat(after.get(1)).isNotSameAs(before.get(1));
+            for (var i = 2; i < after.size(); i++) {
+                assertThat(after.get(i)).isSameAs(before.get(i));
+            }
+            assertThat(frontEnd.errors()).isEmpty();
+        }
+
+        @Test
+        void insertingLinesKeepsTheStatementsThatFollow() {
+            var frontEnd = new IncrementalFrontEnd(SCRIPT);
+            var before = frontEnd.statements();
+
+            frontEnd.edit(0, 0, "\n\n");
+
+            assertThat(frontEnd.statements().get(1)).isSameAs(before.get(1));
+            assertThat(frontEnd.statements().get(4)).isSameAs(before.get(4));
+        }
+
+        @Test
+        void resolutionOfOtherDeclarationsIsKept() {
+            var frontEnd = new IncrementalFrontEnd(SCRIPT);
+            var function = (Statement.Function) frontEnd.statements().get(1);
+            var y = ((Statement.Return) function.body().get(1)).value();
+
+            frontEnd.edit(0, "var a = 1;".length(), "var a = 2;");
+            assertThat(frontEnd.depthOf(y)).isEqualTo(0);
+
+            frontEnd.edit(SCRIPT.indexOf("return y"), "return y".length(), "return x");
+            assertThat(frontEnd.depthOf(y)).isNull();
+        }
+    }
+
+    @Nested
+    class EditsThatCrossDeclarations {
+
+        @Test
+        void removingASemicolonJoinsTwoDeclarations() {
+            var frontEnd = new IncrementalFrontEnd("print 1;\nprint 2;\nprint 3;");
+
+            frontEnd.edit("print 1;\nprint 2".length(), 1, "");
+
+            assertThat(describe(frontEnd.errors())).containsExactly("[line 3] SyntaxError: at 'print' expect ';' after value.");
+            assertLikeFromScratch(frontEnd);
+        }
+
+        @Test
+        void anElseContinuesThePreviousIfStatement() {
+            var frontEnd = new IncrementalFrontEnd("if (true) print 1;\nprint 2;");
+
+            frontEnd.edit("if (true) print 1;\n".length(), 0, "else ");
+
+            assertThat(frontEnd.statements()).hasSize(1).first().isInstanceOf(Statement.If.class);
+            assertLikeFromScratch(frontEnd);
+        }
+
+        @Test
+        void anOpeningQuoteSwallowsTheRestOfTheScriptUntilItIsClosed() {
+            var frontEnd = new IncrementalFrontEnd(SCRIPT);
+
+            frontEnd.edit(0, 0, "\"");
+            assertThat(frontEnd.statements()).isEmpty();
+            assertThat(describe(frontEnd.errors())).containsExactly("[line 10] SyntaxError: Unterminated string.");
+
+            frontEnd.edit(1, 0, "\";");
+            assertThat(frontEnd.errors()).isEmpty();
+            assertLikeFromScratch(frontEnd);
+        }
+
+        @Test
+        void startingACommentHidesTheLineThatFollows() {
+            var frontEnd = new IncrementalFrontEnd("print 1;\nprint 2;");
+
+            frontEnd.edit("print 1;\n".length(), 0, "//");
+
+            assertThat(frontEnd.statements()).hasSize(1);
+            assertLikeFromScratch(frontEnd);
+        }
+    }
+
+    @Nested
+    class Errors {
+
+        @Test
+        void linesAreCountedFromTheStartOfTheScript() {
+            var frontEnd = new IncrementalFrontEnd("print 1;\nprint 2;\nreturn 3;");
+            assertThat(describe(frontEnd.errors())).containsExactly("[line 3] SemanticError: at 'return' cannot return from top-level code.");
+
+            frontEnd.edit(0, 0, "\n\n");
+
+            assertThat(describe(frontEnd.errors())).containsExactly("[line 5] SemanticError: at 'return' cannot return from top-level code.");
+        }
+    }
+
+    @Nested
+    class Lines {
+
+        @Test
+        void ofTheSourceMapAreCountedFromTheStartOfTheScript() {
+            var frontEnd = new IncrementalFrontEnd(SCRIPT);
+            var function = (Statement.Function) frontEnd.statements().get(1);
+
+            frontEnd.edit(0, 0, "\n\n");
+
+            var sourceMap = frontEnd.sourceMap();
+            assertThat(sourceMap.lineOf(frontEnd.statements().get(0))).isEqualTo(3);
+            assertThat(sourceMap.lineOf(function)).isEqualTo(4);
+            assertThat(sourceMap.lineOf(function.body().get(1))).isEqualTo(6);
+            assertThat(sourceMap.lineOf(frontEnd.statements().get(4))).isEqualTo(11);
+        }
+
+        @Test
+        void ofTokensAreRelativeToTheirTopLevelDeclaration() {
+            var frontEnd = new IncrementalFrontEnd(SCRIPT);
+            frontEnd.edit(0, 0, "\n\n");
+
+            var function = (Statement.Function) frontEnd.statements().get(1);
+
+            assertThat(function.name().line()).isEqualTo(1);
+            assertThat(frontEnd.linesBefore(function)).isEqualTo(3);
+        }
+
+        @Test
+        void onlyTopLevelStatementsHaveLinesBefore() {
+            var frontEnd = new IncrementalFrontEnd(SCRIPT);
+            var function = (Statement.Function) frontEnd.statements().get(1);
+
+            assertThatThrownBy(() -> frontEnd.linesBefore(function.body().get(0)))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("statement is not a top-level statement of the script!");
+        }
+    }
+
+    @Nested
+    class Differential {
+
+        @Test
+        void randomEditsEndUpLikeCompilingFromScratch() {
+            var random = new Random(42);
+            var fragments = List.of("{", "}", "(", ")", ";", "\"", "//", "\n", "print 1", "else", "var b = a", "fun g() {", "x");
+
+            var frontEnd = new IncrementalFrontEnd(SCRIPT);
+            for (var i = 0; i < 500; i++) {
+                var sourceCode = frontEnd.sourceCode();
+                var offset = random.nextInt(sourceCode.length() + 1);
+                var length = random.nextInt(Math.min(4, sourceCode.length() - offset) + 1);
+
+                frontEnd.edit(offset, length, fragments.get(random.nextInt(fragments.size())));
+
+                assertLikeFromScratch(frontEnd);
+            }
+        }
+    }
+
+    private void assertLikeFromScratch(IncrementalFrontEnd frontEnd) {
+        var fromScratch = new IncrementalFrontEnd(frontEnd.sourceCode());
+
+        assertThat(describe(frontEnd.statements())).isEqualTo(describe(fromScratch.statements()));
+        assertThat(describe(frontEnd.errors())).isEqualTo(describe(fromScratch.errors()));
+    }
+
+    private List<String> describe(List<?> statementsOrErrors) {
+        return statementsOrErrors.stream().map(String::valueOf).collect(toList());
+    }
+}
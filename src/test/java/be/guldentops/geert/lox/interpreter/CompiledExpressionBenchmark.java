@@ -0,0 +1,99 @@
+package be.guldentops.geert.lox.interpreter;
+
+import be.guldentops.geert.lox.error.ErrorReporter;
+import be.guldentops.geert.lox.grammar.Expression;
+import be.guldentops.geert.lox.grammar.Statement;
+import be.guldentops.geert.lox.lexer.Scanner;
+import be.guldentops.geert.lox.parser.Parser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many times per second a business rule is evaluated for another order, by the interpreter with the
+ * values of the order as global variables and compiled with the values of the order in slots.
+ * <p>
+ * Run it with {@code -prof gc} to see that the compiled rule allocates nothing.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompiledExpressionBenchmark {
+
+    private static final String RULE = "price * quantity * (1 - discount) > 100 and (country == \"BE\" or country == \"NL\")";
+    private static final String TOTAL = "price * quantity * (1 - discount)";
+    private static final List<String> PARAMETERS = List.of("price", "quantity", "discount", "country");
+    private static final int ORDERS = 1_024;
+
+    private Object[][] orders;
+    private int next;
+
+    private Map<String, Object> globals;
+    private Interpreter interpreter;
+    private Expression interpretedRule;
+
+    private CompiledExpression compiledRule;
+    private CompiledExpression compiledTotal;
+
+    @Setup
+    public void setUp() {
+        orders = new Object[ORDERS][];
+        var countries = new String[]{"BE", "NL", "FR", "DE"};
+        for (var i = 0; i < ORDERS; i++) {
+            orders[i] = new Object[]{(double) (i % 50), (double) (i % 7), (i % 4) / 10.0, countries[i % countries.length]};
+        }
+
+        globals = new HashMap<>();
+        interpreter = Interpreter.create(globals, line -> {});
+        interpretedRule = ((Statement.Expression) Parser.createDefault(Scanner.createDefault(RULE + ";").scanTokens()).parse().get(0)).expression();
+
+        var errorReporter = ErrorReporter.console(System.err);
+        compiledRule = CompiledExpression.compile(RULE, PARAMETERS, errorReporter);
+        compiledTotal = CompiledExpression.compile(TOTAL, PARAMETERS, errorReporter);
+    }
+
+    private Object[] nextOrder() {
+        next = (next + 1) & (ORDERS - 1);
+        return orders[next];
+    }
+
+    @Benchmark
+    public Object interpreted() {
+        var order = nextOrder();
+        for (var i = 0; i < order.length; i++) {
+            globals.put(PARAMETERS.get(i), order[i]);
+        }
+
+        return interpreter.interpret(interpretedRule);
+    }
+
+    @Benchmark
+    public Object compiled() {
+        return compiledRule.evaluate(nextOrder());
+    }
+
+    @Benchmark
+    public boolean compiledBoolean() {
+        return compiledRule.evaluateBoolean(nextOrder());
+    }
+
+    @Benchmark
+    public double compiledNumber() {
+        return compiledTotal.evaluateNumber(nextOrder());
+    }
+}
@@ -0,0 +1,269 @@
+package be.guldentops.geert.lox.interpreter;
+
+import be.guldentops.geert.lox.error.FakeErrorReporter;
+import be.guldentops.geert.lox.grammar.Statement;
+import be.guldentops.geert.lox.lexer.Scanner;
+import be.guldentops.geert.lox.parser.Parser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.HashMap;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompiledExpressionTest {
+
+    private static final List<String> PARAMETERS = List.of("a", "b", "s", "t", "yes", "no", "nothing");
+    private static final Object[] VALUES = {3.0, -0.5, "left", "right", true, false, null};
+
+    private FakeErrorReporter errorReporter;
+
+    @BeforeEach
+    void setUp() {
+        errorReporter = new FakeErrorReporter();
+    }
+
+    @Nested
+    class DegenerateCases {
+
+        @Test
+        void nullSourceCode() {
+            assertThatThrownBy(() -> CompiledExpression.compile(null, List.of(), errorReporter))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("source code should not be null!");
+        }
+
+        @Test
+        void nullParameters() {
+            assertThatThrownBy(() -> CompiledExpression.compile("1", null, errorReporter))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("parameters should not be null!");
+        }
+
+        @Test
+        void nullErrorReporter() {
+            assertThatThrownBy(() -> CompiledExpression.compile("1", List.of(), null))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("error reporter should not be null!");
+        }
+
+        @Test
+        void duplicateParameters() {
+            assertThatThrownBy(() -> CompiledExpression.compile("a", List.of("a", "a"), errorReporter))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("parameters should be unique!");
+        }
+
+        @Test
+        void wrongNumberOfSlots() {
+            var expression = CompiledExpression.compile("a + b", List.of("a", "b"), errorReporter);
+
+            assertThatThrownBy(() -> expression.evaluate(new Object[]{1.0}))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("expected 2 slot(s) but got 1!");
+        }
+    }
+
+    @Nested
+    class CompileErrors {
+
+        @Test
+        void syntaxError() {
+            assertThat(CompiledExpression.compile("1 +", List.of(), errorReporter)).isNull();
+
+            assertThat(errorReporter.getError()).hasToString("[line 1] SyntaxError: at ';' expect expression.");
+        }
+
+        @Test
+        void moreThanOneExpression() {
+            assertThat(CompiledExpression.compile("1; 2", List.of(), errorReporter)).isNull();
+
+            assertThat(errorReporter.getError()).hasToString("[line 1] SyntaxError: expect a single expression.");
+        }
+
+        @Test
+        void variableThatIsNotAParameter() {
+            assertThat(CompiledExpression.compile("a + c", List.of("a", "b"), errorReporter)).isNull();
+
+            assertThat(errorReporter.getError()).hasToString("[line 1] SemanticError: at 'c' is not a parameter of the expression.");
+        }
+
+        @ParameterizedTest
+        @ValueSource(strings = {"clock()", "a.b", "a.b = 1", "a = 1", "this", "super.a"})
+        void notAllowed(String sourceCode) {
+            assertThat(CompiledExpression.compile(sourceCode, List.of("a"), errorReporter)).isNull();
+
+            assertThat(errorReporter.getError().toString()).endsWith("not allowed in a compiled expression.");
+        }
+
+        @Test
+        void statement() {
+            assertThat(CompiledExpression.compile("var a = 1", List.of(), errorReporter)).isNull();
+
+            assertThat(errorReporter.getError()).hasToString("[line 1] SyntaxError: expect a single expression.");
+        }
+
+        @Test
+        void trailingComment() {
+            var expression = CompiledExpression.compile("a * 2 // twice", List.of("a"), errorReporter);
+
+            assertThat(expression.evaluateNumber(new Object[]{4.0})).isEqualTo(8.0);
+        }
+    }
+
+    @Nested
+    class Slots {
+
+        @Test
+        void areTheIndexesOfTheParameters() {
+            var expression = CompiledExpression.compile("x - y", List.of("y", "x"), errorReporter);
+
+            assertThat(expression.slotOf("y")).isZero();
+            assertThat(expression.slotOf("x")).isEqualTo(1);
+            assertThat(expression.evaluateNumber(new Object[]{1.0, 10.0})).isEqualTo(9.0);
+        }
+
+        @Test
+        void unknownParameter() {
+            var expression = CompiledExpression.compile("x", List.of("x"), errorReporter);
+
+            assertThatThrownBy(() -> expression.slotOf("z"))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("z is not a parameter!");
+        }
+
+        @Test
+        void canBeReusedForEveryEvaluation() {
+            var expression = CompiledExpression.compile("price * quantity > 100 and country == \"BE\"", List.of("price", "quantity", "country"), errorReporter);
+            var slots = new Object[3];
+
+            slots[0] = 25.0;
+            slots[1] = 5.0;
+            slots[2] = "BE";
+            assertThat(expression.evaluateBoolean(slots)).isTrue();
+
+            slots[1] = 4.0;
+            assertThat(expression.evaluateBoolean(slots)).isFalse();
+
+            slots[1] = 5.0;
+            slots[2] = "NL";
+            assertThat(expression.evaluateBoolean(slots)).isFalse();
+            assertThat(errorReporter.receivedError()).isFalse();
+        }
+    }
+
+    /**
+     * Every expression is evaluated by the interpreter as well, with the parameters as global variables.
+     */
+    @Nested
+    class SameAsTheInterpreter {
+
+        @ParameterizedTest
+        @ValueSource(strings = {
+                "a", "1 + 2 * 3 - 4 / 8", "-a", "--a", "a / b", "(a - 1) * (b + 1)",
+                "s + t", "s + \"!\"", "a > b", "a >= 3", "b < a", "a <= b",
+                "a == 3", "3 == a", "a == b", "a != b", "s == \"left\"", "s == t", "a == s", "nothing == nil", "nothing == false", "a * 1 == 3",
+                "0 / -1 == 0", "nil", "!nothing", "!a", "!!s",
+                "yes and s", "no and s", "nothing or t", "a or s", "yes and a * 2", "a > 1 and b < 0", "a > 5 or s == \"left\"",
+        })
+        void values(String sourceCode) {
+            assertThat(evaluate(sourceCode)).isEqualTo(interpret(sourceCode));
+            assertThat(errorReporter.receivedError()).isFalse();
+        }
+
+        @ParameterizedTest
+        @ValueSource(strings = {
+                "a - s", "s * 2", "-s", "-nothing", "a + s", "s + a", "a + nothing", "a > s", "nothing <= 1",
+                "a / 0", "a / (b + 0.5)", "s + (a / 0)", "(s > 1) + a", "-(a + s)", "yes and -s", "-s == 1", "a * 2 == -t",
+        })
+        void errors(String sourceCode) {
+            var interpreterErrors = new FakeErrorReporter();
+            var interpreted = interpret(sourceCode, interpreterErrors);
+
+            assertThat(evaluate(sourceCode)).isEqualTo(interpreted).isNull();
+            assertThat(errorReporter.getError()).hasToString(interpreterErrors.getError().toString());
+        }
+
+        @ParameterizedTest
+        @ValueSource(strings = {"a > 1 and b < 0", "no or s", "nothing", "!yes", "s == t", "a * 0", "-b"})
+        void truthiness(String sourceCode) {
+            var compiled = CompiledExpression.compile(sourceCode, PARAMETERS, errorReporter);
+
+            assertThat(compiled.evaluateBoolean(VALUES)).isEqualTo(isTruthy(interpret(sourceCode)));
+        }
+
+        @ParameterizedTest
+        @ValueSource(strings = {"a * b + 1", "-a", "yes and a", "nothing or b", "a + (b - 1) / 2"})
+        void numbers(String sourceCode) {
+            var compiled = CompiledExpression.compile(sourceCode, PARAMETERS, errorReporter);
+
+            assertThat(compiled.evaluateNumber(VALUES)).isEqualTo(interpret(sourceCode));
+        }
+
+        private Object evaluate(String sourceCode) {
+            return CompiledExpression.compile(sourceCode, PARAMETERS, errorReporter).evaluate(VALUES);
+        }
+
+        private Object interpret(String sourceCode) {
+            return interpret(sourceCode, new FakeErrorReporter());
+        }
+
+        private Object interpret(String sourceCode, FakeErrorReporter interpreterErrors) {
+            var globals = new HashMap<String, Object>();
+            for (var i = 0; i < PARAMETERS.size(); i++) {
+                globals.put(PARAMETERS.get(i), VALUES[i]);
+            }
+
+            var statements = Parser.createDefault(Scanner.createDefault(sourceCode + ";").scanTokens()).parse();
+            var interpreter = Interpreter.create(globals, line -> {});
+            interpreter.addErrorReporter(interpreterErrors);
+
+            return interpreter.interpret(((Statement.Expression) statements.get(0)).expression());
+        }
+
+        private boolean isTruthy(Object value) {
+            return value != null && !Boolean.FALSE.equals(value);
+        }
+    }
+
+    @Nested
+    class RuntimeErrors {
+
+        @Test
+        void numberThatIsNotANumber() {
+            var expression = CompiledExpression.compile("s + t", PARAMETERS, errorReporter);
+
+            assertThat(expression.evaluateNumber(VALUES)).isNaN();
+            assertThat(errorReporter.getError()).hasToString("[line 1] RuntimeError: at 's + t' expression must evaluate to a number.");
+        }
+
+        @Test
+        void booleanIsFalse() {
+            var expression = CompiledExpression.compile("yes and a / 0", PARAMETERS, errorReporter);
+
+            assertThat(expression.evaluateBoolean(VALUES)).isFalse();
+            assertThat(errorReporter.getError()).hasToString("[line 1] RuntimeError: at '/' can not divide by zero!");
+        }
+
+        @Test
+        void numberOnLaterLine() {
+            var expression = CompiledExpression.compile("a +\n -s", PARAMETERS, errorReporter);
+
+            assertThat(expression.evaluateNumber(VALUES)).isNaN();
+            assertThat(errorReporter.getError()).hasToString("[line 2] RuntimeError: at '-' operand must be a number.");
+        }
+
+        @Test
+        void slotsOfOtherJavaNumberTypesAreNotNumbers() {
+            var expression = CompiledExpression.compile("a * 2", List.of("a"), errorReporter);
+
+            assertThat(expression.evaluateNumber(new Object[]{2})).isNaN();
+            assertThat(errorReporter.getError()).hasToString("[line 1] RuntimeError: at '*' operands must be numbers.");
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package be.guldentops.geert.lox.interpreter;
+
+import be.guldentops.geert.lox.error.FakeErrorReporter;
+import be.guldentops.geert.lox.grammar.Expression;
+import be.guldentops.geert.lox.grammar.Statement;
+import be.guldentops.geert.lox.lexer.Scanner;
+import be.guldentops.geert.lox.parser.Parser;
+import be.guldentops.geert.lox.semantic.analysis.Resolver;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompiledProgramTest {
+
+    @Nested
+    class DegenerateCases {
+
+        @Test
+        void nullScript() {
+            assertThatThrownBy(() -> new CompiledProgram(null, List.of(), Map.of()))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("script should not be null!");
+        }
+
+        @Test
+        void nullStatements() {
+            assertThatThrownBy(() -> new CompiledProgram("<script>", null, Map.of()))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("statements should not be null!");
+        }
+
+        @Test
+        void nullLocals() {
+            assertThatThrownBy(() -> new CompiledProgram("<script>", List.of(), null))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("locals should not be null!");
+        }
+    }
+
+    @Nested
+    class Immutability {
+
+        @Test
+        void statementsCanNotBeChanged() {
+            var program = compile("print 1;");
+
+            assertThatThrownBy(() -> program.statements().clear()).isInstanceOf(UnsupportedOperationException.class);
+        }
+
+        @Test
+        void changingTheLocalsAfterwardsHasNoEffect() {
+            var statements = Parser.createDefault(Scanner.createDefault("{ var a = \"local\"; print a; }").scanTokens()).parse();
+            var locals = new IdentityHashMap<Expression, Integer>();
+            Resolver.createDefault(locals::put).resolve(statements);
+
+            var program = new CompiledProgram("<script>", statements, locals);
+            locals.clear();
+
+            assertThat(run(program)).isEqualTo("local\n");
+        }
+    }
+
+    @Nested
+    class Runs {
+
+        @Test
+        void startFromAnEmptyGlobalEnvironment() {
+            var program = compile("""
+                    var count = 0;
+                    fun increment() { count = count + 1; return count; }
+                    increment();
+                    print increment();
+                    """);
+
+            assertThat(run(program)).isEqualTo("2\n");
+            assertThat(run(program)).isEqualTo("2\n");
+        }
+
+        @Test
+        void leaveTheirGlobalEnvironmentBehind() {
+            var program = compile("var greeting = \"hello\";");
+
+            var interpreter = program.run(new PrintStream(new ByteArrayOutputStream()), new FakeErrorReporter());
+            var greeting = (Statement.Expression) Parser.createDefault(Scanner.createDefault("greeting;").scanTokens()).parse().get(0);
+
+            assertThat(interpreter.interpret(greeting.expression())).isEqualTo("hello");
+        }
+
+        @Test
+        void reportRuntimeErrors() {
+            var program = compile("print 1; print -\"a\";");
+            var errors = new FakeErrorReporter();
+
+            var out = new ByteArrayOutputStream();
+            program.run(new PrintStream(out), errors);
+
+            assertThat(out.toString()).isEqualTo("1\n");
+            assertThat(errors.getError()).hasToString("[line 1] RuntimeError: at '-' operand must be a number.");
+        }
+
+        @Test
+        void concurrently() throws Exception {
+            var program = compile("""
+                    class Counter {
+                      init() { this.count = 0; }
+                      increment() { this.count = this.count + 1; return this; }
+                    }
+                    fun fib(n) {
+                      if (n < 2) return n;
+                      return fib(n - 2) + fib(n - 1);
+                    }
+                    var counter = Counter();
+                    for (var i = 0; i < 1000; i = i + 1) {
+                      var local = i;
+                      counter.increment();
+                    }
+                    print counter.count;
+                    print fib(15);
+                    """);
+
+            var executor = Executors.newFixedThreadPool(8);
+            try {
+                var runs = new ArrayList<Future<String>>();
+                for (var i = 0; i < 64; i++) {
+                    runs.add(executor.submit((Callable<String>) () -> run(program)));
+                }
+
+                for (var run : runs) {
+                    assertThat(run.get()).isEqualTo("1000\n610\n");
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private CompiledProgram compile(String sourceCode) {
+        var statements = Parser.createDefault(Scanner.createDefault(sourceCode).scanTokens()).parse();
+        var locals = new IdentityHashMap<Expression, Integer>();
+        var errors = new FakeErrorReporter();
+        var resolver = Resolver.createDefault(locals::put);
+        resolver.addErrorReporter(errors);
+        resolver.resolve(statements);
+
+        assertThat(errors.getError()).isNull();
+
+        return new CompiledProgram("<script>", statements, locals);
+    }
+
+    private String run(CompiledProgram program) {
+        var out = new ByteArrayOutputStream();
+        var errors = new FakeErrorReporter();
+
+        program.run(new PrintStream(out), errors);
+
+        assertThat(errors.getError()).isNull();
+        return out.toString();
+    }
+}
@@ -0,0 +1,113 @@
+package be.guldentops.geert.lox.interpreter;
+
+import be.guldentops.geert.lox.error.FakeErrorReporter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMX;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static be.guldentops.geert.lox.grammar.ExpressionTestFactory.binary;
+import static be.guldentops.geert.lox.grammar.ExpressionTestFactory.call;
+import static be.guldentops.geert.lox.grammar.ExpressionTestFactory.literal;
+import static be.guldentops.geert.lox.grammar.StatementTestFactory._class;
+import static be.guldentops.geert.lox.grammar.StatementTestFactory.blockStatement;
+import static be.guldentops.geert.lox.grammar.StatementTestFactory.expressionStatement;
+import static be.guldentops.geert.lox.grammar.StatementTestFactory.function;
+import static be.guldentops.geert.lox.grammar.StatementTestFactory.variableDeclaration;
+import static be.guldentops.geert.lox.lexer.TokenObjectMother.plus;
+import static be.guldentops.geert.lox.lexer.TokenObjectMother.slash;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExecutionStatisticsTest {
+
+    private Environment environment;
+    private Interpreter interpreter;
+
+    private ExecutionStatisticsMXBean statistics;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ExecutionStatistics.registerPlatformMBean();
+
+        environment = Environment.createGlobal();
+        interpreter = new PostOrderTraversalInterpreter(environment);
+        interpreter.addErrorReporter(new FakeErrorReporter());
+
+        statistics = JMX.newMXBeanProxy(
+                ManagementFactory.getPlatformMBeanServer(),
+                new ObjectName(ExecutionStatistics.OBJECT_NAME),
+                ExecutionStatisticsMXBean.class
+        );
+    }
+
+    @Nested
+    class Registration {
+
+        @Test
+        void registeringTwiceIsHarmless() {
+            ExecutionStatistics.registerPlatformMBean();
+
+            assertThat(statistics.getStatementsExecuted()).isNotNegative();
+        }
+    }
+
+    @Nested
+    class Counters {
+
+        @Test
+        void countsStatementsAndExpressionsByType() {
+            var statementsBefore = statistics.getStatementsExecuted();
+            var expressionsBefore = statistics.getExpressionsEvaluated();
+            var literalsBefore = countOf("Literal");
+            var binariesBefore = countOf("Binary");
+
+            interpreter.interpret(List.of(
+                    expressionStatement(binary(literal(1.0), plus(), literal(2.0))),
+                    blockStatement(expressionStatement(literal(3.0)))
+            ));
+
+            assertThat(statistics.getStatementsExecuted() - statementsBefore).isEqualTo(3);
+            assertThat(statistics.getExpressionsEvaluated() - expressionsBefore).isEqualTo(4);
+            assertThat(countOf("Literal") - literalsBefore).isEqualTo(3);
+            assertThat(countOf("Binary") - binariesBefore).isEqualTo(1);
+        }
+
+        @Test
+        void countsCallsEnvironmentsAndInstances() {
+            var callsBefore = statistics.getCalls();
+            var environmentsBefore = statistics.getEnvironmentsAllocated();
+            var instancesBefore = statistics.getInstancesCreated();
+
+            interpreter.interpret(List.of(
+                    function("f", emptyList(), emptyList()),
+                    _class("Foo", emptyList()),
+                    expressionStatement(call("f")),
+                    expressionStatement(call("Foo"))
+            ));
+
+            assertThat(statistics.getCalls() - callsBefore).isEqualTo(2);
+            assertThat(statistics.getEnvironmentsAllocated() - environmentsBefore).isEqualTo(1);
+            assertThat(statistics.getInstancesCreated() - instancesBefore).isEqualTo(1);
+        }
+
+        @Test
+        void countsRuntimeErrors() {
+            var runtimeErrorsBefore = statistics.getRuntimeErrors();
+
+            interpreter.interpret(List.of(
+                    variableDeclaration("a", binary(literal(1.0), slash(), literal(0.0)))
+            ));
+
+            assertThat(statistics.getRuntimeErrors() - runtimeErrorsBefore).isEqualTo(1);
+        }
+    }
+
+    private long countOf(String type) {
+        return statistics.getExpressionsEvaluatedByType().getOrDefault(type, 0L);
+    }
+}
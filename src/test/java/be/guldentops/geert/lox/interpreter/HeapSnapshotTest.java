@@ -0,0 +1,179 @@
+package be.guldentops.geert.lox.interpreter;
+
+import be.guldentops.geert.lox.error.FakeErrorReporter;
+import be.guldentops.geert.lox.grammar.SourceMap;
+import be.guldentops.geert.lox.lexer.Scanner;
+import be.guldentops.geert.lox.parser.Parser;
+import be.guldentops.geert.lox.semantic.analysis.Resolver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HeapSnapshotTest {
+
+    private final PrintStream originalOut = System.out;
+    private final ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() {
+        System.setOut(new PrintStream(outContent));
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Nested
+    class RoundTrip {
+
+        @Test
+        void valuesClassesAndInstances() throws IOException {
+            var restored = restore(takeSnapshot("""
+                    var nothing = nil;
+                    var yes = true;
+                    var pi = 3.14;
+                    var greeting = "h\u00e9llo";
+                    class Shape {
+                      init(name) { this.name = name; }
+                      describe() { return this.name + " of " + this.size(); }
+                    }
+                    class Square < Shape {
+                      init(side, sideName) { super.init("square"); this.side = side; this.sideName = sideName; }
+                      area() { return this.side * this.side; }
+                      size() { return "side " + this.sideName; }
+                    }
+                    var square = Square(3, "three");
+                    square.self = square;
+                    """));
+
+            run(restored, """
+                    print nothing;
+                    print yes;
+                    print pi;
+                    print greeting == "h\u00e9llo";
+                    print square.self.describe();
+                    print Square(2, "two").describe();
+                    square.side = 4;
+                    print square.area();
+                    """);
+
+            assertThat(outContent.toString()).isEqualTo("nil\ntrue\n3.14\ntrue\nsquare of side three\nsquare of side two\n16\n");
+        }
+
+        @Test
+        void closuresKeepTheirOwnEnvironment() throws IOException {
+            var snapshot = takeSnapshot("""
+                    fun makeCounter() {
+                      var count = 0;
+                      fun counter() { count = count + 1; return count; }
+                      return counter;
+                    }
+                    var first = makeCounter();
+                    var second = makeCounter();
+                    first();
+                    first();
+                    """);
+
+            var restored = restore(snapshot);
+            run(restored, "print first(); print second(); print first();");
+
+            assertThat(outContent.toString()).isEqualTo("3\n1\n4\n");
+        }
+
+        @Test
+        void nativeFunctionsAreRestoredByName() throws IOException {
+            var restored = restore(takeSnapshot("var now = clock;"));
+
+            run(restored, "print now == clock; print now() > 0;");
+
+            assertThat(outContent.toString()).isEqualTo("true\ntrue\n");
+        }
+
+        @Test
+        void longChainsOfInstances() throws IOException {
+            var restored = restore(takeSnapshot("""
+                    class Node { init(next) { this.next = next; } }
+                    var list = nil;
+                    for (var i = 0; i < 100000; i = i + 1) list = Node(list);
+                    """));
+
+            run(restored, """
+                    var length = 0;
+                    while (list != nil) { length = length + 1; list = list.next; }
+                    print length;
+                    """);
+
+            assertThat(outContent.toString()).isEqualTo("100000\n");
+        }
+    }
+
+    @Nested
+    class ErrorCases {
+
+        @Test
+        void fileThatIsNotASnapshot() throws IOException {
+            var file = Files.writeString(directory.resolve("not.snapshot"), "var a = 1;");
+
+            assertThatThrownBy(() -> Interpreter.createDefault().restoreSnapshot(file))
+                    .isInstanceOf(IOException.class)
+                    .hasMessage(file + " is not a snapshot taken by this version of jlox!");
+        }
+
+        @Test
+        void functionWhoseBodyContainsErrors() {
+            var interpreter = Interpreter.createDefault();
+            var statements = Parser.createDeferringFunctionBodies(Scanner.createDefault("fun broken() { return this; }"), new SourceMap()).parse();
+            var resolver = Resolver.createDefault(interpreter);
+            resolver.addErrorReporter(new FakeErrorReporter());
+            resolver.resolve(statements);
+            interpreter.interpret(statements);
+
+            assertThatThrownBy(() -> interpreter.saveSnapshot(directory.resolve("broken.snapshot")))
+                    .isInstanceOf(IOException.class)
+                    .hasMessage("Can not take a snapshot of <fn broken>, its body contains errors!");
+        }
+    }
+
+    private Path takeSnapshot(String setup) throws IOException {
+        var interpreter = Interpreter.createDefault();
+        run(interpreter, setup);
+
+        var snapshot = directory.resolve("setup.snapshot");
+        interpreter.saveSnapshot(snapshot);
+
+        return snapshot;
+    }
+
+    private Interpreter restore(Path snapshot) throws IOException {
+        var interpreter = Interpreter.createDefault();
+        interpreter.restoreSnapshot(snapshot);
+
+        return interpreter;
+    }
+
+    private void run(Interpreter interpreter, String sourceCode) {
+        var statements = Parser.createDefault(Scanner.createDefault(sourceCode).scanTokens()).parse();
+        Resolver.createDefault(interpreter).resolve(statements);
+
+        var errors = new FakeErrorReporter();
+        interpreter.addErrorReporter(errors);
+        interpreter.interpret(statements);
+
+        assertThat(errors.getError()).isNull();
+    }
+}
@@ -0,0 +1,196 @@
+package be.guldentops.geert.lox.lexer;
+
+import be.guldentops.geert.lox.error.Error;
+import be.guldentops.geert.lox.error.ErrorReporter;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ParallelScannerTest {
+
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    static void startPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void stopPool() {
+        pool.shutdown();
+    }
+
+    @Nested
+    class DegenerateCases {
+
+        @Test
+        void scanNullSourceCode() {
+            assertThatThrownBy(() -> new ParallelScanner(null, 1, pool))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("source code should not be null!");
+        }
+
+        @Test
+        void scanEmptySourceCode() {
+            assertScansLikeSimpleScanner("", 1);
+        }
+    }
+
+    @Nested
+    class Differential {
+
+        @ParameterizedTest
+        @ValueSource(ints = {1, 2, 3, 5, 8, 13, 1_000})
+        void programWithoutStrings(int chunkSize) {
+            assertScansLikeSimpleScanner("""
+                    var a = 1;
+                    // a comment
+                    fun f(x) {
+                      return x * 2.5;
+                    }
+                    print f(a) >= 3 and !false;
+                    """, chunkSize);
+        }
+
+        @ParameterizedTest
+        @ValueSource(ints = {1, 2, 3, 5, 8, 13, 1_000})
+        void stringsThatSpanChunks(int chunkSize) {
+            assertScansLikeSimpleScanner("""
+                    print "one
+                    two
+                    three";
+                    var b = "a"; var c = "b
+                    c"; print "d
+                    // not a comment
+                    e";
+                    print "f";
+                    """, chunkSize);
+        }
+
+        @ParameterizedTest
+        @ValueSource(ints = {1, 2, 3, 5, 8, 13, 1_000})
+        void quotesInComments(int chunkSize) {
+            assertScansLikeSimpleScanner("""
+                    // "not a string
+                    print 1;
+                    print "// not a comment"; // "
+                    print 2;
+                    """, chunkSize);
+        }
+
+        @ParameterizedTest
+        @ValueSource(ints = {1, 2, 3, 5, 8, 13, 1_000})
+        void errors(int chunkSize) {
+            assertScansLikeSimpleScanner("""
+                    print @;
+                    print "spans
+                    lines"; #
+                    var a = "never
+                    closed;
+                    $
+                    """, chunkSize);
+        }
+
+        @Test
+        void randomPrograms() {
+            var random = new Random(42);
+            var fragments = List.of("var", " ", "\n", "\"", "a", "1.5", "//", "(", ")", ";", "==", "!", "@", "class", "x_1", "\t");
+
+            for (var program = 0; program < 200; program++) {
+                var sourceCode = new StringBuilder();
+                for (var fragment = 0; fragment < 100; fragment++) {
+                    sourceCode.append(fragments.get(random.nextInt(fragments.size())));
+                }
+
+                assertScansLikeSimpleScanner(sourceCode.toString(), 1 + random.nextInt(20));
+            }
+        }
+    }
+
+    @Nested
+    class OnDemand {
+
+        @Test
+        void handsOutTheTokensOneAtATime() {
+            var scanner = new ParallelScanner("print 1;\nprint 2;", 1, pool);
+
+            assertThat(scanner.nextToken().type()).isEqualTo(Token.Type.PRINT);
+            assertThat(scanner.nextToken().type()).isEqualTo(Token.Type.NUMBER);
+            assertThat(scanner.nextToken().type()).isEqualTo(Token.Type.SEMICOLON);
+            assertThat(scanner.nextToken().line()).isEqualTo(2);
+        }
+
+        @Test
+        void positionsAreOffsetsInTheSourceCodeAcrossChunks() {
+            var sourceCode = "print \"a\nb\";\nprint 2;\nfun f() {}";
+            var scanner = new ParallelScanner(sourceCode, 1, pool);
+
+            for (var token = scanner.nextToken(); token.type() != Token.Type.EOF; token = scanner.nextToken()) {
+                assertThat(sourceCode.substring(scanner.positionOfLastToken())).startsWith(token.lexeme());
+            }
+            assertThat(scanner.positionOfLastToken()).isEqualTo(sourceCode.length());
+        }
+    }
+
+    private void assertScansLikeSimpleScanner(String sourceCode, int chunkSize) {
+        var expectedErrors = new ArrayList<String>();
+        var simpleScanner = new SimpleScanner(sourceCode);
+        simpleScanner.addErrorReporter(collectingErrorReporter(expectedErrors));
+        var expected = simpleScanner.scanTokens();
+
+        var actualErrors = new ArrayList<String>();
+        var parallelScanner = new ParallelScanner(sourceCode, chunkSize, pool);
+        parallelScanner.addErrorReporter(collectingErrorReporter(actualErrors));
+        var actual = parallelScanner.scanTokens();
+
+        assertThat(describe(actual)).as("tokens of %s", sourceCode).isEqualTo(describe(expected));
+        assertThat(actualErrors).as("errors of %s", sourceCode).isEqualTo(expectedErrors);
+
+        var pulledErrors = new ArrayList<String>();
+        var pullingScanner = new ParallelScanner(sourceCode, chunkSize, pool);
+        pullingScanner.addErrorReporter(collectingErrorReporter(pulledErrors));
+        var pulled = new ArrayList<Token>();
+        do {
+            pulled.add(pullingScanner.nextToken());
+        } while (pulled.get(pulled.size() - 1).type() != Token.Type.EOF);
+
+        assertThat(describe(pulled)).as("pulled tokens of %s", sourceCode).isEqualTo(describe(expected));
+        assertThat(pulledErrors).as("errors while pulling %s", sourceCode).isEqualTo(expectedErrors);
+    }
+
+    private List<String> describe(List<Token> tokens) {
+        return tokens.stream().map(token -> token + " @" + token.line()).collect(toList());
+    }
+
+    private ErrorReporter collectingErrorReporter(List<String> errors) {
+        return new ErrorReporter() {
+
+            @Override
+            public void handle(Error error) {
+                errors.add(error.toString());
+            }
+
+            @Override
+            public boolean receivedError() {
+                return !errors.isEmpty();
+            }
+
+            @Override
+            public void reset() {
+                errors.clear();
+            }
+        };
+    }
+}
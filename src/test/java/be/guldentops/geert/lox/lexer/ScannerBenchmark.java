@@ -0,0 +1,66 @@
+package be.guldentops.geert.lox.lexer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast the scanner gets through keyword and identifier dense source code.
+ * <p>
+ * Run it with {@code -prof gc} to see the allocations per scan as well.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScannerBenchmark {
+
+    private static final String KEYWORDS = """
+            class Node < Base {
+              init(value) { this.value = value; super.init(); }
+              visit(other) {
+                if (this.value and other or nil) return true; else return false;
+                while (false) { var x = this; print x; }
+                for (var i = nil; i; i = false) fun inner() { return this; }
+              }
+            }
+            """;
+
+    private static final String IDENTIFIERS = """
+            counter = accumulator + increment * factor - offset / divisor;
+            result = compute(alpha, beta, gamma, delta, epsilon, zeta);
+            """;
+
+    @Param({"keywords", "identifiers"})
+    public String code;
+
+    private String sourceCode;
+
+    @Setup
+    public void setUp() {
+        sourceCode = (code.equals("keywords") ? KEYWORDS : IDENTIFIERS).repeat(100);
+    }
+
+    @Benchmark
+    public List<Token> scanTokens() {
+        return Scanner.createDefault(sourceCode).scanTokens();
+    }
+
+    @Benchmark
+    public TokenBuffer bufferTokens() {
+        return Scanner.createDefault(sourceCode).bufferTokens();
+    }
+}
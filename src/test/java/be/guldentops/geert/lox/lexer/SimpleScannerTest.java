@@ -369,6 +369,23 @@ class SimpleScannerTest {
 
             assertThat(fakeErrorReporter.receivedError()).isFalse();
         }
+
+        @ParameterizedTest
+        @ValueSource(strings = {"an", "ands", "classes", "els", "fa", "falsey", "fo", "fore", "fn", "fund", "iff", "ni", "nils",
+                "orr", "prints", "returned", "sup", "th", "thus", "tr", "truest", "va", "variable", "whiles", "And", "tHis"
+        })
+        void identifierThatLooksLikeAReservedWord(String identifier) {
+            var scanner = createScanner(identifier);
+
+            var tokens = scanner.scanTokens();
+
+            assertThat(tokens).hasSize(2);
+            assertThat(tokens.get(0).type()).isEqualTo(IDENTIFIER);
+            assertThat(tokens.get(0).lexeme()).isEqualTo(identifier);
+            assertTokenIsEndOfLine(tokens.get(1));
+
+            assertThat(fakeErrorReporter.receivedError()).isFalse();
+        }
     }
 
     @Nested
@@ -486,6 +503,46 @@ class SimpleScannerTest {
         }
     }
 
+    @Nested
+    class OnDemand {
+
+        @Test
+        void scansOneTokenAtATime() {
+            var scanner = createScanner("print\n  // comment\n  1;");
+
+            assertThat(scanner.nextToken()).extracting(Token::type, Token::line).containsExactly(PRINT, 1);
+            assertThat(scanner.nextToken()).extracting(Token::type, Token::line).containsExactly(NUMBER, 3);
+            assertThat(scanner.nextToken()).extracting(Token::type, Token::line).containsExactly(SEMICOLON, 3);
+            assertThat(scanner.nextToken()).extracting(Token::type, Token::line).containsExactly(EOF, 3);
+        }
+
+        @Test
+        void keepsReturningEndOfFileOnceExhausted() {
+            var scanner = createScanner("");
+
+            assertTokenIsEndOfLine(scanner.nextToken());
+            assertTokenIsEndOfLine(scanner.nextToken());
+        }
+
+        @Test
+        void reportsErrorsWhenTheOffendingCharacterIsReached() {
+            var scanner = createScanner("1 @ 2");
+
+            assertThat(scanner.nextToken().type()).isEqualTo(NUMBER);
+            assertThat(fakeErrorReporter.receivedError()).isFalse();
+
+            assertThat(scanner.nextToken().type()).isEqualTo(NUMBER);
+            assertThat(fakeErrorReporter.getError()).hasToString("[line 1] SyntaxError: at '@' unexpected character.");
+        }
+
+        @Test
+        void scansAnyCharacterSequence() {
+            var scanner = Scanner.createDefault(new StringBuilder("var a;"));
+
+            assertThat(scanner.scanTokens()).extracting(Token::type).containsExactly(VAR, IDENTIFIER, SEMICOLON, EOF);
+        }
+    }
+
     private Scanner createScanner(String sourceCode) {
         var scanner = new SimpleScanner(sourceCode);
         scanner.addErrorReporter(fakeErrorReporter);
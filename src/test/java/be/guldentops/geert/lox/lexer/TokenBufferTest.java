@@ -0,0 +1,132 @@
+package be.guldentops.geert.lox.lexer;
+
+import be.guldentops.geert.lox.error.FakeErrorReporter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static be.guldentops.geert.lox.lexer.Token.Type.EOF;
+import static be.guldentops.geert.lox.lexer.Token.Type.IDENTIFIER;
+import static be.guldentops.geert.lox.lexer.Token.Type.LEFT_BRACE;
+import static be.guldentops.geert.lox.lexer.Token.Type.NUMBER;
+import static be.guldentops.geert.lox.lexer.Token.Type.PRINT;
+import static be.guldentops.geert.lox.lexer.Token.Type.SEMICOLON;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBufferTest {
+
+    private FakeErrorReporter fakeErrorReporter;
+
+    @BeforeEach
+    void setUp() {
+        fakeErrorReporter = new FakeErrorReporter();
+    }
+
+    @Nested
+    class Columns {
+
+        @Test
+        void storesTheTypeAndLineOfEveryToken() {
+            var tokens = bufferTokens("print x;\n{");
+
+            assertThat(tokens.size()).isEqualTo(5);
+            assertThat(List.of(tokens.type(0), tokens.type(1), tokens.type(2), tokens.type(3), tokens.type(4)))
+                    .containsExactly(PRINT, IDENTIFIER, SEMICOLON, LEFT_BRACE, EOF);
+            assertThat(List.of(tokens.line(0), tokens.line(1), tokens.line(2), tokens.line(3), tokens.line(4)))
+                    .containsExactly(1, 1, 1, 2, 2);
+        }
+
+        @Test
+        void storesTheOffsetsOfEveryToken() {
+            var tokens = bufferTokens("print x;\n  {");
+
+            assertThat(List.of(tokens.start(0), tokens.start(1), tokens.start(2), tokens.start(3), tokens.start(4)))
+                    .containsExactly(0, 6, 7, 11, 12);
+            assertThat(List.of(tokens.end(0), tokens.end(1), tokens.end(2), tokens.end(3), tokens.end(4)))
+                    .containsExactly(5, 7, 8, 12, 12);
+        }
+
+        @Test
+        void createsLexemesAndLiteralsWhenAskedFor() {
+            var tokens = bufferTokens("answer \"forty\" 42.5");
+
+            assertThat(tokens.lexeme(0)).isEqualTo("answer");
+            assertThat(tokens.literal(0)).isNull();
+            assertThat(tokens.lexeme(1)).isEqualTo("\"forty\"");
+            assertThat(tokens.literal(1)).isEqualTo("forty");
+            assertThat(tokens.lexeme(2)).isEqualTo("42.5");
+            assertThat(tokens.literal(2)).isEqualTo(42.5);
+        }
+
+        @Test
+        void tokensWithAFixedLexemeShareIt() {
+            var tokens = bufferTokens("print; print;");
+
+            assertThat(tokens.lexeme(0)).isSameAs(tokens.lexeme(2)).isSameAs(PRINT.lexeme());
+            assertThat(tokens.lexeme(1)).isSameAs(SEMICOLON.lexeme());
+            assertThat(tokens.lexeme(4)).isEmpty();
+        }
+
+        @Test
+        void growsBeyondItsInitialCapacity() {
+            var tokens = bufferTokens("1;".repeat(1_000));
+
+            assertThat(tokens.size()).isEqualTo(2_001);
+            assertThat(tokens.type(1_998)).isEqualTo(NUMBER);
+            assertThat(tokens.type(2_000)).isEqualTo(EOF);
+        }
+    }
+
+    @Nested
+    class TokenSources {
+
+        @Test
+        void materializesTheSameTokensAsTheScanner() {
+            var sourceCode = "var s = \"a\nb\";\nprint s + 1;";
+            var expected = Scanner.createDefault(sourceCode).scanTokens();
+
+            var tokens = bufferTokens(sourceCode).tokenSource();
+
+            var actual = new ArrayList<Token>();
+            for (var i = 0; i < expected.size(); i++) {
+                actual.add(tokens.nextToken());
+            }
+
+            assertThat(actual).extracting(Token::toString).isEqualTo(expected.stream().map(Token::toString).collect(toList()));
+            assertThat(actual).extracting(Token::line).isEqualTo(expected.stream().map(Token::line).collect(toList()));
+        }
+
+        @Test
+        void keepsReturningEndOfFileOnceExhausted() {
+            var tokens = bufferTokens("").tokenSource();
+
+            assertThat(tokens.nextToken().type()).isEqualTo(EOF);
+            assertThat(tokens.nextToken().type()).isEqualTo(EOF);
+        }
+    }
+
+    @Test
+    void skipsErroneousCharacters() {
+        var scanner = Scanner.createDefault("1 @ \"unterminated");
+        scanner.addErrorReporter(fakeErrorReporter);
+
+        var tokens = scanner.bufferTokens();
+
+        assertThat(tokens.size()).isEqualTo(2);
+        assertThat(fakeErrorReporter.receivedError()).isTrue();
+    }
+
+    private TokenBuffer bufferTokens(String sourceCode) {
+        var scanner = Scanner.createDefault(sourceCode);
+        scanner.addErrorReporter(fakeErrorReporter);
+
+        var tokens = scanner.bufferTokens();
+
+        assertThat(fakeErrorReporter.receivedError()).isFalse();
+        return tokens;
+    }
+}
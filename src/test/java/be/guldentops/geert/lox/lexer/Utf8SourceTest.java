@@ -0,0 +1,86 @@
+package be.guldentops.geert.lox.lexer;
+
+import be.guldentops.geert.lox.error.FakeErrorReporter;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static be.guldentops.geert.lox.lexer.Token.Type.EOF;
+import static be.guldentops.geert.lox.lexer.Token.Type.EQUAL;
+import static be.guldentops.geert.lox.lexer.Token.Type.IDENTIFIER;
+import static be.guldentops.geert.lox.lexer.Token.Type.NUMBER;
+import static be.guldentops.geert.lox.lexer.Token.Type.PRINT;
+import static be.guldentops.geert.lox.lexer.Token.Type.SEMICOLON;
+import static be.guldentops.geert.lox.lexer.Token.Type.STRING;
+import static be.guldentops.geert.lox.lexer.Token.Type.VAR;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class Utf8SourceTest {
+
+    @Nested
+    class CharacterSequence {
+
+        @Test
+        void indicesAreByteOffsets() {
+            var source = new Utf8Source("é;".getBytes(UTF_8));
+
+            assertThat(source.length()).isEqualTo(3);
+            assertThat(source.charAt(2)).isEqualTo(';');
+        }
+
+        @Test
+        void subSequencesAreDecoded() {
+            var source = new Utf8Source("\"héllo wörld\"".getBytes(UTF_8));
+
+            assertThat(source.subSequence(1, 14)).isEqualTo("héllo wörld");
+            assertThat(source).hasToString("\"héllo wörld\"");
+        }
+    }
+
+    @Nested
+    class Scanning {
+
+        @Test
+        void scansTheSameTokensAsTheDecodedSourceCode() {
+            var sourceCode = "var greeting = \"¡hola\nmundo!\";\nprint greeting;\nprint 3.14;";
+
+            var fromBytes = scan(new Utf8Source(sourceCode.getBytes(UTF_8)));
+            var fromString = scan(sourceCode);
+
+            assertThat(fromBytes)
+                    .extracting(Token::type)
+                    .containsExactly(VAR, IDENTIFIER, EQUAL, STRING, SEMICOLON, PRINT, IDENTIFIER, SEMICOLON, PRINT, NUMBER, SEMICOLON, EOF);
+            assertThat(fromBytes).hasSameSizeAs(fromString);
+            for (var i = 0; i < fromBytes.size(); i++) {
+                assertThat(fromBytes.get(i)).hasToString(fromString.get(i).toString());
+                assertThat(fromBytes.get(i).line()).isEqualTo(fromString.get(i).line());
+            }
+        }
+
+        @Test
+        void scansAMemoryMappedFile(@TempDir Path temporaryDirectory) throws Exception {
+            var script = temporaryDirectory.resolve("script.lox");
+            Files.writeString(script, "print \"ünïcödé\";", UTF_8);
+
+            var tokens = scan(Utf8Source.map(script));
+
+            assertThat(tokens).extracting(Token::literal).containsExactly(null, "ünïcödé", null, null);
+        }
+
+        private List<Token> scan(CharSequence sourceCode) {
+            var fakeErrorReporter = new FakeErrorReporter();
+            var scanner = Scanner.createDefault(sourceCode);
+            scanner.addErrorReporter(fakeErrorReporter);
+
+            var tokens = scanner.scanTokens();
+
+            assertThat(fakeErrorReporter.receivedError()).isFalse();
+            return tokens;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package be.guldentops.geert.lox.parser;
+
+import be.guldentops.geert.lox.error.Error;
+import be.guldentops.geert.lox.error.ErrorReporter;
+import be.guldentops.geert.lox.grammar.Expression;
+import be.guldentops.geert.lox.grammar.SourceMap;
+import be.guldentops.geert.lox.grammar.Statement;
+import be.guldentops.geert.lox.lexer.Scanner;
+import be.guldentops.geert.lox.lexer.Token;
+import be.guldentops.geert.lox.lexer.TokenSource;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExplicitStackParserTest {
+
+    private static final int NESTING = 200_000;
+
+    @Nested
+    class Differential {
+
+        @ParameterizedTest
+        @MethodSource("be.guldentops.geert.lox.parser.ExplicitStackParserTest#loxPrograms")
+        void loxPrograms(Path program) throws IOException {
+            assertParsesLikeRecursiveDescentParser(Files.readString(program));
+        }
+
+        @ParameterizedTest
+        @ValueSource(strings = {
+                "",
+                "print 1 + 2 * 3 - 4 / 5 == -6 and !true or nil != \"a\";",
+                "a = b.c = d(1, e.f(g), (h));",
+                "for (var i = 0; i < 10; i = i + 1) print i;",
+                "for (i = 0;;) { print i; }",
+                "for (;;) {}",
+                "if (a) if (b) print 1; else print 2;",
+                "while (a > b) { var c; { c = a; } }",
+                "class A < B { init(x) { this.x = x; } get() { return super.get(); } }",
+                "fun f(a, b, c) { return; }",
+        })
+        void validPrograms(String sourceCode) {
+            assertParsesLikeRecursiveDescentParser(sourceCode);
+        }
+
+        @ParameterizedTest
+        @ValueSource(strings = {
+                "print 1",
+                "var = 1; print 2;",
+                "{ print (1; print 2; } print 3;",
+                "if (a print 1; else print 2; print 3;",
+                "a + b = c;",
+                "f(1, 2, 3, 4, 5, 6, 7, 8, 9);",
+                "fun f(a, b, c, d, e, f, g, h, i) {}",
+                "class A { init( {} } print 1;",
+                "for (var i = 0; i < 1 print i;",
+                "super;",
+                "x.;",
+                "{ { print 1; }",
+        })
+        void invalidPrograms(String sourceCode) {
+            assertParsesLikeRecursiveDescentParser(sourceCode);
+        }
+    }
+
+    @Nested
+    class DeepNesting {
+
+        @Test
+        void groupings() {
+            var statements = parse("(".repeat(NESTING) + "1" + ")".repeat(NESTING) + ";", ExplicitStackParser.DEFAULT_MAX_DEPTH);
+
+            Expression expression = ((Statement.Expression) statements.get(0)).expression();
+            var depth = 0;
+            while (expression instanceof Expression.Grouping grouping) {
+                expression = grouping.expression();
+                depth++;
+            }
+            assertThat(depth).isEqualTo(NESTING);
+            assertThat(expression).isEqualTo(new Expression.Literal(1.0));
+        }
+
+        @Test
+        void blocks() {
+            var statements = parse("{".repeat(NESTING) + "print 1;" + "}".repeat(NESTING), ExplicitStackParser.DEFAULT_MAX_DEPTH);
+
+            Statement statement = statements.get(0);
+            var depth = 0;
+            while (statement instanceof Statement.Block block) {
+                statement = block.statements().get(0);
+                depth++;
+            }
+            assertThat(depth).isEqualTo(NESTING);
+            assertThat(statement).isInstanceOf(Statement.Print.class);
+        }
+
+        @Test
+        void unaryOperatorsAndIfStatements() {
+            var statements = parse("if (true) ".repeat(NESTING) + "-".repeat(NESTING) + "1;", ExplicitStackParser.DEFAULT_MAX_DEPTH);
+
+            assertThat(statements).hasSize(1);
+        }
+
+        @Test
+        void classWithManyEmptyMethods() {
+            var sourceCode = new StringBuilder("class A {\n");
+            for (var i = 0; i < NESTING; i++) {
+                sourceCode.append("m").append(i).append("() {}\n");
+            }
+
+            var statements = parse(sourceCode.append("}").toString(), ExplicitStackParser.DEFAULT_MAX_DEPTH);
+
+            assertThat(((Statement.Class) statements.get(0)).methods()).hasSize(NESTING);
+        }
+
+        @Test
+        void blockWithManyEmptyBlocks() {
+            var statements = parse("{" + "{}".repeat(NESTING) + "}", ExplicitStackParser.DEFAULT_MAX_DEPTH);
+
+            assertThat(((Statement.Block) statements.get(0)).statements()).hasSize(NESTING);
+        }
+
+        @Test
+        void nestingDeeperThanTheLimitIsASyntaxError() {
+            var errors = new CollectingErrorReporter();
+            var parser = new ExplicitStackParser(tokensOf("print 1;\nprint " + "(".repeat(1_000) + "1" + ")".repeat(1_000) + ";"), new SourceMap(), 100);
+            parser.addErrorReporter(errors);
+
+            var statements = parser.parse();
+
+            assertThat(statements).hasSize(1);
+            assertThat(errors.messages).hasSize(1);
+            assertThat(errors.messages.get(0)).contains("[line 2]", "program is nested too deeply.");
+        }
+
+        private List<Statement> parse(String sourceCode, int maxDepth) {
+            var errors = new CollectingErrorReporter();
+            var parser = new ExplicitStackParser(tokensOf(sourceCode), new SourceMap(), maxDepth);
+            parser.addErrorReporter(errors);
+
+            var statements = parser.parse();
+
+            assertThat(errors.messages).isEmpty();
+            return statements;
+        }
+    }
+
+    static Stream<Path> loxPrograms() throws IOException, URISyntaxException {
+        var root = Paths.get(ClassLoader.getSystemResource("lox/src").toURI());
+
+        return Files.walk(root).filter(path -> path.toString().endsWith(".lox")).sorted();
+    }
+
+    private void assertParsesLikeRecursiveDescentParser(String sourceCode) {
+        var tokens = Scanner.createDefault(sourceCode).scanTokens();
+
+        var expectedSourceMap = new SourceMap();
+        var expectedErrors = new CollectingErrorReporter();
+        var expectedParser = new RecursiveDescentParser(tokens, expectedSourceMap);
+        expectedParser.addErrorReporter(expectedErrors);
+        var expected = expectedParser.parse();
+
+        var actualSourceMap = new SourceMap();
+        var actualErrors = new CollectingErrorReporter();
+        var actualParser = new ExplicitStackParser(TokenSource.of(tokens), actualSourceMap, ExplicitStackParser.DEFAULT_MAX_DEPTH);
+        actualParser.addErrorReporter(actualErrors);
+        var actual = actualParser.parse();
+
+        // Tokens are compared by identity, so both parsers have to refer to the very same tokens.
+        assertThat(actual).isEqualTo(expected);
+        assertThat(actualErrors.messages).isEqualTo(expectedErrors.messages);
+        assertThat(linesOf(actual, actualSourceMap)).isEqualTo(linesOf(expected, expectedSourceMap));
+    }
+
+    private List<Integer> linesOf(List<Statement> statements, SourceMap sourceMap) {
+        var lines = new ArrayList<Integer>();
+        for (var statement : statements) {
+            collectLines(statement, sourceMap, lines);
+        }
+
+        return lines;
+    }
+
+    private void collectLines(Statement statement, SourceMap sourceMap, List<Integer> lines) {
+        if (statement == null) return;
+
+        lines.add(sourceMap.lineOf(statement));
+        if (statement instanceof Statement.Block block) {
+            block.statements().forEach(s -> collectLines(s, sourceMap, lines));
+        } else if (statement instanceof Statement.Class aClass) {
+            aClass.methods().forEach(s -> collectLines(s, sourceMap, lines));
+        } else if (statement instanceof Statement.Function function) {
+            function.body().forEach(s -> collectLines(s, sourceMap, lines));
+        } else if (statement instanceof Statement.If anIf) {
+            collectLines(anIf.thenBranch(), sourceMap, lines);
+            collectLines(anIf.elseBranch(), sourceMap, lines);
+        } else if (statement instanceof Statement.While aWhile) {
+            collectLines(aWhile.body(), sourceMap, lines);
+        }
+    }
+
+    private static TokenSource tokensOf(String sourceCode) {
+        List<Token> tokens = Scanner.createDefault(sourceCode).scanTokens();
+
+        return TokenSource.of(tokens);
+    }
+
+    private static class CollectingErrorReporter implements ErrorReporter {
+
+        private final List<String> messages = new ArrayList<>();
+
+        @Override
+        public void handle(Error error) {
+            messages.add(error.toString());
+        }
+
+        @Override
+        public boolean receivedError() {
+            return !messages.isEmpty();
+        }
+
+        @Override
+        public void reset() {
+            messages.clear();
+        }
+    }
+}
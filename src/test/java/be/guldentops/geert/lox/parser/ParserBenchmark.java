@@ -0,0 +1,50 @@
+package be.guldentops.geert.lox.parser;
+
+import be.guldentops.geert.lox.grammar.SourceMap;
+import be.guldentops.geert.lox.grammar.Statement;
+import be.guldentops.geert.lox.lexer.Scanner;
+import be.guldentops.geert.lox.lexer.Token;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast the parser gets through expression dense source code, which has already been scanned.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    private static final String EXPRESSIONS = """
+            var total = price * quantity - discount / 2 + shipping;
+            var eligible = age >= 18 and !banned or override == true;
+            print (a + b) * (c - d) / -e < f.g(h, 1, "i") and j != nil;
+            x = y = z * 2 + 1;
+            """;
+
+    private List<Token> tokens;
+
+    @Setup
+    public void setUp() {
+        tokens = Scanner.createDefault(EXPRESSIONS.repeat(100)).scanTokens();
+    }
+
+    @Benchmark
+    public List<Statement> parse() {
+        return Parser.createDefault(tokens, new SourceMap()).parse();
+    }
+}
@@ -1,16 +1,24 @@
 package be.guldentops.geert.lox.parser;
 
 import be.guldentops.geert.lox.error.FakeErrorReporter;
+import be.guldentops.geert.lox.grammar.DeferredBody;
 import be.guldentops.geert.lox.grammar.Expression;
+import be.guldentops.geert.lox.grammar.SourceMap;
 import be.guldentops.geert.lox.grammar.Statement;
+import be.guldentops.geert.lox.lexer.Scanner;
 import be.guldentops.geert.lox.lexer.Token;
+import be.guldentops.geert.lox.lexer.TokenSource;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
 
+import static be.guldentops.geert.lox.lexer.Token.Type.FOR;
+import static be.guldentops.geert.lox.lexer.Token.Type.LEFT_BRACE;
+import static be.guldentops.geert.lox.lexer.Token.Type.PRINT;
 import static be.guldentops.geert.lox.lexer.Token.Type.STRING;
+import static be.guldentops.geert.lox.lexer.Token.Type.VAR;
 import static be.guldentops.geert.lox.lexer.TokenObjectMother._class;
 import static be.guldentops.geert.lox.lexer.TokenObjectMother._else;
 import static be.guldentops.geert.lox.lexer.TokenObjectMother._false;
@@ -58,10 +66,12 @@ import static org.assertj.core.api.Assertions.assertThat;
 class RecursiveDescentParserTest {
 
     private FakeErrorReporter fakeErrorReporter;
+    private SourceMap sourceMap;
 
     @BeforeEach
     void setUp() {
         fakeErrorReporter = new FakeErrorReporter();
+        sourceMap = new SourceMap();
     }
 
     @Nested
@@ -352,6 +362,75 @@ class RecursiveDescentParserTest {
         }
     }
 
+    @Nested
+    class Precedence {
+
+        @Test
+        void operatorsBindFromLoosestToTightest() {
+            var expression = parseExpression("a = b or c and d == e < f + g * -h.i();");
+
+            assertThat(describe(expression)).isEqualTo("(= a (or b (and c (== d (< e (+ f (* g (- (call (. h i))))))))))");
+        }
+
+        @Test
+        void groupingOverridesPrecedence() {
+            var expression = parseExpression("(1 + 2) * 3;");
+
+            assertThat(describe(expression)).isEqualTo("(* (group (+ 1.0 2.0)) 3.0)");
+        }
+
+        @Test
+        void binaryOperatorsAreLeftAssociative() {
+            var expression = parseExpression("1 - 2 - 3 == 4 == 5;");
+
+            assertThat(describe(expression)).isEqualTo("(== (== (- (- 1.0 2.0) 3.0) 4.0) 5.0)");
+        }
+
+        @Test
+        void logicalOperatorsAreLeftAssociative() {
+            var expression = parseExpression("a or b or c;");
+
+            assertThat(describe(expression)).isEqualTo("(or (or a b) c)");
+        }
+
+        @Test
+        void assignmentIsRightAssociative() {
+            var expression = parseExpression("a = b.c = d;");
+
+            assertThat(describe(expression)).isEqualTo("(= a (= (. b c) d))");
+        }
+
+        @Test
+        void unaryOperatorsNest() {
+            var expression = parseExpression("!-a;");
+
+            assertThat(describe(expression)).isEqualTo("(! (- a))");
+        }
+
+        private Expression parseExpression(String sourceCode) {
+            var parser = createParser(Scanner.createDefault(sourceCode).scanTokens());
+
+            var expression = extractOnlyExpressionFrom(parser.parse());
+
+            assertThat(fakeErrorReporter.receivedError()).isFalse();
+            return expression;
+        }
+
+        private String describe(Expression expression) {
+            if (expression instanceof Expression.Assign assign) return "(= " + assign.name().lexeme() + " " + describe(assign.value()) + ")";
+            if (expression instanceof Expression.Set set) return "(= (. " + describe(set.object()) + " " + set.name().lexeme() + ") " + describe(set.value()) + ")";
+            if (expression instanceof Expression.Logical logical) return "(" + logical.operator().lexeme() + " " + describe(logical.left()) + " " + describe(logical.right()) + ")";
+            if (expression instanceof Expression.Binary binary) return "(" + binary.operator().lexeme() + " " + describe(binary.left()) + " " + describe(binary.right()) + ")";
+            if (expression instanceof Expression.Unary unary) return "(" + unary.operator().lexeme() + " " + describe(unary.right()) + ")";
+            if (expression instanceof Expression.Call call) return "(call " + describe(call.callee()) + ")";
+            if (expression instanceof Expression.Get get) return "(. " + describe(get.object()) + " " + get.name().lexeme() + ")";
+            if (expression instanceof Expression.Grouping grouping) return "(group " + describe(grouping.expression()) + ")";
+            if (expression instanceof Expression.Variable variable) return variable.name().lexeme();
+
+            return String.valueOf(castTo(expression, Expression.Literal.class).value());
+        }
+    }
+
     @Nested
     class ThisExpression {
 
@@ -2098,6 +2177,188 @@ class RecursiveDescentParserTest {
         }
     }
 
+    @Nested
+    class SourceLines {
+
+        @Test
+        void recordsTheLineOnWhichEachStatementStarts() {
+            var parser = createParser(
+                    new Token(PRINT, "print", null, 1), one(), semicolon(),
+                    new Token(VAR, "var", null, 2), identifier("a"), semicolon(),
+                    new Token(LEFT_BRACE, "{", null, 3),
+                    new Token(PRINT, "print", null, 4), two(), semicolon(),
+                    rightBrace(),
+                    eof()
+            );
+
+            var statements = parser.parse();
+
+            assertThat(sourceMap.lineOf(statements.get(0))).isEqualTo(1);
+            assertThat(sourceMap.lineOf(statements.get(1))).isEqualTo(2);
+            assertThat(sourceMap.lineOf(statements.get(2))).isEqualTo(3);
+
+            var block = castTo(statements.get(2), Statement.Block.class);
+            assertThat(sourceMap.lineOf(block.statements().get(0))).isEqualTo(4);
+        }
+
+        @Test
+        void desugaredForLoopStatementsGetTheLineOfTheForKeyword() {
+            var parser = createParser(
+                    new Token(FOR, "for", null, 7), leftParen(), var(), identifier("i"), semicolon(), semicolon(), identifier("i"), rightParen(),
+                    new Token(PRINT, "print", null, 8), identifier("i"), semicolon(),
+                    eof()
+            );
+
+            var forLoop = castTo(extractOnlyStatementFrom(parser.parse()), Statement.Block.class);
+            var initializer = forLoop.statements().get(0);
+            var whileLoop = castTo(forLoop.statements().get(1), Statement.While.class);
+            var body = castTo(whileLoop.body(), Statement.Block.class);
+
+            assertThat(sourceMap.lineOf(forLoop)).isEqualTo(7);
+            assertThat(sourceMap.lineOf(initializer)).isEqualTo(7);
+            assertThat(sourceMap.lineOf(whileLoop)).isEqualTo(7);
+            assertThat(sourceMap.lineOf(body.statements().get(0))).isEqualTo(8);
+            assertThat(sourceMap.lineOf(body.statements().get(1))).isEqualTo(7);
+        }
+
+        @Test
+        void statementsThatWereNotParsedHaveNoLine() {
+            assertThat(sourceMap.lineOf(new Statement.Print(new Expression.Literal(1.0)))).isZero();
+        }
+    }
+
+    @Nested
+    class TokenSources {
+
+        @Test
+        void parsesTokensPulledFromAScanner() {
+            var scanner = Scanner.createDefault("print 1;\nprint 2;");
+            var parser = Parser.createDefault(scanner, sourceMap);
+
+            var statements = parser.parse();
+
+            assertThat(statements).hasSize(2);
+            assertThat(sourceMap.lineOf(statements.get(1))).isEqualTo(2);
+        }
+
+        @Test
+        void neverAsksForATokenBeyondEndOfFile() {
+            var tokens = List.of(print(), one(), semicolon(), eof()).iterator();
+            var parser = new RecursiveDescentParser(new TokenSource() {
+
+                @Override
+                public Token nextToken() {
+                    assertThat(tokens.hasNext()).isTrue();
+                    return tokens.next();
+                }
+
+                @Override
+                public int positionOfLastToken() {
+                    return 0;
+                }
+
+                @Override
+                public TokenSource range(int from, int to, int line) {
+                    throw new UnsupportedOperationException();
+                }
+            }, sourceMap);
+
+            var statements = parser.parse();
+
+            assertThat(statements).hasSize(1);
+            assertThat(tokens.hasNext()).isFalse();
+        }
+    }
+
+    @Nested
+    class DeferredFunctionBodies {
+
+        @Test
+        void bodiesAreParsedWhenTheyAreFirstNeeded() {
+            var statements = parseDeferringFunctionBodies("""
+                    fun f(a) {
+                      print a;
+                      fun g() { return 1; }
+                    }
+                    class C { m() { print 2; } }
+                    """);
+
+            var f = castTo(statements.get(0), Statement.Function.class);
+            var body = castTo(f.body(), DeferredBody.class);
+            assertThat(f.parameters()).hasSize(1);
+            assertThat(body.isParsed()).isFalse();
+
+            assertThat(body.compile()).isTrue();
+            assertThat(body).hasSize(2);
+            assertThat(sourceMap.lineOf(body.get(0))).isEqualTo(2);
+
+            var g = castTo(body.get(1), Statement.Function.class);
+            assertThat(castTo(g.body(), DeferredBody.class).isParsed()).isFalse();
+
+            var m = castTo(statements.get(1), Statement.Class.class).methods().get(0);
+            assertThat(castTo(m.body(), DeferredBody.class).isParsed()).isFalse();
+            assertThat(fakeErrorReporter.receivedError()).isFalse();
+        }
+
+        @Test
+        void bodiesAreTheSameAsWhenParsedRightAwayForEveryTokenSource() {
+            var sourceCode = """
+                    fun f(a) {
+                      if (a > 1) { print "{"; }
+                      fun g() { return a + 1; }
+                      return g;
+                    }
+                    fun empty() {}
+                    """;
+            var expected = new RecursiveDescentParser(Scanner.createDefault(sourceCode).scanTokens(), sourceMap).parse();
+
+            var tokenSources = List.<TokenSource>of(
+                    Scanner.createDefault(sourceCode),
+                    Scanner.createParallel(sourceCode),
+                    Scanner.createDefault(sourceCode).bufferTokens().tokenSource(),
+                    TokenSource.of(Scanner.createDefault(sourceCode).scanTokens())
+            );
+            for (var tokens : tokenSources) {
+                var statements = new RecursiveDescentParser(tokens, sourceMap, true).parse();
+
+                // Tokens are only equal to themselves, so compare what the statements print and the lines of the tokens.
+                assertThat(statements).hasToString(expected.toString());
+                var f = castTo(statements.get(0), Statement.Function.class);
+                var g = castTo(f.body().get(1), Statement.Function.class);
+                var _return = castTo(g.body().get(0), Statement.Return.class);
+                assertThat(_return.keyword().line()).isEqualTo(3);
+                assertThat(sourceMap.lineOf(f.body().get(2))).isEqualTo(4);
+            }
+            assertThat(fakeErrorReporter.receivedError()).isFalse();
+        }
+
+        @Test
+        void syntaxErrorsInABodyAreReportedWhenItIsParsed() {
+            var statements = parseDeferringFunctionBodies("fun f() { print 1 }");
+            assertThat(fakeErrorReporter.receivedError()).isFalse();
+
+            var body = castTo(castTo(statements.get(0), Statement.Function.class).body(), DeferredBody.class);
+
+            assertThat(body.compile()).isFalse();
+            assertThat(body).isEmpty();
+            assertThat(fakeErrorReporter.getError()).hasToString("[line 1] SyntaxError: at 'end' expect ';' after value.");
+        }
+
+        @Test
+        void unbalancedBracesAreReportedRightAway() {
+            parseDeferringFunctionBodies("fun f() { { print 1; }");
+
+            assertThat(fakeErrorReporter.getError()).hasToString("[line 1] SyntaxError: at 'end' expect '}' after block.");
+        }
+
+        private List<Statement> parseDeferringFunctionBodies(String sourceCode) {
+            var parser = Parser.createDeferringFunctionBodies(Scanner.createDefault(sourceCode), sourceMap);
+            parser.addErrorReporter(fakeErrorReporter);
+
+            return parser.parse();
+        }
+    }
+
     private <T> T castTo(Object o, Class<T> clazz) {
         assertThat(o).isInstanceOf(clazz);
 
@@ -2109,7 +2370,7 @@ class RecursiveDescentParserTest {
     }
 
     private Parser createParser(List<Token> tokens) {
-        var parser = new RecursiveDescentParser(tokens);
+        var parser = new RecursiveDescentParser(tokens, sourceMap);
         parser.addErrorReporter(fakeErrorReporter);
 
         return parser;
@@ -0,0 +1,169 @@
+package be.guldentops.geert.lox.profiler;
+
+import be.guldentops.geert.lox.error.FakeErrorReporter;
+import be.guldentops.geert.lox.grammar.SourceMap;
+import be.guldentops.geert.lox.interpreter.Interpreter;
+import be.guldentops.geert.lox.lexer.Scanner;
+import be.guldentops.geert.lox.parser.Parser;
+import be.guldentops.geert.lox.semantic.analysis.Resolver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static be.guldentops.geert.lox.interpreter.Allocation.BOUND_METHOD;
+import static be.guldentops.geert.lox.interpreter.Allocation.ENVIRONMENT;
+import static be.guldentops.geert.lox.interpreter.Allocation.INSTANCE;
+import static be.guldentops.geert.lox.interpreter.Allocation.NUMBER;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AllocationProfilerTest {
+
+    private final PrintStream originalOut = System.out;
+
+    private FakeErrorReporter fakeErrorReporter;
+    private SourceMap sourceMap;
+    private AllocationProfiler profiler;
+
+    @BeforeEach
+    void setUp() {
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));
+
+        fakeErrorReporter = new FakeErrorReporter();
+        sourceMap = new SourceMap();
+        profiler = new AllocationProfiler(sourceMap);
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Nested
+    class Attribution {
+
+        @Test
+        void numbersAreAttributedToTheFunctionAndLineThatComputedThem() {
+            profile("""
+                    fun add(a, b) {
+                      return a + b;
+                    }
+                    add(1, 2);
+                    print -1;
+                    """);
+
+            assertThat(profiler.countOf("add", 2, NUMBER)).isEqualTo(1);
+            assertThat(profiler.countOf("add", 4, ENVIRONMENT)).isEqualTo(1);
+            assertThat(profiler.countOf("<script>", 5, NUMBER)).isEqualTo(1);
+        }
+
+        @Test
+        void blocksAllocateAnEnvironment() {
+            profile("""
+                    {
+                      print 1;
+                    }
+                    """);
+
+            assertThat(profiler.countOf("<script>", 1, ENVIRONMENT)).isEqualTo(1);
+        }
+
+        @Test
+        void instantiationAllocatesTheInstanceAndBindsItsInitializer() {
+            profile("""
+                    class Point {
+                      init(x) {
+                        this.x = x;
+                      }
+                    }
+                    var p = Point(1 + 2);
+                    """);
+
+            assertThat(profiler.countOf("<script>", 6, NUMBER)).isEqualTo(1);
+            assertThat(profiler.countOf("Point", 6, INSTANCE)).isEqualTo(1);
+            assertThat(profiler.countOf("Point", 6, BOUND_METHOD)).isEqualTo(1);
+            assertThat(profiler.countOf("Point", 6, ENVIRONMENT)).isEqualTo(2);
+        }
+
+        @Test
+        void accessingAMethodBindsIt() {
+            profile("""
+                    class Point {
+                      getX() {
+                        return 1;
+                      }
+                    }
+                    var p = Point();
+                    print p.getX();
+                    """);
+
+            assertThat(profiler.countOf("<script>", 7, BOUND_METHOD)).isEqualTo(1);
+            assertThat(profiler.countOf("<script>", 7, ENVIRONMENT)).isEqualTo(1);
+            assertThat(profiler.countOf("getX", 7, ENVIRONMENT)).isEqualTo(1);
+        }
+
+        @Test
+        void estimatesTheBytesPerSite() {
+            profile("""
+                    fun add(a, b) {
+                      return a + b;
+                    }
+                    add(1, 2);
+                    """);
+
+            assertThat(profiler.estimatedBytesOf("add", 2)).isEqualTo(NUMBER.estimatedBytes());
+            assertThat(profiler.estimatedBytesOf("add", 4)).isEqualTo(ENVIRONMENT.estimatedBytes());
+            assertThat(profiler.estimatedBytesOf("add", 3)).isZero();
+        }
+    }
+
+    @Nested
+    class Report {
+
+        @Test
+        void listsTheSitesThatAllocateTheMostBytesFirst() {
+            profile("""
+                    fun add(a, b) {
+                      return a + b;
+                    }
+                    for (var i = 0; i < 3; i = i + 1) {
+                      add(i, i);
+                    }
+                    """);
+
+            var report = new ByteArrayOutputStream();
+            profiler.report(2, new PrintStream(report));
+
+            var lines = report.toString().lines().collect(toList());
+            assertThat(lines).hasSize(3);
+            assertThat(lines.get(0)).contains("Function", "Line", "Environments", "Bound methods", "Instances", "Numbers", "Estimated bytes");
+            assertThat(lines.get(1).split("\\s+")).containsExactly("<script>", "4", "7", "0", "0", "3", "1112");
+            assertThat(lines.get(2).split("\\s+")).containsExactly("add", "5", "3", "0", "0", "0", "456");
+        }
+    }
+
+    private void profile(String sourceCode) {
+        var scanner = Scanner.createDefault(sourceCode);
+        scanner.addErrorReporter(fakeErrorReporter);
+
+        var parser = Parser.createDefault(scanner.scanTokens(), sourceMap);
+        parser.addErrorReporter(fakeErrorReporter);
+        var statements = parser.parse();
+
+        var interpreter = Interpreter.createDefault();
+        interpreter.addErrorReporter(fakeErrorReporter);
+        interpreter.addExecutionListener(profiler);
+
+        var resolver = Resolver.createDefault(interpreter);
+        resolver.addErrorReporter(fakeErrorReporter);
+        resolver.resolve(statements);
+
+        interpreter.interpret(statements);
+
+        assertThat(fakeErrorReporter.receivedError()).isFalse();
+    }
+}
@@ -0,0 +1,166 @@
+package be.guldentops.geert.lox.profiler;
+
+import be.guldentops.geert.lox.error.FakeErrorReporter;
+import be.guldentops.geert.lox.grammar.SourceMap;
+import be.guldentops.geert.lox.interpreter.Interpreter;
+import be.guldentops.geert.lox.lexer.Scanner;
+import be.guldentops.geert.lox.parser.Parser;
+import be.guldentops.geert.lox.semantic.analysis.Resolver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LineProfilerTest {
+
+    private final PrintStream originalOut = System.out;
+
+    private FakeErrorReporter fakeErrorReporter;
+    private SourceMap sourceMap;
+    private LineProfiler profiler;
+
+    @BeforeEach
+    void setUp() {
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));
+
+        fakeErrorReporter = new FakeErrorReporter();
+        sourceMap = new SourceMap();
+
+        // Every reading of the fake clock advances it by exactly 1 nanosecond.
+        var ticks = new long[1];
+        profiler = new LineProfiler(sourceMap, () -> ++ticks[0]);
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Nested
+    class ExecutionCounts {
+
+        @Test
+        void countsHowManyTimesTheStatementsOfEachLineRan() {
+            profile("""
+                    var a = 1;
+                    fun f() {
+                      a = a + 1;
+                    }
+                    f();
+                    f();
+                    """);
+
+            assertThat(profiler.countOf(1)).isEqualTo(1);
+            assertThat(profiler.countOf(2)).isEqualTo(1);
+            assertThat(profiler.countOf(3)).isEqualTo(2);
+            assertThat(profiler.countOf(4)).isZero();
+            assertThat(profiler.countOf(5)).isEqualTo(1);
+            assertThat(profiler.countOf(6)).isEqualTo(1);
+        }
+
+        @Test
+        void linesThatNeverRanHaveNoCount() {
+            profile("if (false) print 1;");
+
+            assertThat(profiler.countOf(1)).isEqualTo(1);
+            assertThat(profiler.countOf(1_000)).isZero();
+        }
+    }
+
+    @Nested
+    class Times {
+
+        @Test
+        void selfTimeExcludesTimeSpentInCalledFunctions() {
+            profile("""
+                    fun f() {
+                      print 1;
+                    }
+                    f();
+                    """);
+
+            assertThat(profiler.inclusiveNanosOf(2)).isEqualTo(1);
+            assertThat(profiler.selfNanosOf(2)).isEqualTo(1);
+            assertThat(profiler.inclusiveNanosOf(4)).isEqualTo(3);
+            assertThat(profiler.selfNanosOf(4)).isEqualTo(2);
+        }
+
+        @Test
+        void recursionDoesNotCountInclusiveTimeTwice() {
+            profile("""
+                    fun r(n) {
+                      if (n > 0) r(n - 1);
+                    }
+                    r(1);
+                    """);
+
+            assertThat(profiler.countOf(2)).isEqualTo(3);
+            assertThat(profiler.inclusiveNanosOf(2)).isEqualTo(5);
+            assertThat(profiler.selfNanosOf(2)).isEqualTo(5);
+            assertThat(profiler.inclusiveNanosOf(4)).isEqualTo(7);
+            assertThat(profiler.selfNanosOf(4)).isEqualTo(2);
+        }
+
+        @Test
+        void timeIsAccountedForWhenAStatementReturnsEarly() {
+            profile("""
+                    fun f() {
+                      return 1;
+                      print 2;
+                    }
+                    f();
+                    """);
+
+            assertThat(profiler.countOf(2)).isEqualTo(1);
+            assertThat(profiler.countOf(3)).isZero();
+            assertThat(profiler.inclusiveNanosOf(5)).isEqualTo(3);
+        }
+    }
+
+    @Nested
+    class Report {
+
+        @Test
+        void annotatesEachSourceLine() {
+            var sourceCode = """
+                    print 1;
+                    // comment""";
+            profile(sourceCode);
+
+            var report = new ByteArrayOutputStream();
+            profiler.report(sourceCode, new PrintStream(report));
+
+            assertThat(report.toString()).isEqualTo("""
+                      Line        Count   Inclusive ms        Self ms  Source
+                         1            1          0.000          0.000  print 1;
+                         2                                             // comment
+                    """);
+        }
+    }
+
+    private void profile(String sourceCode) {
+        var scanner = Scanner.createDefault(sourceCode);
+        scanner.addErrorReporter(fakeErrorReporter);
+
+        var parser = Parser.createDefault(scanner.scanTokens(), sourceMap);
+        parser.addErrorReporter(fakeErrorReporter);
+        var statements = parser.parse();
+
+        var interpreter = Interpreter.createDefault();
+        interpreter.addErrorReporter(fakeErrorReporter);
+        interpreter.addExecutionListener(profiler);
+
+        var resolver = Resolver.createDefault(interpreter);
+        resolver.addErrorReporter(fakeErrorReporter);
+        resolver.resolve(statements);
+
+        interpreter.interpret(statements);
+
+        assertThat(fakeErrorReporter.receivedError()).isFalse();
+    }
+}
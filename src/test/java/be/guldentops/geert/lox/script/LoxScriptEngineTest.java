@@ -0,0 +1,256 @@
+package be.guldentops.geert.lox.script;
+
+import be.guldentops.geert.lox.grammar.Expression;
+import be.guldentops.geert.lox.grammar.Statement;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import javax.script.Compilable;
+import javax.script.Invocable;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.ref.WeakReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoxScriptEngineTest {
+
+    private ScriptEngine engine;
+    private StringWriter output;
+
+    @BeforeEach
+    void setUp() {
+        engine = new ScriptEngineManager().getEngineByName("lox");
+
+        output = new StringWriter();
+        engine.getContext().setWriter(output);
+    }
+
+    @Nested
+    class Discovery {
+
+        @Test
+        void byNameExtensionAndMimeType() {
+            var manager = new ScriptEngineManager();
+
+            assertThat(engine).isInstanceOf(LoxScriptEngine.class);
+            assertThat(manager.getEngineByExtension("lox")).isInstanceOf(LoxScriptEngine.class);
+            assertThat(manager.getEngineByMimeType("application/x-lox")).isInstanceOf(LoxScriptEngine.class);
+        }
+
+        @Test
+        void factoryDescribesLox() {
+            var factory = engine.getFactory();
+
+            assertThat(factory.getLanguageName()).isEqualTo("Lox");
+            assertThat(factory.getParameter(ScriptEngine.NAME)).isEqualTo("lox");
+            assertThat(factory.getParameter("THREADING")).isNull();
+            assertThat(factory.getMethodCallSyntax("point", "move", "1", "2")).isEqualTo("point.move(1, 2)");
+            assertThat(factory.getProgram(factory.getOutputStatement("hello"), "var a = 1")).isEqualTo("print \"hello\";;\nvar a = 1;\n");
+        }
+    }
+
+    @Nested
+    class Eval {
+
+        @Test
+        void printsToTheWriterOfTheContext() throws ScriptException {
+            assertThat(engine.eval("print \"Hello world!\";")).isNull();
+
+            assertThat(output).hasToString("Hello world!\n");
+        }
+
+        @Test
+        void reader() throws ScriptException {
+            engine.eval(new StringReader("print 1 + 2;"));
+
+            assertThat(output).hasToString("3\n");
+        }
+
+        @Test
+        void syntaxError() {
+            assertThatThrownBy(() -> engine.eval("print 1"))
+                    .isInstanceOf(ScriptException.class)
+                    .hasMessageStartingWith("[line 1] SyntaxError");
+        }
+
+        @Test
+        void semanticError() {
+            assertThatThrownBy(() -> engine.eval("return 1;"))
+                    .isInstanceOf(ScriptException.class)
+                    .hasMessageContaining("SemanticError");
+        }
+
+        @Test
+        void runtimeError() {
+            assertThatThrownBy(() -> engine.eval("print \"before\"; print -\"a\";"))
+                    .isInstanceOf(ScriptException.class)
+                    .hasMessage("[line 1] RuntimeError: at '-' operand must be a number.");
+
+            assertThat(output).hasToString("before\n");
+        }
+    }
+
+    @Nested
+    class Bindings {
+
+        @Test
+        void areTheGlobalVariables() throws ScriptException {
+            engine.put("answer", 42);
+            engine.eval("var greeting = \"hello\"; answer = answer / 2;");
+
+            var bindings = engine.getBindings(ScriptContext.ENGINE_SCOPE);
+            assertThat(bindings.get("greeting")).isEqualTo("hello");
+            assertThat(bindings.get("answer")).isEqualTo(21.0);
+        }
+
+        @Test
+        void ofTheContextAScriptRunsIn() throws ScriptException {
+            var bindings = new SimpleBindings();
+            bindings.put("name", "other");
+
+            engine.eval("var greeting = \"hello \" + name;", bindings);
+
+            assertThat(bindings.get("greeting")).isEqualTo("hello other");
+            assertThat(engine.get("greeting")).isNull();
+        }
+
+        @Test
+        void functionsOutliveTheBindingsTheyWereDefinedIn() throws ScriptException {
+            var bindings = new SimpleBindings();
+            engine.eval("fun makeCounter() { var count = 0; fun counter() { count = count + 1; return count; } return counter; }", bindings);
+
+            engine.put("makeCounter", bindings.get("makeCounter"));
+            engine.eval("var counter = makeCounter(); counter(); print counter();");
+
+            assertThat(output).hasToString("2\n");
+        }
+    }
+
+    @Nested
+    class Compile {
+
+        @Test
+        void onceEvalManyTimes() throws ScriptException {
+            var script = ((Compilable) engine).compile("count = count + 1; { var local = count; print local; }");
+            engine.put("count", 0);
+
+            script.eval();
+            script.eval();
+            script.eval();
+
+            assertThat(output).hasToString("1\n2\n3\n");
+            assertThat(script.getEngine()).isSameAs(engine);
+        }
+
+        @Test
+        void isNotKeptByTheEngineAfterItRan() throws ScriptException, InterruptedException {
+            var script = (LoxCompiledScript) ((Compilable) engine).compile("{ var x = 1; var y = x + 1; }");
+            script.eval();
+
+            var block = (Statement.Block) script.statements().get(0);
+            var initializer = (Expression.Binary) ((Statement.Variable) block.statements().get(1)).initializer();
+            var localVariable = new WeakReference<>(initializer.left());
+            script = null;
+            block = null;
+            initializer = null;
+
+            for (var i = 0; i < 50 && localVariable.get() != null; i++) {
+                System.gc();
+                Thread.sleep(10);
+            }
+
+            assertThat(localVariable.get()).isNull();
+        }
+
+        @Test
+        void functionsKeepUsingTheLocalsOfTheirScript() throws Exception {
+            engine.eval("fun outer(a) { var b = a * 2; fun inner(c) { return a + b + c; } return inner; }");
+            engine.eval("{ var unrelated = 1; { var nested = unrelated; } }");
+
+            engine.put("inner", ((Invocable) engine).invokeFunction("outer", 1));
+
+            assertThat(((Invocable) engine).invokeFunction("inner", 10)).isEqualTo(13.0);
+        }
+
+        @Test
+        void reportsErrorsBeforeRunning() {
+            assertThatThrownBy(() -> ((Compilable) engine).compile("print \"never\"; fun f() { return this; }"))
+                    .isInstanceOf(ScriptException.class);
+
+            assertThat(output.toString()).isEmpty();
+        }
+    }
+
+    @Nested
+    class Invoke {
+
+        @Test
+        void functionByName() throws Exception {
+            engine.eval("fun add(a, b) { return a + b; }");
+
+            assertThat(((Invocable) engine).invokeFunction("add", 1, 2.5)).isEqualTo(3.5);
+        }
+
+        @Test
+        void functionThatDoesNotExist() {
+            assertThatThrownBy(() -> ((Invocable) engine).invokeFunction("missing"))
+                    .isInstanceOf(NoSuchMethodException.class)
+                    .hasMessage("missing");
+        }
+
+        @Test
+        void functionWithWrongNumberOfArguments() throws ScriptException {
+            engine.eval("fun add(a, b) { return a + b; }");
+
+            assertThatThrownBy(() -> ((Invocable) engine).invokeFunction("add", 1))
+                    .isInstanceOf(ScriptException.class)
+                    .hasMessage("[line 0] RuntimeError: at 'add' expected 2 argument(s) but got 1.");
+        }
+
+        @Test
+        void methodOfAnInstance() throws Exception {
+            engine.eval("""
+                    class Counter {
+                      init(start) { this.count = start; }
+                      add(amount) { this.count = this.count + amount; return this.count; }
+                    }
+                    var counter = Counter(10);
+                    """);
+
+            var counter = engine.get("counter");
+            ((Invocable) engine).invokeMethod(counter, "add", 5);
+
+            assertThat(((Invocable) engine).invokeMethod(counter, "add", 1)).isEqualTo(16.0);
+        }
+
+        @Test
+        void methodOfSomethingThatIsNotAnInstance() {
+            assertThatThrownBy(() -> ((Invocable) engine).invokeMethod("text", "length"))
+                    .isInstanceOf(ScriptException.class)
+                    .hasMessage("[line 0] RuntimeError: at 'length' only instances have methods.");
+        }
+
+        @Test
+        void throughAnInterface() throws ScriptException {
+            engine.eval("fun greet(name) { return \"hello \" + name; }");
+
+            var greeter = ((Invocable) engine).getInterface(Greeter.class);
+
+            assertThat(greeter.greet("interface")).isEqualTo("hello interface");
+            assertThat(greeter).isEqualTo(greeter).hasToString(Greeter.class.getName() + " implemented by Lox");
+        }
+    }
+
+    public interface Greeter {
+
+        String greet(String name);
+    }
+}
@@ -0,0 +1,158 @@
+package be.guldentops.geert.lox.semantic.analysis;
+
+import be.guldentops.geert.lox.error.Error;
+import be.guldentops.geert.lox.error.ErrorReporter;
+import be.guldentops.geert.lox.grammar.DeferredBody;
+import be.guldentops.geert.lox.grammar.SourceMap;
+import be.guldentops.geert.lox.grammar.Statement;
+import be.guldentops.geert.lox.lexer.Scanner;
+import be.guldentops.geert.lox.parser.Parser;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ParallelResolverTest {
+
+    private static final String SCRIPT = """
+            var a = 1;
+            fun f(x) {
+              var y = x + a;
+              { var y = a; }
+              return y;
+            }
+            return a;
+            class A { init() { return 1; } m() { return this; } }
+            class B < A { m() { return super.m(); } }
+            class C < C {}
+            { var z = z; }
+            print this;
+            fun g() { var x; var x; return g; }
+            print f(a);
+            """;
+
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    static void startPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void stopPool() {
+        pool.shutdown();
+    }
+
+    @Nested
+    class DegenerateCases {
+
+        @Test
+        void resolveNull() {
+            var resolver = new ParallelResolver(new FakeResolutionAnalyzer(), pool, 1);
+
+            assertThatThrownBy(() -> resolver.resolve(null))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Can not resolve null statements");
+        }
+
+        @Test
+        void resolveNothing() {
+            assertResolvesLikeVariableResolver(List.of(), 1);
+        }
+    }
+
+    @Nested
+    class Differential {
+
+        @ParameterizedTest
+        @ValueSource(ints = {1, 2, 3, 5, 1_000})
+        void resolutionsAndErrorsInTheSameOrder(int statementsPerBatch) {
+            assertResolvesLikeVariableResolver(parse(SCRIPT), statementsPerBatch);
+        }
+
+        @Test
+        void manyTopLevelDeclarations() {
+            var sourceCode = new StringBuilder();
+            for (var i = 0; i < 2_000; i++) {
+                sourceCode.append("fun f").append(i).append("(a) { var b = a; { var c = b; return c; } }\n");
+                if (i % 100 == 0) sourceCode.append("{ var d").append(i).append(" = d").append(i).append("; }\n");
+            }
+
+            assertResolvesLikeVariableResolver(parse(sourceCode.toString()), ParallelResolver.DEFAULT_STATEMENTS_PER_BATCH);
+        }
+    }
+
+    @Nested
+    class DeferredFunctionBodies {
+
+        @Test
+        void bodiesThatAreParsedLaterAreResolvedStraightAway() {
+            var statements = Parser.createDeferringFunctionBodies(Scanner.createDefault(SCRIPT), new SourceMap()).parse();
+            var fakeResolutionAnalyzer = new FakeResolutionAnalyzer();
+            var errors = new ArrayList<String>();
+            var resolver = new ParallelResolver(fakeResolutionAnalyzer, pool, 1);
+            resolver.addErrorReporter(collectingErrorReporter(errors));
+
+            resolver.resolve(statements);
+            var resolutions = fakeResolutionAnalyzer.depthPerExpression.size();
+            var function = (Statement.Function) statements.get(1);
+
+            assertThat(((DeferredBody) function.body()).compile()).isTrue();
+            assertThat(fakeResolutionAnalyzer.depthPerExpression.size()).isGreaterThan(resolutions);
+
+            var g = (Statement.Function) statements.get(8);
+            assertThat(((DeferredBody) g.body()).compile()).isFalse();
+            assertThat(errors).last().isEqualTo("[line 13] SemanticError: at 'x' variable with this name already declared in this scope.");
+        }
+    }
+
+    private void assertResolvesLikeVariableResolver(List<Statement> statements, int statementsPerBatch) {
+        var expected = new FakeResolutionAnalyzer();
+        var expectedErrors = new ArrayList<String>();
+        var variableResolver = new VariableResolver(expected);
+        variableResolver.addErrorReporter(collectingErrorReporter(expectedErrors));
+        variableResolver.resolve(statements);
+
+        var actual = new FakeResolutionAnalyzer();
+        var actualErrors = new ArrayList<String>();
+        var parallelResolver = new ParallelResolver(actual, pool, statementsPerBatch);
+        parallelResolver.addErrorReporter(collectingErrorReporter(actualErrors));
+        parallelResolver.resolve(statements);
+
+        assertThat(actual.depthPerExpression).isEqualTo(expected.depthPerExpression);
+        assertThat(actualErrors).isEqualTo(expectedErrors);
+    }
+
+    private List<Statement> parse(String sourceCode) {
+        return Parser.createDefault(Scanner.createDefault(sourceCode).scanTokens()).parse();
+    }
+
+    private ErrorReporter collectingErrorReporter(List<String> errors) {
+        return new ErrorReporter() {
+
+            @Override
+            public void handle(Error error) {
+                errors.add(error.toString());
+            }
+
+            @Override
+            public boolean receivedError() {
+                return !errors.isEmpty();
+            }
+
+            @Override
+            public void reset() {
+                errors.clear();
+            }
+        };
+    }
+}
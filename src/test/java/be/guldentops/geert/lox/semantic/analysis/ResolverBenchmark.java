@@ -0,0 +1,106 @@
+package be.guldentops.geert.lox.semantic.analysis;
+
+import be.guldentops.geert.lox.grammar.Statement;
+import be.guldentops.geert.lox.lexer.Scanner;
+import be.guldentops.geert.lox.parser.Parser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast the resolver gets through deeply nested and very wide scopes and through many top-level
+ * declarations, which have already been parsed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResolverBenchmark {
+
+    private List<Statement> deep;
+    private List<Statement> wide;
+    private List<Statement> library;
+
+    @Setup
+    public void setUp() {
+        deep = parse(deeplyNested(200));
+        wide = parse(wide(2_000));
+        library = parse(library(10_000));
+    }
+
+    /**
+     * Every block declares a variable and reads the variables of the outermost and of the enclosing block.
+     */
+    private String deeplyNested(int depth) {
+        var sourceCode = new StringBuilder("{ var v0 = 0;\n");
+        for (var i = 1; i < depth; i++) {
+            sourceCode.append("{ var v").append(i).append(" = v0 + v").append(i - 1).append(";\n");
+        }
+
+        return sourceCode.append("}".repeat(depth)).toString();
+    }
+
+    /**
+     * A function with many local variables that are all read back.
+     */
+    private String wide(int width) {
+        var sourceCode = new StringBuilder("fun f() {\n");
+        for (var i = 0; i < width; i++) {
+            sourceCode.append("var v").append(i).append(" = ").append(i).append(";\n");
+        }
+        for (var i = 0; i < width; i++) {
+            sourceCode.append("print v").append(i).append(" + v").append(width - 1 - i).append(";\n");
+        }
+
+        return sourceCode.append("}").toString();
+    }
+
+    /**
+     * Many top-level functions, like a large library script.
+     */
+    private String library(int functions) {
+        var sourceCode = new StringBuilder();
+        for (var i = 0; i < functions; i++) {
+            sourceCode.append("fun f").append(i).append("(a, b) { var c = a + b; { var d = c * a; return d - b; } }\n");
+        }
+
+        return sourceCode.toString();
+    }
+
+    private List<Statement> parse(String sourceCode) {
+        return Parser.createDefault(Scanner.createDefault(sourceCode).scanTokens()).parse();
+    }
+
+    @Benchmark
+    public void deeplyNestedScopes(Blackhole blackhole) {
+        Resolver.createDefault((expression, depth) -> blackhole.consume(depth)).resolve(deep);
+    }
+
+    @Benchmark
+    public void wideScopes(Blackhole blackhole) {
+        Resolver.createDefault((expression, depth) -> blackhole.consume(depth)).resolve(wide);
+    }
+
+    @Benchmark
+    public void libraryOneByOne(Blackhole blackhole) {
+        Resolver.createDefault((expression, depth) -> blackhole.consume(depth)).resolve(library);
+    }
+
+    @Benchmark
+    public void libraryInParallel(Blackhole blackhole) {
+        Resolver.createParallel((expression, depth) -> blackhole.consume(depth)).resolve(library);
+    }
+}
@@ -0,0 +1,112 @@
+package be.guldentops.geert.lox.semantic.analysis;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScopesTest {
+
+    private Scopes scopes;
+
+    @BeforeEach
+    void setUp() {
+        scopes = new Scopes();
+    }
+
+    @Nested
+    class Lookup {
+
+        @Test
+        void namesThatAreNotDeclaredAreGlobal() {
+            assertThat(scopes.isEmpty()).isTrue();
+            assertThat(scopes.distanceTo("a")).isEqualTo(-1);
+
+            scopes.begin();
+
+            assertThat(scopes.isEmpty()).isFalse();
+            assertThat(scopes.distanceTo("a")).isEqualTo(-1);
+        }
+
+        @Test
+        void distanceCountsTheScopesBetweenTheUseAndTheDeclaration() {
+            scopes.begin();
+            scopes.define("a");
+            scopes.begin();
+            scopes.begin();
+
+            assertThat(scopes.distanceTo("a")).isEqualTo(2);
+            assertThat(scopes.isDeclaredInInnermost("a")).isFalse();
+        }
+
+        @Test
+        void innerDeclarationsShadowOuterOnesUntilTheirScopeEnds() {
+            scopes.begin();
+            scopes.define("a");
+            scopes.begin();
+            scopes.declare("a");
+
+            assertThat(scopes.distanceTo("a")).isZero();
+            assertThat(scopes.isDeclaredButNotDefinedInInnermost("a")).isTrue();
+
+            scopes.end();
+
+            assertThat(scopes.distanceTo("a")).isZero();
+            assertThat(scopes.isDeclaredButNotDefinedInInnermost("a")).isFalse();
+
+            scopes.end();
+
+            assertThat(scopes.distanceTo("a")).isEqualTo(-1);
+        }
+
+        @Test
+        void definingADeclaredNameCompletesIt() {
+            scopes.begin();
+            scopes.declare("a");
+            scopes.define("a");
+
+            assertThat(scopes.isDeclaredInInnermost("a")).isTrue();
+            assertThat(scopes.isDeclaredButNotDefinedInInnermost("a")).isFalse();
+        }
+    }
+
+    @Nested
+    class Growth {
+
+        @Test
+        void deepAndWideScopes() {
+            for (var depth = 0; depth < 1_000; depth++) {
+                scopes.begin();
+                scopes.define("v" + depth);
+            }
+            for (var i = 0; i < 1_000; i++) {
+                scopes.define("w" + i);
+            }
+
+            assertThat(scopes.distanceTo("v0")).isEqualTo(999);
+            assertThat(scopes.distanceTo("w999")).isZero();
+        }
+    }
+
+    @Nested
+    class Copy {
+
+        @Test
+        void copiesChangeIndependently() {
+            scopes.begin();
+            scopes.define("a");
+            scopes.begin();
+            scopes.declare("b");
+
+            var copy = scopes.copy();
+            scopes.end();
+            copy.define("b");
+
+            assertThat(copy.distanceTo("a")).isEqualTo(1);
+            assertThat(copy.isDeclaredInInnermost("b")).isTrue();
+            assertThat(copy.isDeclaredButNotDefinedInInnermost("b")).isFalse();
+            assertThat(scopes.distanceTo("b")).isEqualTo(-1);
+        }
+    }
+}
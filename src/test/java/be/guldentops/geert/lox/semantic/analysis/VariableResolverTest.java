@@ -1,6 +1,7 @@
 package be.guldentops.geert.lox.semantic.analysis;
 
 import be.guldentops.geert.lox.error.FakeErrorReporter;
+import be.guldentops.geert.lox.grammar.DeferredBody;
 import be.guldentops.geert.lox.grammar.Expression;
 import be.guldentops.geert.lox.grammar.Statement;
 import org.junit.jupiter.api.BeforeEach;
@@ -848,6 +849,51 @@ class VariableResolverTest {
         }
     }
 
+    @Nested
+    class DeferredFunctionBodies {
+
+        @Test
+        void bodyIsResolvedOnceItIsParsed() {
+            var a = variable("a");
+            var body = new DeferredBody(() -> List.of(print(a)));
+
+            resolve(blockStatement(
+                    variableDeclaration("a", literal(1.0)),
+                    function("f", emptyList(), body)
+            ));
+
+            assertThat(fakeResolutionAnalyzer.depthPerExpression).isEmpty();
+
+            assertThat(body.compile()).isTrue();
+            assertResolvedToDepth(a, 1);
+        }
+
+        @Test
+        void bodyOnlySeesTheVariablesDeclaredBeforeTheFunction() {
+            var a = variable("a");
+            var body = new DeferredBody(() -> List.of(print(a)));
+
+            resolve(blockStatement(
+                    function("f", emptyList(), body),
+                    variableDeclaration("a", literal(1.0))
+            ));
+            body.compile();
+
+            assertResolvedToNothing();
+        }
+
+        @Test
+        void bodyWithSemanticErrorsIsInvalid() {
+            var body = new DeferredBody(() -> List.of(_return(literal(1.0))));
+
+            resolve(_class("Foo", List.of(function("init", emptyList(), body))));
+            assertNoErrors();
+
+            assertThat(body.compile()).isFalse();
+            assertError("[line 1] SemanticError: at 'return' cannot return a value from an initializer.");
+        }
+    }
+
     private void resolve(Statement... statements) {
         resolver.resolve(List.of(statements));
     }